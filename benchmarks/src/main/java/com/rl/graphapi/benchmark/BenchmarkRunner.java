@@ -0,0 +1,41 @@
+package com.rl.graphapi.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+
+/**
+ * Runs the benchmarks with the JMH command line options, adding the GC profiler so every
+ * result reports its allocation rate ({@code gc.alloc.rate.norm} being the bytes allocated
+ * per operation).
+ * <p>
+ * Example: {@code java -jar target/benchmarks.jar CommonAncestor -p shape=RANDOM_DAG -p size=100000}
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(final String[] args) throws RunnerException, CommandLineOptionException, IOException {
+        final CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+        if (commandLineOptions.shouldHelp()) {
+            commandLineOptions.showHelp();
+            return;
+        }
+        final ChainedOptionsBuilder options = new OptionsBuilder()
+                .parent(commandLineOptions)
+                .addProfiler(GCProfiler.class);
+        final Runner runner = new Runner(options.build());
+        if (commandLineOptions.shouldList()) {
+            runner.list();
+            return;
+        }
+        runner.run();
+    }
+}
@@ -0,0 +1,66 @@
+package com.rl.graphapi.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Common ancestor queries of random node pairs, answered by traversal ({@code none})
+ * or by the ancestor index ({@code lazy}, built before the measurement).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class CommonAncestorBenchmark {
+    private static final int PAIRS = 256;
+
+    @State(Scope.Benchmark)
+    public static class PairsState extends GraphState {
+        @Param({"none", "lazy"})
+        public String ancestorIndex;
+
+        int[] firstNodeIds;
+        int[] secondNodeIds;
+
+        @Override
+        String ancestorIndexMode() {
+            return ancestorIndex;
+        }
+
+        @Override
+        void onGraphCreated() {
+            final Random random = new Random(SEED);
+            firstNodeIds = new int[PAIRS];
+            secondNodeIds = new int[PAIRS];
+            for (int pair = 0; pair < PAIRS; pair++) {
+                firstNodeIds[pair] = edges.randomNodeId(random);
+                secondNodeIds[pair] = edges.randomNodeId(random);
+            }
+            // build the lazy index outside of the measurement
+            graphProcessingService.haveNodesCommonAncestor(graph.getId(), firstNodeIds[0], secondNodeIds[0]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public void haveNodesCommonAncestor(final PairsState state, final Blackhole blackhole) {
+        for (int pair = 0; pair < PAIRS; pair++) {
+            blackhole.consume(state.graphProcessingService.haveNodesCommonAncestor(state.graph.getId(),
+                    state.firstNodeIds[pair], state.secondNodeIds[pair]));
+        }
+    }
+}
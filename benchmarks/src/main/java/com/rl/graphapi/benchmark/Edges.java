@@ -0,0 +1,60 @@
+package com.rl.graphapi.benchmark;
+
+import com.rl.graphapi.service.model.GraphBuilder;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The edges of a generated graph, kept in primitive arrays so replaying them into a
+ * {@link GraphBuilder} measures only the builder. The node positions used by the generators
+ * are mapped to a random permutation of the node ids, as the user ids are not ordered by depth.
+ */
+public final class Edges {
+    private final int[] nodeIds;
+    private int[] parentIds = new int[16];
+    private int[] childIds = new int[16];
+    private int size;
+
+    Edges(final int nodesCount, final Random random) {
+        nodeIds = new int[nodesCount];
+        for (int node = 0; node < nodesCount; node++) {
+            nodeIds[node] = node;
+        }
+        for (int node = nodesCount - 1; node > 0; node--) {
+            final int other = random.nextInt(node + 1);
+            final int swap = nodeIds[node];
+            nodeIds[node] = nodeIds[other];
+            nodeIds[other] = swap;
+        }
+    }
+
+    void add(final int parent, final int child) {
+        if (size == parentIds.length) {
+            parentIds = Arrays.copyOf(parentIds, size * 2);
+            childIds = Arrays.copyOf(childIds, size * 2);
+        }
+        parentIds[size] = nodeIds[parent];
+        childIds[size] = nodeIds[child];
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public GraphBuilder addTo(final GraphBuilder graphBuilder) {
+        for (int edge = 0; edge < size; edge++) {
+            graphBuilder.addEdge(parentIds[edge], childIds[edge]);
+        }
+        return graphBuilder;
+    }
+
+    /**
+     * @return the id of a random node having at least one edge
+     */
+    public int randomNodeId(final Random random) {
+        final int edge = random.nextInt(size);
+        return random.nextBoolean() ? parentIds[edge] : childIds[edge];
+    }
+}
@@ -0,0 +1,63 @@
+package com.rl.graphapi.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rl.graphapi.rest.converter.GraphConverter;
+import com.rl.graphapi.rest.writer.NdjsonWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversion of a whole graph to its response body: the graph DTO serialized by Jackson,
+ * as the create and get endpoints respond, and the NDJSON stream.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class GraphDtoBenchmark {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final GraphConverter GRAPH_CONVERTER = new GraphConverter();
+    private static final NdjsonWriter NDJSON_WRITER = new NdjsonWriter(OBJECT_MAPPER);
+
+    @Benchmark
+    public void graphDto(final GraphState state, final Blackhole blackhole) throws IOException {
+        OBJECT_MAPPER.writeValue(new DiscardingOutputStream(blackhole), GRAPH_CONVERTER.toGraphDTO(state.graph));
+    }
+
+    @Benchmark
+    public void graphNdjson(final GraphState state, final Blackhole blackhole) throws IOException {
+        NDJSON_WRITER.writeGraph(state.graph, new DiscardingOutputStream(blackhole));
+    }
+
+    /**
+     * Stands for the response stream, handing the written bytes to the blackhole.
+     */
+    private static final class DiscardingOutputStream extends OutputStream {
+        private final Blackhole blackhole;
+
+        private DiscardingOutputStream(final Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void write(final int b) {
+            blackhole.consume(b);
+        }
+
+        @Override
+        public void write(final byte[] bytes, final int offset, final int length) {
+            blackhole.consume(bytes);
+        }
+    }
+}
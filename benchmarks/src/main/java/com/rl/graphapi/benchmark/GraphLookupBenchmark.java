@@ -0,0 +1,57 @@
+package com.rl.graphapi.benchmark;
+
+import com.rl.graphapi.service.model.Edge;
+import com.rl.graphapi.service.model.Graph;
+import com.rl.graphapi.service.repository.GraphEvictionPolicy;
+import com.rl.graphapi.service.repository.GraphRepository;
+import com.rl.graphapi.service.repository.GraphSnapshotStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Graph lookups by id in stores of a growing number of single edge graphs, the lookup time staying
+ * flat as the store grows.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class GraphLookupBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class StoreState {
+        @Param({"1000", "100000"})
+        public int graphs;
+
+        GraphRepository graphRepository;
+        long[] graphIds;
+
+        @Setup
+        public void setUp() {
+            graphRepository = new GraphRepository(new GraphSnapshotStore(""), GraphEvictionPolicy.unbounded());
+            graphIds = new long[graphs];
+            for (int graph = 0; graph < graphs; graph++) {
+                graphIds[graph] = graphRepository.createGraph(Collections.singleton(new Edge(graph, graph + 1))).getId();
+            }
+        }
+    }
+
+    @Benchmark
+    public Graph lookup(final StoreState state) {
+        return state.graphRepository.lookup(state.graphIds[ThreadLocalRandom.current().nextInt(state.graphIds.length)]);
+    }
+}
@@ -0,0 +1,85 @@
+package com.rl.graphapi.benchmark;
+
+import java.util.Random;
+
+/**
+ * Generators of the graph shapes the benchmarks run against. Every generator creates the edges
+ * between the node positions {@code 0..nodesCount-1}, always from a lower to a higher position,
+ * so all the shapes are acyclic; {@link Edges} then maps the positions to shuffled node ids.
+ */
+public enum GraphShape {
+    /**
+     * A single chain, every node having the previous one as parent: one root, maximal depth.
+     */
+    DEEP_CHAIN {
+        @Override
+        void generate(final int nodesCount, final Random random, final Edges edges) {
+            for (int node = 1; node < nodesCount; node++) {
+                edges.add(node - 1, node);
+            }
+        }
+    },
+    /**
+     * Mostly roots, the remaining nodes having {@value #FAN_IN} parents picked among the roots.
+     */
+    WIDE_FAN_IN {
+        @Override
+        void generate(final int nodesCount, final Random random, final Edges edges) {
+            final int rootsCount = Math.max(FAN_IN, nodesCount - nodesCount / 10);
+            for (int node = rootsCount; node < nodesCount; node++) {
+                for (int parent = 0; parent < FAN_IN; parent++) {
+                    edges.add(random.nextInt(rootsCount), node);
+                }
+            }
+            // connect the roots left without children
+            for (int node = 1; node < rootsCount && nodesCount > rootsCount; node += FAN_IN) {
+                edges.add(node, rootsCount + random.nextInt(nodesCount - rootsCount));
+            }
+        }
+    },
+    /**
+     * Every node has one to four parents picked uniformly among the previous nodes.
+     */
+    RANDOM_DAG {
+        @Override
+        void generate(final int nodesCount, final Random random, final Edges edges) {
+            for (int node = 1; node < nodesCount; node++) {
+                final int parentsCount = 1 + random.nextInt(4);
+                for (int parent = 0; parent < parentsCount; parent++) {
+                    edges.add(random.nextInt(node), node);
+                }
+            }
+        }
+    },
+    /**
+     * Random recursive trees of about {@value #TREE_SIZE} nodes, every node having a single parent.
+     */
+    FOREST {
+        @Override
+        void generate(final int nodesCount, final Random random, final Edges edges) {
+            final int treesCount = Math.max(1, nodesCount / TREE_SIZE);
+            for (int node = treesCount; node < nodesCount; node++) {
+                // the nodes of a tree are the positions having the same remainder
+                final int tree = node % treesCount;
+                edges.add(tree + treesCount * random.nextInt(node / treesCount), node);
+            }
+        }
+    };
+
+    private static final int FAN_IN = 32;
+    private static final int TREE_SIZE = 1000;
+
+    abstract void generate(int nodesCount, Random random, Edges edges);
+
+    /**
+     * @param nodesCount the approximate number of nodes
+     * @param seed       the random seed, the same seed generating the same graph
+     * @return the edges of the generated graph
+     */
+    public Edges edges(final int nodesCount, final long seed) {
+        final Random random = new Random(seed);
+        final Edges edges = new Edges(nodesCount, random);
+        generate(nodesCount, random, edges);
+        return edges;
+    }
+}
@@ -0,0 +1,67 @@
+package com.rl.graphapi.benchmark;
+
+import com.rl.graphapi.service.AncestorIndexService;
+import com.rl.graphapi.service.CommonAncestorCache;
+import com.rl.graphapi.service.GraphMetrics;
+import com.rl.graphapi.service.GraphProcessingService;
+import com.rl.graphapi.service.GraphService;
+import com.rl.graphapi.service.model.Graph;
+import com.rl.graphapi.service.model.GraphBuilder;
+import com.rl.graphapi.service.repository.GraphEvictionPolicy;
+import com.rl.graphapi.service.repository.GraphRepository;
+import com.rl.graphapi.service.repository.GraphSnapshotStore;
+import com.rl.graphapi.service.traversal.TraversalEngine;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * A generated graph stored by the services, wired by hand the way Spring wires them,
+ * with the ancestor index disabled unless a benchmark enables it. The operations are timed
+ * by the metrics, as in the application, recorded by an in-memory registry.
+ */
+@State(Scope.Benchmark)
+public class GraphState {
+    static final long SEED = 42L;
+
+    @Param({"DEEP_CHAIN", "WIDE_FAN_IN", "RANDOM_DAG", "FOREST"})
+    public GraphShape shape;
+
+    @Param({"10000", "100000", "1000000"})
+    public int size;
+
+    Edges edges;
+    Graph graph;
+    GraphService graphService;
+    GraphProcessingService graphProcessingService;
+
+    @Setup
+    public void setUp() {
+        final AncestorIndexService ancestorIndexService = new AncestorIndexService(ancestorIndexMode(), 50_000_000L);
+        final CommonAncestorCache commonAncestorCache = new CommonAncestorCache(0);
+        final GraphRepository graphRepository = new GraphRepository(new GraphSnapshotStore(""), GraphEvictionPolicy.unbounded());
+        final GraphMetrics graphMetrics = new GraphMetrics(new SimpleMeterRegistry(), graphRepository, 0);
+        graphService = new GraphService(graphRepository, ancestorIndexService, commonAncestorCache, graphMetrics);
+        graphProcessingService = new GraphProcessingService(graphService, ancestorIndexService, commonAncestorCache, graphMetrics,
+                new TraversalEngine(graphMetrics, 0));
+        edges = shape.edges(size, SEED);
+        graph = graphService.createGraph(edges::addTo);
+        onGraphCreated();
+    }
+
+    /**
+     * Extension point of the states preparing their queries on the created graph.
+     */
+    void onGraphCreated() {
+    }
+
+    String ancestorIndexMode() {
+        return AncestorIndexService.Mode.NONE.name();
+    }
+
+    GraphBuilder newBuilder() {
+        return edges.addTo(new GraphBuilder());
+    }
+}
@@ -0,0 +1,69 @@
+package com.rl.graphapi.benchmark;
+
+import com.rl.graphapi.service.model.Edge;
+import com.rl.graphapi.service.model.Graph;
+import com.rl.graphapi.service.model.GraphMutation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Graph updates: a few hundred edges from new root nodes to random nodes are added by one update and
+ * removed by the next one, deriving every time the next version and its indexes, by traversal only
+ * ({@code none}) or also updating the ancestor index ({@code lazy}, built before the measurement).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class GraphUpdateBenchmark {
+    private static final int EDGES = 256;
+
+    @State(Scope.Benchmark)
+    public static class MutationState extends GraphState {
+        @Param({"none", "lazy"})
+        public String ancestorIndex;
+
+        GraphMutation addition;
+        GraphMutation removal;
+        boolean added;
+
+        @Override
+        String ancestorIndexMode() {
+            return ancestorIndex;
+        }
+
+        @Override
+        void onGraphCreated() {
+            final Random random = new Random(SEED);
+            final List<Edge> newEdges = new ArrayList<>();
+            for (int edge = 0; edge < EDGES; edge++) {
+                newEdges.add(new Edge(-1 - edge, edges.randomNodeId(random)));
+            }
+            addition = new GraphMutation(newEdges, null, null, null);
+            removal = new GraphMutation(null, newEdges, null, null);
+            // build the lazy index outside of the measurement
+            graphProcessingService.haveNodesCommonAncestor(graph.getId(), edges.randomNodeId(random), edges.randomNodeId(random));
+        }
+    }
+
+    @Benchmark
+    public Graph updateGraph(final MutationState state) {
+        final GraphMutation mutation = state.added ? state.removal : state.addition;
+        state.added = !state.added;
+        return state.graphService.updateGraph(state.graph.getId(), mutation);
+    }
+}
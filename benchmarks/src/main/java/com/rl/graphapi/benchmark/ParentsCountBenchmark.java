@@ -0,0 +1,43 @@
+package com.rl.graphapi.benchmark;
+
+import com.rl.graphapi.service.model.NodesPage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parent-count queries: the ids of the nodes having one parent, the most common bucket
+ * of most shapes, iterated as the response serialization does, counted and paged.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class ParentsCountBenchmark {
+    private static final int PAGE_LIMIT = 1000;
+
+    @Benchmark
+    public void nodesHavingParentsCount(final GraphState state, final Blackhole blackhole) {
+        for (final Integer nodeId : state.graphService.getNodesHavingParentsCount(state.graph.getId(), 1)) {
+            blackhole.consume(nodeId);
+        }
+    }
+
+    @Benchmark
+    public int countNodesHavingParentsCount(final GraphState state) {
+        return state.graphService.countNodesHavingParentsCount(state.graph.getId(), 1, Integer.MAX_VALUE);
+    }
+
+    @Benchmark
+    public NodesPage nodesHavingParentsCountPage(final GraphState state) {
+        return state.graphService.getNodesHavingParentsCountPage(state.graph.getId(), 1, 1, null, PAGE_LIMIT);
+    }
+}
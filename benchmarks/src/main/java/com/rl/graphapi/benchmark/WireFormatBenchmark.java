@@ -0,0 +1,110 @@
+package com.rl.graphapi.benchmark;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rl.graphapi.rest.converter.GraphConverter;
+import com.rl.graphapi.rest.reader.BinaryEdgeReader;
+import com.rl.graphapi.rest.reader.JsonEdgeReader;
+import com.rl.graphapi.rest.writer.BinaryGraphWriter;
+import com.rl.graphapi.service.model.Graph;
+import com.rl.graphapi.service.model.GraphBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The JSON and the binary wire formats compared: the upload of the edges, read into a graph builder
+ * as the create endpoint does, and the whole graph response, written from the graph. The payload sizes
+ * of both formats are printed once the graph is generated.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class WireFormatBenchmark {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final GraphConverter GRAPH_CONVERTER = new GraphConverter();
+    private static final JsonEdgeReader JSON_EDGE_READER = new JsonEdgeReader(OBJECT_MAPPER);
+    private static final BinaryEdgeReader BINARY_EDGE_READER = new BinaryEdgeReader();
+    private static final BinaryGraphWriter BINARY_GRAPH_WRITER = new BinaryGraphWriter();
+
+    @State(Scope.Benchmark)
+    public static class WireFormatState extends GraphState {
+        byte[] jsonEdges;
+        byte[] binaryGraph;
+        int jsonGraphSize;
+
+        @Override
+        void onGraphCreated() {
+            try {
+                jsonEdges = writeJsonEdges(graph);
+                binaryGraph = writeBinaryGraph(graph);
+                jsonGraphSize = OBJECT_MAPPER.writeValueAsBytes(GRAPH_CONVERTER.toGraphDTO(graph)).length;
+            } catch (final IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+            System.out.printf("%n%s %s: %s edges, JSON edges %s bytes, JSON graph %s bytes, binary graph %s bytes%n",
+                    shape, size, graph.getEdgesCount(), jsonEdges.length, jsonGraphSize, binaryGraph.length);
+        }
+    }
+
+    @Benchmark
+    public GraphBuilder readJsonEdges(final WireFormatState state) throws IOException {
+        final GraphBuilder graphBuilder = new GraphBuilder();
+        JSON_EDGE_READER.read(new ByteArrayInputStream(state.jsonEdges), graphBuilder);
+        return graphBuilder;
+    }
+
+    @Benchmark
+    public GraphBuilder readBinaryEdges(final WireFormatState state) throws IOException {
+        final GraphBuilder graphBuilder = new GraphBuilder();
+        BINARY_EDGE_READER.read(new ByteArrayInputStream(state.binaryGraph), graphBuilder);
+        return graphBuilder;
+    }
+
+    @Benchmark
+    public byte[] writeJsonGraph(final WireFormatState state) throws IOException {
+        return OBJECT_MAPPER.writeValueAsBytes(GRAPH_CONVERTER.toGraphDTO(state.graph));
+    }
+
+    @Benchmark
+    public byte[] writeBinaryGraph(final WireFormatState state) throws IOException {
+        return writeBinaryGraph(state.graph);
+    }
+
+    private static byte[] writeBinaryGraph(final Graph graph) throws IOException {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        BINARY_GRAPH_WRITER.writeGraph(graph, outputStream);
+        return outputStream.toByteArray();
+    }
+
+    private static byte[] writeJsonEdges(final Graph graph) throws IOException {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (JsonGenerator generator = OBJECT_MAPPER.getFactory().createGenerator(outputStream)) {
+            generator.writeStartArray();
+            for (int index = 0; index < graph.getNodesCount(); index++) {
+                for (int position = graph.getParentsFrom(index); position < graph.getParentsTo(index); position++) {
+                    generator.writeStartObject();
+                    generator.writeNumberField("parent", graph.getNodeId(graph.getParent(position)));
+                    generator.writeNumberField("child", graph.getNodeId(index));
+                    generator.writeEndObject();
+                }
+            }
+            generator.writeEndArray();
+        }
+        return outputStream.toByteArray();
+    }
+}
@@ -0,0 +1,104 @@
+package com.rl.graphapi.loadtest;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import org.HdrHistogram.Histogram;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Records the garbage collections of the JVM through the notifications of its garbage collector beans:
+ * the duration of every collection, in milliseconds, overall and per collector. The application runs in
+ * the same JVM as the load generator unless {@code --url} is given, so the collections of both are recorded.
+ * <p>
+ * The durations reported by the young and full collections are stop the world pauses, the concurrent
+ * phases of the old generation collectors are reported by their own collector beans (e.g. the CMS or G1
+ * concurrent cycles) and recorded as well, marked as concurrent.
+ */
+final class GcPauseMonitor implements NotificationListener {
+    private final Histogram pauses = new Histogram(3);
+    private final Map<String, CollectorStatistics> collectors = new TreeMap<>();
+
+    void start() {
+        for (final GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (collector instanceof NotificationEmitter) {
+                ((NotificationEmitter) collector).addNotificationListener(this, null, null);
+            }
+        }
+    }
+
+    void stop() {
+        for (final GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (collector instanceof NotificationEmitter) {
+                try {
+                    ((NotificationEmitter) collector).removeNotificationListener(this);
+                } catch (final ListenerNotFoundException exception) {
+                    // not registered
+                }
+            }
+        }
+    }
+
+    /**
+     * Forget the collections recorded so far, e.g. the ones of the warm up.
+     */
+    synchronized void reset() {
+        pauses.reset();
+        collectors.clear();
+    }
+
+    @Override
+    public synchronized void handleNotification(final Notification notification, final Object handback) {
+        if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+            return;
+        }
+        final GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+        final long durationMillis = info.getGcInfo().getDuration();
+        final boolean concurrent = info.getGcName().contains("Concurrent") || info.getGcCause().contains("Concurrent");
+        if (!concurrent) {
+            pauses.recordValue(durationMillis);
+        }
+        final CollectorStatistics statistics = collectors.computeIfAbsent(info.getGcName() + " (" + info.getGcAction() + ")",
+                name -> new CollectorStatistics(concurrent));
+        statistics.count++;
+        statistics.totalMillis += durationMillis;
+        statistics.maxMillis = Math.max(statistics.maxMillis, durationMillis);
+    }
+
+    synchronized void print(final long elapsedMillis) {
+        System.out.printf("%nGC pauses: %s, total %s ms (%.2f%% of %s ms), p50 %s ms, p99 %s ms, max %s ms%n",
+                pauses.getTotalCount(), totalPauseMillis(), 100.0 * totalPauseMillis() / Math.max(1, elapsedMillis),
+                elapsedMillis, pauses.getValueAtPercentile(50), pauses.getValueAtPercentile(99), pauses.getMaxValue());
+        for (final Map.Entry<String, CollectorStatistics> collector : collectors.entrySet()) {
+            final CollectorStatistics statistics = collector.getValue();
+            System.out.printf("  %-45s %6s collections, total %6s ms, max %5s ms%s%n", collector.getKey(), statistics.count,
+                    statistics.totalMillis, statistics.maxMillis, statistics.concurrent ? ", concurrent" : "");
+        }
+    }
+
+    private long totalPauseMillis() {
+        long total = 0;
+        for (final CollectorStatistics statistics : collectors.values()) {
+            total += statistics.concurrent ? 0 : statistics.totalMillis;
+        }
+        return total;
+    }
+
+    private static final class CollectorStatistics {
+        private final boolean concurrent;
+        private long count;
+        private long totalMillis;
+        private long maxMillis;
+
+        private CollectorStatistics(final boolean concurrent) {
+            this.concurrent = concurrent;
+        }
+    }
+}
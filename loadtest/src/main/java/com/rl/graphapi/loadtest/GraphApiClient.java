@@ -0,0 +1,89 @@
+package com.rl.graphapi.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Minimal HTTP client of the graph endpoints, on the JDK {@link HttpURLConnection} so the load test needs
+ * no client library. The responses are always read to their end, letting the JDK keep the connections alive.
+ */
+final class GraphApiClient {
+    private static final int BUFFER_SIZE = 8 * 1024;
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final String baseUrl;
+
+    GraphApiClient(final String baseUrl, final int maxConnections) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        // the connections kept alive per host, 5 by default
+        System.setProperty("http.maxConnections", String.valueOf(maxConnections));
+    }
+
+    /**
+     * Create a graph from the given JSON edges.
+     *
+     * @param edges the JSON edges
+     * @return the summary of the created graph
+     */
+    JsonNode createGraph(final byte[] edges) throws IOException {
+        final HttpURLConnection connection = open("PUT", "/graphs?view=summary", edges);
+        final byte[] response = readResponse(connection);
+        if (connection.getResponseCode() != HttpURLConnection.HTTP_CREATED) {
+            throw new IOException(String.format("Graph not created, status %s: %s",
+                    connection.getResponseCode(), new String(response, "UTF-8")));
+        }
+        return OBJECT_MAPPER.readTree(response);
+    }
+
+    /**
+     * Send a request, discarding its response.
+     *
+     * @param method the HTTP method
+     * @param path   the path, query included
+     * @param body   the JSON body or null
+     * @return the status of the response
+     */
+    int send(final String method, final String path, final byte[] body) throws IOException {
+        final HttpURLConnection connection = open(method, path, body);
+        readResponse(connection);
+        return connection.getResponseCode();
+    }
+
+    private HttpURLConnection open(final String method, final String path, final byte[] body) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        connection.setRequestMethod(method);
+        connection.setRequestProperty("Accept", "application/json");
+        if (body != null) {
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json");
+            connection.setFixedLengthStreamingMode(body.length);
+            try (OutputStream outputStream = connection.getOutputStream()) {
+                outputStream.write(body);
+            }
+        }
+        return connection;
+    }
+
+    private static byte[] readResponse(final HttpURLConnection connection) throws IOException {
+        final InputStream inputStream = connection.getResponseCode() < HttpURLConnection.HTTP_BAD_REQUEST
+                ? connection.getInputStream() : connection.getErrorStream();
+        final ByteArrayOutputStream response = new ByteArrayOutputStream();
+        if (inputStream == null) {
+            return response.toByteArray();
+        }
+        try (InputStream input = inputStream) {
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            for (int read = input.read(buffer); read != -1; read = input.read(buffer)) {
+                response.write(buffer, 0, read);
+            }
+        }
+        return response.toByteArray();
+    }
+}
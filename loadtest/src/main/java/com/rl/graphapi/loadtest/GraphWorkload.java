@@ -0,0 +1,117 @@
+package com.rl.graphapi.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * The graphs the load runs against and the requests of every operation.
+ * <p>
+ * Before the load, {@code --graphs} graphs are created, their sizes taken in turn from {@code --sizes}.
+ * The queries pick their graph following a Zipf distribution of exponent {@code --skew}, the first graph
+ * being the hottest one. The create requests upload one of a few generated graphs of the smallest size;
+ * since identical uploads share their bodies in the store, only the first upload of each of them grows
+ * the store memory.
+ */
+final class GraphWorkload {
+    private static final int CREATE_VARIANTS = 8;
+    private static final int PAGE_LIMIT = 100;
+    private static final int MAX_QUERIED_PARENTS = 4;
+
+    private final GraphApiClient client;
+    private final long[] graphIds;
+    private final int[] nodeCounts;
+    private final byte[][] createBodies;
+    private final ZipfSampler graphSampler;
+
+    private GraphWorkload(final GraphApiClient client, final long[] graphIds, final int[] nodeCounts,
+                          final byte[][] createBodies, final ZipfSampler graphSampler) {
+        this.client = client;
+        this.graphIds = graphIds;
+        this.nodeCounts = nodeCounts;
+        this.createBodies = createBodies;
+        this.graphSampler = graphSampler;
+    }
+
+    /**
+     * Create the queried graphs and generate the bodies of the create requests.
+     *
+     * @param client  the client of the application
+     * @param options the load test options
+     * @return the workload
+     */
+    static GraphWorkload create(final GraphApiClient client, final LoadTestOptions options) throws IOException {
+        final int[] sizes = options.getSizes();
+        final long[] graphIds = new long[options.getGraphs()];
+        final int[] nodeCounts = new int[graphIds.length];
+        for (int graph = 0; graph < graphIds.length; graph++) {
+            final JsonNode summary = client.createGraph(edges(sizes[graph % sizes.length], options.getSeed() + graph));
+            graphIds[graph] = summary.get("id").asLong();
+            nodeCounts[graph] = summary.get("nodesCount").asInt();
+            System.out.printf("Graph %s created: %s nodes, %s edges%n", graphIds[graph], nodeCounts[graph],
+                    summary.get("edgesCount").asInt());
+        }
+
+        int smallestSize = Integer.MAX_VALUE;
+        for (final int size : sizes) {
+            smallestSize = Math.min(smallestSize, size);
+        }
+        final byte[][] createBodies = new byte[CREATE_VARIANTS][];
+        for (int variant = 0; variant < CREATE_VARIANTS; variant++) {
+            createBodies[variant] = edges(smallestSize, options.getSeed() - variant - 1);
+        }
+        return new GraphWorkload(client, graphIds, nodeCounts, createBodies, new ZipfSampler(graphIds.length, options.getSkew()));
+    }
+
+    /**
+     * @return the share of the queries running on the hottest graph
+     */
+    double getHottestGraphShare() {
+        return graphSampler.probability(0);
+    }
+
+    /**
+     * Send the request of the given operation.
+     *
+     * @param operation the operation
+     * @param random    the random source of the request parameters
+     * @return the status of the response
+     */
+    int execute(final LoadOperation operation, final Random random) throws IOException {
+        if (operation == LoadOperation.CREATE) {
+            return client.send("PUT", "/graphs?view=summary", createBodies[random.nextInt(createBodies.length)]);
+        }
+        final int graph = graphSampler.sample(random);
+        switch (operation) {
+            case PARENTS_COUNT:
+                return client.send("GET", String.format("/graphs/%s/nodes/page?parentsCount=%s&limit=%s",
+                        graphIds[graph], random.nextInt(MAX_QUERIED_PARENTS + 1), PAGE_LIMIT), null);
+            case COMMON_ANCESTOR:
+                return client.send("GET", String.format("/graphs/%s/nodes/%s/has-common-ancestor/%s",
+                        graphIds[graph], random.nextInt(nodeCounts[graph]), random.nextInt(nodeCounts[graph])), null);
+            default:
+                throw new IllegalArgumentException(String.format("Unsupported operation %s", operation));
+        }
+    }
+
+    /**
+     * Generate the JSON edges of a random DAG: every node {@code 1..nodesCount-1} has one to three parents
+     * picked uniformly among the previous nodes, so the node ids are {@code 0..nodesCount-1}.
+     */
+    private static byte[] edges(final int nodesCount, final long seed) {
+        final Random random = new Random(seed);
+        final StringBuilder json = new StringBuilder(nodesCount * 2 * 28).append('[');
+        for (int node = 1; node < nodesCount; node++) {
+            final int parentsCount = 1 + random.nextInt(3);
+            for (int parent = 0; parent < parentsCount; parent++) {
+                if (json.length() > 1) {
+                    json.append(',');
+                }
+                json.append("{\"parent\":").append(random.nextInt(node)).append(",\"child\":").append(node).append('}');
+            }
+        }
+        return json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
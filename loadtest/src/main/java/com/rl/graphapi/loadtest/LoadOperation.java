@@ -0,0 +1,39 @@
+package com.rl.graphapi.loadtest;
+
+/**
+ * The requests replayed by the load test, named in the {@code --mix} option by their tag.
+ */
+enum LoadOperation {
+    /**
+     * {@code PUT /graphs?view=summary} uploading the edges of a generated graph.
+     */
+    CREATE("create"),
+    /**
+     * {@code GET /graphs/{graphId}/nodes/page?parentsCount={count}&limit=100} on one of the seeded graphs.
+     */
+    PARENTS_COUNT("parents-count"),
+    /**
+     * {@code GET /graphs/{graphId}/nodes/{firstNodeId}/has-common-ancestor/{secondNodeId}} on one of the
+     * seeded graphs, for two random nodes.
+     */
+    COMMON_ANCESTOR("common-ancestor");
+
+    private final String tag;
+
+    LoadOperation(final String tag) {
+        this.tag = tag;
+    }
+
+    String getTag() {
+        return tag;
+    }
+
+    static LoadOperation of(final String tag) {
+        for (final LoadOperation operation : values()) {
+            if (operation.tag.equals(tag)) {
+                return operation;
+            }
+        }
+        throw new IllegalArgumentException(String.format("Unknown operation %s in the mix", tag));
+    }
+}
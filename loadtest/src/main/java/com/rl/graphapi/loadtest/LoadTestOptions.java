@@ -0,0 +1,148 @@
+package com.rl.graphapi.loadtest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@code --name=value} options of the load test. The options not listed here are passed to the
+ * application started by the load test, e.g. {@code --graph.ancestor-index.mode=eager}.
+ */
+final class LoadTestOptions {
+    private static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+
+    static {
+        DEFAULTS.put("url", "");
+        DEFAULTS.put("rate", "200");
+        DEFAULTS.put("duration", "30");
+        DEFAULTS.put("warmup", "10");
+        DEFAULTS.put("threads", "32");
+        DEFAULTS.put("graphs", "16");
+        DEFAULTS.put("sizes", "1000,10000,100000");
+        DEFAULTS.put("skew", "1.0");
+        DEFAULTS.put("mix", "create:1,parents-count:49,common-ancestor:50");
+        DEFAULTS.put("seed", "42");
+        DEFAULTS.put("histograms", "");
+    }
+
+    private final Map<String, String> values;
+    private final List<String> applicationArgs;
+
+    private LoadTestOptions(final Map<String, String> values, final List<String> applicationArgs) {
+        this.values = values;
+        this.applicationArgs = applicationArgs;
+    }
+
+    static LoadTestOptions parse(final String[] args) {
+        final Map<String, String> values = new LinkedHashMap<>(DEFAULTS);
+        final List<String> applicationArgs = new ArrayList<>();
+        for (final String arg : args) {
+            final int separator = arg.indexOf('=');
+            final String name = arg.startsWith("--") && separator > 2 ? arg.substring(2, separator) : null;
+            if (name != null && DEFAULTS.containsKey(name)) {
+                values.put(name, arg.substring(separator + 1));
+            } else {
+                applicationArgs.add(arg);
+            }
+        }
+        return new LoadTestOptions(values, Collections.unmodifiableList(applicationArgs));
+    }
+
+    /**
+     * @return the options and their default values, for the usage message
+     */
+    static Map<String, String> defaults() {
+        return Collections.unmodifiableMap(DEFAULTS);
+    }
+
+    /**
+     * @return the base url of an already running application, empty to start the application in process
+     */
+    String getUrl() {
+        return values.get("url");
+    }
+
+    /**
+     * @return the target number of requests per second
+     */
+    int getRate() {
+        return Integer.parseInt(values.get("rate"));
+    }
+
+    /**
+     * @return the measured duration, in seconds
+     */
+    int getDurationSeconds() {
+        return Integer.parseInt(values.get("duration"));
+    }
+
+    /**
+     * @return the duration of the warm up preceding the measurement, in seconds
+     */
+    int getWarmupSeconds() {
+        return Integer.parseInt(values.get("warmup"));
+    }
+
+    /**
+     * @return the number of threads sending the requests
+     */
+    int getThreads() {
+        return Integer.parseInt(values.get("threads"));
+    }
+
+    /**
+     * @return the number of graphs created before the load, queried by the parents count and common ancestor requests
+     */
+    int getGraphs() {
+        return Integer.parseInt(values.get("graphs"));
+    }
+
+    /**
+     * @return the node counts of the created graphs, assigned to the graphs in turn
+     */
+    int[] getSizes() {
+        final String[] sizes = values.get("sizes").split(",");
+        final int[] nodeCounts = new int[sizes.length];
+        for (int index = 0; index < sizes.length; index++) {
+            nodeCounts[index] = Integer.parseInt(sizes[index].trim());
+        }
+        return nodeCounts;
+    }
+
+    /**
+     * @return the exponent of the Zipf distribution of the queried graphs, 0 querying all the graphs uniformly
+     */
+    double getSkew() {
+        return Double.parseDouble(values.get("skew"));
+    }
+
+    /**
+     * @return the relative weight of every operation of the mix
+     */
+    Map<LoadOperation, Integer> getMix() {
+        final Map<LoadOperation, Integer> mix = new EnumMap<>(LoadOperation.class);
+        for (final String entry : values.get("mix").split(",")) {
+            final String[] parts = entry.split(":", 2);
+            mix.put(LoadOperation.of(parts[0].trim()), parts.length == 1 ? 1 : Integer.parseInt(parts[1].trim()));
+        }
+        return mix;
+    }
+
+    long getSeed() {
+        return Long.parseLong(values.get("seed"));
+    }
+
+    /**
+     * @return the directory the latency histograms are written to, empty to only print the summary
+     */
+    String getHistogramsDirectory() {
+        return values.get("histograms");
+    }
+
+    List<String> getApplicationArgs() {
+        return applicationArgs;
+    }
+}
@@ -0,0 +1,231 @@
+package com.rl.graphapi.loadtest;
+
+import com.rl.graphapi.GraphApiApplication;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a mix of REST requests against the application at a target rate and reports the latency
+ * percentiles of every operation, recorded in HdrHistograms, along with the garbage collection pauses.
+ * <p>
+ * Unless {@code --url} is given, the application is started in process on a random local port, so the
+ * load test runs entirely offline. The load is open: the requests are scheduled at a fixed rate whatever
+ * the response times, and every latency is measured from the time its request was scheduled, so a
+ * stalled server shows in the percentiles instead of slowing down the load (no coordinated omission).
+ * <p>
+ * Example: {@code java -jar target/loadtest.jar --rate=500 --duration=60 --skew=1.2 --mix=parents-count:1,common-ancestor:3}
+ */
+public final class LoadTestRunner {
+    private static final double MICROS_PER_MILLI = 1000.0;
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private LoadTestRunner() {
+    }
+
+    public static void main(final String[] args) throws Exception {
+        if (args.length > 0 && ("-h".equals(args[0]) || "--help".equals(args[0]))) {
+            System.out.println("Options, the other ones being passed to the application:");
+            LoadTestOptions.defaults().forEach((name, value) -> System.out.printf("  --%s=%s%n", name, value));
+            return;
+        }
+        final LoadTestOptions options = LoadTestOptions.parse(args);
+
+        ConfigurableApplicationContext application = null;
+        String url = options.getUrl();
+        if (url.isEmpty()) {
+            application = startApplication(options.getApplicationArgs());
+            url = "http://localhost:" + application.getEnvironment().getProperty("local.server.port");
+        }
+        try {
+            run(options, new GraphApiClient(url, options.getThreads()));
+        } finally {
+            if (application != null) {
+                application.close();
+            }
+        }
+    }
+
+    private static ConfigurableApplicationContext startApplication(final List<String> applicationArgs) {
+        final List<String> args = new ArrayList<>(applicationArgs);
+        addDefault(args, "server.port", "0");
+        // the graph logs, one line per created graph, would mix with the report
+        addDefault(args, "logging.level.com.rl.graphapi", "WARN");
+        return SpringApplication.run(GraphApiApplication.class, args.toArray(new String[0]));
+    }
+
+    private static void addDefault(final List<String> args, final String name, final String value) {
+        if (args.stream().noneMatch(arg -> arg.startsWith("--" + name + "="))) {
+            args.add("--" + name + "=" + value);
+        }
+    }
+
+    private static void run(final LoadTestOptions options, final GraphApiClient client) throws IOException, InterruptedException {
+        final GraphWorkload workload = GraphWorkload.create(client, options);
+        final Map<LoadOperation, Integer> mix = options.getMix();
+        final LoadOperation[] operations = mix.keySet().toArray(new LoadOperation[0]);
+        final int[] cumulativeWeights = new int[operations.length];
+        int totalWeight = 0;
+        for (int operation = 0; operation < operations.length; operation++) {
+            totalWeight += mix.get(operations[operation]);
+            cumulativeWeights[operation] = totalWeight;
+        }
+        System.out.printf("%nLoad: %s requests/s, mix %s, %s threads, %.1f%% of the queries on the hottest graph%n",
+                options.getRate(), mix, options.getThreads(), 100 * workload.getHottestGraphShare());
+
+        final ExecutorService executor = Executors.newFixedThreadPool(options.getThreads(), runnable -> {
+            final Thread thread = new Thread(runnable, "load");
+            thread.setDaemon(true);
+            return thread;
+        });
+        final GcPauseMonitor gcPauseMonitor = new GcPauseMonitor();
+        gcPauseMonitor.start();
+        try {
+            final Random random = new Random(options.getSeed());
+            if (options.getWarmupSeconds() > 0) {
+                System.out.printf("Warming up for %s s%n", options.getWarmupSeconds());
+                runPhase(workload, executor, operations, cumulativeWeights, options.getRate(), options.getWarmupSeconds(), random);
+                gcPauseMonitor.reset();
+            }
+            System.out.printf("Measuring for %s s%n", options.getDurationSeconds());
+            final Phase phase = runPhase(workload, executor, operations, cumulativeWeights, options.getRate(),
+                    options.getDurationSeconds(), random);
+
+            phase.print();
+            gcPauseMonitor.print(TimeUnit.NANOSECONDS.toMillis(phase.elapsedNanos));
+            if (!options.getHistogramsDirectory().isEmpty()) {
+                phase.writeHistograms(new File(options.getHistogramsDirectory()));
+            }
+        } finally {
+            gcPauseMonitor.stop();
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Schedule {@code rate * seconds} requests at fixed intervals, the operation of every request being picked
+     * following the weights of the mix, and wait for all of them to complete.
+     */
+    private static Phase runPhase(final GraphWorkload workload, final ExecutorService executor, final LoadOperation[] operations,
+                                  final int[] cumulativeWeights, final int rate, final int seconds, final Random random)
+            throws InterruptedException {
+        final Phase phase = new Phase();
+        final int requests = rate * seconds;
+        final long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        final CountDownLatch completed = new CountDownLatch(requests);
+        final long start = System.nanoTime();
+        for (int request = 0; request < requests; request++) {
+            final long scheduledNanos = start + request * intervalNanos;
+            for (long wait = scheduledNanos - System.nanoTime(); wait > 0; wait = scheduledNanos - System.nanoTime()) {
+                LockSupport.parkNanos(wait);
+            }
+            final LoadOperation operation = pick(operations, cumulativeWeights, random);
+            executor.execute(() -> {
+                phase.execute(workload, operation, scheduledNanos);
+                completed.countDown();
+            });
+        }
+        completed.await();
+        phase.elapsedNanos = System.nanoTime() - start;
+        return phase;
+    }
+
+    private static LoadOperation pick(final LoadOperation[] operations, final int[] cumulativeWeights, final Random random) {
+        final int weight = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        int operation = 0;
+        while (cumulativeWeights[operation] <= weight) {
+            operation++;
+        }
+        return operations[operation];
+    }
+
+    /**
+     * The latencies, in microseconds, and the failed requests of every operation of a phase.
+     */
+    private static final class Phase {
+        private final Map<LoadOperation, Histogram> latencies = new EnumMap<>(LoadOperation.class);
+        private final Map<LoadOperation, AtomicLong> errors = new EnumMap<>(LoadOperation.class);
+        private long elapsedNanos;
+
+        private Phase() {
+            for (final LoadOperation operation : LoadOperation.values()) {
+                latencies.put(operation, new ConcurrentHistogram(SIGNIFICANT_DIGITS));
+                errors.put(operation, new AtomicLong());
+            }
+        }
+
+        private void execute(final GraphWorkload workload, final LoadOperation operation, final long scheduledNanos) {
+            try {
+                if (workload.execute(operation, ThreadLocalRandom.current()) >= 400) {
+                    errors.get(operation).incrementAndGet();
+                }
+            } catch (final IOException exception) {
+                errors.get(operation).incrementAndGet();
+            } finally {
+                latencies.get(operation).recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - scheduledNanos));
+            }
+        }
+
+        private void print() {
+            final double elapsedSeconds = elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1);
+            System.out.printf("%n%-16s %9s %7s %10s %9s %9s %9s %9s %9s%n",
+                    "Operation", "Count", "Errors", "Req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+            final Histogram total = new Histogram(SIGNIFICANT_DIGITS);
+            long totalErrors = 0;
+            for (final LoadOperation operation : LoadOperation.values()) {
+                final Histogram histogram = latencies.get(operation);
+                if (histogram.getTotalCount() > 0) {
+                    print(operation.getTag(), histogram, errors.get(operation).get(), elapsedSeconds);
+                    total.add(histogram);
+                    totalErrors += errors.get(operation).get();
+                }
+            }
+            print("all", total, totalErrors, elapsedSeconds);
+        }
+
+        private static void print(final String name, final Histogram histogram, final long errors, final double elapsedSeconds) {
+            System.out.printf("%-16s %9s %7s %10.1f %9.2f %9.2f %9.2f %9.2f %9.2f%n", name, histogram.getTotalCount(), errors,
+                    histogram.getTotalCount() / elapsedSeconds,
+                    histogram.getValueAtPercentile(50) / MICROS_PER_MILLI, histogram.getValueAtPercentile(90) / MICROS_PER_MILLI,
+                    histogram.getValueAtPercentile(99) / MICROS_PER_MILLI, histogram.getValueAtPercentile(99.9) / MICROS_PER_MILLI,
+                    histogram.getMaxValue() / MICROS_PER_MILLI);
+        }
+
+        /**
+         * Write the percentile distribution of every operation, in milliseconds, in the HdrHistogram
+         * {@code .hgrm} format readable by the HdrHistogram plotter.
+         */
+        private void writeHistograms(final File directory) throws IOException {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException(String.format("Cannot create the directory %s", directory));
+            }
+            for (final LoadOperation operation : LoadOperation.values()) {
+                final Histogram histogram = latencies.get(operation);
+                if (histogram.getTotalCount() > 0) {
+                    try (PrintStream output = new PrintStream(new FileOutputStream(new File(directory, operation.getTag() + ".hgrm")))) {
+                        histogram.outputPercentileDistribution(output, MICROS_PER_MILLI);
+                    }
+                }
+            }
+            System.out.printf("%nLatency histograms written to %s%n", directory.getAbsolutePath());
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.rl.graphapi.loadtest;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Samples ranks {@code 0..n-1} following a Zipf distribution: the probability of the rank {@code k} is
+ * proportional to {@code 1 / (k + 1)^exponent}, so a few hot ranks take most of the samples. An exponent of
+ * 0 samples all the ranks uniformly.
+ */
+final class ZipfSampler {
+    private final double[] cumulativeProbabilities;
+
+    ZipfSampler(final int n, final double exponent) {
+        cumulativeProbabilities = new double[n];
+        double sum = 0;
+        for (int rank = 0; rank < n; rank++) {
+            sum += 1 / Math.pow(rank + 1, exponent);
+            cumulativeProbabilities[rank] = sum;
+        }
+        for (int rank = 0; rank < n; rank++) {
+            cumulativeProbabilities[rank] /= sum;
+        }
+    }
+
+    int sample(final Random random) {
+        final int position = Arrays.binarySearch(cumulativeProbabilities, random.nextDouble());
+        final int rank = position >= 0 ? position : -position - 1;
+        return Math.min(rank, cumulativeProbabilities.length - 1);
+    }
+
+    /**
+     * @return the probability of the given rank
+     */
+    double probability(final int rank) {
+        return cumulativeProbabilities[rank] - (rank == 0 ? 0 : cumulativeProbabilities[rank - 1]);
+    }
+}
@@ -1,51 +1,314 @@
 package com.rl.graphapi.rest;
 
 import com.rl.graphapi.rest.converter.GraphConverter;
+import com.rl.graphapi.rest.converter.dto.AncestorIndexDTO;
+import com.rl.graphapi.rest.converter.dto.AncestorPathDTO;
+import com.rl.graphapi.rest.converter.dto.CacheStatisticsDTO;
+import com.rl.graphapi.rest.converter.dto.CommonAncestorDTO;
 import com.rl.graphapi.rest.converter.dto.GraphDTO;
+import com.rl.graphapi.rest.converter.dto.GraphStatsDTO;
+import com.rl.graphapi.rest.converter.dto.GraphSummaryDTO;
+import com.rl.graphapi.rest.converter.dto.NodeDistanceDTO;
+import com.rl.graphapi.rest.converter.dto.NodeRangesDTO;
+import com.rl.graphapi.rest.converter.dto.NodesPageDTO;
+import com.rl.graphapi.rest.executor.QueryExecutor;
+import com.rl.graphapi.rest.reader.BinaryEdgeReader;
+import com.rl.graphapi.rest.reader.CsvEdgeReader;
+import com.rl.graphapi.rest.reader.JsonEdgeReader;
+import com.rl.graphapi.rest.writer.BinaryGraphWriter;
+import com.rl.graphapi.rest.writer.NdjsonWriter;
+import com.rl.graphapi.service.CommonAncestorBatchService;
 import com.rl.graphapi.service.GraphProcessingService;
 import com.rl.graphapi.service.GraphService;
-import com.rl.graphapi.service.model.Edge;
+import com.rl.graphapi.service.exception.ParentsCountNotProvidedException;
+import com.rl.graphapi.service.model.Graph;
+import com.rl.graphapi.service.model.GraphMutation;
+import com.rl.graphapi.service.model.NodePair;
+import com.rl.graphapi.service.model.NodeSetQuery;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.InputStream;
+import java.util.List;
 import java.util.Set;
 
 @RequiredArgsConstructor
 @RestController
 @RequestMapping("/graphs")
 public class GraphController {
+    static final String TEXT_CSV_VALUE = "text/csv";
+    static final String SUMMARY_VIEW = "view=summary";
+    private static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType(NdjsonWriter.APPLICATION_NDJSON_VALUE);
+    private static final MediaType APPLICATION_GRAPH_BINARY = MediaType.parseMediaType(BinaryGraphWriter.APPLICATION_GRAPH_BINARY_VALUE);
+    private static final int DEFAULT_PAGE_LIMIT = 1000;
 
     private final GraphConverter graphConverter;
     private final GraphService graphService;
     private final GraphProcessingService graphProcessingService;
+    private final CommonAncestorBatchService commonAncestorBatchService;
+    private final JsonEdgeReader jsonEdgeReader;
+    private final CsvEdgeReader csvEdgeReader;
+    private final BinaryEdgeReader binaryEdgeReader;
+    private final NdjsonWriter ndjsonWriter;
+    private final BinaryGraphWriter binaryGraphWriter;
+    private final QueryExecutor queryExecutor;
 
-    @PutMapping
+    @PutMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
     @ResponseStatus(HttpStatus.CREATED)
-    public GraphDTO createGraph(@RequestBody final Set<Edge> edges) {
+    public GraphDTO createGraph(final InputStream edges) {
 
-        return graphConverter.toGraphDTO(graphService.createGraph(edges));
+        return graphConverter.toGraphDTO(graphService.createGraph(graphBuilder -> jsonEdgeReader.read(edges, graphBuilder)));
     }
 
-    @GetMapping(value = "/{graphId}/nodes")
+    @PutMapping(consumes = MediaType.APPLICATION_JSON_VALUE, params = SUMMARY_VIEW)
+    @ResponseStatus(HttpStatus.CREATED)
+    public GraphSummaryDTO createGraphSummary(final InputStream edges) {
+
+        return graphConverter.toGraphSummaryDTO(graphService.createGraph(graphBuilder -> jsonEdgeReader.read(edges, graphBuilder)));
+    }
+
+    @PutMapping(consumes = TEXT_CSV_VALUE)
+    @ResponseStatus(HttpStatus.CREATED)
+    public GraphDTO createGraphFromCsv(final InputStream edges) {
+
+        return graphConverter.toGraphDTO(graphService.createGraph(graphBuilder -> csvEdgeReader.read(edges, graphBuilder)));
+    }
+
+    @PutMapping(consumes = TEXT_CSV_VALUE, params = SUMMARY_VIEW)
+    @ResponseStatus(HttpStatus.CREATED)
+    public GraphSummaryDTO createGraphSummaryFromCsv(final InputStream edges) {
+
+        return graphConverter.toGraphSummaryDTO(graphService.createGraph(graphBuilder -> csvEdgeReader.read(edges, graphBuilder)));
+    }
+
+    @PutMapping(consumes = BinaryGraphWriter.APPLICATION_GRAPH_BINARY_VALUE)
+    @ResponseStatus(HttpStatus.CREATED)
+    public GraphDTO createGraphFromBinary(final InputStream edges) {
+
+        return graphConverter.toGraphDTO(graphService.createGraph(graphBuilder -> binaryEdgeReader.read(edges, graphBuilder)));
+    }
+
+    @PutMapping(consumes = BinaryGraphWriter.APPLICATION_GRAPH_BINARY_VALUE, params = SUMMARY_VIEW)
+    @ResponseStatus(HttpStatus.CREATED)
+    public GraphSummaryDTO createGraphSummaryFromBinary(final InputStream edges) {
+
+        return graphConverter.toGraphSummaryDTO(graphService.createGraph(graphBuilder -> binaryEdgeReader.read(edges, graphBuilder)));
+    }
+
+    @PutMapping(consumes = BinaryGraphWriter.APPLICATION_GRAPH_BINARY_VALUE, produces = BinaryGraphWriter.APPLICATION_GRAPH_BINARY_VALUE)
+    public ResponseEntity<StreamingResponseBody> createGraphFromBinaryAsBinary(final InputStream edges) {
+        final Graph graph = graphService.createGraph(graphBuilder -> binaryEdgeReader.read(edges, graphBuilder));
+
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .contentType(APPLICATION_GRAPH_BINARY)
+                .body(outputStream -> binaryGraphWriter.writeGraph(graph, outputStream));
+    }
+
+    @PatchMapping(value = "/{graphId}", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseStatus(HttpStatus.OK)
+    public GraphSummaryDTO updateGraph(@PathVariable Long graphId, @RequestBody final GraphMutation mutation) {
+
+        return graphConverter.toGraphSummaryDTO(graphService.updateGraph(graphId, mutation));
+    }
+
+    @DeleteMapping(value = "/{graphId}")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void deleteGraph(@PathVariable Long graphId) {
+
+        graphService.deleteGraph(graphId);
+    }
+
+    @GetMapping(value = "/{graphId}", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseStatus(HttpStatus.OK)
+    public GraphDTO getGraph(@PathVariable Long graphId,
+                             @RequestParam(required = false) String cursor,
+                             @RequestParam(required = false) Integer limit) {
+        if (cursor == null && limit == null) {
+            return graphConverter.toGraphDTO(graphService.getGraph(graphId));
+        }
+        return graphConverter.toGraphDTO(graphService.getGraphPage(graphId, cursor, limitOrDefault(limit)));
+    }
+
+    @GetMapping(value = "/{graphId}", produces = NdjsonWriter.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamGraph(@PathVariable Long graphId) {
+        final Graph graph = graphService.getGraph(graphId);
+
+        return ResponseEntity.ok()
+                .contentType(APPLICATION_NDJSON)
+                .body(outputStream -> ndjsonWriter.writeGraph(graph, outputStream));
+    }
+
+    @GetMapping(value = "/{graphId}", produces = BinaryGraphWriter.APPLICATION_GRAPH_BINARY_VALUE)
+    public ResponseEntity<StreamingResponseBody> getGraphAsBinary(@PathVariable Long graphId) {
+        final Graph graph = graphService.getGraph(graphId);
+
+        return ResponseEntity.ok()
+                .contentType(APPLICATION_GRAPH_BINARY)
+                .body(outputStream -> binaryGraphWriter.writeGraph(graph, outputStream));
+    }
+
+    @GetMapping(value = "/{graphId}/nodes", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseStatus(HttpStatus.OK)
+    public Set<Integer> getNodesHavingParentsCount(@PathVariable Long graphId,
+                                                   @RequestParam(required = false) Integer parentsCount,
+                                                   @RequestParam(required = false) Integer minParents,
+                                                   @RequestParam(required = false) Integer maxParents) {
+        validateParentsCountProvided(parentsCount, minParents, maxParents);
+        if (parentsCount != null) {
+            return graphService.getNodesHavingParentsCount(graphId, parentsCount);
+        }
+        return graphService.getNodesHavingParentsCount(graphId, minParentsOrDefault(minParents), maxParentsOrDefault(maxParents));
+    }
+
+    @GetMapping(value = "/{graphId}/nodes", produces = NdjsonWriter.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamNodesHavingParentsCount(@PathVariable Long graphId,
+                                                                               @RequestParam(required = false) Integer parentsCount,
+                                                                               @RequestParam(required = false) Integer minParents,
+                                                                               @RequestParam(required = false) Integer maxParents) {
+        final Set<Integer> nodeIds = getNodesHavingParentsCount(graphId, parentsCount, minParents, maxParents);
+
+        return ResponseEntity.ok()
+                .contentType(APPLICATION_NDJSON)
+                .body(outputStream -> ndjsonWriter.writeNodeIds(nodeIds, outputStream));
+    }
+
+    @GetMapping(value = "/{graphId}/nodes/page")
     @ResponseStatus(HttpStatus.OK)
-    public Set<Integer> getNodesHavingParentsCount(@PathVariable Long graphId, @RequestParam Integer parentsCount) {
+    public DeferredResult<NodesPageDTO> getNodesHavingParentsCountPage(@PathVariable Long graphId,
+                                                                       @RequestParam(required = false) Integer parentsCount,
+                                                                       @RequestParam(required = false) Integer minParents,
+                                                                       @RequestParam(required = false) Integer maxParents,
+                                                                       @RequestParam(required = false) String cursor,
+                                                                       @RequestParam(required = false) Integer limit) {
+        validateParentsCountProvided(parentsCount, minParents, maxParents);
+        final int min = parentsCount != null ? parentsCount : minParentsOrDefault(minParents);
+        final int max = parentsCount != null ? parentsCount : maxParentsOrDefault(maxParents);
 
-        return graphService.getNodesHavingParentsCount(graphId, parentsCount);
+        return queryExecutor.submit(graphId, () -> graphConverter.toNodesPageDTO(
+                graphService.getNodesHavingParentsCountPage(graphId, min, max, cursor, limitOrDefault(limit))));
+    }
+
+    @GetMapping(value = "/{graphId}/nodes/count")
+    @ResponseStatus(HttpStatus.OK)
+    public DeferredResult<Integer> countNodesHavingParentsCount(@PathVariable Long graphId,
+                                                               @RequestParam(required = false) Integer parentsCount,
+                                                               @RequestParam(required = false) Integer minParents,
+                                                               @RequestParam(required = false) Integer maxParents) {
+        validateParentsCountProvided(parentsCount, minParents, maxParents);
+        final int min = parentsCount != null ? parentsCount : minParentsOrDefault(minParents);
+        final int max = parentsCount != null ? parentsCount : maxParentsOrDefault(maxParents);
+
+        return queryExecutor.submit(graphId, () -> graphService.countNodesHavingParentsCount(graphId, min, max));
     }
 
     @GetMapping(value = "/{graphId}/nodes/{firstNodeId}/has-common-ancestor/{secondNodeId}")
     @ResponseStatus(HttpStatus.OK)
-    public boolean haveNodesCommonAncestor(@PathVariable Long graphId,
-                                           @PathVariable int firstNodeId,
-                                           @PathVariable int secondNodeId) {
-        return graphProcessingService.haveNodesCommonAncestor(graphId, firstNodeId, secondNodeId);
+    public DeferredResult<Boolean> haveNodesCommonAncestor(@PathVariable Long graphId,
+                                                           @PathVariable int firstNodeId,
+                                                           @PathVariable int secondNodeId) {
+        return queryExecutor.submit(graphId, () -> graphProcessingService.haveNodesCommonAncestor(graphId, firstNodeId, secondNodeId));
+    }
+
+    @GetMapping(value = "/{graphId}/nodes/{firstNodeId}/lowest-common-ancestors/{secondNodeId}")
+    @ResponseStatus(HttpStatus.OK)
+    public DeferredResult<List<CommonAncestorDTO>> getLowestCommonAncestors(@PathVariable Long graphId,
+                                                                            @PathVariable int firstNodeId,
+                                                                            @PathVariable int secondNodeId) {
+        return queryExecutor.submit(graphId, () -> graphConverter.toCommonAncestorDTOs(
+                graphProcessingService.getLowestCommonAncestors(graphId, firstNodeId, secondNodeId)));
+    }
+
+    @GetMapping(value = "/{graphId}/nodes/{nodeId}/path-to-ancestor/{ancestorId}")
+    @ResponseStatus(HttpStatus.OK)
+    public DeferredResult<AncestorPathDTO> getShortestAncestorPath(@PathVariable Long graphId,
+                                                                   @PathVariable int nodeId,
+                                                                   @PathVariable int ancestorId) {
+        return queryExecutor.submit(graphId, () -> graphConverter.toAncestorPathDTO(
+                graphProcessingService.getShortestAncestorPath(graphId, nodeId, ancestorId)));
+    }
+
+    @GetMapping(value = "/{graphId}/nodes/{nodeId}/ancestors")
+    @ResponseStatus(HttpStatus.OK)
+    public DeferredResult<List<NodeDistanceDTO>> getAncestorsWithin(@PathVariable Long graphId,
+                                                                    @PathVariable int nodeId,
+                                                                    @RequestParam(defaultValue = "1") int maxHops) {
+        return queryExecutor.submit(graphId, () -> graphConverter.toNodeDistanceDTOs(
+                graphProcessingService.getAncestorsWithin(graphId, nodeId, maxHops)));
+    }
+
+    @PostMapping(value = "/{graphId}/nodes/has-common-ancestor")
+    @ResponseStatus(HttpStatus.OK)
+    public DeferredResult<List<Boolean>> haveNodesCommonAncestor(@PathVariable Long graphId, @RequestBody final List<NodePair> pairs) {
+
+        return queryExecutor.submit(graphId, () -> commonAncestorBatchService.haveNodesCommonAncestor(graphId, pairs));
+    }
+
+    @PostMapping(value = "/{graphId}/nodes/ancestors")
+    @ResponseStatus(HttpStatus.OK)
+    public DeferredResult<NodeRangesDTO> getAncestors(@PathVariable Long graphId, @RequestBody final NodeSetQuery query) {
+
+        return queryExecutor.submit(graphId, () -> graphConverter.toNodeRangesDTO(graphProcessingService.getAncestors(graphId, query)));
+    }
+
+    @PostMapping(value = "/{graphId}/nodes/descendants")
+    @ResponseStatus(HttpStatus.OK)
+    public DeferredResult<NodeRangesDTO> getDescendants(@PathVariable Long graphId, @RequestBody final NodeSetQuery query) {
+
+        return queryExecutor.submit(graphId, () -> graphConverter.toNodeRangesDTO(graphProcessingService.getDescendants(graphId, query)));
+    }
+
+    @GetMapping(value = "/{graphId}/stats")
+    @ResponseStatus(HttpStatus.OK)
+    public GraphStatsDTO getGraphStats(@PathVariable Long graphId) {
+        final Graph graph = graphService.getGraph(graphId);
+
+        return graphConverter.toGraphStatsDTO(graph, graphProcessingService.getTopology(graph));
+    }
+
+    @GetMapping(value = "/{graphId}/ancestor-index")
+    @ResponseStatus(HttpStatus.OK)
+    public AncestorIndexDTO getAncestorIndex(@PathVariable Long graphId) {
+
+        return graphConverter.toAncestorIndexDTO(graphId, graphProcessingService.getAncestorIndex(graphId));
+    }
+
+    @GetMapping(value = "/common-ancestor-cache")
+    @ResponseStatus(HttpStatus.OK)
+    public CacheStatisticsDTO getCommonAncestorCacheStatistics() {
+
+        return graphConverter.toCacheStatisticsDTO(graphProcessingService.getCommonAncestorCacheStatistics());
+    }
+
+    private static int limitOrDefault(final Integer limit) {
+        return limit == null ? DEFAULT_PAGE_LIMIT : limit;
+    }
+
+    private static void validateParentsCountProvided(final Integer parentsCount, final Integer minParents, final Integer maxParents) {
+        if (parentsCount == null && minParents == null && maxParents == null) {
+            throw new ParentsCountNotProvidedException("Either parentsCount, minParents or maxParents should be provided!");
+        }
+    }
+
+    private static int minParentsOrDefault(final Integer minParents) {
+        return minParents == null ? 0 : minParents;
+    }
+
+    private static int maxParentsOrDefault(final Integer maxParents) {
+        return maxParents == null ? Integer.MAX_VALUE : maxParents;
     }
 }
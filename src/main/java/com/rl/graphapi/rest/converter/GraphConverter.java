@@ -1,26 +1,187 @@
 package com.rl.graphapi.rest.converter;
 
+import com.rl.graphapi.rest.converter.dto.AncestorIndexDTO;
+import com.rl.graphapi.rest.converter.dto.CacheStatisticsDTO;
+import com.rl.graphapi.rest.converter.dto.AncestorPathDTO;
+import com.rl.graphapi.rest.converter.dto.CommonAncestorDTO;
 import com.rl.graphapi.rest.converter.dto.GraphDTO;
+import com.rl.graphapi.rest.converter.dto.GraphStatsDTO;
+import com.rl.graphapi.rest.converter.dto.GraphSummaryDTO;
 import com.rl.graphapi.rest.converter.dto.NodeDTO;
+import com.rl.graphapi.rest.converter.dto.NodeDistanceDTO;
+import com.rl.graphapi.rest.converter.dto.NodeRangesDTO;
+import com.rl.graphapi.rest.converter.dto.NodesPageDTO;
+import com.rl.graphapi.service.index.AncestorIndex;
+import com.rl.graphapi.service.index.TopologyIndex;
+import com.rl.graphapi.service.model.CacheStatistics;
+import com.rl.graphapi.service.model.CommonAncestor;
 import com.rl.graphapi.service.model.Graph;
-import com.rl.graphapi.service.model.Node;
+import com.rl.graphapi.service.model.GraphPage;
+import com.rl.graphapi.service.model.NodeDistance;
+import com.rl.graphapi.service.model.NodeRanges;
+import com.rl.graphapi.service.model.NodesPage;
 import org.springframework.stereotype.Component;
 
-import java.util.Set;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.function.IntFunction;
 import java.util.stream.Collectors;
 
+/**
+ * Converts the graphs to DTOs. The nodes of a graph DTO, and the parents of every node, are read only
+ * views over the graph converted one node at a time while iterated, so serializing a graph DTO
+ * streams the graph instead of building a copy of it.
+ */
 @Component
 public class GraphConverter {
 
     public GraphDTO toGraphDTO(final Graph graph) {
-        final Set<NodeDTO> nodeDTOList = graph.getNodesHeap().values().stream().map(node -> NodeDTO.builder()
-                .id(node.getId())
-                .parents(node.getParents().stream().map(Node::getId).collect(Collectors.toSet())).build()
-        ).collect(Collectors.toSet());
+        return GraphDTO.builder()
+                .id(graph.getId())
+                .nodes(new RangeView<>(0, graph.getNodesCount(), index -> toNodeDTO(graph, index))).build();
+    }
 
+    public GraphDTO toGraphDTO(final GraphPage graphPage) {
+        final Graph graph = graphPage.getGraph();
         return GraphDTO.builder()
                 .id(graph.getId())
-                .nodes(nodeDTOList).build();
+                .nodes(new RangeView<>(graphPage.getFromIndex(), graphPage.getToIndex(), index -> toNodeDTO(graph, index)))
+                .nextCursor(graphPage.getNextCursor()).build();
     }
-}
 
+    public GraphSummaryDTO toGraphSummaryDTO(final Graph graph) {
+        return GraphSummaryDTO.builder()
+                .id(graph.getId())
+                .version(graph.getVersion())
+                .nodesCount(graph.getNodesCount())
+                .edgesCount(graph.getEdgesCount()).build();
+    }
+
+    public GraphStatsDTO toGraphStatsDTO(final Graph graph, final TopologyIndex topologyIndex) {
+        return GraphStatsDTO.builder()
+                .graphId(graph.getId())
+                .version(graph.getVersion())
+                .nodesCount(graph.getNodesCount())
+                .edgesCount(graph.getEdgesCount())
+                .componentsCount(topologyIndex.getComponentsCount())
+                .largestComponentSize(topologyIndex.getLargestComponentSize())
+                .rootsCount(topologyIndex.getRootsCount())
+                .maxDepth(topologyIndex.getMaxDepth())
+                .cyclic(topologyIndex.hasCycles())
+                .cyclicNodesCount(topologyIndex.getCyclicNodesCount()).build();
+    }
+
+    public NodeRangesDTO toNodeRangesDTO(final NodeRanges nodeRanges) {
+        final List<int[]> ranges = new ArrayList<>(nodeRanges.getRangesCount());
+        for (int range = 0; range < nodeRanges.getRangesCount(); range++) {
+            ranges.add(new int[]{nodeRanges.getFrom(range), nodeRanges.getTo(range)});
+        }
+        return NodeRangesDTO.builder()
+                .nodesCount(nodeRanges.getNodesCount())
+                .ranges(ranges).build();
+    }
+
+    public NodesPageDTO toNodesPageDTO(final NodesPage nodesPage) {
+        return NodesPageDTO.builder()
+                .nodes(nodesPage.getNodeIds())
+                .nextCursor(nodesPage.getNextCursor()).build();
+    }
+
+    public List<CommonAncestorDTO> toCommonAncestorDTOs(final List<CommonAncestor> commonAncestors) {
+        return commonAncestors.stream().map(commonAncestor -> CommonAncestorDTO.builder()
+                .id(commonAncestor.getNodeId())
+                .firstNodeDistance(commonAncestor.getFirstNodeDistance())
+                .secondNodeDistance(commonAncestor.getSecondNodeDistance()).build()
+        ).collect(Collectors.toList());
+    }
+
+    public AncestorPathDTO toAncestorPathDTO(final List<Integer> path) {
+        return AncestorPathDTO.builder()
+                .found(!path.isEmpty())
+                .length(Math.max(0, path.size() - 1))
+                .nodes(path).build();
+    }
+
+    public List<NodeDistanceDTO> toNodeDistanceDTOs(final List<NodeDistance> nodeDistances) {
+        return nodeDistances.stream().map(nodeDistance -> NodeDistanceDTO.builder()
+                .id(nodeDistance.getNodeId())
+                .distance(nodeDistance.getDistance()).build()
+        ).collect(Collectors.toList());
+    }
+
+    public AncestorIndexDTO toAncestorIndexDTO(final Long graphId, final Optional<AncestorIndex> ancestorIndex) {
+        return ancestorIndex.map(index -> AncestorIndexDTO.builder()
+                .graphId(graphId)
+                .built(true)
+                .available(index.isAvailable())
+                .unavailableReason(index.getUnavailableReason())
+                .entriesCount(index.getEntriesCount())
+                .memoryBytes(index.getMemoryBytes())
+                .buildTimeMillis(index.getBuildTimeMillis()).build()
+        ).orElseGet(() -> AncestorIndexDTO.builder()
+                .graphId(graphId)
+                .built(false).build());
+    }
+
+    public CacheStatisticsDTO toCacheStatisticsDTO(final CacheStatistics cacheStatistics) {
+        return CacheStatisticsDTO.builder()
+                .enabled(cacheStatistics.isEnabled())
+                .maxEntries(cacheStatistics.getMaxEntries())
+                .size(cacheStatistics.getSize())
+                .hitCount(cacheStatistics.getHitCount())
+                .missCount(cacheStatistics.getMissCount())
+                .evictionCount(cacheStatistics.getEvictionCount()).build();
+    }
+
+    private static NodeDTO toNodeDTO(final Graph graph, final int index) {
+        return NodeDTO.builder()
+                .id(graph.getNodeId(index))
+                .parents(new RangeView<>(graph.getParentsFrom(index), graph.getParentsTo(index),
+                        position -> graph.getNodeId(graph.getParent(position)))).build();
+    }
+
+    /**
+     * Read only set view of the elements mapped from a range of positions. The elements
+     * are expected to be distinct, as the nodes of a graph and the parents of a node are.
+     */
+    private static final class RangeView<T> extends AbstractSet<T> {
+        private final int from;
+        private final int to;
+        private final IntFunction<T> element;
+
+        private RangeView(final int from, final int to, final IntFunction<T> element) {
+            this.from = from;
+            this.to = to;
+            this.element = element;
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return new Iterator<T>() {
+                private int position = from;
+
+                @Override
+                public boolean hasNext() {
+                    return position < to;
+                }
+
+                @Override
+                public T next() {
+                    if (position >= to) {
+                        throw new NoSuchElementException();
+                    }
+                    return element.apply(position++);
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.rl.graphapi.rest.converter.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class AncestorIndexDTO {
+    private Long graphId;
+    private boolean built;
+    private boolean available;
+    private String unavailableReason;
+    private Integer entriesCount;
+    private Long memoryBytes;
+    private Long buildTimeMillis;
+}
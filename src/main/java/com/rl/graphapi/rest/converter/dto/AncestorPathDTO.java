@@ -0,0 +1,14 @@
+package com.rl.graphapi.rest.converter.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class AncestorPathDTO {
+    private boolean found;
+    private int length;
+    private List<Integer> nodes;
+}
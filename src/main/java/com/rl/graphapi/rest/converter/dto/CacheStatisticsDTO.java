@@ -0,0 +1,15 @@
+package com.rl.graphapi.rest.converter.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class CacheStatisticsDTO {
+    private boolean enabled;
+    private long maxEntries;
+    private long size;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+}
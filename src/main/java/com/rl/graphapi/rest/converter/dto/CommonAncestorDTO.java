@@ -0,0 +1,12 @@
+package com.rl.graphapi.rest.converter.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class CommonAncestorDTO {
+    private Integer id;
+    private int firstNodeDistance;
+    private int secondNodeDistance;
+}
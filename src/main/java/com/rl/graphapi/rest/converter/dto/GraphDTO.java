@@ -1,5 +1,6 @@
 package com.rl.graphapi.rest.converter.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Builder;
 import lombok.Data;
 
@@ -10,4 +11,6 @@ import java.util.Set;
 public class GraphDTO {
     private Long id;
     private Set<NodeDTO> nodes;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String nextCursor;
 }
@@ -0,0 +1,19 @@
+package com.rl.graphapi.rest.converter.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class GraphStatsDTO {
+    private Long graphId;
+    private long version;
+    private int nodesCount;
+    private int edgesCount;
+    private int componentsCount;
+    private int largestComponentSize;
+    private int rootsCount;
+    private int maxDepth;
+    private boolean cyclic;
+    private int cyclicNodesCount;
+}
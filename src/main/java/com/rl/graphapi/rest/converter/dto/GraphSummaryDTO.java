@@ -0,0 +1,13 @@
+package com.rl.graphapi.rest.converter.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class GraphSummaryDTO {
+    private Long id;
+    private long version;
+    private int nodesCount;
+    private int edgesCount;
+}
@@ -0,0 +1,11 @@
+package com.rl.graphapi.rest.converter.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class NodeDistanceDTO {
+    private Integer id;
+    private int distance;
+}
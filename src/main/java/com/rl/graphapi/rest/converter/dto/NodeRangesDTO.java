@@ -0,0 +1,13 @@
+package com.rl.graphapi.rest.converter.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class NodeRangesDTO {
+    private int nodesCount;
+    private List<int[]> ranges;
+}
@@ -0,0 +1,13 @@
+package com.rl.graphapi.rest.converter.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class NodesPageDTO {
+    private List<Integer> nodes;
+    private String nextCursor;
+}
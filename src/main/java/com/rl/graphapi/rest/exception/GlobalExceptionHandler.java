@@ -1,6 +1,9 @@
 package com.rl.graphapi.rest.exception;
 
 import com.rl.graphapi.service.exception.GraphRuntimeException;
+import com.rl.graphapi.service.exception.QueryRejectedException;
+import com.rl.graphapi.service.exception.QueryTimeoutException;
+import com.rl.graphapi.service.exception.TraversalBudgetExceededException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
@@ -23,6 +26,24 @@ public class GlobalExceptionHandler {
         return new HttpError(exception.getMessage());
     }
 
+    @ExceptionHandler({QueryRejectedException.class, QueryTimeoutException.class})
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    @ResponseBody
+    public HttpError handleOverload(final GraphRuntimeException exception) {
+        LOG.warn("Query not answered: {}", exception.getMessage());
+
+        return new HttpError(exception.getMessage());
+    }
+
+    @ExceptionHandler(TraversalBudgetExceededException.class)
+    @ResponseStatus(HttpStatus.UNPROCESSABLE_ENTITY)
+    @ResponseBody
+    public HttpError handleBudgetExceeded(final TraversalBudgetExceededException exception) {
+        LOG.warn("Query not answered: {}", exception.getMessage());
+
+        return new HttpError(exception.getMessage());
+    }
+
     // *Note:
     //  If we want to not use @ResponseBody, we need to return ResponseEntity
     //  return new ResponseEntity<>(new HttpError(exception.getMessage()), new HttpHeaders(), HttpStatus.BAD_REQUEST);
@@ -0,0 +1,185 @@
+package com.rl.graphapi.rest.executor;
+
+import com.rl.graphapi.service.exception.QueryRejectedException;
+import com.rl.graphapi.service.exception.QueryTimeoutException;
+import com.rl.graphapi.service.repository.GraphPartitioning;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs the CPU heavy graph queries off the servlet threads, on a dedicated bounded pool, answering
+ * them through async servlet requests, so the long traversals do not hold the Tomcat workers:
+ * <ul>
+ * <li>{@code graph.query.async} - runs the queries on the pool (default), or on the servlet threads when false</li>
+ * <li>{@code graph.query.parallelism} - the number of pool threads, 0 using all the cores</li>
+ * <li>{@code graph.query.max-queued} - the number of queries waiting for a pool thread, beyond which the
+ * queries are rejected with {@link QueryRejectedException}</li>
+ * <li>{@code graph.query.timeout} - the time a query may wait and run, after which it is cancelled and
+ * answered with {@link QueryTimeoutException}, 0 meaning no timeout</li>
+ * </ul>
+ * A query is also cancelled when its request fails, e.g. when the client disconnects. The cancellation
+ * interrupts the pool thread, stopping the running traversal at its next cancellation check.
+ * <p>
+ * Every shard of the graph store, see {@link GraphPartitioning}, has its own pool sharing evenly the threads
+ * and the queue, and the queries run on the pool of the shard owning their graph, so the long queries on the
+ * graphs of a shard do not delay the queries on the others. The queued and running queries and the latency
+ * of the queries, from their submission to their completion, are measured per shard.
+ */
+@Component
+public class QueryExecutor implements MeterBinder {
+    private final static Logger LOG = LoggerFactory.getLogger(QueryExecutor.class);
+    private static final double[] PERCENTILES = {0.5, 0.95, 0.99};
+
+    private final boolean async;
+    private final long timeoutMillis;
+    private final GraphPartitioning partitioning;
+    private final ThreadPoolExecutor[] queryPools;
+    // the latency of the queries of every shard, once bound to a registry
+    private volatile Timer[] latencies;
+
+    public QueryExecutor(final boolean async, final int parallelism, final int maxQueued, final Duration timeout) {
+        this(async, parallelism, maxQueued, timeout, GraphPartitioning.single());
+    }
+
+    @Autowired
+    public QueryExecutor(@Value("${graph.query.async:true}") final boolean async,
+                         @Value("${graph.query.parallelism:0}") final int parallelism,
+                         @Value("${graph.query.max-queued:1000}") final int maxQueued,
+                         @Value("${graph.query.timeout:30s}") final Duration timeout,
+                         final GraphPartitioning partitioning) {
+        this.async = async;
+        this.timeoutMillis = timeout.toMillis();
+        this.partitioning = partitioning;
+        final int shardCount = partitioning.getShardCount();
+        final int threads = Math.max(1, (parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors()) / shardCount);
+        this.queryPools = new ThreadPoolExecutor[shardCount];
+        for (int shard = 0; shard < shardCount; shard++) {
+            final String threadPrefix = shardCount > 1 ? "graph-query-" + shard + "-" : "graph-query-";
+            final AtomicInteger threadNumber = new AtomicInteger();
+            queryPools[shard] = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(Math.max(1, maxQueued / shardCount)), runnable -> {
+                        final Thread thread = new Thread(runnable, threadPrefix + threadNumber.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (final ThreadPoolExecutor queryPool : queryPools) {
+            queryPool.shutdownNow();
+        }
+    }
+
+    @Override
+    public void bindTo(final MeterRegistry meterRegistry) {
+        final Timer[] shardLatencies = new Timer[queryPools.length];
+        for (int shard = 0; shard < queryPools.length; shard++) {
+            final Tags tags = Tags.of("shard", String.valueOf(shard));
+            final ThreadPoolExecutor queryPool = queryPools[shard];
+            Gauge.builder("graph.query.queued", queryPool, pool -> pool.getQueue().size())
+                    .description("Number of queries waiting for a thread of the pool of the shard")
+                    .tags(tags)
+                    .register(meterRegistry);
+            Gauge.builder("graph.query.active", queryPool, ThreadPoolExecutor::getActiveCount)
+                    .description("Number of queries running on the pool of the shard")
+                    .tags(tags)
+                    .register(meterRegistry);
+            shardLatencies[shard] = Timer.builder("graph.query.latency")
+                    .description("Time of the queries of the shard from their submission to their completion")
+                    .tags(tags)
+                    .publishPercentiles(PERCENTILES)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+        }
+        latencies = shardLatencies;
+    }
+
+    /**
+     * Submit the query on the graph, answered by the returned result once done.
+     *
+     * @param graphId the id of the queried graph, selecting the pool of its shard
+     * @param query   runs the query
+     * @return the result of the query, set to the exception thrown by the query if it failed
+     * @throws QueryRejectedException if too many queries are waiting for the pool of the shard
+     */
+    public <T> DeferredResult<T> submit(final Long graphId, final Supplier<T> query) {
+        final DeferredResult<T> result = timeoutMillis > 0 ? new DeferredResult<>(timeoutMillis) : new DeferredResult<>();
+        final int shard = partitioning.shardOf(graphId);
+        final long submittedNanos = System.nanoTime();
+        if (!async) {
+            run(query, result, shard, submittedNanos);
+            return result;
+        }
+
+        final ThreadPoolExecutor queryPool = queryPools[shard];
+        final Future<?> future;
+        try {
+            future = queryPool.submit(() -> run(query, result, shard, submittedNanos));
+        } catch (final RejectedExecutionException exception) {
+            throw new QueryRejectedException(String.format("Too many queries in progress (%s queued), retry later!",
+                    queryPool.getQueue().size()));
+        }
+        result.onTimeout(() -> {
+            // answered before the cancellation, which may let the query complete with its partial result
+            result.setErrorResult(new QueryTimeoutException(String.format("Query timed out after %s ms!", timeoutMillis)));
+            future.cancel(true);
+            LOG.warn("Query cancelled after {} ms", timeoutMillis);
+        });
+        // the request failed or completed before the query, e.g. the client disconnected
+        result.onError(error -> future.cancel(true));
+        result.onCompletion(() -> future.cancel(true));
+        return result;
+    }
+
+    /**
+     * @return the number of queries waiting for a thread of the pool of every shard
+     */
+    public int[] getQueuedCounts() {
+        final int[] queuedCounts = new int[queryPools.length];
+        for (int shard = 0; shard < queryPools.length; shard++) {
+            queuedCounts[shard] = queryPools[shard].getQueue().size();
+        }
+        return queuedCounts;
+    }
+
+    private <T> void run(final Supplier<T> query, final DeferredResult<T> result, final int shard, final long submittedNanos) {
+        T value = null;
+        RuntimeException failure = null;
+        try {
+            value = query.get();
+        } catch (final RuntimeException exception) {
+            failure = exception;
+        }
+        // recorded before answering, so the latency of an answered query is always measured
+        final Timer[] shardLatencies = latencies;
+        if (shardLatencies != null) {
+            shardLatencies[shard].record(System.nanoTime() - submittedNanos, TimeUnit.NANOSECONDS);
+        }
+        if (failure != null) {
+            result.setErrorResult(failure);
+        } else {
+            result.setResult(value);
+        }
+    }
+}
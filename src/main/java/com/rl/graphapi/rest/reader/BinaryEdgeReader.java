@@ -0,0 +1,111 @@
+package com.rl.graphapi.rest.reader;
+
+import com.rl.graphapi.rest.writer.BinaryGraphWriter;
+import com.rl.graphapi.service.exception.GraphEdgesMalformedException;
+import com.rl.graphapi.service.model.GraphBuilder;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the edges of a graph in the compact binary format written by {@link BinaryGraphWriter},
+ * pushing every edge into the graph builder as soon as it is decoded. The body is decoded directly
+ * from a fixed size byte buffer. Every listed node is kept, including the nodes having no edge,
+ * so a graph written by {@link BinaryGraphWriter} is read back with the same nodes.
+ */
+@Component
+public class BinaryEdgeReader {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_VARINT_SHIFT = 63;
+
+    public void read(final InputStream inputStream, final GraphBuilder graphBuilder) throws IOException {
+        final VarintInput input = new VarintInput(inputStream);
+        for (final byte expected : BinaryGraphWriter.MAGIC.getBytes(StandardCharsets.US_ASCII)) {
+            if (input.readByte() != expected) {
+                throw new GraphEdgesMalformedException("Graph edges should be provided in the binary graph format!");
+            }
+        }
+
+        final long nodesCount = input.readUnsigned();
+        long previousId = 0;
+        for (long node = 0; node < nodesCount; node++) {
+            final long id = node == 0 ? input.readSigned() : previousId + input.readUnsigned() + 1;
+            final int childId = toNodeId(id);
+            previousId = id;
+
+            final long parentsCount = input.readUnsigned();
+            if (parentsCount == 0) {
+                graphBuilder.addNode(childId);
+            }
+            long previousParentId = id;
+            for (long parent = 0; parent < parentsCount; parent++) {
+                final long parentId = parent == 0
+                        ? previousParentId + input.readSigned()
+                        : previousParentId + input.readUnsigned() + 1;
+                graphBuilder.addEdge(toNodeId(parentId), childId);
+                previousParentId = parentId;
+            }
+        }
+        if (input.readByte() != -1) {
+            throw new GraphEdgesMalformedException("Unexpected data after the binary graph!");
+        }
+    }
+
+    private static int toNodeId(final long id) {
+        if (id < Integer.MIN_VALUE || id > Integer.MAX_VALUE) {
+            throw new GraphEdgesMalformedException(String.format("Invalid node id %s in the binary graph", id));
+        }
+        return (int) id;
+    }
+
+    private static final class VarintInput {
+        private final InputStream inputStream;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private int position;
+        private int size;
+
+        private VarintInput(final InputStream inputStream) {
+            this.inputStream = inputStream;
+        }
+
+        /**
+         * @return the next byte or -1 at the end of the body
+         */
+        private int readByte() throws IOException {
+            if (position == size) {
+                size = inputStream.read(buffer);
+                position = 0;
+                if (size <= 0) {
+                    size = 0;
+                    return -1;
+                }
+            }
+            return buffer[position++] & 0xFF;
+        }
+
+        private long readSigned() throws IOException {
+            final long value = readUnsigned();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        private long readUnsigned() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift <= MAX_VARINT_SHIFT; shift += 7) {
+                final int read = readByte();
+                if (read == -1) {
+                    throw new GraphEdgesMalformedException("Binary graph truncated!");
+                }
+                value |= (long) (read & 0x7F) << shift;
+                if ((read & 0x80) == 0) {
+                    if (value < 0) {
+                        throw new GraphEdgesMalformedException("Invalid varint in the binary graph");
+                    }
+                    return value;
+                }
+            }
+            throw new GraphEdgesMalformedException("Invalid varint in the binary graph");
+        }
+    }
+}
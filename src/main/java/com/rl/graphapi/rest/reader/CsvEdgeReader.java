@@ -0,0 +1,126 @@
+package com.rl.graphapi.rest.reader;
+
+import com.rl.graphapi.service.exception.GraphEdgesMalformedException;
+import com.rl.graphapi.service.model.GraphBuilder;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads edges from a CSV body having one {@code parent,child} pair per line, pushing every edge
+ * into the graph builder as soon as it is parsed. The body is parsed directly from a fixed size
+ * byte buffer, lines starting with a non numeric character (e.g. a header) are skipped.
+ */
+@Component
+public class CsvEdgeReader {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    public void read(final InputStream inputStream, final GraphBuilder graphBuilder) throws IOException {
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        final LineParser lineParser = new LineParser(graphBuilder);
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            for (int position = 0; position < read; position++) {
+                lineParser.accept(buffer[position]);
+            }
+        }
+        lineParser.accept((byte) '\n');
+    }
+
+    /**
+     * Parses the lines byte by byte, keeping only the current line state.
+     */
+    private static final class LineParser {
+        private final GraphBuilder graphBuilder;
+        private final long[] values = new long[2];
+        private int line = 1;
+        private int column;
+        private boolean digits;
+        private boolean negative;
+        private boolean skipped;
+        private boolean spaceEnded;
+
+        private LineParser(final GraphBuilder graphBuilder) {
+            this.graphBuilder = graphBuilder;
+        }
+
+        private void accept(final byte character) {
+            if (character == '\n') {
+                endLine();
+                return;
+            }
+            if (skipped || character == '\r') {
+                return;
+            }
+            if (character >= '0' && character <= '9') {
+                if (column > 1) {
+                    throw malformed();
+                }
+                values[column] = values[column] * 10 + (character - '0');
+                spaceEnded = false;
+                if (values[column] > (long) Integer.MAX_VALUE + 1) {
+                    throw malformed();
+                }
+                digits = true;
+            } else if (character == '-' && !digits && !negative) {
+                negative = true;
+            } else if (character == ',' || character == ';' || character == '\t') {
+                if (spaceEnded) {
+                    spaceEnded = false;
+                } else {
+                    endValue();
+                    column++;
+                }
+            } else if (character == ' ') {
+                if (digits || negative) {
+                    endValue();
+                    column++;
+                    spaceEnded = true;
+                }
+            } else if (column == 0 && !digits && !negative) {
+                // header or comment line
+                skipped = true;
+            } else {
+                throw malformed();
+            }
+        }
+
+        private void endValue() {
+            if (column > 1 || !digits) {
+                throw malformed();
+            }
+            values[column] = negative ? -values[column] : values[column];
+            if (values[column] > Integer.MAX_VALUE) {
+                throw malformed();
+            }
+            digits = false;
+            negative = false;
+        }
+
+        private void endLine() {
+            if (!skipped && (column > 0 || digits || negative)) {
+                if (digits || negative) {
+                    endValue();
+                    column++;
+                }
+                if (column != 2) {
+                    throw malformed();
+                }
+                graphBuilder.addEdge((int) values[0], (int) values[1]);
+            }
+            values[0] = 0;
+            values[1] = 0;
+            column = 0;
+            digits = false;
+            negative = false;
+            skipped = false;
+            spaceEnded = false;
+            line++;
+        }
+
+        private GraphEdgesMalformedException malformed() {
+            return new GraphEdgesMalformedException(String.format("Invalid edge at line %s, expected parent,child", line));
+        }
+    }
+}
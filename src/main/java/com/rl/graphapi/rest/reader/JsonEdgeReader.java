@@ -0,0 +1,77 @@
+package com.rl.graphapi.rest.reader;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rl.graphapi.service.exception.GraphEdgesMalformedException;
+import com.rl.graphapi.service.model.GraphBuilder;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads a JSON array of edges ({@code [{"parent": 10, "child": 3}, ...]}) with the Jackson
+ * streaming parser, pushing every edge into the graph builder as soon as it is parsed.
+ */
+@Component
+public class JsonEdgeReader {
+    private static final String PARENT_FIELD = "parent";
+    private static final String CHILD_FIELD = "child";
+
+    private final JsonFactory jsonFactory;
+
+    public JsonEdgeReader(final ObjectMapper objectMapper) {
+        this.jsonFactory = objectMapper.getFactory();
+    }
+
+    public void read(final InputStream inputStream, final GraphBuilder graphBuilder) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(inputStream)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new GraphEdgesMalformedException("Graph edges should be provided as a JSON array!");
+            }
+            JsonToken token;
+            while ((token = parser.nextToken()) == JsonToken.START_OBJECT) {
+                readEdge(parser, graphBuilder);
+            }
+            if (token != JsonToken.END_ARRAY) {
+                throw new GraphEdgesMalformedException(String.format("Unexpected %s at %s", token, parser.getCurrentLocation()));
+            }
+        }
+    }
+
+    private void readEdge(final JsonParser parser, final GraphBuilder graphBuilder) throws IOException {
+        Integer parent = null;
+        Integer child = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = parser.getCurrentName();
+            final JsonToken value = parser.nextToken();
+            if (PARENT_FIELD.equals(field)) {
+                parent = readNodeId(parser, value);
+            } else if (CHILD_FIELD.equals(field)) {
+                child = readNodeId(parser, value);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        if (parent == null || child == null) {
+            throw new GraphEdgesMalformedException(String.format("Edge without parent or child at %s", parser.getCurrentLocation()));
+        }
+        graphBuilder.addEdge(parent, child);
+    }
+
+    private Integer readNodeId(final JsonParser parser, final JsonToken value) {
+        try {
+            if (value == JsonToken.VALUE_NUMBER_INT) {
+                return parser.getIntValue();
+            }
+            if (value == JsonToken.VALUE_STRING) {
+                return Integer.valueOf(parser.getText().trim());
+            }
+        } catch (final NumberFormatException | IOException exception) {
+            // reported below as invalid node id
+        }
+        throw new GraphEdgesMalformedException(String.format("Invalid node id at %s", parser.getCurrentLocation()));
+    }
+}
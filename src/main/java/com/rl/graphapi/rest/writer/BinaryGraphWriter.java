@@ -0,0 +1,106 @@
+package com.rl.graphapi.rest.writer;
+
+import com.rl.graphapi.service.model.Graph;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes a graph in the compact binary format, straight from the CSR arrays of the graph to the
+ * response through a fixed size buffer.
+ * <p>
+ * The format lists the nodes in ascending order of their ids, each one followed by its parents in
+ * ascending order of their ids, every number being a varint (7 bits per byte, least significant
+ * group first, the high bit set on all the bytes but the last):
+ * <pre>
+ * magic      4 bytes {@code GRB1}
+ * nodesCount varint
+ * per node   idDelta, parentsCount, firstParentDelta, parentDelta...
+ * </pre>
+ * The first node id and the first parent of every node are zigzag encoded signed deltas, from 0 and
+ * from the node id respectively. Since the ids are distinct and ascending, the next node ids and
+ * parents are unsigned deltas from the previous one minus 1, mostly fitting in one or two bytes.
+ */
+@Component
+public class BinaryGraphWriter {
+    public static final String APPLICATION_GRAPH_BINARY_VALUE = "application/x-graph-binary";
+    public static final String MAGIC = "GRB1";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_VARINT_BYTES = 10;
+
+    public void writeGraph(final Graph graph, final OutputStream outputStream) throws IOException {
+        final VarintOutput output = new VarintOutput(outputStream);
+        output.writeBytes(MAGIC.getBytes(StandardCharsets.US_ASCII));
+        output.writeUnsigned(graph.getNodesCount());
+
+        long previousId = 0;
+        for (int index = 0; index < graph.getNodesCount(); index++) {
+            final int id = graph.getNodeId(index);
+            if (index == 0) {
+                output.writeSigned(id);
+            } else {
+                output.writeUnsigned(id - previousId - 1);
+            }
+            previousId = id;
+
+            final int from = graph.getParentsFrom(index);
+            final int to = graph.getParentsTo(index);
+            output.writeUnsigned(to - from);
+            long previousParentId = id;
+            for (int position = from; position < to; position++) {
+                final int parentId = graph.getNodeId(graph.getParent(position));
+                if (position == from) {
+                    output.writeSigned(parentId - previousParentId);
+                } else {
+                    output.writeUnsigned(parentId - previousParentId - 1);
+                }
+                previousParentId = parentId;
+            }
+        }
+        output.flush();
+    }
+
+    private static final class VarintOutput {
+        private final OutputStream outputStream;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private int size;
+
+        private VarintOutput(final OutputStream outputStream) {
+            this.outputStream = outputStream;
+        }
+
+        private void writeBytes(final byte[] bytes) throws IOException {
+            for (final byte value : bytes) {
+                ensureCapacity();
+                buffer[size++] = value;
+            }
+        }
+
+        private void writeSigned(final long value) throws IOException {
+            writeUnsigned((value << 1) ^ (value >> 63));
+        }
+
+        private void writeUnsigned(long value) throws IOException {
+            ensureCapacity();
+            while ((value & ~0x7FL) != 0) {
+                buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[size++] = (byte) value;
+        }
+
+        private void ensureCapacity() throws IOException {
+            if (size > BUFFER_SIZE - MAX_VARINT_BYTES) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            outputStream.write(buffer, 0, size);
+            size = 0;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.rl.graphapi.rest.writer;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rl.graphapi.service.model.Graph;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes newline delimited JSON (one JSON value per line) with the Jackson streaming generator,
+ * straight from the graph to the response, so the response memory doesn't depend on the graph size.
+ */
+@Component
+public class NdjsonWriter {
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+    private static final String ID_FIELD = "id";
+    private static final String PARENTS_FIELD = "parents";
+
+    private final JsonFactory jsonFactory;
+
+    public NdjsonWriter(final ObjectMapper objectMapper) {
+        this.jsonFactory = objectMapper.getFactory();
+    }
+
+    /**
+     * Write every node of the graph, in ascending order of the ids, as {@code {"id": 3, "parents": [2, 10]}}.
+     */
+    public void writeGraph(final Graph graph, final OutputStream outputStream) throws IOException {
+        try (JsonGenerator generator = createGenerator(outputStream)) {
+            for (int index = 0; index < graph.getNodesCount(); index++) {
+                generator.writeStartObject();
+                generator.writeNumberField(ID_FIELD, graph.getNodeId(index));
+                generator.writeArrayFieldStart(PARENTS_FIELD);
+                for (int position = graph.getParentsFrom(index); position < graph.getParentsTo(index); position++) {
+                    generator.writeNumber(graph.getNodeId(graph.getParent(position)));
+                }
+                generator.writeEndArray();
+                generator.writeEndObject();
+                generator.writeRaw('\n');
+            }
+        }
+    }
+
+    /**
+     * Write every node id on its own line.
+     */
+    public void writeNodeIds(final Iterable<Integer> nodeIds, final OutputStream outputStream) throws IOException {
+        try (JsonGenerator generator = createGenerator(outputStream)) {
+            for (final Integer nodeId : nodeIds) {
+                generator.writeNumber(nodeId);
+                generator.writeRaw('\n');
+            }
+        }
+    }
+
+    private JsonGenerator createGenerator(final OutputStream outputStream) throws IOException {
+        final JsonGenerator generator = jsonFactory.createGenerator(outputStream);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.setRootValueSeparator(null);
+        return generator;
+    }
+}
@@ -0,0 +1,148 @@
+package com.rl.graphapi.service;
+
+import com.rl.graphapi.service.index.AncestorIndex;
+import com.rl.graphapi.service.index.LowestCommonAncestorIndex;
+import com.rl.graphapi.service.model.Graph;
+import com.rl.graphapi.service.model.GraphChange;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Optional;
+
+/**
+ * Manages the opt-in {@link AncestorIndex} and {@link LowestCommonAncestorIndex} of the graphs.
+ * <p>
+ * The index mode is configured by {@code graph.ancestor-index.mode}:
+ * <ul>
+ * <li>{@code none} - the index is never built, the queries traverse the graph (default)</li>
+ * <li>{@code lazy} - an index is built on the first query of a graph needing it</li>
+ * <li>{@code eager} - the indexes are built when the graph is created</li>
+ * </ul>
+ * When a graph is changed, the ancestor index built for its previous version is updated for the next
+ * version, while the lowest common ancestor index is built again, in eager mode, or when needed.
+ */
+@Service
+public class AncestorIndexService {
+
+    private final static Logger LOG = LoggerFactory.getLogger(AncestorIndexService.class);
+
+    public enum Mode {
+        NONE, LAZY, EAGER
+    }
+
+    private final Mode mode;
+    private final long maxEntries;
+
+    public AncestorIndexService(@Value("${graph.ancestor-index.mode:none}") final String mode,
+                                @Value("${graph.ancestor-index.max-entries:50000000}") final long maxEntries) {
+        this.mode = Mode.valueOf(mode.trim().toUpperCase());
+        this.maxEntries = maxEntries;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Build the index of a newly created graph, when running in eager mode.
+     *
+     * @param graph the created graph
+     */
+    public void onGraphCreated(final Graph graph) {
+        if (mode == Mode.EAGER) {
+            getOrBuild(graph);
+            getOrBuildLowestCommonAncestorIndex(graph);
+        }
+    }
+
+    /**
+     * Derive the indexes of the next version of a changed graph, before that version is published.
+     *
+     * @param change the change of the graph
+     */
+    public void onGraphChanged(final GraphChange change) {
+        final AncestorIndex previous = change.getPrevious().findIndex(AncestorIndex.class);
+        if (previous != null) {
+            change.getGraph().getIndex(AncestorIndex.class, graph -> update(previous, change));
+        }
+        onGraphCreated(change.getGraph());
+    }
+
+    /**
+     * Return the available index of the graph, building it if the mode allows it.
+     *
+     * @param graph the graph
+     * @return the index or empty if disabled or not available for this graph
+     */
+    public Optional<AncestorIndex> find(final Graph graph) {
+        if (mode == Mode.NONE) {
+            return Optional.empty();
+        }
+        return Optional.of(getOrBuild(graph)).filter(AncestorIndex::isAvailable);
+    }
+
+    /**
+     * @param graph the graph
+     * @return the index of the graph if it was already built, available or not
+     */
+    public Optional<AncestorIndex> findBuilt(final Graph graph) {
+        return Optional.ofNullable(graph.findIndex(AncestorIndex.class));
+    }
+
+    /**
+     * Return the available lowest common ancestor index of the graph, building it if the mode allows it.
+     *
+     * @param graph the graph
+     * @return the index or empty if disabled or not available for this graph (not a forest)
+     */
+    public Optional<LowestCommonAncestorIndex> findLowestCommonAncestorIndex(final Graph graph) {
+        if (mode == Mode.NONE) {
+            return Optional.empty();
+        }
+        return Optional.of(getOrBuildLowestCommonAncestorIndex(graph)).filter(LowestCommonAncestorIndex::isAvailable);
+    }
+
+    private AncestorIndex getOrBuild(final Graph graph) {
+        return graph.getIndex(AncestorIndex.class, this::build);
+    }
+
+    private AncestorIndex build(final Graph graph) {
+        final AncestorIndex index = AncestorIndex.build(graph, maxEntries);
+        if (index.isAvailable()) {
+            LOG.info("Ancestor index of graph {} built in {} ms, {} entries, {} bytes",
+                    graph.getId(), index.getBuildTimeMillis(), index.getEntriesCount(), index.getMemoryBytes());
+        } else {
+            LOG.warn("Ancestor index of graph {} not available: {}", graph.getId(), index.getUnavailableReason());
+        }
+        return index;
+    }
+
+    private AncestorIndex update(final AncestorIndex previous, final GraphChange change) {
+        final Graph graph = change.getGraph();
+        final AncestorIndex index = AncestorIndex.update(previous, change, maxEntries);
+        if (index.isAvailable()) {
+            LOG.info("Ancestor index of graph {} updated to version {} in {} ms, {} entries, {} bytes", graph.getId(),
+                    graph.getVersion(), index.getBuildTimeMillis(), index.getEntriesCount(), index.getMemoryBytes());
+        } else {
+            LOG.warn("Ancestor index of graph {} not available: {}", graph.getId(), index.getUnavailableReason());
+        }
+        return index;
+    }
+
+    private LowestCommonAncestorIndex getOrBuildLowestCommonAncestorIndex(final Graph graph) {
+        return graph.getIndex(LowestCommonAncestorIndex.class, this::buildLowestCommonAncestorIndex);
+    }
+
+    private LowestCommonAncestorIndex buildLowestCommonAncestorIndex(final Graph graph) {
+        final LowestCommonAncestorIndex index = LowestCommonAncestorIndex.build(graph, maxEntries);
+        if (index.isAvailable()) {
+            LOG.info("Lowest common ancestor index of graph {} built in {} ms, {} bytes",
+                    graph.getId(), index.getBuildTimeMillis(), index.getMemoryBytes());
+        } else {
+            LOG.info("Lowest common ancestor index of graph {} not available: {}", graph.getId(), index.getUnavailableReason());
+        }
+        return index;
+    }
+}
@@ -0,0 +1,313 @@
+package com.rl.graphapi.service;
+
+import com.rl.graphapi.service.exception.BatchTooLargeException;
+import com.rl.graphapi.service.exception.GraphRuntimeException;
+import com.rl.graphapi.service.exception.NodesNotProvidedException;
+import com.rl.graphapi.service.exception.QueryCancelledException;
+import com.rl.graphapi.service.index.TopologyIndex;
+import com.rl.graphapi.service.model.Graph;
+import com.rl.graphapi.service.model.NodePair;
+import com.rl.graphapi.service.repository.GraphPartitioning;
+import com.rl.graphapi.service.traversal.TraversalCancellation;
+import com.rl.graphapi.service.traversal.TraversalEngine;
+import com.rl.graphapi.service.traversal.TraversalWorkspace;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Evaluates batches of common ancestor queries against a single graph snapshot.
+ * <p>
+ * Large batches are split across a dedicated bounded {@link ForkJoinPool} per shard of the graph store, see
+ * {@link GraphPartitioning}, sharing evenly the {@code graph.batch.parallelism} threads, so the large batches on
+ * the graphs of a shard do not delay the batches on the others. The workers stop at their next cancellation
+ * check once the query is cancelled, see {@link TraversalCancellation}. When the graph has no ancestor index,
+ * the pairs the topology does not answer are evaluated by traversal, the ancestors of every node involved in
+ * more than one pair being collected once and shared by all the pairs of that node, up to
+ * {@code graph.batch.max-shared-ancestors-bytes} per batch: past it, the pairs of the nodes whose ancestors
+ * are not collected yet are evaluated one by one. Every traversal of a pair is bounded by the budget of the {@link TraversalEngine}.
+ */
+@Service
+public class CommonAncestorBatchService {
+    private static final int PARALLEL_THRESHOLD = 64;
+
+    private final GraphService graphService;
+    private final GraphProcessingService graphProcessingService;
+    private final AncestorIndexService ancestorIndexService;
+    private final TraversalEngine traversalEngine;
+    private final GraphPartitioning partitioning;
+    private final ForkJoinPool[] batchPools;
+    private final int maxPairs;
+    private final long maxSharedAncestorsBytes;
+
+    public CommonAncestorBatchService(final GraphService graphService,
+                                      final GraphProcessingService graphProcessingService,
+                                      final AncestorIndexService ancestorIndexService,
+                                      final TraversalEngine traversalEngine,
+                                      final int parallelism, final int maxPairs, final long maxSharedAncestorsBytes) {
+        this(graphService, graphProcessingService, ancestorIndexService, traversalEngine, parallelism, maxPairs,
+                maxSharedAncestorsBytes, GraphPartitioning.single());
+    }
+
+    @Autowired
+    public CommonAncestorBatchService(final GraphService graphService,
+                                      final GraphProcessingService graphProcessingService,
+                                      final AncestorIndexService ancestorIndexService,
+                                      final TraversalEngine traversalEngine,
+                                      @Value("${graph.batch.parallelism:0}") final int parallelism,
+                                      @Value("${graph.batch.max-pairs:100000}") final int maxPairs,
+                                      @Value("${graph.batch.max-shared-ancestors-bytes:67108864}") final long maxSharedAncestorsBytes,
+                                      final GraphPartitioning partitioning) {
+        this.graphService = graphService;
+        this.graphProcessingService = graphProcessingService;
+        this.ancestorIndexService = ancestorIndexService;
+        this.traversalEngine = traversalEngine;
+        this.partitioning = partitioning;
+        final int shardCount = partitioning.getShardCount();
+        final int threads = Math.max(1, (parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors()) / shardCount);
+        this.batchPools = new ForkJoinPool[shardCount];
+        for (int shard = 0; shard < shardCount; shard++) {
+            batchPools[shard] = new ForkJoinPool(threads);
+        }
+        this.maxPairs = maxPairs;
+        this.maxSharedAncestorsBytes = maxSharedAncestorsBytes;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (final ForkJoinPool batchPool : batchPools) {
+            batchPool.shutdown();
+        }
+    }
+
+    /**
+     * Verify for every given pair of nodes if they share at least one known ancestor.
+     *
+     * @param graphId the graph id
+     * @param pairs   the node pairs
+     * @return the result of every pair, in the order of the pairs
+     */
+    public List<Boolean> haveNodesCommonAncestor(final Long graphId, final List<NodePair> pairs) {
+        if (pairs.size() > maxPairs) {
+            throw new BatchTooLargeException(String.format("Batch of %s pairs exceeds the limit of %s pairs!", pairs.size(), maxPairs));
+        }
+        final Graph graph = graphService.lookup(graphId);
+
+        final int[] firstNodes = new int[pairs.size()];
+        final int[] secondNodes = new int[pairs.size()];
+        for (int index = 0; index < pairs.size(); index++) {
+            final NodePair pair = pairs.get(index);
+            if (pair == null || pair.getFirstNodeId() == null || pair.getSecondNodeId() == null) {
+                throw new NodesNotProvidedException(String.format("Pair %s of the batch should provide both node ids!", index));
+            }
+            graphProcessingService.validateNodeExists(graph, pair.getFirstNodeId());
+            graphProcessingService.validateNodeExists(graph, pair.getSecondNodeId());
+            firstNodes[index] = graph.indexOf(pair.getFirstNodeId());
+            secondNodes[index] = graph.indexOf(pair.getSecondNodeId());
+        }
+
+        final PairEvaluator evaluator = ancestorIndexService.find(graph).isPresent()
+                ? (first, second) -> graphProcessingService.haveNodesCommonAncestor(graph, first, second)
+                : new SharedAncestorsEvaluator(graph, sharedNodes(firstNodes, secondNodes));
+
+        final IntStream indexes = IntStream.range(0, pairs.size());
+        if (pairs.size() < PARALLEL_THRESHOLD) {
+            return indexes.mapToObj(index -> evaluator.evaluate(firstNodes[index], secondNodes[index]))
+                    .collect(Collectors.toList());
+        }
+        // the workers are not interrupted by the cancellation of the query, they check its flag instead
+        final AtomicBoolean cancelled = new AtomicBoolean();
+        final ForkJoinTask<List<Boolean>> evaluation = batchPools[partitioning.shardOf(graphId)].submit(() -> indexes.parallel()
+                .mapToObj(index -> TraversalCancellation.run(cancelled, () -> evaluator.evaluate(firstNodes[index], secondNodes[index])))
+                .collect(Collectors.toList()));
+        try {
+            return evaluation.get();
+        } catch (final InterruptedException exception) {
+            // the query is cancelled, the evaluation is dropped and its running pairs stop
+            cancelled.set(true);
+            evaluation.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new QueryCancelledException("Query cancelled!");
+        } catch (final ExecutionException exception) {
+            if (exception.getCause() instanceof GraphRuntimeException) {
+                throw (GraphRuntimeException) exception.getCause();
+            }
+            throw new IllegalStateException("Batch evaluation failed", exception.getCause());
+        }
+    }
+
+    /**
+     * @return the sorted dense indexes of the nodes involved in more than one pair, each once
+     */
+    private static int[] sharedNodes(final int[] firstNodes, final int[] secondNodes) {
+        final int[] nodes = new int[firstNodes.length + secondNodes.length];
+        System.arraycopy(firstNodes, 0, nodes, 0, firstNodes.length);
+        System.arraycopy(secondNodes, 0, nodes, firstNodes.length, secondNodes.length);
+        Arrays.sort(nodes);
+        int sharedCount = 0;
+        for (int position = 1; position < nodes.length; position++) {
+            if (nodes[position] == nodes[position - 1] && (sharedCount == 0 || nodes[sharedCount - 1] != nodes[position])) {
+                nodes[sharedCount++] = nodes[position];
+            }
+        }
+        return Arrays.copyOf(nodes, sharedCount);
+    }
+
+    @FunctionalInterface
+    private interface PairEvaluator {
+        boolean evaluate(int firstNode, int secondNode);
+    }
+
+    /**
+     * Evaluates the pairs the topology does not answer by traversal, sharing the sorted
+     * ancestors of the nodes involved in more than one pair between all of their pairs,
+     * as long as the shared ancestors fit in {@code maxSharedAncestorsBytes}.
+     */
+    private final class SharedAncestorsEvaluator implements PairEvaluator {
+        private final Graph graph;
+        private final TopologyIndex topology;
+        private final int[] sharedNodes;
+        private final Map<Integer, int[]> sharedAncestors = new ConcurrentHashMap<>();
+        private final AtomicLong sharedAncestorsBytes = new AtomicLong();
+
+        private SharedAncestorsEvaluator(final Graph graph, final int[] sharedNodes) {
+            this.graph = graph;
+            this.topology = graphProcessingService.getTopology(graph);
+            this.sharedNodes = sharedNodes;
+        }
+
+        @Override
+        public boolean evaluate(final int firstNode, final int secondNode) {
+            final Boolean topologyAnswer = topology.haveCommonAncestor(firstNode, secondNode);
+            if (topologyAnswer != null) {
+                return topologyAnswer;
+            }
+            final int[] firstAncestors = ancestorsOf(firstNode);
+            final int[] secondAncestors = ancestorsOf(secondNode);
+
+            if (firstAncestors != null && secondAncestors != null) {
+                return intersect(firstAncestors, secondAncestors);
+            }
+            if (firstAncestors != null) {
+                return reachesAny(secondNode, firstAncestors);
+            }
+            if (secondAncestors != null) {
+                return reachesAny(firstNode, secondAncestors);
+            }
+            return graphProcessingService.haveNodesCommonAncestor(graph, firstNode, secondNode);
+        }
+
+        /**
+         * @return the shared ancestors of the node, or null if the node is in a single pair or the
+         * shared ancestors of the batch are over their budget
+         */
+        private int[] ancestorsOf(final int node) {
+            if (Arrays.binarySearch(sharedNodes, node) < 0) {
+                return null;
+            }
+            final int[] ancestors = sharedAncestors.get(node);
+            if (ancestors != null || sharedAncestorsBytes.get() >= maxSharedAncestorsBytes) {
+                return ancestors;
+            }
+            // collected outside of the map, two workers may both collect the ancestors of a node and the first one wins
+            final int[] collected = collectAncestors(node);
+            final int[] shared = sharedAncestors.putIfAbsent(node, collected);
+            if (shared != null) {
+                return shared;
+            }
+            sharedAncestorsBytes.addAndGet((long) collected.length * Integer.BYTES);
+            return collected;
+        }
+
+        /**
+         * @return the sorted dense indexes of the ancestors of the node, the node included
+         */
+        private int[] collectAncestors(final int node) {
+            final TraversalWorkspace workspace = TraversalWorkspace.acquire(graph.getNodesCount());
+            final int[] visited = workspace.visited();
+            final int[] queue = workspace.queue();
+            final int mark = workspace.firstMark();
+
+            int head = 0;
+            int tail = 0;
+            visited[node] = mark;
+            queue[tail++] = node;
+            while (head < tail) {
+                final int current = queue[head++];
+                for (int position = graph.getParentsFrom(current); position < graph.getParentsTo(current); position++) {
+                    final int parent = graph.getParent(position);
+                    if (visited[parent] != mark) {
+                        traversalEngine.checkBudget(tail);
+                        visited[parent] = mark;
+                        queue[tail++] = parent;
+                    }
+                }
+            }
+            final int[] ancestors = Arrays.copyOf(queue, tail);
+            Arrays.sort(ancestors);
+            return ancestors;
+        }
+
+        /**
+         * Traverse the ancestors of the node, the node included, until one of the given ancestors is reached.
+         */
+        private boolean reachesAny(final int node, final int[] ancestors) {
+            if (Arrays.binarySearch(ancestors, node) >= 0) {
+                return true;
+            }
+            final TraversalWorkspace workspace = TraversalWorkspace.acquire(graph.getNodesCount());
+            final int[] visited = workspace.visited();
+            final int[] queue = workspace.queue();
+            final int mark = workspace.firstMark();
+
+            int head = 0;
+            int tail = 0;
+            visited[node] = mark;
+            queue[tail++] = node;
+            while (head < tail) {
+                final int current = queue[head++];
+                for (int position = graph.getParentsFrom(current); position < graph.getParentsTo(current); position++) {
+                    final int parent = graph.getParent(position);
+                    if (visited[parent] != mark) {
+                        if (Arrays.binarySearch(ancestors, parent) >= 0) {
+                            return true;
+                        }
+                        traversalEngine.checkBudget(tail);
+                        visited[parent] = mark;
+                        queue[tail++] = parent;
+                    }
+                }
+            }
+            return false;
+        }
+
+        private boolean intersect(final int[] first, final int[] second) {
+            int firstPosition = 0;
+            int secondPosition = 0;
+            while (firstPosition < first.length && secondPosition < second.length) {
+                if (first[firstPosition] == second[secondPosition]) {
+                    return true;
+                }
+                if (first[firstPosition] < second[secondPosition]) {
+                    firstPosition++;
+                } else {
+                    secondPosition++;
+                }
+            }
+            return false;
+        }
+    }
+}
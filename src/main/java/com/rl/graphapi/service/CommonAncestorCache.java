@@ -0,0 +1,117 @@
+package com.rl.graphapi.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.rl.graphapi.service.model.CacheStatistics;
+import com.rl.graphapi.service.model.Graph;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Bounded cache of the common ancestor results, keyed by graph version and unordered node pair.
+ * <p>
+ * The entries are evicted by the W-TinyLFU policy of Caffeine, which keeps the frequently queried
+ * pairs of the hot graphs and rejects the one-off pairs that would only pollute the cache. The results
+ * are computed outside of the cache locks, so concurrent misses of the same pair may compute it twice,
+ * which is cheaper than blocking the other pairs while a traversal runs. Since the key holds the version
+ * of the graph, a query never gets the result computed on another version, and the results of the previous
+ * versions are left to the eviction. The keys of every graph are indexed, so the results of a removed graph
+ * are invalidated without scanning the whole cache.
+ * <p>
+ * The cache is disabled when {@code graph.common-ancestor-cache.max-entries} is {@code 0}.
+ */
+@Service
+public class CommonAncestorCache {
+
+    private final long maxEntries;
+    private final Cache<PairKey, Boolean> cache;
+    private final Map<Long, Set<PairKey>> keysByGraph = new ConcurrentHashMap<>();
+
+    public CommonAncestorCache(@Value("${graph.common-ancestor-cache.max-entries:100000}") final long maxEntries) {
+        this.maxEntries = Math.max(0, maxEntries);
+        // the maintenance runs on the calling threads instead of the common pool, which builds the large graphs
+        this.cache = this.maxEntries > 0
+                ? Caffeine.newBuilder().maximumSize(this.maxEntries).executor(Runnable::run).recordStats()
+                .<PairKey, Boolean>removalListener((key, result, cause) -> {
+                    // a replaced result keeps its key in the cache
+                    if (cause != RemovalCause.REPLACED) {
+                        unindex(key);
+                    }
+                }).build()
+                : null;
+    }
+
+    /**
+     * Return the cached result of the given pair, computing and caching it on a miss.
+     * A failed computation is not cached.
+     *
+     * @param graph        the graph
+     * @param firstNodeId  the id of the first node
+     * @param secondNodeId the id of the second node
+     * @param compute      computes the result of the pair
+     * @return true if the nodes share at least one ancestor, false otherwise
+     */
+    public boolean haveNodesCommonAncestor(final Graph graph, final int firstNodeId, final int secondNodeId,
+                                           final BooleanSupplier compute) {
+        if (cache == null) {
+            return compute.getAsBoolean();
+        }
+        final PairKey key = new PairKey(graph.getId(), graph.getVersion(), Math.min(firstNodeId, secondNodeId), Math.max(firstNodeId, secondNodeId));
+        final Boolean cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        final boolean result = compute.getAsBoolean();
+        keysByGraph.computeIfAbsent(key.getGraphId(), graphId -> ConcurrentHashMap.newKeySet()).add(key);
+        cache.put(key, result);
+        return result;
+    }
+
+    /**
+     * Discard the cached results of all the versions of a graph, to be called when the graph is removed.
+     *
+     * @param graphId the graph id
+     */
+    public void invalidate(final Long graphId) {
+        if (cache != null) {
+            final Set<PairKey> keys = keysByGraph.remove(graphId);
+            if (keys != null) {
+                cache.invalidateAll(keys);
+            }
+        }
+    }
+
+    public CacheStatistics getStatistics() {
+        if (cache == null) {
+            return new CacheStatistics(false, 0, 0, 0, 0, 0);
+        }
+        cache.cleanUp();
+        final CacheStats stats = cache.stats();
+        return new CacheStatistics(true, maxEntries, cache.estimatedSize(),
+                stats.hitCount(), stats.missCount(), stats.evictionCount());
+    }
+
+    private void unindex(final PairKey key) {
+        keysByGraph.computeIfPresent(key.getGraphId(), (graphId, keys) -> keys.remove(key) && keys.isEmpty() ? null : keys);
+    }
+
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    @Getter
+    private static final class PairKey {
+        private final Long graphId;
+        private final long graphVersion;
+        private final int lowerNodeId;
+        private final int upperNodeId;
+    }
+}
@@ -0,0 +1,246 @@
+package com.rl.graphapi.service;
+
+import com.rl.graphapi.service.model.Graph;
+import com.rl.graphapi.service.repository.GraphRepository;
+import com.rl.graphapi.service.repository.GraphResidencyListener;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Micrometer metrics of the graph store, exposed by the actuator {@code metrics} endpoint:
+ * <ul>
+ * <li>{@code graph.operation} - timer of every operation, tagged by {@code operation}</li>
+ * <li>{@code graph.traversal.visited.nodes}, {@code graph.traversal.frontier.size} and {@code graph.traversal.depth} -
+ * distributions of the nodes visited, the largest level and the number of levels of every breadth first search,
+ * tagged by {@code traversal}</li>
+ * <li>{@code graph.store.graphs} and {@code graph.store.memory} - the number of graphs and the estimated heap memory of
+ * the graphs held in memory</li>
+ * <li>{@code graph.store.spilled} and {@code graph.store.evictions} - the number of graphs spilled to their snapshots
+ * and the number of graphs evicted from memory</li>
+ * <li>{@code graph.store.deduplicated} and {@code graph.store.deduplication.saved} - the number of graphs sharing the
+ * body of another graph having the same content and the estimated heap memory saved by sharing</li>
+ * <li>{@code graph.nodes}, {@code graph.edges} and {@code graph.memory} - the size of every graph held in memory
+ * having at least {@code graph.metrics.per-graph-min-nodes} nodes, tagged by {@code graphId}, the smaller graphs
+ * being left out to bound the number of meters</li>
+ * </ul>
+ * The timers and distributions publish percentile histograms along with the 50th, 95th and 99th percentiles.
+ */
+@Component
+public class GraphMetrics implements GraphResidencyListener {
+
+    public enum Operation {
+        CREATE("create"),
+        UPDATE("update"),
+        DELETE("delete"),
+        LOOKUP("lookup"),
+        PARENTS_COUNT("parents-count"),
+        COMMON_ANCESTOR("common-ancestor"),
+        LOWEST_COMMON_ANCESTORS("lowest-common-ancestors"),
+        ANCESTORS("ancestors"),
+        DESCENDANTS("descendants"),
+        ANCESTOR_PATH("ancestor-path"),
+        ANCESTORS_WITHIN("ancestors-within");
+
+        private final String tag;
+
+        Operation(final String tag) {
+            this.tag = tag;
+        }
+    }
+
+    public enum Traversal {
+        COMMON_ANCESTOR("common-ancestor"),
+        LOWEST_COMMON_ANCESTORS("lowest-common-ancestors"),
+        ANCESTORS("ancestors"),
+        DESCENDANTS("descendants"),
+        ANCESTOR_PATH("ancestor-path"),
+        ANCESTORS_WITHIN("ancestors-within");
+
+        private final String tag;
+
+        Traversal(final String tag) {
+            this.tag = tag;
+        }
+    }
+
+    private static final double[] PERCENTILES = {0.5, 0.95, 0.99};
+
+    private final MeterRegistry meterRegistry;
+    private final GraphRepository graphRepository;
+    private final long perGraphMinNodes;
+    private final Map<Operation, Timer> timers = new EnumMap<>(Operation.class);
+    private final Map<Traversal, DistributionSummary> visitedNodes = new EnumMap<>(Traversal.class);
+    private final Map<Traversal, DistributionSummary> frontierSizes = new EnumMap<>(Traversal.class);
+    private final Map<Traversal, DistributionSummary> depths = new EnumMap<>(Traversal.class);
+
+    public GraphMetrics(final MeterRegistry meterRegistry, final GraphRepository graphRepository,
+                        @Value("${graph.metrics.per-graph-min-nodes:100000}") final long perGraphMinNodes) {
+        this.meterRegistry = meterRegistry;
+        this.graphRepository = graphRepository;
+        this.perGraphMinNodes = perGraphMinNodes;
+
+        for (final Operation operation : Operation.values()) {
+            timers.put(operation, Timer.builder("graph.operation")
+                    .description("Time spent by the graph operations")
+                    .tag("operation", operation.tag)
+                    .publishPercentiles(PERCENTILES)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+        }
+        for (final Traversal traversal : Traversal.values()) {
+            visitedNodes.put(traversal, summary("graph.traversal.visited.nodes", "Nodes visited by a traversal", "nodes", traversal));
+            frontierSizes.put(traversal, summary("graph.traversal.frontier.size", "Nodes of the largest level of a traversal", "nodes", traversal));
+            depths.put(traversal, summary("graph.traversal.depth", "Levels expanded by a traversal", "levels", traversal));
+        }
+
+        Gauge.builder("graph.store.graphs", graphRepository, GraphRepository::size)
+                .description("Number of stored graphs")
+                .register(meterRegistry);
+        Gauge.builder("graph.store.memory", graphRepository, GraphRepository::getMemoryBytes)
+                .description("Estimated heap memory of the graphs held in memory and their indexes")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("graph.store.spilled", graphRepository, GraphRepository::getSpilledCount)
+                .description("Number of graphs spilled to their snapshots")
+                .register(meterRegistry);
+        FunctionCounter.builder("graph.store.evictions", graphRepository, GraphRepository::getEvictionCount)
+                .description("Number of graphs evicted from memory")
+                .register(meterRegistry);
+        Gauge.builder("graph.store.deduplicated", graphRepository, GraphRepository::getDeduplicatedCount)
+                .description("Number of graphs held in memory sharing the body of another graph having the same content")
+                .register(meterRegistry);
+        Gauge.builder("graph.store.deduplication.saved", graphRepository, GraphRepository::getDeduplicationSavedBytes)
+                .description("Estimated heap memory saved by the graphs sharing their bodies")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        FunctionCounter.builder("graph.log.records", graphRepository, GraphRepository::getLogRecordCount)
+                .description("Number of graph changes appended to the log")
+                .register(meterRegistry);
+        FunctionCounter.builder("graph.log.syncs", graphRepository, GraphRepository::getLogSyncCount)
+                .description("Number of times the log was forced to the disk, each time for the changes appended meanwhile")
+                .register(meterRegistry);
+        for (int shard = 0; shard < graphRepository.getShardCount(); shard++) {
+            final int shardNumber = shard;
+            final Tags shardTags = Tags.of("shard", String.valueOf(shard));
+            Gauge.builder("graph.store.shard.graphs", graphRepository, repository -> repository.getShardSize(shardNumber))
+                    .description("Number of stored graphs of the shard")
+                    .tags(shardTags)
+                    .register(meterRegistry);
+            Gauge.builder("graph.store.shard.memory", graphRepository, repository -> repository.getShardMemoryBytes(shardNumber))
+                    .description("Estimated heap memory of the graphs of the shard held in memory and their indexes")
+                    .baseUnit("bytes")
+                    .tags(shardTags)
+                    .register(meterRegistry);
+        }
+        graphRepository.getGraphs().forEach(this::onGraphStored);
+        graphRepository.addResidencyListener(this);
+    }
+
+    /**
+     * Time the given operation.
+     *
+     * @param operation the operation
+     * @param supplier  runs the operation
+     * @return the result of the operation
+     */
+    public <T> T record(final Operation operation, final Supplier<T> supplier) {
+        return timers.get(operation).record(supplier);
+    }
+
+    /**
+     * Record the work of a breadth first search.
+     *
+     * @param traversal    the traversal
+     * @param visitedNodes the number of visited nodes
+     * @param maxFrontier  the number of nodes of the largest expanded level
+     * @param depth        the number of expanded levels
+     */
+    public void recordTraversal(final Traversal traversal, final int visitedNodes, final int maxFrontier, final int depth) {
+        this.visitedNodes.get(traversal).record(visitedNodes);
+        frontierSizes.get(traversal).record(maxFrontier);
+        depths.get(traversal).record(depth);
+    }
+
+    /**
+     * Register the size gauges of a created or updated graph, when it is large enough. The gauges read
+     * the current version of the graph, so they are registered once per graph.
+     *
+     * @param graph the stored graph
+     */
+    public void onGraphStored(final Graph graph) {
+        if (graph.getNodesCount() < perGraphMinNodes) {
+            return;
+        }
+        final Long graphId = graph.getId();
+        final Tags tags = Tags.of("graphId", String.valueOf(graphId));
+        Gauge.builder("graph.nodes", graphRepository, graphSize(graphId, Graph::getNodesCount))
+                .description("Number of nodes of the graph")
+                .tags(tags)
+                .register(meterRegistry);
+        Gauge.builder("graph.edges", graphRepository, graphSize(graphId, Graph::getEdgesCount))
+                .description("Number of edges of the graph")
+                .tags(tags)
+                .register(meterRegistry);
+        Gauge.builder("graph.memory", graphRepository, graphSize(graphId, Graph::getMemoryBytes))
+                .description("Estimated heap memory of the graph and its indexes")
+                .baseUnit("bytes")
+                .tags(tags)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Remove the size gauges of a deleted graph.
+     *
+     * @param graphId the graph id
+     */
+    public void onGraphDeleted(final Long graphId) {
+        removeGraphGauges(graphId);
+    }
+
+    /**
+     * Remove the size gauges of a graph evicted from memory, registered again when the graph is reloaded.
+     *
+     * @param graphId the graph id
+     */
+    @Override
+    public void onGraphEvicted(final Long graphId) {
+        removeGraphGauges(graphId);
+    }
+
+    @Override
+    public void onGraphReloaded(final Graph graph) {
+        onGraphStored(graph);
+    }
+
+    private void removeGraphGauges(final Long graphId) {
+        for (final String name : new String[]{"graph.nodes", "graph.edges", "graph.memory"}) {
+            meterRegistry.find(name).tag("graphId", String.valueOf(graphId)).meters().forEach(meterRegistry::remove);
+        }
+    }
+
+    private DistributionSummary summary(final String name, final String description, final String baseUnit,
+                                        final Traversal traversal) {
+        return DistributionSummary.builder(name)
+                .description(description)
+                .baseUnit(baseUnit)
+                .tag("traversal", traversal.tag)
+                .publishPercentiles(PERCENTILES)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private static ToDoubleFunction<GraphRepository> graphSize(final Long graphId, final ToDoubleFunction<Graph> size) {
+        return repository -> repository.find(graphId).map(size::applyAsDouble).orElse(Double.NaN);
+    }
+}
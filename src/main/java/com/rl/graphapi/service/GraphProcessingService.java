@@ -1,28 +1,49 @@
 package com.rl.graphapi.service;
 
+import com.rl.graphapi.service.GraphMetrics.Operation;
+import com.rl.graphapi.service.GraphMetrics.Traversal;
 import com.rl.graphapi.service.exception.NodeNotFoundException;
+import com.rl.graphapi.service.exception.NodesNotProvidedException;
+import com.rl.graphapi.service.index.AncestorIndex;
+import com.rl.graphapi.service.index.ChildrenIndex;
+import com.rl.graphapi.service.index.LowestCommonAncestorIndex;
+import com.rl.graphapi.service.index.TopologyIndex;
+import com.rl.graphapi.service.model.CacheStatistics;
+import com.rl.graphapi.service.model.CommonAncestor;
 import com.rl.graphapi.service.model.Graph;
-import com.rl.graphapi.service.model.Node;
-import com.rl.graphapi.service.model.NodeProcessingData;
+import com.rl.graphapi.service.model.NodeDistance;
+import com.rl.graphapi.service.model.NodeRanges;
+import com.rl.graphapi.service.model.NodeSetQuery;
+import com.rl.graphapi.service.traversal.TraversalCancellation;
+import com.rl.graphapi.service.traversal.TraversalEngine;
+import com.rl.graphapi.service.traversal.TraversalWorkspace;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
-import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Set;
-import java.util.stream.IntStream;
+import java.util.Optional;
 
 @RequiredArgsConstructor
 @Service
 public class GraphProcessingService {
 
     private final GraphService graphService;
+    private final AncestorIndexService ancestorIndexService;
+    private final CommonAncestorCache commonAncestorCache;
+    private final GraphMetrics graphMetrics;
+    private final TraversalEngine traversalEngine;
 
     /**
      * In order to have a more efficient way of finding if two nodes have common parents
-     * we will process the ancestors of every node in parallel, until will find the first
-     * known ancestor
+     * we will process the ancestors of both nodes in the same time, until will find the first
+     * known ancestor. A node is considered an ancestor of itself, so a node and one of its
+     * ancestors always share an ancestor. When the ancestor index is enabled and available
+     * for the graph the answer is given by the index instead. The answers of the repeated pairs
+     * are served by the {@link CommonAncestorCache}.
      *
      * @param graphId      the graph id
      * @param firstNodeId  the id of the first node
@@ -30,64 +51,506 @@ public class GraphProcessingService {
      * @return true if the given nodes shares at leas one known ancestor, false otherwise.
      */
     public boolean haveNodesCommonAncestor(final Long graphId, int firstNodeId, int secondNodeId) {
+        return graphMetrics.record(Operation.COMMON_ANCESTOR, () -> {
+            final Graph graph = graphService.lookup(graphId);
+            return commonAncestorCache.haveNodesCommonAncestor(graph, firstNodeId, secondNodeId, () -> {
+                validateNodeExists(graph, firstNodeId);
+                validateNodeExists(graph, secondNodeId);
+
+                return haveNodesCommonAncestor(graph, graph.indexOf(firstNodeId), graph.indexOf(secondNodeId));
+            });
+        });
+    }
+
+    /**
+     * @return the size and counters of the common ancestor cache
+     */
+    public CacheStatistics getCommonAncestorCacheStatistics() {
+        return commonAncestorCache.getStatistics();
+    }
+
+    /**
+     * Verify if the given nodes of the graph share at least one known ancestor. The nodes of
+     * different components are answered by the topology index without any search, and so are the
+     * nodes of an acyclic component having a single root. Otherwise the ancestor index answers if
+     * available, else the ancestors are searched.
+     *
+     * @param graph      the graph
+     * @param firstNode  the dense index of the first node
+     * @param secondNode the dense index of the second node
+     * @return true if the nodes share at least one ancestor, false otherwise
+     */
+    boolean haveNodesCommonAncestor(final Graph graph, final int firstNode, final int secondNode) {
+        final Boolean topologyAnswer = topologyIndex(graph).haveCommonAncestor(firstNode, secondNode);
+        if (topologyAnswer != null) {
+            return topologyAnswer;
+        }
+
+        final Optional<AncestorIndex> ancestorIndex = ancestorIndexService.find(graph);
+        if (ancestorIndex.isPresent()) {
+            return ancestorIndex.get().haveCommonAncestor(firstNode, secondNode);
+        }
+
+        return searchCommonAncestor(graph, firstNode, secondNode);
+    }
+
+    /**
+     * Find the lowest common ancestors of two nodes: their common ancestors that are not ancestors
+     * of another common ancestor, a node being considered an ancestor of itself. The common ancestors
+     * lying on the same cycle, ancestors of each other, are all lowest when no other common ancestor
+     * is below their cycle. When the graph is a
+     * forest and the index is enabled the answer is given by the lowest common ancestor index,
+     * otherwise the ancestors of both nodes are traversed, unless the nodes are in different
+     * components or the ancestor index already tells that the nodes share no ancestor.
+     *
+     * @param graphId      the graph id
+     * @param firstNodeId  the id of the first node
+     * @param secondNodeId the id of the second node
+     * @return the lowest common ancestors with their shortest hop distances from both nodes, ordered by
+     * the sum of the distances and then by id, empty if the nodes share no ancestor
+     */
+    public List<CommonAncestor> getLowestCommonAncestors(final Long graphId, final int firstNodeId, final int secondNodeId) {
+        return graphMetrics.record(Operation.LOWEST_COMMON_ANCESTORS,
+                () -> findLowestCommonAncestors(graphId, firstNodeId, secondNodeId));
+    }
+
+    private List<CommonAncestor> findLowestCommonAncestors(final Long graphId, final int firstNodeId, final int secondNodeId) {
         final Graph graph = graphService.lookup(graphId);
         validateNodeExists(graph, firstNodeId);
         validateNodeExists(graph, secondNodeId);
+        final int firstNode = graph.indexOf(firstNodeId);
+        final int secondNode = graph.indexOf(secondNodeId);
+
+        if (!topologyIndex(graph).isSameComponent(firstNode, secondNode)) {
+            return Collections.emptyList();
+        }
 
-        final Node firstNode = graph.getNodesHeap().get(firstNodeId);
-        final NodeProcessingData firstNodeProcessing = new NodeProcessingData();
-        firstNodeProcessing.addNextToVisit(firstNode);
-        firstNodeProcessing.addVisited(firstNode);
-
-        final Node secondNode = graph.getNodesHeap().get(secondNodeId);
-        final NodeProcessingData secondNodeProcessing = new NodeProcessingData();
-        secondNodeProcessing.addNextToVisit(secondNode);
-        secondNodeProcessing.addVisited(secondNode);
-
-        while (!firstNodeProcessing.getNextToVisit().isEmpty() && !secondNodeProcessing.getNextToVisit().isEmpty()) {
-            // we need to check all parents from this level
-            final List<Node> firstNextLevelParents = iterateParentsBucket(firstNodeProcessing);
-            firstNodeProcessing.getNextToVisit().addAll(firstNextLevelParents);
-
-            // we need to check all parents from this level
-            final List<Node> secondNextLevelParents = iterateParentsBucket(secondNodeProcessing);
-            secondNodeProcessing.getNextToVisit().addAll(secondNextLevelParents);
-
-            // Verify if the targeted nodes shares at least one knows ancestor
-            final Set<Integer> temp = new HashSet<>(firstNodeProcessing.getVisitedNodes());
-            if (temp.retainAll(secondNodeProcessing.getVisitedNodes()) && !temp.isEmpty()) {
-                return true;
+        final Optional<LowestCommonAncestorIndex> lowestCommonAncestorIndex = ancestorIndexService.findLowestCommonAncestorIndex(graph);
+        if (lowestCommonAncestorIndex.isPresent()) {
+            final LowestCommonAncestorIndex index = lowestCommonAncestorIndex.get();
+            final int ancestor = index.lowestCommonAncestor(firstNode, secondNode);
+            if (ancestor < 0) {
+                return Collections.emptyList();
             }
+            return Collections.singletonList(new CommonAncestor(graph.getNodeId(ancestor),
+                    index.getDepth(firstNode) - index.getDepth(ancestor), index.getDepth(secondNode) - index.getDepth(ancestor)));
         }
 
-        return false;
+        final Optional<AncestorIndex> ancestorIndex = ancestorIndexService.find(graph);
+        if (ancestorIndex.isPresent() && !ancestorIndex.get().haveCommonAncestor(firstNode, secondNode)) {
+            return Collections.emptyList();
+        }
+        return searchLowestCommonAncestors(graph, firstNode, secondNode);
     }
 
     /**
-     * Iterating over all parents from this bucket.
+     * Find the ancestors of a set of nodes: the nodes reached from any of them by following the parents,
+     * within the given number of hops. A queried node is part of the result only if it is an ancestor of
+     * another queried node.
      *
-     * @param nodeProcessing the node processing data
-     * @return the list of the ancestors from the nex level to be processed
+     * @param graphId the graph id
+     * @param query   the nodes and the optional maximum number of hops
+     * @return the ids of the ancestors
      */
-    private List<Node> iterateParentsBucket(final NodeProcessingData nodeProcessing) {
-        final List<Node> nextLevelParents = new LinkedList<>();
-
-        // we need to check all parents from this level
-        IntStream.range(0, nodeProcessing.getNextToVisit().size()).forEach(index -> {
-            final Node headNode = nodeProcessing.getNextToVisit().remove();
-            headNode.getParents().forEach(child -> {
-                if (!nodeProcessing.getVisitedNodes().contains(child.getId())) {
-                    nodeProcessing.addVisited(child);
-                    nextLevelParents.add(child);
-                }
-            });
+    public NodeRanges getAncestors(final Long graphId, final NodeSetQuery query) {
+        return graphMetrics.record(Operation.ANCESTORS, () -> findReachable(graphId, query, false));
+    }
+
+    /**
+     * Find the descendants of a set of nodes: the nodes reached from any of them by following the children,
+     * within the given number of hops. A queried node is part of the result only if it is a descendant of
+     * another queried node.
+     *
+     * @param graphId the graph id
+     * @param query   the nodes and the optional maximum number of hops
+     * @return the ids of the descendants
+     */
+    public NodeRanges getDescendants(final Long graphId, final NodeSetQuery query) {
+        return graphMetrics.record(Operation.DESCENDANTS, () -> findReachable(graphId, query, true));
+    }
+
+    private NodeRanges findReachable(final Long graphId, final NodeSetQuery query, final boolean descendants) {
+        if (query == null || query.getNodes() == null || query.getNodes().isEmpty()) {
+            throw new NodesNotProvidedException("Nodes not provided!");
+        }
+        final Graph graph = graphService.lookup(graphId);
+        final int[] sources = new int[query.getNodes().size()];
+        for (int index = 0; index < sources.length; index++) {
+            final Integer nodeId = query.getNodes().get(index);
+            if (nodeId == null) {
+                throw new NodesNotProvidedException("Nodes not provided!");
+            }
+            validateNodeExists(graph, nodeId);
+            sources[index] = graph.indexOf(nodeId);
+        }
+        final int maxDepth = query.getMaxDepth() == null ? Integer.MAX_VALUE : Math.max(0, query.getMaxDepth());
+
+        return traversalEngine.reachable(graph, sources, maxDepth,
+                descendants ? graph.getIndex(ChildrenIndex.class, ChildrenIndex::build) : null);
+    }
+
+    /**
+     * Find a shortest path from a node up to one of its ancestors, following the parents. The search is
+     * bounded by the topological depths of the nodes, see {@link TraversalEngine#shortestAncestorPath}.
+     *
+     * @param graphId    the graph id
+     * @param nodeId     the id of the node
+     * @param ancestorId the id of the ancestor
+     * @return the ids of the path nodes, from the node to the ancestor, empty if the ancestor is not an
+     * ancestor of the node
+     */
+    public List<Integer> getShortestAncestorPath(final Long graphId, final int nodeId, final int ancestorId) {
+        return graphMetrics.record(Operation.ANCESTOR_PATH, () -> {
+            final Graph graph = graphService.lookup(graphId);
+            validateNodeExists(graph, nodeId);
+            validateNodeExists(graph, ancestorId);
+
+            final int[] path = traversalEngine.shortestAncestorPath(graph, topologyIndex(graph),
+                    graph.indexOf(nodeId), graph.indexOf(ancestorId));
+            final List<Integer> pathIds = new ArrayList<>(path.length);
+            for (final int node : path) {
+                pathIds.add(graph.getNodeId(node));
+            }
+            return pathIds;
+        });
+    }
+
+    /**
+     * Find the ancestors of a node within the given number of hops.
+     *
+     * @param graphId the graph id
+     * @param nodeId  the id of the node
+     * @param maxHops the maximum number of hops, negative values being taken as 0
+     * @return the ancestors with their shortest hop distances, ordered by distance and then by id
+     */
+    public List<NodeDistance> getAncestorsWithin(final Long graphId, final int nodeId, final int maxHops) {
+        return graphMetrics.record(Operation.ANCESTORS_WITHIN, () -> {
+            final Graph graph = graphService.lookup(graphId);
+            validateNodeExists(graph, nodeId);
+
+            return traversalEngine.ancestorsWithin(graph, graph.indexOf(nodeId), Math.max(0, maxHops));
         });
+    }
+
+    /**
+     * Return the ancestor index of the graph if it was built.
+     *
+     * @param graphId the graph id
+     * @return the built ancestor index, available or not, or empty if it was not built yet
+     */
+    public Optional<AncestorIndex> getAncestorIndex(final Long graphId) {
+        return ancestorIndexService.findBuilt(graphService.lookup(graphId));
+    }
 
-        return nextLevelParents;
+    /**
+     * Return the topology index of the graph, built when the graph was stored, or now for the graphs
+     * loaded from their snapshots.
+     *
+     * @param graph the graph
+     * @return the topology index
+     */
+    public TopologyIndex getTopology(final Graph graph) {
+        return topologyIndex(graph);
+    }
+
+    private static TopologyIndex topologyIndex(final Graph graph) {
+        return graph.getIndex(TopologyIndex.class, TopologyIndex::build);
+    }
+
+    /**
+     * Bidirectional breadth first search over the parents of both nodes. Every discovered
+     * node is checked against the nodes visited by the other side, so the search stops on the
+     * first shared ancestor. The side having the smaller frontier is expanded first, and once
+     * a side runs out of ancestors the other one keeps going, since it may still reach a node
+     * already visited by the exhausted side.
+     * <p>
+     * Both queues live in the same array: the first one grows from its start and the second
+     * one from its end. They never overlap because a node reached by both sides ends the search.
+     * The nodes visited by both sides count against the traversal budget, see
+     * {@link TraversalEngine#checkBudget}. The visited nodes, the largest expanded level and the
+     * number of expanded levels are recorded by the {@link GraphMetrics}.
+     *
+     * @param graph      the graph
+     * @param firstNode  the dense index of the first node
+     * @param secondNode the dense index of the second node
+     * @return true if the nodes share at least one ancestor, false otherwise
+     */
+    private boolean searchCommonAncestor(final Graph graph, final int firstNode, final int secondNode) {
+        if (firstNode == secondNode) {
+            return true;
+        }
+        final TraversalWorkspace workspace = TraversalWorkspace.acquire(graph.getNodesCount());
+        final int[] visited = workspace.visited();
+        final int[] queue = workspace.queue();
+        final int firstMark = workspace.firstMark();
+        final int secondMark = workspace.secondMark();
+
+        visited[firstNode] = firstMark;
+        visited[secondNode] = secondMark;
+        int firstHead = 0;
+        int firstTail = 0;
+        queue[firstTail++] = firstNode;
+        int secondHead = queue.length - 1;
+        int secondTail = queue.length - 1;
+        queue[secondTail--] = secondNode;
+
+        boolean found = false;
+        int maxFrontier = 1;
+        int depth = 0;
+        search:
+        while (firstHead < firstTail || secondHead > secondTail) {
+            final int firstFrontier = firstTail - firstHead;
+            final int secondFrontier = secondHead - secondTail;
+            depth++;
+            TraversalCancellation.check();
+
+            if (secondFrontier == 0 || (firstFrontier != 0 && firstFrontier <= secondFrontier)) {
+                maxFrontier = Math.max(maxFrontier, firstFrontier);
+                // expand one level of the first side
+                final int levelEnd = firstTail;
+                for (; firstHead < levelEnd; firstHead++) {
+                    final int node = queue[firstHead];
+                    for (int position = graph.getParentsFrom(node); position < graph.getParentsTo(node); position++) {
+                        final int parent = graph.getParent(position);
+                        if (visited[parent] == secondMark) {
+                            found = true;
+                            break search;
+                        }
+                        if (visited[parent] != firstMark) {
+                            traversalEngine.checkBudget(firstTail + queue.length - 1 - secondTail);
+                            visited[parent] = firstMark;
+                            queue[firstTail++] = parent;
+                        }
+                    }
+                }
+            } else {
+                maxFrontier = Math.max(maxFrontier, secondFrontier);
+                // expand one level of the second side
+                final int levelEnd = secondTail;
+                for (; secondHead > levelEnd; secondHead--) {
+                    final int node = queue[secondHead];
+                    for (int position = graph.getParentsFrom(node); position < graph.getParentsTo(node); position++) {
+                        final int parent = graph.getParent(position);
+                        if (visited[parent] == firstMark) {
+                            found = true;
+                            break search;
+                        }
+                        if (visited[parent] != secondMark) {
+                            traversalEngine.checkBudget(firstTail + queue.length - 1 - secondTail);
+                            visited[parent] = secondMark;
+                            queue[secondTail--] = parent;
+                        }
+                    }
+                }
+            }
+        }
+
+        graphMetrics.recordTraversal(Traversal.COMMON_ANCESTOR, firstTail + queue.length - 1 - secondTail, maxFrontier, depth);
+        return found;
+    }
+
+    /**
+     * Breadth first search over all the ancestors of the first node, recording their distances,
+     * then over all the ancestors of the second node, collecting the nodes already reached by the
+     * first search: the common ancestors. Every parent of a common ancestor is a common ancestor
+     * too but not a lowest one, so the lowest ones are the common ancestors left once the parents
+     * of all of them are discarded. When the graph has cycles, the common ancestors of a cycle being
+     * parents of each other, only the parents of the common ancestors outside their cycle are discarded,
+     * see {@link #discardCommonAncestorsAboveCycles}.
+     * <p>
+     * Once the second search is done its queue is no longer needed, the common ancestors are
+     * compacted at its start. The nodes visited by both searches count against the traversal budget
+     * and their work is recorded by the {@link GraphMetrics}.
+     */
+    private List<CommonAncestor> searchLowestCommonAncestors(final Graph graph, final int firstNode, final int secondNode) {
+        final TraversalWorkspace workspace = TraversalWorkspace.acquire(graph.getNodesCount());
+        final int[] visited = workspace.visited();
+        final int[] queue = workspace.queue();
+        final int[] firstDistances = workspace.firstDistances();
+        final int[] secondDistances = workspace.secondDistances();
+        final int firstMark = workspace.firstMark();
+        final int secondMark = workspace.secondMark();
+        final int commonMark = workspace.thirdMark();
+
+        // the ancestors of the first node
+        int head = 0;
+        int tail = 0;
+        visited[firstNode] = firstMark;
+        firstDistances[firstNode] = 0;
+        queue[tail++] = firstNode;
+        while (head < tail) {
+            final int node = queue[head++];
+            for (int position = graph.getParentsFrom(node); position < graph.getParentsTo(node); position++) {
+                final int parent = graph.getParent(position);
+                if (visited[parent] != firstMark) {
+                    traversalEngine.checkBudget(tail);
+                    visited[parent] = firstMark;
+                    firstDistances[parent] = firstDistances[node] + 1;
+                    queue[tail++] = parent;
+                }
+            }
+        }
+        final int firstVisited = tail;
+        final int firstMaxFrontier = maxLevelSize(queue, tail, firstDistances);
+        final int firstDepth = firstDistances[queue[tail - 1]];
+
+        // the ancestors of the second node, the ones reached by both searches being common
+        head = 0;
+        tail = 0;
+        visited[secondNode] = visited[secondNode] == firstMark ? commonMark : secondMark;
+        secondDistances[secondNode] = 0;
+        queue[tail++] = secondNode;
+        while (head < tail) {
+            final int node = queue[head++];
+            for (int position = graph.getParentsFrom(node); position < graph.getParentsTo(node); position++) {
+                final int parent = graph.getParent(position);
+                if (visited[parent] != secondMark && visited[parent] != commonMark) {
+                    traversalEngine.checkBudget(firstVisited + tail);
+                    visited[parent] = visited[parent] == firstMark ? commonMark : secondMark;
+                    secondDistances[parent] = secondDistances[node] + 1;
+                    queue[tail++] = parent;
+                }
+            }
+        }
+
+        graphMetrics.recordTraversal(Traversal.LOWEST_COMMON_ANCESTORS, firstVisited + tail,
+                Math.max(firstMaxFrontier, maxLevelSize(queue, tail, secondDistances)),
+                Math.max(firstDepth, secondDistances[queue[tail - 1]]));
+
+        int commonCount = 0;
+        for (int position = 0; position < tail; position++) {
+            if (visited[queue[position]] == commonMark) {
+                queue[commonCount++] = queue[position];
+            }
+        }
+        // discard the parents of the common ancestors, the first mark being no longer needed
+        if (topologyIndex(graph).hasCycles()) {
+            discardCommonAncestorsAboveCycles(graph, workspace, commonCount);
+        } else {
+            for (int position = 0; position < commonCount; position++) {
+                final int node = queue[position];
+                for (int parentPosition = graph.getParentsFrom(node); parentPosition < graph.getParentsTo(node); parentPosition++) {
+                    visited[graph.getParent(parentPosition)] = firstMark;
+                }
+            }
+        }
+
+        final List<CommonAncestor> lowestCommonAncestors = new ArrayList<>();
+        for (int position = 0; position < commonCount; position++) {
+            final int node = queue[position];
+            if (visited[node] == commonMark) {
+                lowestCommonAncestors.add(new CommonAncestor(graph.getNodeId(node), firstDistances[node], secondDistances[node]));
+            }
+        }
+        lowestCommonAncestors.sort(Comparator.comparingInt((CommonAncestor ancestor) -> ancestor.getFirstNodeDistance() + ancestor.getSecondNodeDistance())
+                .thenComparingInt(CommonAncestor::getNodeId));
+        return lowestCommonAncestors;
+    }
+
+    /**
+     * Discard, by marking them with the first mark, the common ancestors which are ancestors of a common
+     * ancestor outside their cycle. The common ancestors, compacted at the start of the queue, are grouped
+     * in strongly connected components by an iterative Tarjan search over their parents, the parents of
+     * a common ancestor being common ancestors too, and the components being the parent of another
+     * component are discarded.
+     * <p>
+     * The position of every common ancestor in the queue is kept in the predecessors of the workspace.
+     */
+    private static void discardCommonAncestorsAboveCycles(final Graph graph, final TraversalWorkspace workspace, final int commonCount) {
+        final int[] visited = workspace.visited();
+        final int[] queue = workspace.queue();
+        final int[] positions = workspace.predecessors();
+        for (int position = 0; position < commonCount; position++) {
+            positions[queue[position]] = position;
+        }
+
+        final int[] orders = new int[commonCount];
+        final int[] lowLinks = new int[commonCount];
+        final int[] components = new int[commonCount];
+        final int[] stack = new int[commonCount];
+        final int[] pathPositions = new int[commonCount];
+        final int[] pathParents = new int[commonCount];
+        Arrays.fill(components, -1);
+        int order = 0;
+        int componentsCount = 0;
+        int stackSize = 0;
+        for (int root = 0; root < commonCount; root++) {
+            if (orders[root] != 0) {
+                continue;
+            }
+            int pathSize = 0;
+            orders[root] = ++order;
+            lowLinks[root] = order;
+            stack[stackSize++] = root;
+            pathPositions[pathSize] = root;
+            pathParents[pathSize++] = graph.getParentsFrom(queue[root]);
+            while (pathSize > 0) {
+                final int position = pathPositions[pathSize - 1];
+                if (pathParents[pathSize - 1] < graph.getParentsTo(queue[position])) {
+                    final int parent = positions[graph.getParent(pathParents[pathSize - 1]++)];
+                    if (orders[parent] == 0) {
+                        orders[parent] = ++order;
+                        TraversalCancellation.check(order);
+                        lowLinks[parent] = order;
+                        stack[stackSize++] = parent;
+                        pathPositions[pathSize] = parent;
+                        pathParents[pathSize++] = graph.getParentsFrom(queue[parent]);
+                    } else if (components[parent] < 0) {
+                        lowLinks[position] = Math.min(lowLinks[position], orders[parent]);
+                    }
+                    continue;
+                }
+                pathSize--;
+                if (pathSize > 0) {
+                    final int child = pathPositions[pathSize - 1];
+                    lowLinks[child] = Math.min(lowLinks[child], lowLinks[position]);
+                }
+                if (lowLinks[position] == orders[position]) {
+                    int member;
+                    do {
+                        member = stack[--stackSize];
+                        components[member] = componentsCount;
+                    } while (member != position);
+                    componentsCount++;
+                }
+            }
+        }
+
+        final boolean[] discarded = new boolean[componentsCount];
+        for (int position = 0; position < commonCount; position++) {
+            final int node = queue[position];
+            for (int parentPosition = graph.getParentsFrom(node); parentPosition < graph.getParentsTo(node); parentPosition++) {
+                final int parent = positions[graph.getParent(parentPosition)];
+                if (components[parent] != components[position]) {
+                    discarded[components[parent]] = true;
+                }
+            }
+        }
+        for (int position = 0; position < commonCount; position++) {
+            if (discarded[components[position]]) {
+                visited[queue[position]] = workspace.firstMark();
+            }
+        }
+    }
+
+    /**
+     * @return the number of nodes of the largest level of a breadth first search queue, the distances
+     * being ascending along the queue
+     */
+    private static int maxLevelSize(final int[] queue, final int size, final int[] distances) {
+        int maxLevelSize = 0;
+        int levelStart = 0;
+        for (int position = 1; position <= size; position++) {
+            if (position == size || distances[queue[position]] != distances[queue[levelStart]]) {
+                maxLevelSize = Math.max(maxLevelSize, position - levelStart);
+                levelStart = position;
+            }
+        }
+        return maxLevelSize;
     }
 
-    private void validateNodeExists(final Graph graph, final int nodeId) {
-        if (!graph.getNodesHeap().containsKey(nodeId)) {
+    void validateNodeExists(final Graph graph, final int nodeId) {
+        if (!graph.containsNode(nodeId)) {
             throw new NodeNotFoundException(String.format("Node with key %s does not exists!", nodeId));
         }
     }
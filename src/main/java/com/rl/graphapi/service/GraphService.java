@@ -1,33 +1,194 @@
 package com.rl.graphapi.service;
 
+import com.rl.graphapi.service.GraphMetrics.Operation;
+import com.rl.graphapi.service.exception.GraphChangesNotProvidedException;
+import com.rl.graphapi.service.exception.GraphEdgesMalformedException;
 import com.rl.graphapi.service.exception.GraphEdgesNotProvidedException;
+import com.rl.graphapi.service.exception.InvalidCursorException;
 import com.rl.graphapi.service.model.Edge;
+import com.rl.graphapi.service.model.EdgeSource;
 import com.rl.graphapi.service.model.Graph;
+import com.rl.graphapi.service.model.GraphBuilder;
+import com.rl.graphapi.service.model.GraphChange;
+import com.rl.graphapi.service.model.GraphMutation;
+import com.rl.graphapi.service.model.GraphPage;
+import com.rl.graphapi.service.model.NodesPage;
 import com.rl.graphapi.service.repository.GraphRepository;
 import lombok.AllArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 
+import java.io.IOException;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 @AllArgsConstructor
 @Service
 public class GraphService {
 
+    private final static Logger LOG = LoggerFactory.getLogger(GraphService.class);
+    static final int MAX_PAGE_LIMIT = 10_000;
+
     private final GraphRepository graphRepository;
+    private final AncestorIndexService ancestorIndexService;
+    private final CommonAncestorCache commonAncestorCache;
+    private final GraphMetrics graphMetrics;
 
     public Graph createGraph(final Set<Edge> edges){
         if(CollectionUtils.isEmpty(edges)){
             throw new GraphEdgesNotProvidedException("Graph edges not provided on graph creation!");
         }
-        return graphRepository.createGraph(edges);
+        return createGraph(graphBuilder -> edges.forEach(edge ->
+                graphBuilder.addEdge(edge.getParent(), edge.getChild())
+        ));
+    }
+
+    /**
+     * Create the graph from the edges of the given source. The edges are streamed
+     * straight into the graph builder and the ingest throughput is logged.
+     *
+     * @param edgeSource the source of the graph edges
+     * @return the created graph
+     */
+    public Graph createGraph(final EdgeSource edgeSource) {
+        return graphMetrics.record(Operation.CREATE, () -> create(edgeSource));
+    }
+
+    private Graph create(final EdgeSource edgeSource) {
+        final long start = System.nanoTime();
+        final GraphBuilder graphBuilder = new GraphBuilder();
+        try {
+            edgeSource.readInto(graphBuilder);
+        } catch (final IOException exception) {
+            throw new GraphEdgesMalformedException(String.format("Graph edges could not be read: %s", exception.getMessage()));
+        }
+        if (graphBuilder.isEmpty()) {
+            throw new GraphEdgesNotProvidedException("Graph edges not provided on graph creation!");
+        }
+
+        final Graph graph = graphRepository.createGraph(graphBuilder);
+        ancestorIndexService.onGraphCreated(graph);
+        graphMetrics.onGraphStored(graph);
+
+        final long elapsedNanos = Math.max(System.nanoTime() - start, 1);
+        LOG.info("Graph {} created from {} edges in {} ms ({} edges/s)", graph.getId(), graphBuilder.getEdgesCount(),
+                TimeUnit.NANOSECONDS.toMillis(elapsedNanos), graphBuilder.getEdgesCount() * TimeUnit.SECONDS.toNanos(1) / elapsedNanos);
+        return graph;
+    }
+
+    /**
+     * Apply the mutation on the graph, creating its next version. The queries running on the previous
+     * version are not affected, and the indexes of the previous version are updated for the next one.
+     *
+     * @param graphId  the graph id
+     * @param mutation the edges and nodes to add and remove
+     * @return the next version of the graph
+     */
+    public Graph updateGraph(final Long graphId, final GraphMutation mutation) {
+        if (mutation == null || mutation.isEmpty()) {
+            throw new GraphChangesNotProvidedException("Graph changes not provided on graph update!");
+        }
+        return graphMetrics.record(Operation.UPDATE, () -> update(graphId, mutation));
+    }
+
+    private Graph update(final Long graphId, final GraphMutation mutation) {
+        final long start = System.nanoTime();
+
+        // the cached results of the previous version are keyed by that version, they are left to the eviction
+        final GraphChange change = graphRepository.updateGraph(graphId, mutation, ancestorIndexService::onGraphChanged);
+
+        final Graph graph = change.getGraph();
+        graphMetrics.onGraphStored(graph);
+        LOG.info("Graph {} updated to version {} in {} ms, {} nodes changed", graphId, graph.getVersion(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), change.getChangedNodes().length);
+        return graph;
+    }
+
+    /**
+     * Delete the graph, its snapshot, its cached results and its metrics. The queries already running
+     * on the graph are not affected.
+     *
+     * @param graphId the graph id
+     */
+    public void deleteGraph(final Long graphId) {
+        graphMetrics.record(Operation.DELETE, () -> {
+            graphRepository.deleteGraph(graphId);
+            return graphId;
+        });
+        commonAncestorCache.invalidate(graphId);
+        graphMetrics.onGraphDeleted(graphId);
+        LOG.info("Graph {} deleted", graphId);
+    }
+
+    /**
+     * Return the graph requested by a client, the lookup being timed.
+     *
+     * @param graphId the graph id
+     * @return the current version of the graph
+     */
+    public Graph getGraph(final Long graphId) {
+        return graphMetrics.record(Operation.LOOKUP, () -> graphRepository.lookup(graphId));
     }
 
-    Graph lookup(final Long graphId) {
+    /**
+     * Return the graph an operation runs on, the lookup being part of the time of the operation.
+     *
+     * @param graphId the graph id
+     * @return the current version of the graph
+     */
+    public Graph lookup(final Long graphId) {
         return graphRepository.lookup(graphId);
     }
 
+    /**
+     * Return a page of the graph nodes in ascending order of their ids. The cursor of a page
+     * is the id of its last node, so the next page starts right after that node.
+     *
+     * @param graphId the graph id
+     * @param cursor  the cursor returned with the previous page or null for the first page
+     * @param limit   the maximum number of nodes of the page, capped to {@value #MAX_PAGE_LIMIT}
+     * @return the page of the graph nodes
+     */
+    public GraphPage getGraphPage(final Long graphId, final String cursor, final int limit) {
+        final Graph graph = graphRepository.lookup(graphId);
+        int from = 0;
+        if (cursor != null) {
+            final int index;
+            try {
+                index = graph.indexOf(Integer.parseInt(cursor));
+            } catch (final NumberFormatException exception) {
+                throw new InvalidCursorException(String.format("Invalid cursor %s!", cursor));
+            }
+            from = index >= 0 ? index + 1 : -(index + 1);
+        }
+        final int to = (int) Math.min(graph.getNodesCount(), (long) from + pageLimit(limit));
+        final String nextCursor = to < graph.getNodesCount() ? String.valueOf(graph.getNodeId(to - 1)) : null;
+        return new GraphPage(graph, from, to, nextCursor);
+    }
+
     public Set<Integer> getNodesHavingParentsCount(final Long graphId, final int parentsCount) {
-        return graphRepository.getNodesHavingParentsCount(graphId, parentsCount);
+        return graphMetrics.record(Operation.PARENTS_COUNT, () -> graphRepository.getNodesHavingParentsCount(graphId, parentsCount));
+    }
+
+    public Set<Integer> getNodesHavingParentsCount(final Long graphId, final int minParents, final int maxParents) {
+        return graphMetrics.record(Operation.PARENTS_COUNT,
+                () -> graphRepository.getNodesHavingParentsCount(graphId, minParents, maxParents));
+    }
+
+    public int countNodesHavingParentsCount(final Long graphId, final int minParents, final int maxParents) {
+        return graphMetrics.record(Operation.PARENTS_COUNT,
+                () -> graphRepository.countNodesHavingParentsCount(graphId, minParents, maxParents));
+    }
+
+    public NodesPage getNodesHavingParentsCountPage(final Long graphId, final int minParents, final int maxParents,
+                                                    final String cursor, final int limit) {
+        return graphMetrics.record(Operation.PARENTS_COUNT,
+                () -> graphRepository.getNodesHavingParentsCountPage(graphId, minParents, maxParents, cursor, pageLimit(limit)));
+    }
+
+    private static int pageLimit(final int limit) {
+        return Math.max(1, Math.min(limit, MAX_PAGE_LIMIT));
     }
 }
@@ -0,0 +1,8 @@
+package com.rl.graphapi.service.exception;
+
+public class BatchTooLargeException extends GraphRuntimeException {
+
+    public BatchTooLargeException(final String message) {
+        super(message);
+    }
+}
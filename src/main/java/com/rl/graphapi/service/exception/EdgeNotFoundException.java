@@ -0,0 +1,8 @@
+package com.rl.graphapi.service.exception;
+
+public class EdgeNotFoundException extends GraphRuntimeException {
+
+    public EdgeNotFoundException(final String message) {
+        super(message);
+    }
+}
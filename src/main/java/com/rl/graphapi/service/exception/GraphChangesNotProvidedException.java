@@ -0,0 +1,8 @@
+package com.rl.graphapi.service.exception;
+
+public class GraphChangesNotProvidedException extends GraphRuntimeException {
+
+    public GraphChangesNotProvidedException(final String message) {
+        super(message);
+    }
+}
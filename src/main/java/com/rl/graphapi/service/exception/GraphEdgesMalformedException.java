@@ -0,0 +1,8 @@
+package com.rl.graphapi.service.exception;
+
+public class GraphEdgesMalformedException extends GraphRuntimeException {
+
+    public GraphEdgesMalformedException(final String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package com.rl.graphapi.service.exception;
+
+public class InvalidCursorException extends GraphRuntimeException {
+
+    public InvalidCursorException(final String message) {
+        super(message);
+    }
+}
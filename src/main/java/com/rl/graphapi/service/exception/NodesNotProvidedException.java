@@ -0,0 +1,8 @@
+package com.rl.graphapi.service.exception;
+
+public class NodesNotProvidedException extends GraphRuntimeException {
+
+    public NodesNotProvidedException(final String message) {
+        super(message);
+    }
+}
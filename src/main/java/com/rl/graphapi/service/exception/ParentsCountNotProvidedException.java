@@ -0,0 +1,8 @@
+package com.rl.graphapi.service.exception;
+
+public class ParentsCountNotProvidedException extends GraphRuntimeException {
+
+    public ParentsCountNotProvidedException(final String message) {
+        super(message);
+    }
+}
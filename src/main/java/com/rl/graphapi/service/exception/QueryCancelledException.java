@@ -0,0 +1,8 @@
+package com.rl.graphapi.service.exception;
+
+public class QueryCancelledException extends GraphRuntimeException {
+
+    public QueryCancelledException(final String message) {
+        super(message);
+    }
+}
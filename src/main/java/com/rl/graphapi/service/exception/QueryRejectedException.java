@@ -0,0 +1,8 @@
+package com.rl.graphapi.service.exception;
+
+public class QueryRejectedException extends GraphRuntimeException {
+
+    public QueryRejectedException(final String message) {
+        super(message);
+    }
+}
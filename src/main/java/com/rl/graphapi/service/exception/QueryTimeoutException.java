@@ -0,0 +1,8 @@
+package com.rl.graphapi.service.exception;
+
+public class QueryTimeoutException extends GraphRuntimeException {
+
+    public QueryTimeoutException(final String message) {
+        super(message);
+    }
+}
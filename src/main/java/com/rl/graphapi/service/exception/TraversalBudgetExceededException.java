@@ -0,0 +1,8 @@
+package com.rl.graphapi.service.exception;
+
+public class TraversalBudgetExceededException extends GraphRuntimeException {
+
+    public TraversalBudgetExceededException(final String message) {
+        super(message);
+    }
+}
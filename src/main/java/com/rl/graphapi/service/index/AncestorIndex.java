@@ -0,0 +1,416 @@
+package com.rl.graphapi.service.index;
+
+import com.rl.graphapi.service.model.Graph;
+import com.rl.graphapi.service.model.GraphChange;
+import com.rl.graphapi.service.model.MemoryFootprint;
+
+import java.util.Arrays;
+
+/**
+ * Reachability index answering if two nodes share a known ancestor.
+ * <p>
+ * For every node it keeps the sorted set of the roots (nodes without parents) it descends from,
+ * a root being its own root. Two nodes share an ancestor (a node being considered an ancestor of
+ * itself) if and only if their root sets intersect, since every common ancestor has at least one
+ * root above it. A node having a single parent, or inheriting the same roots as one of its
+ * parents, shares the root set of that parent instead of copying it.
+ * <p>
+ * The index can't be built for graphs having cycles (nodes of a cycle may have no root) or when
+ * the root sets exceed the configured number of entries, in which case it is marked as unavailable.
+ */
+public final class AncestorIndex implements MemoryFootprint {
+    private static final long NODE_OVERHEAD_BYTES = 2L * Integer.BYTES;
+
+    private final int[] rootsFrom;
+    private final int[] rootsTo;
+    private final int[] roots;
+    private final int compactEntriesCount;
+    private final long buildTimeMillis;
+    private final String unavailableReason;
+
+    private AncestorIndex(final int[] rootsFrom, final int[] rootsTo, final int[] roots, final int compactEntriesCount,
+                          final long buildTimeMillis, final String unavailableReason) {
+        this.rootsFrom = rootsFrom;
+        this.rootsTo = rootsTo;
+        this.roots = roots;
+        this.compactEntriesCount = compactEntriesCount;
+        this.buildTimeMillis = buildTimeMillis;
+        this.unavailableReason = unavailableReason;
+    }
+
+    /**
+     * Build the index of the given graph.
+     *
+     * @param graph      the graph
+     * @param maxEntries the maximum number of root entries the index may hold
+     * @return the index, unavailable if the graph has cycles or the index is too large
+     */
+    public static AncestorIndex build(final Graph graph, final long maxEntries) {
+        final long start = System.currentTimeMillis();
+        final int nodesCount = graph.getNodesCount();
+
+        final int[] order = topologicalOrder(graph);
+        if (order == null) {
+            return unavailable("graph has cycles", start);
+        }
+
+        final RootSets rootSets = new RootSets(graph, new int[nodesCount], new int[nodesCount],
+                new int[(int) Math.min(Math.max(16, nodesCount), maxEntries)], 0, maxEntries);
+        for (final int node : order) {
+            if (!rootSets.add(node)) {
+                return unavailable(String.format("index exceeds %s entries", maxEntries), start);
+            }
+        }
+        return rootSets.toIndex(start);
+    }
+
+    /**
+     * Derive the index of the next version of a graph from the index of its previous version.
+     * <p>
+     * Only the root sets of the changed nodes and of their descendants can differ between the versions,
+     * so the root sets of the other nodes are kept, remapped to the new dense indexes, and the affected
+     * nodes are visited in topological order to append their new root sets. The root sets left behind by
+     * the affected nodes stay in the index as unreferenced entries, so the index is built again once they
+     * outnumber the referenced ones or when most of the nodes are affected.
+     *
+     * @param previous   the index of the previous version of the graph
+     * @param change     the change of the graph
+     * @param maxEntries the maximum number of root entries the index may hold
+     * @return the index of the next version, unavailable if the graph has cycles or the index is too large
+     */
+    public static AncestorIndex update(final AncestorIndex previous, final GraphChange change, final long maxEntries) {
+        final long start = System.currentTimeMillis();
+        final Graph graph = change.getGraph();
+        final int nodesCount = graph.getNodesCount();
+        if (!previous.isAvailable()) {
+            return build(graph, maxEntries);
+        }
+
+        final int[] affected = affectedNodes(graph, change.getChangedNodes());
+        if (affected == null) {
+            return unavailable("graph has cycles", start);
+        }
+        if (affected.length > nodesCount / 2) {
+            return build(graph, maxEntries);
+        }
+
+        final int[] rootsFrom = new int[nodesCount];
+        final int[] rootsTo = new int[nodesCount];
+        for (int node = 0; node < nodesCount; node++) {
+            final int previousNode = change.previousIndexOf(node);
+            if (previousNode >= 0) {
+                rootsFrom[node] = previous.rootsFrom[previousNode];
+                rootsTo[node] = previous.rootsTo[previousNode];
+            }
+        }
+        // the roots of the kept root sets are never removed, since removing a root changes its children
+        final int[] roots = new int[Math.max(16, previous.roots.length + affected.length)];
+        for (int entry = 0; entry < previous.roots.length; entry++) {
+            roots[entry] = change.currentIndexOf(previous.roots[entry]);
+        }
+
+        final RootSets rootSets = new RootSets(graph, rootsFrom, rootsTo, roots, previous.roots.length, maxEntries);
+        for (final int node : affected) {
+            if (!rootSets.add(node)) {
+                return build(graph, maxEntries);
+            }
+        }
+        if (rootSets.size > 2L * Math.max(nodesCount, previous.compactEntriesCount)) {
+            return build(graph, maxEntries);
+        }
+        return rootSets.toIndex(start, previous.compactEntriesCount);
+    }
+
+    /**
+     * Collect the changed nodes and their descendants, ordered so that every node comes after its
+     * affected parents, with Kahn's algorithm over the children of the affected nodes.
+     *
+     * @param graph        the graph
+     * @param changedNodes the changed nodes
+     * @return the affected nodes in topological order or null if they are part of a cycle
+     */
+    private static int[] affectedNodes(final Graph graph, final int[] changedNodes) {
+        final int nodesCount = graph.getNodesCount();
+
+        final ChildrenIndex children = graph.getIndex(ChildrenIndex.class, ChildrenIndex::build);
+
+        // the descendants of the changed nodes
+        final boolean[] affected = new boolean[nodesCount];
+        final int[] queue = new int[nodesCount];
+        int tail = 0;
+        for (final int node : changedNodes) {
+            affected[node] = true;
+            queue[tail++] = node;
+        }
+        for (int head = 0; head < tail; head++) {
+            final int node = queue[head];
+            for (int position = children.getChildrenFrom(node); position < children.getChildrenTo(node); position++) {
+                if (!affected[children.getChild(position)]) {
+                    affected[children.getChild(position)] = true;
+                    queue[tail++] = children.getChild(position);
+                }
+            }
+        }
+        final int affectedCount = tail;
+
+        // order them by the number of their affected parents not ordered yet
+        final int[] pendingParents = new int[nodesCount];
+        for (int index = 0; index < affectedCount; index++) {
+            final int node = queue[index];
+            for (int position = graph.getParentsFrom(node); position < graph.getParentsTo(node); position++) {
+                if (affected[graph.getParent(position)]) {
+                    pendingParents[node]++;
+                }
+            }
+        }
+        final int[] order = new int[affectedCount];
+        int ordered = 0;
+        for (int index = 0; index < affectedCount; index++) {
+            if (pendingParents[queue[index]] == 0) {
+                order[ordered++] = queue[index];
+            }
+        }
+        for (int head = 0; head < ordered; head++) {
+            final int node = order[head];
+            for (int position = children.getChildrenFrom(node); position < children.getChildrenTo(node); position++) {
+                if (--pendingParents[children.getChild(position)] == 0) {
+                    order[ordered++] = children.getChild(position);
+                }
+            }
+        }
+        return ordered == affectedCount ? order : null;
+    }
+
+    private static AncestorIndex unavailable(final String reason, final long start) {
+        return new AncestorIndex(new int[0], new int[0], new int[0], 0, System.currentTimeMillis() - start, reason);
+    }
+
+    /**
+     * Order the nodes so that every node comes after all of its parents,
+     * using an iterative depth first search over the parents.
+     *
+     * @param graph the graph
+     * @return the dense node indexes in topological order or null if the graph has cycles
+     */
+    private static int[] topologicalOrder(final Graph graph) {
+        final int nodesCount = graph.getNodesCount();
+        final int[] order = new int[nodesCount];
+        final byte[] state = new byte[nodesCount];
+        final int[] stackNodes = new int[nodesCount];
+        final int[] stackPositions = new int[nodesCount];
+        int ordered = 0;
+
+        for (int start = 0; start < nodesCount; start++) {
+            if (state[start] != 0) {
+                continue;
+            }
+            int depth = 0;
+            stackNodes[0] = start;
+            stackPositions[0] = graph.getParentsFrom(start);
+            state[start] = 1;
+
+            while (depth >= 0) {
+                final int node = stackNodes[depth];
+                if (stackPositions[depth] < graph.getParentsTo(node)) {
+                    final int parent = graph.getParent(stackPositions[depth]++);
+                    if (state[parent] == 1) {
+                        return null;
+                    }
+                    if (state[parent] == 0) {
+                        state[parent] = 1;
+                        depth++;
+                        stackNodes[depth] = parent;
+                        stackPositions[depth] = graph.getParentsFrom(parent);
+                    }
+                } else {
+                    state[node] = 2;
+                    order[ordered++] = node;
+                    depth--;
+                }
+            }
+        }
+        return order;
+    }
+
+    /**
+     * The root sets being written, every node getting the union of the root sets of its parents,
+     * shared with one of its parents when it adds no root to it.
+     */
+    private static final class RootSets {
+        private final Graph graph;
+        private final int[] rootsFrom;
+        private final int[] rootsTo;
+        private final long maxEntries;
+        private int[] roots;
+        private int size;
+        private int[] merged = new int[16];
+        private int[] buffer = new int[16];
+
+        private RootSets(final Graph graph, final int[] rootsFrom, final int[] rootsTo, final int[] roots,
+                         final int size, final long maxEntries) {
+            this.graph = graph;
+            this.rootsFrom = rootsFrom;
+            this.rootsTo = rootsTo;
+            this.roots = roots;
+            this.size = size;
+            this.maxEntries = maxEntries;
+        }
+
+        /**
+         * Write the root set of the node, whose parents must have their root sets written.
+         *
+         * @return false if the root set exceeds the maximum number of entries
+         */
+        private boolean add(final int node) {
+            final int parentsFrom = graph.getParentsFrom(node);
+            final int parentsTo = graph.getParentsTo(node);
+
+            if (parentsFrom == parentsTo) {
+                // the node is a root
+                if (size + 1 > maxEntries) {
+                    return false;
+                }
+                if (size == roots.length) {
+                    roots = Arrays.copyOf(roots, grow(roots.length, size + 1));
+                }
+                rootsFrom[node] = size;
+                roots[size++] = node;
+                rootsTo[node] = size;
+                return true;
+            }
+
+            // start from the roots of the first parent and share them while nothing new is added
+            int sharedWith = graph.getParent(parentsFrom);
+            int mergedSize = 0;
+            for (int position = parentsFrom + 1; position < parentsTo; position++) {
+                final int parent = graph.getParent(position);
+                final int[] source = sharedWith >= 0 ? roots : merged;
+                final int sourceFrom = sharedWith >= 0 ? rootsFrom[sharedWith] : 0;
+                final int sourceTo = sharedWith >= 0 ? rootsTo[sharedWith] : mergedSize;
+                final int maxSize = sourceTo - sourceFrom + rootsTo[parent] - rootsFrom[parent];
+                if (buffer.length < maxSize) {
+                    buffer = new int[Math.max(maxSize, buffer.length * 2)];
+                }
+                final int bufferSize = union(source, sourceFrom, sourceTo, roots, rootsFrom[parent], rootsTo[parent], buffer);
+
+                if (bufferSize == rootsTo[parent] - rootsFrom[parent]) {
+                    // the union is exactly the root set of this parent
+                    sharedWith = parent;
+                } else if (bufferSize != sourceTo - sourceFrom) {
+                    final int[] swap = merged;
+                    merged = buffer;
+                    buffer = swap;
+                    mergedSize = bufferSize;
+                    sharedWith = -1;
+                }
+            }
+
+            if (sharedWith >= 0) {
+                rootsFrom[node] = rootsFrom[sharedWith];
+                rootsTo[node] = rootsTo[sharedWith];
+            } else {
+                if (size + mergedSize > maxEntries) {
+                    return false;
+                }
+                if (size + mergedSize > roots.length) {
+                    roots = Arrays.copyOf(roots, grow(roots.length, size + mergedSize));
+                }
+                System.arraycopy(merged, 0, roots, size, mergedSize);
+                rootsFrom[node] = size;
+                size += mergedSize;
+                rootsTo[node] = size;
+            }
+            return true;
+        }
+
+        private AncestorIndex toIndex(final long start) {
+            return toIndex(start, size);
+        }
+
+        private AncestorIndex toIndex(final long start, final int compactEntriesCount) {
+            return new AncestorIndex(rootsFrom, rootsTo, Arrays.copyOf(roots, size), compactEntriesCount,
+                    System.currentTimeMillis() - start, null);
+        }
+    }
+
+    /**
+     * Merge two sorted sets into the target array.
+     *
+     * @return the size of the union
+     */
+    private static int union(final int[] first, int firstFrom, final int firstTo,
+                             final int[] second, int secondFrom, final int secondTo, final int[] target) {
+        int size = 0;
+        while (firstFrom < firstTo && secondFrom < secondTo) {
+            if (first[firstFrom] < second[secondFrom]) {
+                target[size++] = first[firstFrom++];
+            } else if (first[firstFrom] > second[secondFrom]) {
+                target[size++] = second[secondFrom++];
+            } else {
+                target[size++] = first[firstFrom++];
+                secondFrom++;
+            }
+        }
+        while (firstFrom < firstTo) {
+            target[size++] = first[firstFrom++];
+        }
+        while (secondFrom < secondTo) {
+            target[size++] = second[secondFrom++];
+        }
+        return size;
+    }
+
+    private static int grow(final int length, final int required) {
+        return (int) Math.min(Math.max(required, (long) length + (length >> 1)), Integer.MAX_VALUE - 8);
+    }
+
+    public boolean isAvailable() {
+        return unavailableReason == null;
+    }
+
+    public String getUnavailableReason() {
+        return unavailableReason;
+    }
+
+    public long getBuildTimeMillis() {
+        return buildTimeMillis;
+    }
+
+    public int getEntriesCount() {
+        return roots.length;
+    }
+
+    @Override
+    public long getMemoryBytes() {
+        return (long) roots.length * Integer.BYTES + rootsFrom.length * NODE_OVERHEAD_BYTES;
+    }
+
+    /**
+     * Verify if the given nodes share at least one known ancestor.
+     * Must be called only on an available index.
+     *
+     * @param firstNode  the dense index of the first node
+     * @param secondNode the dense index of the second node
+     * @return true if the root sets of the nodes intersect, false otherwise
+     */
+    public boolean haveCommonAncestor(final int firstNode, final int secondNode) {
+        int first = rootsFrom[firstNode];
+        int second = rootsFrom[secondNode];
+        if (first == second) {
+            return true;
+        }
+        final int firstTo = rootsTo[firstNode];
+        final int secondTo = rootsTo[secondNode];
+        while (first < firstTo && second < secondTo) {
+            if (roots[first] == roots[second]) {
+                return true;
+            }
+            if (roots[first] < roots[second]) {
+                first++;
+            } else {
+                second++;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,79 @@
+package com.rl.graphapi.service.index;
+
+import com.rl.graphapi.service.model.Graph;
+import com.rl.graphapi.service.model.MemoryFootprint;
+
+/**
+ * Child adjacency of a graph, in CSR form like the parents held by the graph: the children of the
+ * node with index {@code i} are the dense indexes stored in {@code children} between
+ * {@code childOffsets[i]} (inclusive) and {@code childOffsets[i + 1]} (exclusive), sorted ascending.
+ */
+public final class ChildrenIndex implements MemoryFootprint {
+    private final int[] childOffsets;
+    private final int[] children;
+
+    private ChildrenIndex(final int[] childOffsets, final int[] children) {
+        this.childOffsets = childOffsets;
+        this.children = children;
+    }
+
+    /**
+     * Build the children of every node with a counting sort of the edges by parent. The nodes being
+     * visited in ascending order, the children of every parent come out sorted.
+     *
+     * @param graph the graph
+     * @return the index
+     */
+    public static ChildrenIndex build(final Graph graph) {
+        final int nodesCount = graph.getNodesCount();
+        final int[] childOffsets = new int[nodesCount + 1];
+        for (int position = 0; position < graph.getEdgesCount(); position++) {
+            childOffsets[graph.getParent(position) + 1]++;
+        }
+        for (int node = 0; node < nodesCount; node++) {
+            childOffsets[node + 1] += childOffsets[node];
+        }
+        final int[] children = new int[graph.getEdgesCount()];
+        final int[] cursors = new int[nodesCount];
+        System.arraycopy(childOffsets, 0, cursors, 0, nodesCount);
+        for (int node = 0; node < nodesCount; node++) {
+            for (int position = graph.getParentsFrom(node); position < graph.getParentsTo(node); position++) {
+                children[cursors[graph.getParent(position)]++] = node;
+            }
+        }
+        return new ChildrenIndex(childOffsets, children);
+    }
+
+    public int getChildrenCount(final int node) {
+        return childOffsets[node + 1] - childOffsets[node];
+    }
+
+    /**
+     * @param node the dense index of the node
+     * @return the position in the children array of the first child of the node (inclusive)
+     */
+    public int getChildrenFrom(final int node) {
+        return childOffsets[node];
+    }
+
+    /**
+     * @param node the dense index of the node
+     * @return the position in the children array after the last child of the node (exclusive)
+     */
+    public int getChildrenTo(final int node) {
+        return childOffsets[node + 1];
+    }
+
+    /**
+     * @param position the position in the children array
+     * @return the dense index of the child stored at the given position
+     */
+    public int getChild(final int position) {
+        return children[position];
+    }
+
+    @Override
+    public long getMemoryBytes() {
+        return ((long) childOffsets.length + children.length) * Integer.BYTES;
+    }
+}
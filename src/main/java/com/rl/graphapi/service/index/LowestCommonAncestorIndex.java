@@ -0,0 +1,177 @@
+package com.rl.graphapi.service.index;
+
+import com.rl.graphapi.service.model.Graph;
+import com.rl.graphapi.service.model.MemoryFootprint;
+
+import java.util.Arrays;
+
+/**
+ * Lowest common ancestor index of the graphs shaped as forests, every node having at most one parent.
+ * <p>
+ * For every node it keeps its depth (the hops to its root) and a sparse table of its ancestors: the
+ * entry of level {@code k} is the ancestor {@code 2^k} hops above the node, or {@code -1}. The lowest
+ * common ancestor of two nodes is found by lifting the deeper node to the depth of the other one and
+ * then lifting both while their ancestors differ, in {@code O(log depth)} steps. In a forest the lowest
+ * common ancestor is unique and the hop distances are the differences of depths.
+ * <p>
+ * The index can't be built for graphs having nodes with more parents or cycles, or when the sparse
+ * table exceeds the configured number of entries, in which case it is marked as unavailable.
+ */
+public final class LowestCommonAncestorIndex implements MemoryFootprint {
+    private static final int NO_ANCESTOR = -1;
+
+    private final int[] depths;
+    private final int[][] ancestors;
+    private final long buildTimeMillis;
+    private final String unavailableReason;
+
+    private LowestCommonAncestorIndex(final int[] depths, final int[][] ancestors,
+                                      final long buildTimeMillis, final String unavailableReason) {
+        this.depths = depths;
+        this.ancestors = ancestors;
+        this.buildTimeMillis = buildTimeMillis;
+        this.unavailableReason = unavailableReason;
+    }
+
+    /**
+     * Build the index of the given graph.
+     *
+     * @param graph      the graph
+     * @param maxEntries the maximum number of sparse table entries the index may hold
+     * @return the index, unavailable if the graph is not a forest or the index is too large
+     */
+    public static LowestCommonAncestorIndex build(final Graph graph, final long maxEntries) {
+        final long start = System.currentTimeMillis();
+        final int nodesCount = graph.getNodesCount();
+
+        final int[] parents = new int[nodesCount];
+        for (int node = 0; node < nodesCount; node++) {
+            final int parentsCount = graph.getParentsCount(node);
+            if (parentsCount > 1) {
+                return unavailable("graph is not a forest", start);
+            }
+            parents[node] = parentsCount == 0 ? NO_ANCESTOR : graph.getParent(graph.getParentsFrom(node));
+        }
+
+        final int[] depths = depths(parents);
+        if (depths == null) {
+            return unavailable("graph has cycles", start);
+        }
+
+        int maxDepth = 0;
+        for (final int depth : depths) {
+            maxDepth = Math.max(maxDepth, depth);
+        }
+        final int levels = 32 - Integer.numberOfLeadingZeros(Math.max(1, maxDepth));
+        if ((long) levels * nodesCount > maxEntries) {
+            return unavailable(String.format("index exceeds %s entries", maxEntries), start);
+        }
+
+        final int[][] ancestors = new int[levels][];
+        ancestors[0] = parents;
+        for (int level = 1; level < levels; level++) {
+            final int[] previous = ancestors[level - 1];
+            final int[] current = new int[nodesCount];
+            for (int node = 0; node < nodesCount; node++) {
+                current[node] = previous[node] == NO_ANCESTOR ? NO_ANCESTOR : previous[previous[node]];
+            }
+            ancestors[level] = current;
+        }
+        return new LowestCommonAncestorIndex(depths, ancestors, System.currentTimeMillis() - start, null);
+    }
+
+    private static LowestCommonAncestorIndex unavailable(final String reason, final long start) {
+        return new LowestCommonAncestorIndex(new int[0], new int[0][], System.currentTimeMillis() - start, reason);
+    }
+
+    /**
+     * Compute the depth of every node by climbing to the first node of known depth
+     * and assigning the depths on the way back.
+     *
+     * @param parents the parent of every node or {@link #NO_ANCESTOR} for the roots
+     * @return the depths of the nodes or null if the parents form a cycle
+     */
+    private static int[] depths(final int[] parents) {
+        final int unknown = -1;
+        final int climbing = -2;
+        final int[] depths = new int[parents.length];
+        Arrays.fill(depths, unknown);
+        final int[] path = new int[parents.length];
+
+        for (int start = 0; start < parents.length; start++) {
+            int length = 0;
+            int node = start;
+            while (node != NO_ANCESTOR && depths[node] == unknown) {
+                depths[node] = climbing;
+                path[length++] = node;
+                node = parents[node];
+            }
+            if (node != NO_ANCESTOR && depths[node] == climbing) {
+                return null;
+            }
+            int depth = node == NO_ANCESTOR ? -1 : depths[node];
+            while (length > 0) {
+                depths[path[--length]] = ++depth;
+            }
+        }
+        return depths;
+    }
+
+    public boolean isAvailable() {
+        return unavailableReason == null;
+    }
+
+    public String getUnavailableReason() {
+        return unavailableReason;
+    }
+
+    public long getBuildTimeMillis() {
+        return buildTimeMillis;
+    }
+
+    @Override
+    public long getMemoryBytes() {
+        return ((long) ancestors.length + 1) * depths.length * Integer.BYTES;
+    }
+
+    /**
+     * @param node the dense index of the node
+     * @return the hops from the node to its root
+     */
+    public int getDepth(final int node) {
+        return depths[node];
+    }
+
+    /**
+     * Find the lowest common ancestor of the given nodes, a node being considered an ancestor of itself.
+     * Must be called only on an available index.
+     *
+     * @param firstNode  the dense index of the first node
+     * @param secondNode the dense index of the second node
+     * @return the dense index of the lowest common ancestor or a negative value if the nodes are in different trees
+     */
+    public int lowestCommonAncestor(final int firstNode, final int secondNode) {
+        int deeper = depths[firstNode] >= depths[secondNode] ? firstNode : secondNode;
+        int other = deeper == firstNode ? secondNode : firstNode;
+
+        // lift the deeper node to the depth of the other one
+        int difference = depths[deeper] - depths[other];
+        for (int level = 0; difference != 0; level++, difference >>>= 1) {
+            if ((difference & 1) != 0) {
+                deeper = ancestors[level][deeper];
+            }
+        }
+        if (deeper == other) {
+            return deeper;
+        }
+
+        // lift both while their ancestors differ, ending right below the lowest common ancestor
+        for (int level = ancestors.length - 1; level >= 0; level--) {
+            if (ancestors[level][deeper] != ancestors[level][other]) {
+                deeper = ancestors[level][deeper];
+                other = ancestors[level][other];
+            }
+        }
+        return ancestors[0][deeper];
+    }
+}
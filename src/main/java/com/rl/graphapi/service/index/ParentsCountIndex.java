@@ -0,0 +1,261 @@
+package com.rl.graphapi.service.index;
+
+import com.rl.graphapi.service.model.Graph;
+import com.rl.graphapi.service.model.GraphChange;
+import com.rl.graphapi.service.model.MemoryFootprint;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Secondary index of the nodes by their number of parents (in-degree).
+ * <p>
+ * The dense node indexes are bucketed by parents count with a counting sort: the nodes having
+ * {@code k} parents are stored in {@code nodes} between {@code bucketOffsets[k]} (inclusive) and
+ * {@code bucketOffsets[k + 1]} (exclusive), in ascending order of their ids. Since the buckets
+ * are adjacent, the nodes of any parents count range are a single contiguous slice, so the
+ * queries cost time proportional to the result size.
+ */
+public final class ParentsCountIndex implements MemoryFootprint {
+    private final int[] nodes;
+    private final int[] bucketOffsets;
+
+    private ParentsCountIndex(final int[] nodes, final int[] bucketOffsets) {
+        this.nodes = nodes;
+        this.bucketOffsets = bucketOffsets;
+    }
+
+    public static ParentsCountIndex build(final Graph graph) {
+        final int nodesCount = graph.getNodesCount();
+        int maxParentsCount = 0;
+        for (int index = 0; index < nodesCount; index++) {
+            maxParentsCount = Math.max(maxParentsCount, graph.getParentsCount(index));
+        }
+
+        final int[] bucketOffsets = new int[maxParentsCount + 2];
+        for (int index = 0; index < nodesCount; index++) {
+            bucketOffsets[graph.getParentsCount(index) + 1]++;
+        }
+        for (int parentsCount = 0; parentsCount <= maxParentsCount; parentsCount++) {
+            bucketOffsets[parentsCount + 1] += bucketOffsets[parentsCount];
+        }
+
+        final int[] nodes = new int[nodesCount];
+        final int[] cursors = new int[maxParentsCount + 1];
+        System.arraycopy(bucketOffsets, 0, cursors, 0, maxParentsCount + 1);
+        for (int index = 0; index < nodesCount; index++) {
+            nodes[cursors[graph.getParentsCount(index)]++] = index;
+        }
+        return new ParentsCountIndex(nodes, bucketOffsets);
+    }
+
+    /**
+     * Derive the index of the next version of a graph from the index of its previous version. The nodes
+     * left unchanged keep their buckets, remapped to their new dense indexes, which keeps every bucket
+     * sorted, and only the changed nodes are bucketed again and merged into their buckets.
+     *
+     * @param previous the index of the previous version of the graph
+     * @param change   the change of the graph
+     * @return the index of the next version of the graph
+     */
+    public static ParentsCountIndex update(final ParentsCountIndex previous, final GraphChange change) {
+        final Graph graph = change.getGraph();
+        final int[] changedNodes = change.getChangedNodes();
+
+        int maxParentsCount = 0;
+        for (int bucket = 0; bucket <= previous.getMaxParentsCount(); bucket++) {
+            for (int position = previous.bucketOffsets[bucket]; position < previous.bucketOffsets[bucket + 1]; position++) {
+                if (isKept(previous.nodes[position], change)) {
+                    maxParentsCount = bucket;
+                    break;
+                }
+            }
+        }
+        for (final int node : changedNodes) {
+            maxParentsCount = Math.max(maxParentsCount, graph.getParentsCount(node));
+        }
+
+        // bucket the changed nodes, keeping them ascending within every bucket
+        final int[] changedOffsets = new int[maxParentsCount + 2];
+        for (final int node : changedNodes) {
+            changedOffsets[graph.getParentsCount(node) + 1]++;
+        }
+        for (int parentsCount = 0; parentsCount <= maxParentsCount; parentsCount++) {
+            changedOffsets[parentsCount + 1] += changedOffsets[parentsCount];
+        }
+        final int[] changedBuckets = new int[changedNodes.length];
+        final int[] cursors = Arrays.copyOf(changedOffsets, maxParentsCount + 1);
+        for (final int node : changedNodes) {
+            changedBuckets[cursors[graph.getParentsCount(node)]++] = node;
+        }
+
+        // merge the kept nodes of every previous bucket with the changed nodes of the same bucket
+        final int[] nodes = new int[graph.getNodesCount()];
+        final int[] bucketOffsets = new int[maxParentsCount + 2];
+        int size = 0;
+        for (int parentsCount = 0; parentsCount <= maxParentsCount; parentsCount++) {
+            bucketOffsets[parentsCount] = size;
+            int position = parentsCount <= previous.getMaxParentsCount() ? previous.bucketOffsets[parentsCount] : 0;
+            final int to = parentsCount <= previous.getMaxParentsCount() ? previous.bucketOffsets[parentsCount + 1] : 0;
+            int changedPosition = changedOffsets[parentsCount];
+            final int changedTo = changedOffsets[parentsCount + 1];
+
+            while (position < to || changedPosition < changedTo) {
+                if (position < to && !isKept(previous.nodes[position], change)) {
+                    position++;
+                } else if (position < to && (changedPosition == changedTo
+                        || change.currentIndexOf(previous.nodes[position]) < changedBuckets[changedPosition])) {
+                    nodes[size++] = change.currentIndexOf(previous.nodes[position++]);
+                } else {
+                    nodes[size++] = changedBuckets[changedPosition++];
+                }
+            }
+        }
+        bucketOffsets[maxParentsCount + 1] = size;
+        return new ParentsCountIndex(nodes, bucketOffsets);
+    }
+
+    /**
+     * @return true if the node of the previous version is in the next version with the same parents
+     */
+    private static boolean isKept(final int previousNode, final GraphChange change) {
+        final int node = change.currentIndexOf(previousNode);
+        return node >= 0 && !change.isChanged(node);
+    }
+
+    public int getMaxParentsCount() {
+        return bucketOffsets.length - 2;
+    }
+
+    /**
+     * @param minParents the minimum number of parents (inclusive)
+     * @return the first position of the nodes having at least the given number of parents
+     */
+    public int from(final int minParents) {
+        return bucketOffsets[Math.max(0, Math.min(minParents, bucketOffsets.length - 1))];
+    }
+
+    /**
+     * @param maxParents the maximum number of parents (inclusive)
+     * @return the position after the last node having at most the given number of parents
+     */
+    public int to(final int maxParents) {
+        return maxParents < 0 ? 0 : bucketOffsets[Math.min(maxParents, bucketOffsets.length - 2) + 1];
+    }
+
+    /**
+     * Return the position following the given node in the bucket of the given parents count,
+     * where a scan of the index resumes after that node.
+     *
+     * @param graph        the indexed graph
+     * @param parentsCount the number of parents of the node
+     * @param nodeId       the node id
+     * @return the position after the node, or after the nodes having smaller ids if the node is not in the bucket
+     */
+    public int positionAfter(final Graph graph, final int parentsCount, final int nodeId) {
+        if (parentsCount < 0) {
+            return 0;
+        }
+        if (parentsCount > getMaxParentsCount()) {
+            return nodes.length;
+        }
+        int low = bucketOffsets[parentsCount];
+        int high = bucketOffsets[parentsCount + 1];
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (graph.getNodeId(nodes[middle]) <= nodeId) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @param position the position in the index
+     * @return the dense index of the node stored at the given position
+     */
+    public int getNode(final int position) {
+        return nodes[position];
+    }
+
+    public int count(final int minParents, final int maxParents) {
+        return Math.max(0, to(maxParents) - from(minParents));
+    }
+
+    @Override
+    public long getMemoryBytes() {
+        return ((long) nodes.length + bucketOffsets.length) * Integer.BYTES;
+    }
+
+    /**
+     * Return a read only set view of the ids of the nodes having a number of parents in the given range.
+     * The view is backed by the index, nothing is copied.
+     *
+     * @param graph      the indexed graph
+     * @param minParents the minimum number of parents (inclusive)
+     * @param maxParents the maximum number of parents (inclusive)
+     * @return the node ids
+     */
+    public Set<Integer> nodeIds(final Graph graph, final int minParents, final int maxParents) {
+        return new NodeIdsView(graph, minParents, maxParents);
+    }
+
+    private final class NodeIdsView extends AbstractSet<Integer> {
+        private final Graph graph;
+        private final int minParents;
+        private final int maxParents;
+        private final int from;
+        private final int to;
+
+        private NodeIdsView(final Graph graph, final int minParents, final int maxParents) {
+            this.graph = graph;
+            this.minParents = minParents;
+            this.maxParents = maxParents;
+            this.from = from(minParents);
+            this.to = Math.max(from, to(maxParents));
+        }
+
+        @Override
+        public Iterator<Integer> iterator() {
+            return new Iterator<Integer>() {
+                private int position = from;
+
+                @Override
+                public boolean hasNext() {
+                    return position < to;
+                }
+
+                @Override
+                public Integer next() {
+                    if (position >= to) {
+                        throw new NoSuchElementException();
+                    }
+                    return graph.getNodeId(nodes[position++]);
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+
+        @Override
+        public boolean contains(final Object nodeId) {
+            if (!(nodeId instanceof Integer)) {
+                return false;
+            }
+            final int index = graph.indexOf((Integer) nodeId);
+            if (index < 0) {
+                return false;
+            }
+            final int parentsCount = graph.getParentsCount(index);
+            return parentsCount >= minParents && parentsCount <= maxParents;
+        }
+    }
+}
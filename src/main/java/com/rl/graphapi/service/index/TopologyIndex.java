@@ -0,0 +1,223 @@
+package com.rl.graphapi.service.index;
+
+import com.rl.graphapi.service.model.Graph;
+import com.rl.graphapi.service.model.MemoryFootprint;
+
+/**
+ * Topological summary of a graph, built when the graph is stored.
+ * <p>
+ * For every node it keeps the weakly connected component it belongs to, the edges being taken
+ * regardless of their direction, and its topological depth: 0 for the roots (nodes without parents)
+ * and otherwise one more than the largest depth of its parents, so the depth of a node is the length
+ * of the longest path from a root down to it and every ancestor of a node is strictly shallower.
+ * The nodes lying on a cycle, or below one, have no depth and mark their component as cyclic.
+ * <p>
+ * Two nodes of different components share no ancestor. Two nodes of an acyclic component having a
+ * single root always share that root, since every node of an acyclic component descends from a root.
+ */
+public final class TopologyIndex implements MemoryFootprint {
+    public static final int NO_DEPTH = -1;
+
+    private final int[] components;
+    private final int[] depths;
+    private final int[] componentSizes;
+    private final int[] componentRoots;
+    private final boolean[] cyclicComponents;
+    private final int rootsCount;
+    private final int maxDepth;
+    private final int cyclicNodesCount;
+    private final long buildTimeMillis;
+
+    private TopologyIndex(final int[] components, final int[] depths, final int[] componentSizes, final int[] componentRoots,
+                          final boolean[] cyclicComponents, final int rootsCount, final int maxDepth,
+                          final int cyclicNodesCount, final long buildTimeMillis) {
+        this.components = components;
+        this.depths = depths;
+        this.componentSizes = componentSizes;
+        this.componentRoots = componentRoots;
+        this.cyclicComponents = cyclicComponents;
+        this.rootsCount = rootsCount;
+        this.maxDepth = maxDepth;
+        this.cyclicNodesCount = cyclicNodesCount;
+        this.buildTimeMillis = buildTimeMillis;
+    }
+
+    /**
+     * Build the index of the given graph: the components with a union-find over the edges and the
+     * depths with Kahn's algorithm over the children of the nodes, both linear in the graph size.
+     *
+     * @param graph the graph
+     * @return the index
+     */
+    public static TopologyIndex build(final Graph graph) {
+        final long start = System.currentTimeMillis();
+        final int nodesCount = graph.getNodesCount();
+
+        // weakly connected components, numbered in ascending order of their first node
+        final int[] unionFind = new int[nodesCount];
+        for (int node = 0; node < nodesCount; node++) {
+            unionFind[node] = node;
+        }
+        for (int node = 0; node < nodesCount; node++) {
+            for (int position = graph.getParentsFrom(node); position < graph.getParentsTo(node); position++) {
+                final int nodeSet = find(unionFind, node);
+                final int parentSet = find(unionFind, graph.getParent(position));
+                if (nodeSet != parentSet) {
+                    unionFind[Math.max(nodeSet, parentSet)] = Math.min(nodeSet, parentSet);
+                }
+            }
+        }
+        final int[] components = new int[nodesCount];
+        int componentsCount = 0;
+        for (int node = 0; node < nodesCount; node++) {
+            final int set = find(unionFind, node);
+            components[node] = set == node ? componentsCount++ : components[set];
+        }
+
+        // depths, the nodes left without a depth being on or below a cycle
+        final ChildrenIndex children = graph.getIndex(ChildrenIndex.class, ChildrenIndex::build);
+        final int[] depths = new int[nodesCount];
+        final int[] pendingParents = new int[nodesCount];
+        final int[] queue = unionFind;
+        int tail = 0;
+        for (int node = 0; node < nodesCount; node++) {
+            pendingParents[node] = graph.getParentsCount(node);
+            depths[node] = NO_DEPTH;
+            if (pendingParents[node] == 0) {
+                depths[node] = 0;
+                queue[tail++] = node;
+            }
+        }
+        final int rootsCount = tail;
+        int maxDepth = 0;
+        for (int head = 0; head < tail; head++) {
+            final int node = queue[head];
+            maxDepth = Math.max(maxDepth, depths[node]);
+            for (int position = children.getChildrenFrom(node); position < children.getChildrenTo(node); position++) {
+                final int child = children.getChild(position);
+                depths[child] = Math.max(depths[child], depths[node] + 1);
+                if (--pendingParents[child] == 0) {
+                    queue[tail++] = child;
+                }
+            }
+        }
+        // the nodes never reached may hold the depths propagated by their reached parents
+        for (int node = 0; node < nodesCount; node++) {
+            if (pendingParents[node] != 0) {
+                depths[node] = NO_DEPTH;
+            }
+        }
+
+        final int[] componentSizes = new int[componentsCount];
+        final int[] componentRoots = new int[componentsCount];
+        final boolean[] cyclicComponents = new boolean[componentsCount];
+        for (int node = 0; node < nodesCount; node++) {
+            componentSizes[components[node]]++;
+            if (graph.getParentsCount(node) == 0) {
+                componentRoots[components[node]]++;
+            }
+            if (depths[node] == NO_DEPTH) {
+                cyclicComponents[components[node]] = true;
+            }
+        }
+        return new TopologyIndex(components, depths, componentSizes, componentRoots, cyclicComponents, rootsCount,
+                maxDepth, nodesCount - tail, System.currentTimeMillis() - start);
+    }
+
+    private static int find(final int[] unionFind, int node) {
+        while (unionFind[node] != node) {
+            // path halving
+            unionFind[node] = unionFind[unionFind[node]];
+            node = unionFind[node];
+        }
+        return node;
+    }
+
+    /**
+     * Answer whether two nodes share an ancestor when the topology alone tells it.
+     *
+     * @param firstNode  the dense index of the first node
+     * @param secondNode the dense index of the second node
+     * @return false if the nodes are in different components, true if they are in the same acyclic
+     * component having a single root, null if the ancestors have to be searched
+     */
+    public Boolean haveCommonAncestor(final int firstNode, final int secondNode) {
+        final int component = components[firstNode];
+        if (component != components[secondNode]) {
+            return false;
+        }
+        if (!cyclicComponents[component] && componentRoots[component] == 1) {
+            return true;
+        }
+        return null;
+    }
+
+    /**
+     * @param firstNode  the dense index of the first node
+     * @param secondNode the dense index of the second node
+     * @return true if the nodes are in the same weakly connected component
+     */
+    public boolean isSameComponent(final int firstNode, final int secondNode) {
+        return components[firstNode] == components[secondNode];
+    }
+
+    /**
+     * @param node the dense index of the node
+     * @return the number of the component of the node, from 0 in ascending order of the component first node
+     */
+    public int getComponent(final int node) {
+        return components[node];
+    }
+
+    /**
+     * @param node the dense index of the node
+     * @return the topological depth of the node or {@link #NO_DEPTH} if the node is on or below a cycle
+     */
+    public int getDepth(final int node) {
+        return depths[node];
+    }
+
+    public int getComponentsCount() {
+        return componentSizes.length;
+    }
+
+    public int getLargestComponentSize() {
+        int largest = 0;
+        for (final int size : componentSizes) {
+            largest = Math.max(largest, size);
+        }
+        return largest;
+    }
+
+    public int getRootsCount() {
+        return rootsCount;
+    }
+
+    /**
+     * @return the largest depth of the nodes having a depth
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public boolean hasCycles() {
+        return cyclicNodesCount > 0;
+    }
+
+    /**
+     * @return the number of nodes on or below a cycle
+     */
+    public int getCyclicNodesCount() {
+        return cyclicNodesCount;
+    }
+
+    public long getBuildTimeMillis() {
+        return buildTimeMillis;
+    }
+
+    @Override
+    public long getMemoryBytes() {
+        return ((long) components.length + depths.length + componentSizes.length + componentRoots.length) * Integer.BYTES
+                + cyclicComponents.length;
+    }
+}
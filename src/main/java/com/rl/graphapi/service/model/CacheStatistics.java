@@ -0,0 +1,17 @@
+package com.rl.graphapi.service.model;
+
+import lombok.Value;
+
+/**
+ * Size and counters of a cache, all zero when the cache is disabled.
+ */
+@Value
+public class CacheStatistics {
+    private final boolean enabled;
+    private final long maxEntries;
+    private final long size;
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+
+}
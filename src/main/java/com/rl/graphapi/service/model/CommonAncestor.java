@@ -0,0 +1,14 @@
+package com.rl.graphapi.service.model;
+
+import lombok.Value;
+
+/**
+ * A common ancestor of two nodes and its hop distance from each of them.
+ */
+@Value
+public class CommonAncestor {
+    private final int nodeId;
+    private final int firstNodeDistance;
+    private final int secondNodeDistance;
+
+}
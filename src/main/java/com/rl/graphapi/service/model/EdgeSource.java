@@ -0,0 +1,13 @@
+package com.rl.graphapi.service.model;
+
+import java.io.IOException;
+
+/**
+ * Source of graph edges, pushing the edges into the builder as they are read
+ * so that no intermediate edge collection is needed.
+ */
+@FunctionalInterface
+public interface EdgeSource {
+
+    void readInto(GraphBuilder graphBuilder) throws IOException;
+}
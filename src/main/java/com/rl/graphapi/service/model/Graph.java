@@ -1,37 +1,271 @@
 package com.rl.graphapi.service.model;
 
-import lombok.Value;
+import java.nio.IntBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
 
-import java.util.HashMap;
-import java.util.Map;
+/**
+ * Immutable graph stored in compressed sparse row (CSR) form.
+ * <p>
+ * Every node is addressed by a dense internal index {@code 0..nodesCount-1}, assigned in
+ * ascending order of the user node ids, so {@link #indexOf(int)} is a binary search over
+ * {@code nodeIds}. The parents of the node with index {@code i} are the dense indexes stored in
+ * {@code parents} between {@code parentOffsets[i]} (inclusive) and {@code parentOffsets[i + 1]}
+ * (exclusive), sorted ascending.
+ * <p>
+ * The arrays are held as {@link IntBuffer}s, wrapping heap arrays for the graphs created by
+ * {@link GraphBuilder} or memory mapped files for the graphs loaded by {@link GraphSnapshot}.
+ * Derived structures (indexes) computed from the immutable arrays are cached on the graph
+ * by {@link #getIndex(Class, Function)}.
+ * <p>
+ * A graph is changed by deriving its next version with {@link GraphChange#apply(Graph, GraphMutation)},
+ * so the readers holding a version never observe a partially applied change.
+ * <p>
+ * Graphs having the same content may share their body, the arrays and the cached indexes, under
+ * different ids: see {@link #share(Long)}.
+ */
+public final class Graph {
+    static final long INITIAL_VERSION = 1;
 
-@Value
-public class Graph {
-    private Long id;
-    private Map<Integer, Node> nodesHeap = new HashMap<>();
+    private final Long id;
+    private final long version;
+    private final IntBuffer nodeIds;
+    private final IntBuffer parentOffsets;
+    private final IntBuffer parents;
+    private final boolean mapped;
+    private final ConcurrentMap<Class<?>, IndexSlot> indexes;
 
-    public Graph(final Long id) {
+    Graph(final Long id, final int[] nodeIds, final int[] parentOffsets, final int[] parents) {
+        this(id, INITIAL_VERSION, IntBuffer.wrap(nodeIds), IntBuffer.wrap(parentOffsets), IntBuffer.wrap(parents), false);
+    }
+
+    Graph(final Long id, final long version, final IntBuffer nodeIds, final IntBuffer parentOffsets, final IntBuffer parents,
+          final boolean mapped) {
+        this(id, version, nodeIds, parentOffsets, parents, mapped, new ConcurrentHashMap<>());
+    }
+
+    private Graph(final Long id, final long version, final IntBuffer nodeIds, final IntBuffer parentOffsets, final IntBuffer parents,
+                  final boolean mapped, final ConcurrentMap<Class<?>, IndexSlot> indexes) {
         this.id = id;
+        this.version = version;
+        this.nodeIds = nodeIds;
+        this.parentOffsets = parentOffsets;
+        this.parents = parents;
+        this.mapped = mapped;
+        this.indexes = indexes;
+    }
+
+    /**
+     * Create a new graph having the same body as this one: the same arrays and the same cached indexes,
+     * built once for all the graphs sharing them. The indexes only depend on the content of the graph,
+     * so they are valid for every graph of the body.
+     *
+     * @param id the id of the new graph
+     * @return the new graph, at its initial version
+     */
+    public Graph share(final Long id) {
+        return new Graph(id, INITIAL_VERSION, nodeIds, parentOffsets, parents, mapped, indexes);
+    }
+
+    /**
+     * @param other the other graph
+     * @return true if both graphs share the same body
+     */
+    public boolean sharesBodyWith(final Graph other) {
+        return indexes == other.indexes;
+    }
+
+    /**
+     * Compare the content of two graphs. The arrays of a graph are canonical, the node ids and the parents
+     * of every node being sorted, so two graphs have the same content exactly when they have the same edges
+     * and nodes.
+     *
+     * @param other the other graph
+     * @return true if both graphs have the same nodes and edges
+     */
+    public boolean hasSameContent(final Graph other) {
+        return nodeIds.equals(other.nodeIds) && parentOffsets.equals(other.parentOffsets) && parents.equals(other.parents);
+    }
+
+    /**
+     * Hash the content of the graph, equal for the graphs having the same content.
+     *
+     * @return the 64 bit hash of the graph arrays
+     */
+    public long contentHash() {
+        long hash = hash(0, nodeIds);
+        hash = hash(hash, parentOffsets);
+        hash = hash(hash, parents);
+        // MurmurHash3 finalizer
+        hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+        hash = (hash ^ (hash >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return hash ^ (hash >>> 33);
+    }
+
+    private static long hash(long hash, final IntBuffer values) {
+        hash = hash * 0x9E3779B97F4A7C15L + values.limit();
+        for (int position = 0; position < values.limit(); position++) {
+            hash = hash * 0x9E3779B97F4A7C15L + values.get(position);
+        }
+        return hash;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    /**
+     * @return the version of the graph, starting at 1 and incremented by every change
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public int getNodesCount() {
+        return nodeIds.limit();
+    }
+
+    public int getEdgesCount() {
+        return parents.limit();
+    }
+
+    /**
+     * @return true if the graph arrays are memory mapped from a snapshot file, false if they live on the heap
+     */
+    public boolean isMapped() {
+        return mapped;
+    }
+
+    /**
+     * Estimate the heap memory held by the graph: its arrays, unless they are memory mapped, and its
+     * cached indexes. The object headers are not accounted, and a body shared by several graphs is
+     * accounted by every one of them.
+     *
+     * @return the estimated number of bytes
+     */
+    public long getMemoryBytes() {
+        long bytes = mapped ? 0 : ((long) nodeIds.limit() + parentOffsets.limit() + parents.limit()) * Integer.BYTES;
+        for (final IndexSlot slot : indexes.values()) {
+            final Object index = slot.index;
+            if (index instanceof MemoryFootprint) {
+                bytes += ((MemoryFootprint) index).getMemoryBytes();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Return the dense index of the given user node id.
+     *
+     * @param nodeId the user node id
+     * @return the dense index of the node or a negative value if the node does not exist
+     */
+    public int indexOf(final int nodeId) {
+        int low = 0;
+        int high = nodeIds.limit() - 1;
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+            final int middleId = nodeIds.get(middle);
+            if (middleId < nodeId) {
+                low = middle + 1;
+            } else if (middleId > nodeId) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
     }
 
-    public void addEdge(final Integer parentNodeId, final Integer childNodeId) {
-        final Node parentNode = getOrCreateNode(parentNodeId);
-        final Node childNode = getOrCreateNode(childNodeId);
-        childNode.addAncestor(parentNode);
+    public boolean containsNode(final int nodeId) {
+        return indexOf(nodeId) >= 0;
+    }
+
+    public int getNodeId(final int index) {
+        return nodeIds.get(index);
+    }
+
+    public int getParentsCount(final int index) {
+        return parentOffsets.get(index + 1) - parentOffsets.get(index);
+    }
+
+    /**
+     * @param index the dense index of the node
+     * @return the position in the parents array of the first parent of the node (inclusive)
+     */
+    public int getParentsFrom(final int index) {
+        return parentOffsets.get(index);
     }
 
     /**
-     * Return the existing node by the given key or
-     * a new created one in case of absence.
+     * @param index the dense index of the node
+     * @return the position in the parents array after the last parent of the node (exclusive)
+     */
+    public int getParentsTo(final int index) {
+        return parentOffsets.get(index + 1);
+    }
+
+    /**
+     * @param position the position in the parents array
+     * @return the dense index of the parent stored at the given position
+     */
+    public int getParent(final int position) {
+        return parents.get(position);
+    }
+
+    IntBuffer nodeIds() {
+        return nodeIds.duplicate();
+    }
+
+    IntBuffer parentOffsets() {
+        return parentOffsets.duplicate();
+    }
+
+    IntBuffer parents() {
+        return parents.duplicate();
+    }
+
+    /**
+     * Return the index of the given type, building it with the provided factory on first access.
+     * The index is built only once even if requested concurrently, and a factory may request
+     * other indexes of the same graph. Every index type is built holding its own slot, so the
+     * build of an index does not block the builds of the other types.
      *
-     * @param id the node id to get.
-     * @return the node.
+     * @param type    the index type
+     * @param factory the index factory
+     * @param <T>     the index type
+     * @return the index
      */
-    private Node getOrCreateNode(final Integer id) {
-        // create new node if does not exists
-        if (!nodesHeap.containsKey(id)) {
-            nodesHeap.put(id, new Node(id));
+    public <T> T getIndex(final Class<T> type, final Function<Graph, ? extends T> factory) {
+        final IndexSlot slot = indexes.computeIfAbsent(type, key -> new IndexSlot());
+        Object index = slot.index;
+        if (index == null) {
+            synchronized (slot) {
+                index = slot.index;
+                if (index == null) {
+                    index = factory.apply(this);
+                    slot.index = index;
+                }
+            }
         }
-        return nodesHeap.get(id);
+        return type.cast(index);
+    }
+
+    /**
+     * @param type the index type
+     * @param <T>  the index type
+     * @return the index of the given type or null if it was not built yet
+     */
+    public <T> T findIndex(final Class<T> type) {
+        final IndexSlot slot = indexes.get(type);
+        return slot == null ? null : type.cast(slot.index);
+    }
+
+    /**
+     * The index of a type, once built.
+     */
+    private static final class IndexSlot {
+        private volatile Object index;
     }
 }
@@ -0,0 +1,169 @@
+package com.rl.graphapi.service.model;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Collects the graph edges into primitive arrays and builds the immutable CSR {@link Graph}.
+ * Duplicated edges are ignored. The nodes added on their own are kept even without any edge. A builder is not thread safe and should be used only once,
+ * large graphs being built on the common fork join pool.
+ */
+public class GraphBuilder {
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+    private static final int CHUNKS_PER_THREAD = 4;
+    private static final int NO_OFFSET = -1;
+
+    private int[] parentIds = new int[INITIAL_CAPACITY];
+    private int[] childIds = new int[INITIAL_CAPACITY];
+    private int edgesCount;
+    private int[] addedNodeIds = new int[0];
+    private int addedNodesCount;
+
+    public GraphBuilder addEdge(final int parentNodeId, final int childNodeId) {
+        if (edgesCount == parentIds.length) {
+            final int newCapacity = parentIds.length + (parentIds.length >> 1);
+            parentIds = Arrays.copyOf(parentIds, newCapacity);
+            childIds = Arrays.copyOf(childIds, newCapacity);
+        }
+        parentIds[edgesCount] = parentNodeId;
+        childIds[edgesCount] = childNodeId;
+        edgesCount++;
+        return this;
+    }
+
+    /**
+     * @param nodeId the node to keep in the graph, whether it has edges or not
+     * @return this builder
+     */
+    public GraphBuilder addNode(final int nodeId) {
+        if (addedNodesCount == addedNodeIds.length) {
+            addedNodeIds = Arrays.copyOf(addedNodeIds, Math.max(INITIAL_CAPACITY, addedNodeIds.length + (addedNodeIds.length >> 1)));
+        }
+        addedNodeIds[addedNodesCount++] = nodeId;
+        return this;
+    }
+
+    public int getEdgesCount() {
+        return edgesCount;
+    }
+
+    public boolean isEmpty() {
+        return edgesCount == 0;
+    }
+
+    /**
+     * Build the graph having the provided id from the collected edges.
+     * <p>
+     * Every edge is encoded as a {@code long} holding the dense index of the child in its high half and
+     * the dense index of the parent in its low half, so sorting the encoded edges groups them by child
+     * with the parents ascending and the duplicated edges adjacent. Large graphs are built in parallel:
+     * the node ids are sorted with {@link Arrays#parallelSort(int[])}, the edges are mapped to dense
+     * indexes concurrently and sorted with {@link Arrays#parallelSort(long[])}, then split in chunks
+     * which count their distinct edges and, once the write positions of every chunk are known, write
+     * their parents and the offsets of the children they start.
+     *
+     * @param id the graph id
+     * @return the created graph
+     */
+    public Graph build(final Long id) {
+        final boolean parallel = edgesCount >= PARALLEL_THRESHOLD;
+        final int[] nodeIds = collectNodeIds(parallel);
+        final long[] edges = encodeEdges(nodeIds, parallel);
+        final int chunks = parallel ? ForkJoinPool.getCommonPoolParallelism() * CHUNKS_PER_THREAD : 1;
+
+        // count the distinct edges of every chunk, shifted by one to obtain the write positions by prefix sum
+        final int[] chunkOffsets = new int[chunks + 1];
+        forEachChunk(chunks, parallel, (chunk, from, to) -> {
+            int distinct = 0;
+            for (int edge = from; edge < to; edge++) {
+                if (edge == 0 || edges[edge] != edges[edge - 1]) {
+                    distinct++;
+                }
+            }
+            chunkOffsets[chunk + 1] = distinct;
+        });
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            chunkOffsets[chunk + 1] += chunkOffsets[chunk];
+        }
+
+        // write the distinct parents and the offset of every child starting in the chunk
+        final int[] parents = new int[chunkOffsets[chunks]];
+        final int[] parentOffsets = new int[nodeIds.length + 1];
+        Arrays.fill(parentOffsets, NO_OFFSET);
+        forEachChunk(chunks, parallel, (chunk, from, to) -> {
+            int position = chunkOffsets[chunk];
+            for (int edge = from; edge < to; edge++) {
+                if (edge == 0 || edges[edge] != edges[edge - 1]) {
+                    final int child = (int) (edges[edge] >>> 32);
+                    if (edge == 0 || child != (int) (edges[edge - 1] >>> 32)) {
+                        parentOffsets[child] = position;
+                    }
+                    parents[position++] = (int) edges[edge];
+                }
+            }
+        });
+
+        // the nodes without parents start where the next node starts
+        parentOffsets[nodeIds.length] = parents.length;
+        for (int index = nodeIds.length - 1; index >= 0; index--) {
+            if (parentOffsets[index] == NO_OFFSET) {
+                parentOffsets[index] = parentOffsets[index + 1];
+            }
+        }
+
+        return new Graph(id, nodeIds, parentOffsets, parents);
+    }
+
+    /**
+     * @return the sorted distinct node ids referenced by the collected edges or added on their own
+     */
+    private int[] collectNodeIds(final boolean parallel) {
+        final int[] ids = new int[edgesCount * 2 + addedNodesCount];
+        System.arraycopy(parentIds, 0, ids, 0, edgesCount);
+        System.arraycopy(childIds, 0, ids, edgesCount, edgesCount);
+        System.arraycopy(addedNodeIds, 0, ids, edgesCount * 2, addedNodesCount);
+        if (parallel) {
+            Arrays.parallelSort(ids);
+        } else {
+            Arrays.sort(ids);
+        }
+
+        int distinct = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (i == 0 || ids[i] != ids[distinct - 1]) {
+                ids[distinct++] = ids[i];
+            }
+        }
+        return Arrays.copyOf(ids, distinct);
+    }
+
+    /**
+     * @return the edges encoded as {@code childIndex << 32 | parentIndex}, sorted
+     */
+    private long[] encodeEdges(final int[] nodeIds, final boolean parallel) {
+        final long[] edges = new long[edgesCount];
+        final IntStream range = IntStream.range(0, edgesCount);
+        (parallel ? range.parallel() : range).forEach(edge ->
+                edges[edge] = (long) Arrays.binarySearch(nodeIds, childIds[edge]) << 32
+                        | Arrays.binarySearch(nodeIds, parentIds[edge]));
+        if (parallel) {
+            Arrays.parallelSort(edges);
+        } else {
+            Arrays.sort(edges);
+        }
+        return edges;
+    }
+
+    private void forEachChunk(final int chunks, final boolean parallel, final ChunkTask task) {
+        final IntStream range = IntStream.range(0, chunks);
+        (parallel ? range.parallel() : range).forEach(chunk ->
+                task.run(chunk, (int) ((long) edgesCount * chunk / chunks), (int) ((long) edgesCount * (chunk + 1) / chunks)));
+    }
+
+    @FunctionalInterface
+    private interface ChunkTask {
+        void run(int chunk, int from, int to);
+    }
+}
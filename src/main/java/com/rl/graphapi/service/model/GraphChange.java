@@ -0,0 +1,276 @@
+package com.rl.graphapi.service.model;
+
+import com.rl.graphapi.service.exception.EdgeNotFoundException;
+import com.rl.graphapi.service.exception.GraphEdgesMalformedException;
+import com.rl.graphapi.service.exception.NodeNotFoundException;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * The next version of a graph derived from the previous one by a {@link GraphMutation}, along with the
+ * mapping between the dense indexes of both versions, so the indexes of the previous version can be
+ * updated instead of rebuilt.
+ * <p>
+ * The next version is merged from the CSR arrays of the previous one in a single pass: the node ids are
+ * merged with the added ones, and the parents of every node are its previous parents, remapped to the
+ * new dense indexes and without the removed ones, merged with its added parents. Since the dense indexes
+ * follow the order of the node ids, the remapping keeps the parents sorted, so a change costs a copy of
+ * the arrays plus sorting the added edges, instead of sorting all the edges again.
+ */
+public final class GraphChange {
+    private static final int NO_INDEX = -1;
+
+    private final Graph previous;
+    private final Graph graph;
+    private final int[] previousToCurrent;
+    private final int[] currentToPrevious;
+    private final BitSet changed;
+    private final int[] changedNodes;
+
+    private GraphChange(final Graph previous, final Graph graph, final int[] previousToCurrent,
+                        final int[] currentToPrevious, final BitSet changed) {
+        this.previous = previous;
+        this.graph = graph;
+        this.previousToCurrent = previousToCurrent;
+        this.currentToPrevious = currentToPrevious;
+        this.changed = changed;
+        this.changedNodes = changed.stream().toArray();
+    }
+
+    /**
+     * Derive the next version of the graph. The previous version is left untouched.
+     *
+     * @param previous the previous version of the graph
+     * @param mutation the edges and nodes to add and remove
+     * @return the change holding the next version of the graph
+     */
+    public static GraphChange apply(final Graph previous, final GraphMutation mutation) {
+        final int previousCount = previous.getNodesCount();
+
+        // the removed nodes and edges, as previous dense indexes
+        final boolean[] removed = new boolean[previousCount];
+        int removedCount = 0;
+        for (final Integer nodeId : mutation.getRemoveNodes()) {
+            final int index = previous.indexOf(requireNodeId(nodeId));
+            if (index < 0) {
+                throw new NodeNotFoundException(String.format("Node with key %s does not exists!", nodeId));
+            }
+            if (!removed[index]) {
+                removed[index] = true;
+                removedCount++;
+            }
+        }
+        final long[] removedEdges = removedEdges(previous, mutation.getRemoveEdges());
+
+        // the node ids which are not in the graph after the removals
+        final int[] addedIds = addedNodeIds(previous, removed, mutation);
+
+        // merge the remaining node ids with the added ones, both ascending
+        final int nodesCount = previousCount - removedCount + addedIds.length;
+        final int[] nodeIds = new int[nodesCount];
+        final int[] previousToCurrent = new int[previousCount];
+        final int[] currentToPrevious = new int[nodesCount];
+        int previousIndex = 0;
+        int addedIndex = 0;
+        int index = 0;
+        while (previousIndex < previousCount || addedIndex < addedIds.length) {
+            if (previousIndex < previousCount && removed[previousIndex]) {
+                previousToCurrent[previousIndex++] = NO_INDEX;
+            } else if (addedIndex < addedIds.length
+                    && (previousIndex == previousCount || addedIds[addedIndex] < previous.getNodeId(previousIndex))) {
+                currentToPrevious[index] = NO_INDEX;
+                nodeIds[index++] = addedIds[addedIndex++];
+            } else {
+                previousToCurrent[previousIndex] = index;
+                currentToPrevious[index] = previousIndex;
+                nodeIds[index++] = previous.getNodeId(previousIndex++);
+            }
+        }
+
+        final long[] addedEdges = encodeEdges(nodeIds, mutation.getAddEdges());
+
+        // merge the remaining previous parents of every node with its added parents, both ascending
+        final int[] parentOffsets = new int[nodesCount + 1];
+        final int[] parents = new int[previous.getEdgesCount() + addedEdges.length];
+        final BitSet changed = new BitSet(nodesCount);
+        int size = 0;
+        int added = 0;
+        for (int node = 0; node < nodesCount; node++) {
+            parentOffsets[node] = size;
+            final int previousNode = currentToPrevious[node];
+            boolean nodeChanged = previousNode == NO_INDEX;
+            int position = previousNode == NO_INDEX ? 0 : previous.getParentsFrom(previousNode);
+            final int to = previousNode == NO_INDEX ? 0 : previous.getParentsTo(previousNode);
+
+            while (position < to || (added < addedEdges.length && (int) (addedEdges[added] >>> 32) == node)) {
+                int previousParent = NO_INDEX;
+                if (position < to) {
+                    final int parent = previous.getParent(position);
+                    if (previousToCurrent[parent] == NO_INDEX || isRemoved(removedEdges, previousNode, parent)) {
+                        position++;
+                        nodeChanged = true;
+                        continue;
+                    }
+                    previousParent = previousToCurrent[parent];
+                }
+                final int addedParent = added < addedEdges.length && (int) (addedEdges[added] >>> 32) == node
+                        ? (int) addedEdges[added] : NO_INDEX;
+
+                if (addedParent == NO_INDEX || (previousParent != NO_INDEX && previousParent <= addedParent)) {
+                    if (previousParent == addedParent) {
+                        // the added edge already exists
+                        added++;
+                    }
+                    parents[size++] = previousParent;
+                    position++;
+                } else {
+                    if (size == parentOffsets[node] || parents[size - 1] != addedParent) {
+                        parents[size++] = addedParent;
+                        nodeChanged = true;
+                    }
+                    added++;
+                }
+            }
+            if (nodeChanged) {
+                changed.set(node);
+            }
+        }
+        parentOffsets[nodesCount] = size;
+
+        final Graph graph = new Graph(previous.getId(), previous.getVersion() + 1, IntBuffer.wrap(nodeIds),
+                IntBuffer.wrap(parentOffsets), IntBuffer.wrap(parents, 0, size).slice(), false);
+        return new GraphChange(previous, graph, previousToCurrent, currentToPrevious, changed);
+    }
+
+    /**
+     * @return the removed edges encoded as {@code previousChildIndex << 32 | previousParentIndex}, sorted
+     */
+    private static long[] removedEdges(final Graph previous, final List<Edge> edges) {
+        final long[] removedEdges = new long[edges.size()];
+        for (int edge = 0; edge < removedEdges.length; edge++) {
+            final int parentId = requireNodeId(edges.get(edge).getParent());
+            final int childId = requireNodeId(edges.get(edge).getChild());
+            final int parent = previous.indexOf(parentId);
+            final int child = previous.indexOf(childId);
+            if (parent < 0 || child < 0 || !hasParent(previous, child, parent)) {
+                throw new EdgeNotFoundException(String.format("Edge from %s to %s does not exists!", parentId, childId));
+            }
+            removedEdges[edge] = (long) child << 32 | parent;
+        }
+        Arrays.sort(removedEdges);
+        return removedEdges;
+    }
+
+    /**
+     * @return the sorted distinct ids of the added nodes and of the nodes of the added edges which are not
+     * in the graph after the removals
+     */
+    private static int[] addedNodeIds(final Graph previous, final boolean[] removed, final GraphMutation mutation) {
+        final int[] ids = new int[mutation.getAddNodes().size() + mutation.getAddEdges().size() * 2];
+        int size = 0;
+        for (final Integer nodeId : mutation.getAddNodes()) {
+            ids[size++] = requireNodeId(nodeId);
+        }
+        for (final Edge edge : mutation.getAddEdges()) {
+            ids[size++] = requireNodeId(edge.getParent());
+            ids[size++] = requireNodeId(edge.getChild());
+        }
+        Arrays.sort(ids);
+
+        int distinct = 0;
+        for (int i = 0; i < size; i++) {
+            if (distinct > 0 && ids[i] == ids[distinct - 1]) {
+                continue;
+            }
+            final int index = previous.indexOf(ids[i]);
+            if (index < 0 || removed[index]) {
+                ids[distinct++] = ids[i];
+            }
+        }
+        return Arrays.copyOf(ids, distinct);
+    }
+
+    /**
+     * @return the added edges encoded as {@code childIndex << 32 | parentIndex}, sorted
+     */
+    private static long[] encodeEdges(final int[] nodeIds, final List<Edge> edges) {
+        final long[] encoded = new long[edges.size()];
+        for (int edge = 0; edge < encoded.length; edge++) {
+            encoded[edge] = (long) Arrays.binarySearch(nodeIds, edges.get(edge).getChild()) << 32
+                    | Arrays.binarySearch(nodeIds, edges.get(edge).getParent());
+        }
+        Arrays.sort(encoded);
+        return encoded;
+    }
+
+    private static boolean hasParent(final Graph graph, final int node, final int parent) {
+        int low = graph.getParentsFrom(node);
+        int high = graph.getParentsTo(node) - 1;
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+            final int middleParent = graph.getParent(middle);
+            if (middleParent < parent) {
+                low = middle + 1;
+            } else if (middleParent > parent) {
+                high = middle - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isRemoved(final long[] removedEdges, final int child, final int parent) {
+        return removedEdges.length > 0 && Arrays.binarySearch(removedEdges, (long) child << 32 | parent) >= 0;
+    }
+
+    private static int requireNodeId(final Integer nodeId) {
+        if (nodeId == null) {
+            throw new GraphEdgesMalformedException("Graph changes should not contain null node ids!");
+        }
+        return nodeId;
+    }
+
+    public Graph getPrevious() {
+        return previous;
+    }
+
+    public Graph getGraph() {
+        return graph;
+    }
+
+    /**
+     * @param previousIndex the dense index of a node in the previous version
+     * @return the dense index of the node in the next version or a negative value if the node was removed
+     */
+    public int currentIndexOf(final int previousIndex) {
+        return previousToCurrent[previousIndex];
+    }
+
+    /**
+     * @param currentIndex the dense index of a node in the next version
+     * @return the dense index of the node in the previous version or a negative value if the node was added
+     */
+    public int previousIndexOf(final int currentIndex) {
+        return currentToPrevious[currentIndex];
+    }
+
+    /**
+     * @param currentIndex the dense index of a node in the next version
+     * @return true if the node was added or its parents changed
+     */
+    public boolean isChanged(final int currentIndex) {
+        return changed.get(currentIndex);
+    }
+
+    /**
+     * @return the ascending dense indexes, in the next version, of the nodes added or having their parents changed,
+     * not to be modified
+     */
+    public int[] getChangedNodes() {
+        return changedNodes;
+    }
+}
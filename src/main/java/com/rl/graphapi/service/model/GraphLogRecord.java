@@ -0,0 +1,225 @@
+package com.rl.graphapi.service.model;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A change of the graph store written to the graph log: the creation of a graph, a mutation applied on a
+ * graph or the deletion of a graph.
+ * <p>
+ * The record is encoded as little endian values: its type, the graph id and the graph version, followed by
+ * <ul>
+ * <li>for a creation - the nodes count, the edges count and the three CSR arrays of the graph, as in
+ * {@link GraphSnapshot}</li>
+ * <li>for an update - the added edges, the removed edges, the added nodes and the removed nodes, each list
+ * preceded by its size, the version being the one the mutation produced</li>
+ * <li>for a deletion - nothing more</li>
+ * </ul>
+ */
+public final class GraphLogRecord {
+    private static final int HEADER_BYTES = 1 + Long.BYTES + Long.BYTES;
+
+    public enum Type {
+        CREATE, UPDATE, DELETE
+    }
+
+    private final Type type;
+    private final Long graphId;
+    private final long version;
+    private final Graph graph;
+    private final GraphMutation mutation;
+
+    private GraphLogRecord(final Type type, final Long graphId, final long version, final Graph graph, final GraphMutation mutation) {
+        this.type = type;
+        this.graphId = graphId;
+        this.version = version;
+        this.graph = graph;
+        this.mutation = mutation;
+    }
+
+    /**
+     * @param graph the created graph
+     * @return the record of the graph creation
+     */
+    public static GraphLogRecord create(final Graph graph) {
+        return new GraphLogRecord(Type.CREATE, graph.getId(), graph.getVersion(), graph, null);
+    }
+
+    /**
+     * @param graph    the version of the graph produced by the mutation
+     * @param mutation the mutation
+     * @return the record of the graph update
+     */
+    public static GraphLogRecord update(final Graph graph, final GraphMutation mutation) {
+        return new GraphLogRecord(Type.UPDATE, graph.getId(), graph.getVersion(), null, mutation);
+    }
+
+    /**
+     * @param graphId the id of the deleted graph
+     * @return the record of the graph deletion
+     */
+    public static GraphLogRecord delete(final Long graphId) {
+        return new GraphLogRecord(Type.DELETE, graphId, 0, null, null);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Long getGraphId() {
+        return graphId;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the created graph, only for the creations
+     */
+    public Graph getGraph() {
+        return graph;
+    }
+
+    /**
+     * @return the applied mutation, only for the updates
+     */
+    public GraphMutation getMutation() {
+        return mutation;
+    }
+
+    /**
+     * @return the encoded record, ready to be read
+     */
+    public ByteBuffer encode() {
+        final ByteBuffer buffer;
+        if (type == Type.CREATE) {
+            buffer = allocate(HEADER_BYTES + 2 * Integer.BYTES
+                    + ((long) graph.getNodesCount() * 2 + 1 + graph.getEdgesCount()) * Integer.BYTES);
+            putHeader(buffer).putInt(graph.getNodesCount()).putInt(graph.getEdgesCount());
+            putInts(buffer, graph.nodeIds());
+            putInts(buffer, graph.parentOffsets());
+            putInts(buffer, graph.parents());
+        } else if (type == Type.UPDATE) {
+            buffer = allocate(HEADER_BYTES + 4 * Integer.BYTES + ((long) mutation.getAddEdges().size() * 2
+                    + mutation.getRemoveEdges().size() * 2 + mutation.getAddNodes().size() + mutation.getRemoveNodes().size()) * Integer.BYTES);
+            putHeader(buffer);
+            putEdges(buffer, mutation.getAddEdges());
+            putEdges(buffer, mutation.getRemoveEdges());
+            putNodes(buffer, mutation.getAddNodes());
+            putNodes(buffer, mutation.getRemoveNodes());
+        } else {
+            buffer = allocate(HEADER_BYTES);
+            putHeader(buffer);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Decode a record encoded by {@link #encode()}.
+     *
+     * @param buffer the encoded record, entirely consumed
+     * @return the record
+     * @throws IOException if the buffer does not hold a valid record
+     */
+    public static GraphLogRecord decode(final ByteBuffer buffer) throws IOException {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            final int typeOrdinal = buffer.get();
+            if (typeOrdinal < 0 || typeOrdinal >= Type.values().length) {
+                throw new IOException(String.format("Unknown graph log record type %s", typeOrdinal));
+            }
+            final Type type = Type.values()[typeOrdinal];
+            final long graphId = buffer.getLong();
+            final long version = buffer.getLong();
+            final GraphLogRecord record;
+            if (type == Type.CREATE) {
+                final int nodesCount = count(buffer);
+                final int edgesCount = count(buffer);
+                final Graph graph = new Graph(graphId, version, IntBuffer.wrap(getInts(buffer, nodesCount)),
+                        IntBuffer.wrap(getInts(buffer, nodesCount + 1)), IntBuffer.wrap(getInts(buffer, edgesCount)), false);
+                record = new GraphLogRecord(type, graphId, version, graph, null);
+            } else if (type == Type.UPDATE) {
+                final GraphMutation mutation = new GraphMutation(getEdges(buffer), getEdges(buffer), getNodes(buffer), getNodes(buffer));
+                record = new GraphLogRecord(type, graphId, version, null, mutation);
+            } else {
+                record = new GraphLogRecord(type, graphId, version, null, null);
+            }
+            if (buffer.hasRemaining()) {
+                throw new IOException("Unexpected data after the graph log record");
+            }
+            return record;
+        } catch (final BufferUnderflowException exception) {
+            throw new IOException("Graph log record truncated", exception);
+        }
+    }
+
+    private static ByteBuffer allocate(final long bytes) {
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(String.format("Graph log record of %s bytes is too large", bytes));
+        }
+        return ByteBuffer.allocate((int) bytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private ByteBuffer putHeader(final ByteBuffer buffer) {
+        return buffer.put((byte) type.ordinal()).putLong(graphId).putLong(version);
+    }
+
+    private static void putInts(final ByteBuffer buffer, final IntBuffer values) {
+        buffer.asIntBuffer().put(values);
+        buffer.position(buffer.position() + values.limit() * Integer.BYTES);
+    }
+
+    private static void putEdges(final ByteBuffer buffer, final List<Edge> edges) {
+        buffer.putInt(edges.size());
+        for (final Edge edge : edges) {
+            buffer.putInt(edge.getParent()).putInt(edge.getChild());
+        }
+    }
+
+    private static void putNodes(final ByteBuffer buffer, final List<Integer> nodes) {
+        buffer.putInt(nodes.size());
+        for (final int node : nodes) {
+            buffer.putInt(node);
+        }
+    }
+
+    private static int count(final ByteBuffer buffer) throws IOException {
+        final int count = buffer.getInt();
+        if (count < 0 || (long) count * Integer.BYTES > buffer.remaining()) {
+            throw new IOException("Graph log record truncated or corrupted");
+        }
+        return count;
+    }
+
+    private static int[] getInts(final ByteBuffer buffer, final int count) {
+        final int[] values = new int[count];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + count * Integer.BYTES);
+        return values;
+    }
+
+    private static List<Edge> getEdges(final ByteBuffer buffer) throws IOException {
+        final int count = count(buffer);
+        final List<Edge> edges = new ArrayList<>(count / 2);
+        for (int edge = 0; edge < count; edge++) {
+            edges.add(new Edge(buffer.getInt(), buffer.getInt()));
+        }
+        return edges;
+    }
+
+    private static List<Integer> getNodes(final ByteBuffer buffer) throws IOException {
+        final int count = count(buffer);
+        final List<Integer> nodes = new ArrayList<>(count);
+        for (int node = 0; node < count; node++) {
+            nodes.add(buffer.getInt());
+        }
+        return nodes;
+    }
+}
@@ -0,0 +1,40 @@
+package com.rl.graphapi.service.model;
+
+import lombok.Value;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Edges and nodes to add to and remove from a graph. The removals are applied before the additions,
+ * so a node removed and added by the same mutation is added back without its previous edges. Removing
+ * a node removes all of its edges, adding an edge adds its missing nodes, and adding an existing edge
+ * or node changes nothing.
+ */
+@Value
+public class GraphMutation {
+    private final List<Edge> addEdges;
+    private final List<Edge> removeEdges;
+    private final List<Integer> addNodes;
+    private final List<Integer> removeNodes;
+
+    public List<Edge> getAddEdges() {
+        return addEdges == null ? Collections.emptyList() : addEdges;
+    }
+
+    public List<Edge> getRemoveEdges() {
+        return removeEdges == null ? Collections.emptyList() : removeEdges;
+    }
+
+    public List<Integer> getAddNodes() {
+        return addNodes == null ? Collections.emptyList() : addNodes;
+    }
+
+    public List<Integer> getRemoveNodes() {
+        return removeNodes == null ? Collections.emptyList() : removeNodes;
+    }
+
+    public boolean isEmpty() {
+        return getAddEdges().isEmpty() && getRemoveEdges().isEmpty() && getAddNodes().isEmpty() && getRemoveNodes().isEmpty();
+    }
+}
@@ -0,0 +1,16 @@
+package com.rl.graphapi.service.model;
+
+import lombok.Value;
+
+/**
+ * A page of the nodes of a graph, the nodes having the dense indexes between {@code fromIndex}
+ * (inclusive) and {@code toIndex} (exclusive), and the cursor of the next page, null on the last page.
+ */
+@Value
+public class GraphPage {
+    private final Graph graph;
+    private final int fromIndex;
+    private final int toIndex;
+    private final String nextCursor;
+
+}
@@ -0,0 +1,126 @@
+package com.rl.graphapi.service.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Binary on-disk format of a {@link Graph}, read back through memory mapping.
+ * <p>
+ * The file starts with a fixed size little endian header (magic, format version, graph id, nodes count,
+ * edges count and graph version) followed by the three CSR arrays as little endian ints: node ids, parent
+ * offsets and parents. On load, every array is mapped on its own and used directly by the graph,
+ * so nothing is deserialized and the operating system pages the data in on demand.
+ */
+public final class GraphSnapshot {
+    private static final int MAGIC = 0x48505247;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+    private static final int WRITE_BUFFER_BYTES = 1 << 20;
+
+    private GraphSnapshot() {
+    }
+
+    /**
+     * Write the graph into the given file. The content is written into a temporary file,
+     * forced to the storage device and then moved over the target file.
+     *
+     * @param graph the graph
+     * @param file  the snapshot file
+     * @throws IOException if the snapshot can't be written
+     */
+    public static void write(final Graph graph, final Path file) throws IOException {
+        final Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            final ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC)
+                    .putInt(VERSION)
+                    .putLong(graph.getId())
+                    .putInt(graph.getNodesCount())
+                    .putInt(graph.getEdgesCount())
+                    .putLong(graph.getVersion());
+            buffer.position(HEADER_BYTES);
+
+            writeInts(channel, buffer, graph.nodeIds());
+            writeInts(channel, buffer, graph.parentOffsets());
+            writeInts(channel, buffer, graph.parents());
+            flush(channel, buffer);
+            channel.force(true);
+        }
+        Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Map the snapshot file into a graph reading its arrays straight from the mapped memory.
+     *
+     * @param file the snapshot file
+     * @return the mapped graph
+     * @throws IOException if the file can't be mapped or it is not a valid snapshot
+     */
+    public static Graph map(final Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // read the whole header
+            }
+            header.flip();
+            if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException(String.format("%s is not a graph snapshot", file));
+            }
+            final long id = header.getLong();
+            final int nodesCount = header.getInt();
+            final int edgesCount = header.getInt();
+            // the snapshots written before the graphs were versioned hold zero
+            final long version = Math.max(Graph.INITIAL_VERSION, header.getLong());
+            if (nodesCount < 0 || edgesCount < 0
+                    || channel.size() != HEADER_BYTES + ((long) nodesCount * 2 + 1 + edgesCount) * Integer.BYTES) {
+                throw new IOException(String.format("Graph snapshot %s is truncated or corrupted", file));
+            }
+
+            final long nodeIdsStart = HEADER_BYTES;
+            final long parentOffsetsStart = nodeIdsStart + (long) nodesCount * Integer.BYTES;
+            final long parentsStart = parentOffsetsStart + (long) (nodesCount + 1) * Integer.BYTES;
+            return new Graph(id, version,
+                    mapInts(channel, nodeIdsStart, nodesCount),
+                    mapInts(channel, parentOffsetsStart, nodesCount + 1),
+                    mapInts(channel, parentsStart, edgesCount),
+                    true);
+        }
+    }
+
+    private static IntBuffer mapInts(final FileChannel channel, final long start, final int count) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, start, (long) count * Integer.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN)
+                .asIntBuffer();
+    }
+
+    private static void writeInts(final FileChannel channel, final ByteBuffer buffer, final IntBuffer values) throws IOException {
+        while (values.hasRemaining()) {
+            if (buffer.remaining() < Integer.BYTES) {
+                flush(channel, buffer);
+            }
+            final IntBuffer target = buffer.asIntBuffer();
+            final int count = Math.min(target.remaining(), values.remaining());
+            final IntBuffer chunk = values.duplicate();
+            chunk.limit(chunk.position() + count);
+            target.put(chunk);
+            values.position(values.position() + count);
+            buffer.position(buffer.position() + count * Integer.BYTES);
+        }
+    }
+
+    private static void flush(final FileChannel channel, final ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,12 @@
+package com.rl.graphapi.service.model;
+
+/**
+ * A structure derived from a graph and cached on it, accounted in the estimated memory of the graph.
+ */
+public interface MemoryFootprint {
+
+    /**
+     * @return the estimated number of bytes held by the structure
+     */
+    long getMemoryBytes();
+}
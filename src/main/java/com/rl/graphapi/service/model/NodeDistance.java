@@ -0,0 +1,13 @@
+package com.rl.graphapi.service.model;
+
+import lombok.Value;
+
+/**
+ * A node reached by a traversal and its hop distance from the node the traversal started from.
+ */
+@Value
+public class NodeDistance {
+    private final int nodeId;
+    private final int distance;
+
+}
@@ -0,0 +1,10 @@
+package com.rl.graphapi.service.model;
+
+import lombok.Value;
+
+@Value
+public class NodePair {
+    private final Integer firstNodeId;
+    private final Integer secondNodeId;
+
+}
@@ -0,0 +1,79 @@
+package com.rl.graphapi.service.model;
+
+import java.util.Arrays;
+
+/**
+ * A set of node ids compressed in ranges of consecutive ids, in ascending order.
+ */
+public final class NodeRanges {
+    private final int[] bounds;
+    private final int rangesCount;
+    private final int nodesCount;
+
+    private NodeRanges(final int[] bounds, final int rangesCount, final int nodesCount) {
+        this.bounds = bounds;
+        this.rangesCount = rangesCount;
+        this.nodesCount = nodesCount;
+    }
+
+    /**
+     * Compress the nodes of a bitset over the dense indexes of the graph. Since the dense indexes are
+     * assigned in ascending order of the node ids, the set bits are scanned word by word in ascending
+     * order of the ids and every id extends the current range or starts the next one.
+     *
+     * @param graph  the graph
+     * @param bitset the bitset of the dense indexes of the nodes, bit {@code i % 64} of word {@code i / 64}
+     * @return the ranges of the node ids
+     */
+    public static NodeRanges of(final Graph graph, final long[] bitset) {
+        int[] bounds = new int[16];
+        int rangesCount = 0;
+        int nodesCount = 0;
+        for (int word = 0; word < bitset.length; word++) {
+            long bits = bitset[word];
+            while (bits != 0) {
+                final int nodeId = graph.getNodeId(word * Long.SIZE + Long.numberOfTrailingZeros(bits));
+                bits &= bits - 1;
+                nodesCount++;
+                if (rangesCount > 0 && bounds[2 * rangesCount - 1] == nodeId - 1) {
+                    bounds[2 * rangesCount - 1] = nodeId;
+                    continue;
+                }
+                if (2 * rangesCount == bounds.length) {
+                    bounds = Arrays.copyOf(bounds, bounds.length * 2);
+                }
+                bounds[2 * rangesCount] = nodeId;
+                bounds[2 * rangesCount + 1] = nodeId;
+                rangesCount++;
+            }
+        }
+        return new NodeRanges(bounds, rangesCount, nodesCount);
+    }
+
+    /**
+     * @return the number of node ids of the set
+     */
+    public int getNodesCount() {
+        return nodesCount;
+    }
+
+    public int getRangesCount() {
+        return rangesCount;
+    }
+
+    /**
+     * @param range the index of the range
+     * @return the first node id of the range (inclusive)
+     */
+    public int getFrom(final int range) {
+        return bounds[2 * range];
+    }
+
+    /**
+     * @param range the index of the range
+     * @return the last node id of the range (inclusive)
+     */
+    public int getTo(final int range) {
+        return bounds[2 * range + 1];
+    }
+}
@@ -0,0 +1,16 @@
+package com.rl.graphapi.service.model;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * The nodes whose ancestors or descendants are queried, reached within {@code maxDepth} hops
+ * when given, without limit otherwise.
+ */
+@Value
+public class NodeSetQuery {
+    private final List<Integer> nodes;
+    private final Integer maxDepth;
+
+}
@@ -0,0 +1,15 @@
+package com.rl.graphapi.service.model;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * A page of node ids and the cursor of the next page, null on the last page.
+ */
+@Value
+public class NodesPage {
+    private final List<Integer> nodeIds;
+    private final String nextCursor;
+
+}
@@ -0,0 +1,183 @@
+package com.rl.graphapi.service.repository;
+
+import com.rl.graphapi.service.model.Graph;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The bodies of the created graphs by their content hash, so a graph created with the same edges as a
+ * graph held in memory shares its body instead of keeping its own copy: memory grows only with the
+ * distinct graphs. Every body keeps the ids of the graphs held in memory referencing it and is forgotten
+ * along with the last of them, its memory being accounted to the first of them still held. A hash
+ * collision between different contents keeps the body already registered, the other graph keeping its
+ * own body.
+ * <p>
+ * The bodies are split in {@value #STRIPES} stripes by hash, each one having its own lock, so the graphs
+ * created, released or checked by the evictions of different shards rarely wait for each other.
+ */
+final class GraphBodies {
+    private static final int STRIPES = 64;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    GraphBodies() {
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            stripes[stripe] = new Stripe();
+        }
+    }
+
+    /**
+     * Register the body of a created graph, or replace the graph with one sharing the body of a graph
+     * having the same content. The content is hashed, and compared with the body having the same hash,
+     * without holding the lock, so the registrations do not wait for each other while reading whole graphs.
+     *
+     * @param graph the created graph
+     * @return the content hash of the graph and the graph to store, the given one or one sharing its body
+     */
+    Registration register(final Graph graph) {
+        final long hash = graph.contentHash();
+        final Stripe stripe = stripeOf(hash);
+        while (true) {
+            final Body body;
+            synchronized (stripe) {
+                body = stripe.bodies.get(hash);
+                if (body == null) {
+                    stripe.bodies.put(hash, new Body(graph));
+                    return new Registration(hash, graph);
+                }
+            }
+            if (!body.graph.hasSameContent(graph)) {
+                return new Registration(null, graph);
+            }
+            synchronized (stripe) {
+                // unless the body was released meanwhile, registering the graph again
+                if (stripe.bodies.get(hash) == body) {
+                    body.graphIds.add(graph.getId());
+                    return new Registration(hash, body.graph.share(graph.getId()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Release the body of a graph no longer held in memory.
+     *
+     * @param hash  the content hash the graph was registered with, null if it was not registered
+     * @param graph the graph
+     */
+    void release(final Long hash, final Graph graph) {
+        if (hash == null) {
+            return;
+        }
+        final Stripe stripe = stripeOf(hash);
+        synchronized (stripe) {
+            final Body body = stripe.bodies.get(hash);
+            if (body != null && body.graph.sharesBodyWith(graph) && body.graphIds.remove(graph.getId()) && body.graphIds.isEmpty()) {
+                stripe.bodies.remove(hash);
+            }
+        }
+    }
+
+    /**
+     * @param hash  the content hash the graph was registered with, null if it was not registered
+     * @param graph the graph
+     * @return true if the body of the graph is referenced by other graphs held in memory as well
+     */
+    boolean isShared(final Long hash, final Graph graph) {
+        if (hash == null) {
+            return false;
+        }
+        final Stripe stripe = stripeOf(hash);
+        synchronized (stripe) {
+            final Body body = stripe.bodies.get(hash);
+            return body != null && body.graph.sharesBodyWith(graph) && body.graphIds.size() > 1;
+        }
+    }
+
+    /**
+     * @param hash  the content hash the graph was registered with, null if it was not registered
+     * @param graph the graph
+     * @return true if the memory of the body of the graph is accounted to the graph, false if it is accounted
+     * to another graph sharing it
+     */
+    boolean isAccounted(final Long hash, final Graph graph) {
+        if (hash == null) {
+            return true;
+        }
+        final Stripe stripe = stripeOf(hash);
+        synchronized (stripe) {
+            final Body body = stripe.bodies.get(hash);
+            return body == null || !body.graph.sharesBodyWith(graph) || body.graphIds.iterator().next().equals(graph.getId());
+        }
+    }
+
+    /**
+     * @return the number of graphs held in memory sharing the body of another one
+     */
+    int getSharingCount() {
+        int sharingCount = 0;
+        for (final Stripe stripe : stripes) {
+            synchronized (stripe) {
+                for (final Body body : stripe.bodies.values()) {
+                    sharingCount += body.graphIds.size() - 1;
+                }
+            }
+        }
+        return sharingCount;
+    }
+
+    /**
+     * @return the estimated heap memory the shared bodies would take if every graph kept its own body
+     */
+    long getSavedBytes() {
+        long savedBytes = 0;
+        for (final Stripe stripe : stripes) {
+            synchronized (stripe) {
+                for (final Body body : stripe.bodies.values()) {
+                    savedBytes += (body.graphIds.size() - 1) * body.graph.getMemoryBytes();
+                }
+            }
+        }
+        return savedBytes;
+    }
+
+    private Stripe stripeOf(final long hash) {
+        // the content hashes are already mixed, their low bits spread the bodies evenly
+        return stripes[(int) hash & (STRIPES - 1)];
+    }
+
+    static final class Registration {
+        private final Long hash;
+        private final Graph graph;
+
+        private Registration(final Long hash, final Graph graph) {
+            this.hash = hash;
+            this.graph = graph;
+        }
+
+        Long getHash() {
+            return hash;
+        }
+
+        Graph getGraph() {
+            return graph;
+        }
+    }
+
+    private static final class Stripe {
+        private final Map<Long, Body> bodies = new HashMap<>();
+    }
+
+    private static final class Body {
+        private final Graph graph;
+        private final Set<Long> graphIds = new LinkedHashSet<>();
+
+        private Body(final Graph graph) {
+            this.graph = graph;
+            graphIds.add(graph.getId());
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.rl.graphapi.service.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * When the {@link GraphRepository} evicts its graphs from memory:
+ * <ul>
+ * <li>{@code graph.store.max-memory} - the heap budget of the stored graphs and their indexes, the least recently
+ * accessed graphs being evicted while the budget is exceeded, 0 meaning no budget (default)</li>
+ * <li>{@code graph.store.expire-after-access} - the time after which a graph not accessed is evicted, 0 meaning
+ * never (default)</li>
+ * </ul>
+ */
+@Component
+public class GraphEvictionPolicy {
+    private final long maxMemoryBytes;
+    private final long expireAfterAccessNanos;
+    private final LongSupplier ticker;
+
+    @Autowired
+    public GraphEvictionPolicy(@Value("${graph.store.max-memory:0}") final DataSize maxMemory,
+                               @Value("${graph.store.expire-after-access:0}") final Duration expireAfterAccess) {
+        this(maxMemory.toBytes(), expireAfterAccess.toNanos(), System::nanoTime);
+    }
+
+    GraphEvictionPolicy(final long maxMemoryBytes, final long expireAfterAccessNanos, final LongSupplier ticker) {
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.expireAfterAccessNanos = expireAfterAccessNanos;
+        this.ticker = ticker;
+    }
+
+    /**
+     * @return the policy keeping all the graphs in memory
+     */
+    public static GraphEvictionPolicy unbounded() {
+        return new GraphEvictionPolicy(0, 0, System::nanoTime);
+    }
+
+    public boolean isEnabled() {
+        return maxMemoryBytes > 0 || expireAfterAccessNanos > 0;
+    }
+
+    public long getMaxMemoryBytes() {
+        return maxMemoryBytes;
+    }
+
+    /**
+     * @return the current time in nanoseconds, only meaningful relative to other values of this method
+     */
+    long now() {
+        return ticker.getAsLong();
+    }
+
+    boolean isExpired(final long lastAccessNanos, final long nowNanos) {
+        return expireAfterAccessNanos > 0 && nowNanos - lastAccessNanos >= expireAfterAccessNanos;
+    }
+
+    /**
+     * @param memoryBytes the memory of the graphs of a shard
+     * @param shardCount  the number of shards sharing the budget evenly
+     * @return true if the memory exceeds the share of the budget of a shard
+     */
+    boolean isOverBudget(final long memoryBytes, final int shardCount) {
+        return maxMemoryBytes > 0 && memoryBytes > maxMemoryBytes / shardCount;
+    }
+}
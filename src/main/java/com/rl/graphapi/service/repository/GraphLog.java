@@ -0,0 +1,518 @@
+package com.rl.graphapi.service.repository;
+
+import com.rl.graphapi.service.model.GraphLogRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead log of the graph store, enabled by {@code graph.log.enabled} along with the snapshots: the
+ * creations, updates and deletions of the graphs are appended as {@link GraphLogRecord}s to the segment files
+ * {@code graphs-<n>.log} of the snapshot directory, instead of writing the snapshot of every changed graph,
+ * and replayed over the snapshots on startup. The {@link GraphRepository} periodically compacts the log,
+ * writing the snapshots of the changed graphs and deleting the segments they cover.
+ * <p>
+ * The records are written by a single thread, which writes all the records queued since its last write with
+ * one gathering write and then forces them to the disk, so the concurrent changes share a single fsync.
+ * The durability is configured by {@code graph.log.durability}:
+ * <ul>
+ * <li>{@code sync} - a change returns once its record is forced to the disk (default)</li>
+ * <li>{@code async} - a change returns once its record is queued, the written records being forced every
+ * {@code graph.log.flush-interval}, so a crash loses the changes of the last interval</li>
+ * </ul>
+ * Every record is framed by its length and its CRC32, a record partly written by a crash ending the replay
+ * of its segment. The directory is forced to the disk whenever a segment is created.
+ */
+@Component
+public class GraphLog {
+    private final static Logger LOG = LoggerFactory.getLogger(GraphLog.class);
+    private static final String SEGMENT_PREFIX = "graphs-";
+    private static final String SEGMENT_EXTENSION = ".log";
+    private static final int FRAME_HEADER_BYTES = 2 * Integer.BYTES;
+    private static final int READ_BUFFER_BYTES = 1024 * 1024;
+    // queued to switch to the next segment, between the records written to the previous and the next one
+    private static final ByteBuffer ROLL = ByteBuffer.allocate(0);
+
+    public enum Durability {
+        SYNC, ASYNC
+    }
+
+    private final Path directory;
+    private final Durability durability;
+    private final long flushIntervalNanos;
+    private final AtomicLong recordCount = new AtomicLong();
+    private final AtomicLong syncCount = new AtomicLong();
+
+    private final Object lock = new Object();
+    // guarded by the lock
+    private final List<ByteBuffer> queued = new ArrayList<>();
+    private long appendedSequence;
+    private long durableSequence;
+    private long appendedSinceRoll;
+    private long requestedSegment;
+    private long openSegment;
+    private IOException failure;
+    private boolean closed;
+    private Thread writer;
+
+    // used by the writer thread only, once started
+    private FileChannel channel;
+
+    @Autowired
+    public GraphLog(@Value("${graph.log.enabled:false}") final boolean enabled,
+                    @Value("${graph.snapshot.directory:}") final String directory,
+                    @Value("${graph.log.durability:sync}") final String durability,
+                    @Value("${graph.log.flush-interval:100ms}") final Duration flushInterval) {
+        this(enabled && !directory.trim().isEmpty() ? Paths.get(directory.trim()) : null,
+                Durability.valueOf(durability.trim().toUpperCase()), flushInterval.toNanos());
+    }
+
+    GraphLog(final Path directory, final Durability durability, final long flushIntervalNanos) {
+        this.directory = directory;
+        this.durability = durability;
+        this.flushIntervalNanos = flushIntervalNanos;
+    }
+
+    /**
+     * @return the log writing nothing, the changed graphs being written to their snapshots
+     */
+    public static GraphLog disabled() {
+        return new GraphLog(null, Durability.SYNC, 0);
+    }
+
+    public boolean isEnabled() {
+        return directory != null;
+    }
+
+    /**
+     * @return the number of records appended so far
+     */
+    public long getRecordCount() {
+        return recordCount.get();
+    }
+
+    /**
+     * @return the number of times the written records were forced to the disk so far
+     */
+    public long getSyncCount() {
+        return syncCount.get();
+    }
+
+    /**
+     * Read the records of all the segments, in the order they were appended, with sequential reads.
+     * Must be called before the log is opened.
+     *
+     * @param consumer applies every record
+     * @return the number of records read
+     */
+    public int replay(final Consumer<GraphLogRecord> consumer) {
+        if (!isEnabled()) {
+            return 0;
+        }
+        int count = 0;
+        for (final long segment : segments()) {
+            try {
+                count += replay(segmentFile(segment), consumer);
+            } catch (final IOException exception) {
+                throw new UncheckedIOException(String.format("Graph log %s could not be read", segmentFile(segment)), exception);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Start writing the next records to a new segment, following the segments already written.
+     */
+    public void open() {
+        if (!isEnabled()) {
+            return;
+        }
+        synchronized (lock) {
+            if (writer != null) {
+                return;
+            }
+            final List<Long> segments = segments();
+            openSegment = segments.isEmpty() ? 1 : segments.get(segments.size() - 1) + 1;
+            requestedSegment = openSegment;
+            try {
+                Files.createDirectories(directory);
+                channel = openSegment(openSegment);
+            } catch (final IOException exception) {
+                throw new UncheckedIOException(String.format("Graph log could not be opened in %s", directory), exception);
+            }
+            writer = new Thread(this::write, "graph-log-writer");
+            writer.setDaemon(true);
+            writer.start();
+        }
+    }
+
+    /**
+     * Append the record, returning once it is forced to the disk for the sync durability, or once it is
+     * queued for the async durability.
+     *
+     * @param record the record
+     * @throws UncheckedIOException if the log could not be written
+     */
+    public void append(final GraphLogRecord record) {
+        final ByteBuffer payload = record.encode();
+        final CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+        final ByteBuffer header = ByteBuffer.allocate(FRAME_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(payload.remaining()).putInt((int) crc.getValue()).flip();
+
+        synchronized (lock) {
+            checkWritable();
+            queued.add(header);
+            queued.add(payload);
+            final long sequence = ++appendedSequence;
+            appendedSinceRoll++;
+            recordCount.incrementAndGet();
+            lock.notifyAll();
+            if (durability == Durability.SYNC) {
+                awaitUninterruptibly(() -> durableSequence >= sequence);
+                if (durableSequence < sequence) {
+                    checkWritable();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true if records were appended since the log was opened or last rolled
+     */
+    public boolean hasRecordsSinceRoll() {
+        synchronized (lock) {
+            return appendedSinceRoll > 0;
+        }
+    }
+
+    /**
+     * Write the next records to a new segment, the records already appended being written to the previous
+     * segments.
+     *
+     * @return the number of the new segment
+     * @throws UncheckedIOException if the log could not be written
+     */
+    public long roll() {
+        synchronized (lock) {
+            checkWritable();
+            final long segment = ++requestedSegment;
+            appendedSinceRoll = 0;
+            queued.add(ROLL);
+            lock.notifyAll();
+            awaitUninterruptibly(() -> openSegment >= segment);
+            if (openSegment < segment) {
+                checkWritable();
+            }
+            return segment;
+        }
+    }
+
+    /**
+     * Delete the segments preceding the given one, once their records are held by the snapshots.
+     *
+     * @param segment the number of the first segment kept
+     */
+    public void deleteSegmentsBefore(final long segment) {
+        for (final long previousSegment : segments()) {
+            if (previousSegment < segment) {
+                try {
+                    Files.deleteIfExists(segmentFile(previousSegment));
+                } catch (final IOException exception) {
+                    throw new UncheckedIOException(String.format("Graph log %s could not be deleted", segmentFile(previousSegment)), exception);
+                }
+            }
+        }
+    }
+
+    /**
+     * Write the queued records, force them to the disk and stop the writer.
+     */
+    @PreDestroy
+    public void close() {
+        final Thread thread;
+        synchronized (lock) {
+            if (writer == null || closed) {
+                return;
+            }
+            closed = true;
+            lock.notifyAll();
+            thread = writer;
+        }
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (final InterruptedException exception) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The writer loop: takes all the queued records, writes them and forces them to the disk, right away for
+     * the sync durability or once the flush interval elapsed since the last force for the async durability.
+     */
+    private void write() {
+        long writtenSequence = 0;
+        long forcedSequence = 0;
+        long lastForceNanos = System.nanoTime();
+        try {
+            while (true) {
+                final ByteBuffer[] batch;
+                final long batchSequence;
+                final boolean closing;
+                synchronized (lock) {
+                    while (queued.isEmpty() && !closed) {
+                        if (writtenSequence == forcedSequence) {
+                            lock.wait();
+                        } else {
+                            final long remainingNanos = lastForceNanos + flushIntervalNanos - System.nanoTime();
+                            if (remainingNanos <= 0) {
+                                break;
+                            }
+                            TimeUnit.NANOSECONDS.timedWait(lock, remainingNanos);
+                        }
+                    }
+                    closing = closed;
+                    if (queued.isEmpty() && closing && writtenSequence == forcedSequence) {
+                        return;
+                    }
+                    batch = queued.toArray(new ByteBuffer[0]);
+                    queued.clear();
+                    batchSequence = appendedSequence;
+                }
+
+                int from = 0;
+                for (int buffer = 0; buffer <= batch.length; buffer++) {
+                    if (buffer == batch.length || batch[buffer] == ROLL) {
+                        write(batch, from, buffer);
+                        from = buffer + 1;
+                    }
+                    if (buffer < batch.length && batch[buffer] == ROLL) {
+                        rollSegment();
+                    }
+                }
+                writtenSequence = batchSequence;
+
+                if (writtenSequence > forcedSequence && (durability == Durability.SYNC || closing
+                        || System.nanoTime() - lastForceNanos >= flushIntervalNanos)) {
+                    channel.force(false);
+                    syncCount.incrementAndGet();
+                    lastForceNanos = System.nanoTime();
+                    forcedSequence = writtenSequence;
+                    synchronized (lock) {
+                        durableSequence = forcedSequence;
+                        lock.notifyAll();
+                    }
+                }
+            }
+        } catch (final IOException exception) {
+            LOG.error("Graph log could not be written, the next changes are rejected", exception);
+            synchronized (lock) {
+                failure = exception;
+                lock.notifyAll();
+            }
+        } catch (final InterruptedException exception) {
+            synchronized (lock) {
+                failure = new IOException("Graph log writer interrupted", exception);
+                lock.notifyAll();
+            }
+        } finally {
+            try {
+                channel.close();
+            } catch (final IOException exception) {
+                LOG.warn("Graph log could not be closed: {}", exception.getMessage());
+            }
+        }
+    }
+
+    private void write(final ByteBuffer[] buffers, final int from, final int to) throws IOException {
+        int first = from;
+        while (first < to) {
+            channel.write(buffers, first, to - first);
+            while (first < to && !buffers[first].hasRemaining()) {
+                first++;
+            }
+        }
+    }
+
+    private void rollSegment() throws IOException {
+        channel.force(false);
+        channel.close();
+        final long segment;
+        synchronized (lock) {
+            segment = openSegment + 1;
+        }
+        channel = openSegment(segment);
+        synchronized (lock) {
+            openSegment = segment;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Create the segment and force the directory holding it to the disk, so the records forced to the segment
+     * are not lost along with its directory entry.
+     */
+    private FileChannel openSegment(final long segment) throws IOException {
+        final FileChannel segmentChannel = FileChannel.open(segmentFile(segment), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        try (FileChannel directoryChannel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            directoryChannel.force(true);
+        } catch (final IOException exception) {
+            segmentChannel.close();
+            throw exception;
+        }
+        return segmentChannel;
+    }
+
+    /**
+     * Read the records of the segment, stopping at the first record truncated or corrupted.
+     */
+    private static int replay(final Path file, final Consumer<GraphLogRecord> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.flip();
+            final CRC32 crc = new CRC32();
+            long position = 0;
+            int count = 0;
+            while (fill(channel, buffer, FRAME_HEADER_BYTES)) {
+                final int length = buffer.getInt();
+                final int checksum = buffer.getInt();
+                if (length <= 0 || length > size - position - FRAME_HEADER_BYTES) {
+                    break;
+                }
+                if (buffer.capacity() < length) {
+                    buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN).put(buffer);
+                    buffer.flip();
+                }
+                if (!fill(channel, buffer, length)) {
+                    break;
+                }
+                final ByteBuffer payload = buffer.slice();
+                payload.limit(length);
+                buffer.position(buffer.position() + length);
+                crc.reset();
+                crc.update(payload.duplicate());
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                try {
+                    consumer.accept(GraphLogRecord.decode(payload));
+                } catch (final IOException exception) {
+                    break;
+                }
+                position += FRAME_HEADER_BYTES + length;
+                count++;
+            }
+            if (position < size) {
+                LOG.warn("Graph log {} truncated or corrupted after {} records, its last {} bytes skipped", file, count, size - position);
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Make the buffer hold at least the given number of bytes, reading the next bytes of the channel.
+     *
+     * @return false if the channel ends before
+     */
+    private static boolean fill(final FileChannel channel, final ByteBuffer buffer, final int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return true;
+        }
+        buffer.compact();
+        try {
+            while (buffer.position() < bytes) {
+                if (channel.read(buffer) < 0) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            buffer.flip();
+        }
+    }
+
+    /**
+     * Must be called holding the lock.
+     */
+    private void checkWritable() {
+        if (failure != null) {
+            throw new UncheckedIOException("Graph log could not be written", failure);
+        }
+        if (writer == null || closed) {
+            throw new IllegalStateException("Graph log not open");
+        }
+    }
+
+    /**
+     * Wait on the lock until the condition holds or the writer failed. Must be called holding the lock.
+     */
+    private void awaitUninterruptibly(final BooleanSupplier condition) {
+        boolean interrupted = false;
+        while (!condition.getAsBoolean() && failure == null) {
+            try {
+                lock.wait();
+            } catch (final InterruptedException exception) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private List<Long> segments() {
+        final List<Long> segments = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return segments;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_EXTENSION)) {
+            for (final Path file : files) {
+                final String name = file.getFileName().toString();
+                try {
+                    segments.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_EXTENSION.length())));
+                } catch (final NumberFormatException exception) {
+                    LOG.warn("Graph log {} skipped, not a segment", file);
+                }
+            }
+        } catch (final IOException exception) {
+            throw new UncheckedIOException(String.format("Graph log segments could not be listed from %s", directory), exception);
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    private Path segmentFile(final long segment) {
+        return directory.resolve(String.format("%s%019d%s", SEGMENT_PREFIX, segment, SEGMENT_EXTENSION));
+    }
+}
@@ -0,0 +1,43 @@
+package com.rl.graphapi.service.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Partitions the graphs into {@code graph.store.shards} shards by graph id, a single shard by default.
+ * Every shard of the {@link GraphRepository} holds its own graphs, locks and memory accounting, evicting its
+ * graphs over its share of the memory budget, and the queries on the graphs of a shard run on the pool of the
+ * shard, so the writes, the evictions and the long queries on the graphs of a shard do not stall the others.
+ */
+@Component
+public class GraphPartitioning {
+    private final int shardCount;
+
+    public GraphPartitioning(@Value("${graph.store.shards:1}") final int shardCount) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException(String.format("Invalid number of graph store shards %s", shardCount));
+        }
+        this.shardCount = shardCount;
+    }
+
+    /**
+     * @return the partitioning keeping all the graphs in a single shard
+     */
+    public static GraphPartitioning single() {
+        return new GraphPartitioning(1);
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    /**
+     * The generated graph ids being scrambled, their remainder spreads the graphs evenly over the shards.
+     *
+     * @param graphId the graph id
+     * @return the shard owning the graph, from 0 to the number of shards (exclusive)
+     */
+    public int shardOf(final Long graphId) {
+        return (int) Math.floorMod(graphId.longValue(), (long) shardCount);
+    }
+}
@@ -1,21 +1,133 @@
 package com.rl.graphapi.service.repository;
 
 import com.rl.graphapi.service.exception.GraphNotFoundException;
+import com.rl.graphapi.service.exception.InvalidCursorException;
+import com.rl.graphapi.service.index.ParentsCountIndex;
+import com.rl.graphapi.service.index.TopologyIndex;
 import com.rl.graphapi.service.model.Edge;
 import com.rl.graphapi.service.model.Graph;
-import com.rl.graphapi.service.model.Node;
+import com.rl.graphapi.service.model.GraphBuilder;
+import com.rl.graphapi.service.model.GraphChange;
+import com.rl.graphapi.service.model.GraphLogRecord;
+import com.rl.graphapi.service.model.GraphMutation;
+import com.rl.graphapi.service.model.NodesPage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Repository;
 
+import javax.annotation.PostConstruct;
+
+import java.security.SecureRandom;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Random;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
+/**
+ * In-memory store of the graphs, holding the current version of every graph.
+ * <p>
+ * The graphs are evicted from memory according to the {@link GraphEvictionPolicy}: the expired graphs
+ * and then the least recently accessed ones while the estimated memory of the graphs exceeds the budget.
+ * Every shard keeps a running total of the memory of its graphs, estimated when they are stored, and its
+ * graph ids in access order, the order they were stored in, every graph accessed since it was queued being
+ * queued again instead of evicted (second chance). Whenever a graph is stored or reloaded the budget is
+ * checked against the running total, evicting from the head of the queue. Every
+ * {@code graph.store.eviction-interval} the expired graphs are evicted, the memory of every graph is estimated
+ * again, since the lazily built indexes grow the graphs between writes, and the queue is rebuilt by last access.
+ * When the snapshots are enabled the evicted graphs are spilled to their snapshot files, already
+ * written, and mapped again on their next access; otherwise they are dropped.
+ * <p>
+ * A created graph having the same edges as a graph held in memory shares its body, the arrays and the
+ * indexes, under its own id, see {@link GraphBodies}. The versions derived by the updates and the graphs
+ * mapped from their snapshots keep their own bodies.
+ * <p>
+ * When the {@link GraphLog} is enabled the changes of the graphs are appended to the log instead of writing
+ * the snapshots of the changed graphs, and replayed over the snapshots on startup. Every
+ * {@code graph.log.compaction-interval} the log is rolled, the snapshots of the graphs changed since the
+ * previous compaction are written and the segments preceding the roll deleted. A changed graph evicted
+ * before the compaction is written to its snapshot when spilled.
+ * <p>
+ * The graphs are partitioned into shards by id, see {@link GraphPartitioning}: every shard holds its graphs,
+ * spilled graph ids and locks, and evicts its graphs over its share of the memory budget on its own. A body
+ * shared by graphs of several shards is accounted to the shard of the first graph still referencing it.
+ */
 @Repository
 public class GraphRepository {
-    private static final Random ID_GENERATOR = new Random();
-    private static final List<Graph> graphs = new ArrayList<>();
+    private final static Logger LOG = LoggerFactory.getLogger(GraphRepository.class);
+    private static final String CURSOR_SEPARATOR = ":";
+    private static final int GRAPH_LOCKS = 64;
+    private static final AtomicLong ID_SEQUENCE = new AtomicLong(new SecureRandom().nextLong());
+
+    private final Shard[] shards;
+    private final AtomicLong evictionCount = new AtomicLong();
+    private final GraphBodies graphBodies = new GraphBodies();
+    private final GraphSnapshotStore graphSnapshotStore;
+    private final GraphEvictionPolicy evictionPolicy;
+    private final GraphLog graphLog;
+    private final GraphPartitioning partitioning;
+    // the graphs changed since the last compaction of the log, written to the log but not to their snapshots
+    private final Set<Long> dirtyGraphIds = ConcurrentHashMap.newKeySet();
+    private final List<GraphResidencyListener> residencyListeners = new CopyOnWriteArrayList<>();
+
+    public GraphRepository(final GraphSnapshotStore graphSnapshotStore, final GraphEvictionPolicy evictionPolicy) {
+        this(graphSnapshotStore, evictionPolicy, GraphLog.disabled(), GraphPartitioning.single());
+    }
+
+    public GraphRepository(final GraphSnapshotStore graphSnapshotStore, final GraphEvictionPolicy evictionPolicy,
+                           final GraphLog graphLog) {
+        this(graphSnapshotStore, evictionPolicy, graphLog, GraphPartitioning.single());
+    }
+
+    @Autowired
+    public GraphRepository(final GraphSnapshotStore graphSnapshotStore, final GraphEvictionPolicy evictionPolicy,
+                           final GraphLog graphLog, final GraphPartitioning partitioning) {
+        this.graphSnapshotStore = graphSnapshotStore;
+        this.evictionPolicy = evictionPolicy;
+        this.graphLog = graphLog;
+        this.partitioning = partitioning;
+        this.shards = new Shard[partitioning.getShardCount()];
+        for (int shard = 0; shard < shards.length; shard++) {
+            shards[shard] = new Shard();
+        }
+    }
+
+    /**
+     * Restore the graphs from their snapshots, queried straight from the mapped files, then replay the
+     * changes appended to the log since the last compaction and open the log.
+     */
+    @PostConstruct
+    public void loadSnapshots() {
+        final long start = System.currentTimeMillis();
+        final List<Graph> snapshots = graphSnapshotStore.loadAll();
+        snapshots.forEach(graph -> store(new StoredGraph(graph, null, evictionPolicy.now())));
+        if (!snapshots.isEmpty()) {
+            LOG.info("{} graphs restored from snapshots in {} ms", snapshots.size(), System.currentTimeMillis() - start);
+        }
+
+        final long replayStart = System.currentTimeMillis();
+        final int replayed = graphLog.replay(this::replay);
+        if (replayed > 0) {
+            LOG.info("{} graph changes replayed from the log in {} ms", replayed, System.currentTimeMillis() - replayStart);
+        }
+        graphLog.open();
+    }
+
+    /**
+     * @param listener notified when a graph is evicted from memory and when it is reloaded from its snapshot
+     */
+    public void addResidencyListener(final GraphResidencyListener listener) {
+        residencyListeners.add(listener);
+    }
 
     /**
      * Based on the provided edges will be created the graph
@@ -24,20 +136,95 @@ public class GraphRepository {
      * @return the created graph
      */
     public Graph createGraph(final Set<Edge> edges) {
-        // generate the id and create the empty graph
-        final Graph graph = new Graph(ID_GENERATOR.nextLong());
-
-        // creating the graph edges
+        // collecting the graph edges
+        final GraphBuilder graphBuilder = new GraphBuilder();
         edges.forEach(edge ->
-            graph.addEdge(edge.getParent(), edge.getChild())
+            graphBuilder.addEdge(edge.getParent(), edge.getChild())
         );
 
+        return createGraph(graphBuilder);
+    }
+
+    /**
+     * Based on the edges collected by the builder will be created the graph
+     *
+     * @param graphBuilder the builder holding the graph edges
+     * @return the created graph
+     */
+    public Graph createGraph(final GraphBuilder graphBuilder) {
+        // generate the id and create the graph, sharing the body of a graph having the same content
+        final GraphBodies.Registration registration = graphBodies.register(graphBuilder.build(nextGraphId()));
+        final Graph graph = registration.getGraph();
+        parentsCountIndex(graph);
+        topologyIndex(graph);
+
         // persist
-        graphs.add(graph);
+        synchronized (lockOf(graph.getId())) {
+            persist(graph, GraphLogRecord.create(graph));
+            store(new StoredGraph(graph, registration.getHash(), evictionPolicy.now()));
+        }
 
+        evictIfNeeded(graph.getId());
         return graph;
     }
 
+    /**
+     * Apply the mutation on the graph, replacing it with its next version. The updates of a graph are
+     * applied one at a time, while the readers keep using the version they looked up, and the next
+     * version is published only once its indexes are derived, its parents count and topology indexes
+     * here and the other ones by the given callback. A spilled graph is mapped again to be updated.
+     * In case the graph is not found will throw {@GraphNotFoundException}.
+     *
+     * @param graphId  the graph id
+     * @param mutation the edges and nodes to add and remove
+     * @param onChange derives the indexes of the next version before it is published
+     * @return the change holding the next version of the graph
+     */
+    public GraphChange updateGraph(final Long graphId, final GraphMutation mutation, final Consumer<GraphChange> onChange) {
+        final GraphChange change;
+        synchronized (lockOf(graphId)) {
+            final Graph previous = resident(graphId).getGraph();
+            change = GraphChange.apply(previous, mutation);
+
+            final ParentsCountIndex previousIndex = previous.findIndex(ParentsCountIndex.class);
+            change.getGraph().getIndex(ParentsCountIndex.class, graph ->
+                    previousIndex != null ? ParentsCountIndex.update(previousIndex, change) : ParentsCountIndex.build(graph));
+            topologyIndex(change.getGraph());
+            onChange.accept(change);
+
+            // persist
+            persist(change.getGraph(), GraphLogRecord.update(change.getGraph(), mutation));
+            store(new StoredGraph(change.getGraph(), null, evictionPolicy.now()));
+        }
+
+        evictIfNeeded(graphId);
+        return change;
+    }
+
+    /**
+     * Delete the graph, along with its snapshot. The queries already running on the graph are not affected.
+     * In case the graph is not found will throw {@GraphNotFoundException}.
+     *
+     * @param graphId the graph id
+     */
+    public void deleteGraph(final Long graphId) {
+        final Shard shard = shardOf(graphId);
+        synchronized (lockOf(graphId)) {
+            final StoredGraph storedGraph = shard.graphs.remove(graphId);
+            removed(shard, storedGraph);
+            final boolean resident = storedGraph != null;
+            final boolean spilled = shard.spilledGraphIds.remove(graphId);
+            if (!resident && !spilled) {
+                throw graphNotFound(graphId);
+            }
+            if (graphLog.isEnabled()) {
+                dirtyGraphIds.remove(graphId);
+                graphLog.append(GraphLogRecord.delete(graphId));
+            }
+            graphSnapshotStore.delete(graphId);
+        }
+    }
+
     /**
      * Return the graph based on the provided graph id.
      * In case the graph is not found will throw {@GraphNotFoundException}.
@@ -46,8 +233,185 @@ public class GraphRepository {
      * @return the graph or throw exception if now found.
      */
     public Graph lookup(final Long graphId) {
-        return graphs.stream().filter(graph -> graph.getId().equals(graphId)).findFirst()
-                .orElseThrow(() -> new GraphNotFoundException(String.format("Graph with id: %s not found!", graphId)));
+        StoredGraph storedGraph = shardOf(graphId).graphs.get(graphId);
+        if (storedGraph == null) {
+            synchronized (lockOf(graphId)) {
+                storedGraph = resident(graphId);
+            }
+            evictIfNeeded(graphId);
+        }
+        if (evictionPolicy.isEnabled()) {
+            storedGraph.lastAccessNanos = evictionPolicy.now();
+        }
+        return storedGraph.getGraph();
+    }
+
+    /**
+     * Return the graph based on the provided graph id, if it exists.
+     *
+     * @param graphId the graph id
+     * @return the graph or empty if not found
+     */
+    public Optional<Graph> find(final Long graphId) {
+        return Optional.ofNullable(shardOf(graphId).graphs.get(graphId)).map(StoredGraph::getGraph);
+    }
+
+    /**
+     * @return the current version of every graph held in memory
+     */
+    public List<Graph> getGraphs() {
+        final List<Graph> residentGraphs = new ArrayList<>();
+        for (final Shard shard : shards) {
+            shard.graphs.values().forEach(storedGraph -> residentGraphs.add(storedGraph.getGraph()));
+        }
+        return residentGraphs;
+    }
+
+    /**
+     * @return the number of graphs, held in memory or spilled
+     */
+    public int size() {
+        int size = 0;
+        for (final Shard shard : shards) {
+            size += shard.size();
+        }
+        return size;
+    }
+
+    /**
+     * @return the number of graphs spilled to their snapshots
+     */
+    public int getSpilledCount() {
+        int spilledCount = 0;
+        for (final Shard shard : shards) {
+            spilledCount += shard.spilledGraphIds.size();
+        }
+        return spilledCount;
+    }
+
+    /**
+     * @return the number of graphs evicted from memory so far
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * @return the estimated heap memory of the graphs held in memory and their indexes, the shared bodies
+     * being accounted once
+     * @see Graph#getMemoryBytes()
+     */
+    public long getMemoryBytes() {
+        long bytes = 0;
+        for (final Shard shard : shards) {
+            for (final StoredGraph storedGraph : shard.graphs.values()) {
+                bytes += storedGraph.getGraph().getMemoryBytes();
+            }
+        }
+        return bytes - graphBodies.getSavedBytes();
+    }
+
+    /**
+     * @return the number of shards the graphs are partitioned into
+     */
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * @param shard the shard, from 0 to the number of shards (exclusive)
+     * @return the number of graphs of the shard, held in memory or spilled
+     */
+    public int getShardSize(final int shard) {
+        return shards[shard].size();
+    }
+
+    /**
+     * @param shard the shard, from 0 to the number of shards (exclusive)
+     * @return the estimated heap memory of the graphs of the shard held in memory and their indexes, the
+     * shared bodies being accounted to a single shard
+     */
+    public long getShardMemoryBytes(final int shard) {
+        long bytes = 0;
+        for (final StoredGraph storedGraph : shards[shard].graphs.values()) {
+            if (graphBodies.isAccounted(storedGraph.bodyHash, storedGraph.getGraph())) {
+                bytes += storedGraph.getGraph().getMemoryBytes();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * @return the number of graphs held in memory sharing the body of another graph having the same content
+     */
+    public int getDeduplicatedCount() {
+        return graphBodies.getSharingCount();
+    }
+
+    /**
+     * @return the estimated heap memory saved by the graphs sharing their bodies
+     */
+    public long getDeduplicationSavedBytes() {
+        return graphBodies.getSavedBytes();
+    }
+
+    /**
+     * @return the number of graph changes appended to the log so far
+     */
+    public long getLogRecordCount() {
+        return graphLog.getRecordCount();
+    }
+
+    /**
+     * @return the number of times the log was forced to the disk so far, each time for all the changes
+     * appended meanwhile
+     */
+    public long getLogSyncCount() {
+        return graphLog.getSyncCount();
+    }
+
+    /**
+     * Compact the log: roll it, write the snapshots of the graphs changed since the previous compaction and
+     * delete the segments preceding the roll, their changes being held by the snapshots. The snapshot directory
+     * is forced to the disk before, so the snapshots renamed into place or deleted are not lost along with the
+     * segments holding their changes. The graphs changed after the roll are written to the log segment kept,
+     * and to their snapshots by the next compaction.
+     */
+    @Scheduled(fixedDelayString = "${graph.log.compaction-interval:60000}")
+    public void compactLog() {
+        if (!graphLog.isEnabled() || (dirtyGraphIds.isEmpty() && !graphLog.hasRecordsSinceRoll())) {
+            return;
+        }
+        final long start = System.currentTimeMillis();
+        final long segment = graphLog.roll();
+        int written = 0;
+        for (final Long graphId : new ArrayList<>(dirtyGraphIds)) {
+            // the graph is published holding its lock, after its change was appended
+            synchronized (lockOf(graphId)) {
+                final StoredGraph storedGraph = shardOf(graphId).graphs.get(graphId);
+                if (dirtyGraphIds.remove(graphId) && storedGraph != null) {
+                    graphSnapshotStore.write(storedGraph.getGraph());
+                    written++;
+                }
+            }
+        }
+        graphSnapshotStore.sync();
+        graphLog.deleteSegmentsBefore(segment);
+        LOG.info("Graph log compacted in {} ms, {} snapshots written", System.currentTimeMillis() - start, written);
+    }
+
+    /**
+     * Evict the expired graphs, estimate again the memory of the graphs held in memory, as the lazily built
+     * indexes grow them between their writes, and evict the least recently accessed ones exceeding the budget.
+     */
+    @Scheduled(fixedDelayString = "${graph.store.eviction-interval:10000}")
+    public void evictIfNeeded() {
+        if (!evictionPolicy.isEnabled()) {
+            return;
+        }
+        for (final Shard shard : shards) {
+            sweep(shard);
+        }
     }
 
     /**
@@ -59,9 +423,420 @@ public class GraphRepository {
      * @return the graph node ids having the provided no of parents
      */
     public Set<Integer> getNodesHavingParentsCount(final Long graphId, final int parentsCount) {
+        return getNodesHavingParentsCount(graphId, parentsCount, parentsCount);
+    }
+
+    /**
+     * Return the graph node ids having a number of parents in the provided range.
+     * In case the graph is not found will throw {@GraphNotFoundException}.
+     *
+     * @param graphId    the graph id
+     * @param minParents the minimum number of node parents (inclusive)
+     * @param maxParents the maximum number of node parents (inclusive)
+     * @return a read only view of the graph node ids having a number of parents in the provided range
+     */
+    public Set<Integer> getNodesHavingParentsCount(final Long graphId, final int minParents, final int maxParents) {
+        final Graph existingGraph = lookup(graphId);
+        return parentsCountIndex(existingGraph).nodeIds(existingGraph, minParents, maxParents);
+    }
+
+    /**
+     * Return the number of graph nodes having a number of parents in the provided range.
+     * In case the graph is not found will throw {@GraphNotFoundException}.
+     *
+     * @param graphId    the graph id
+     * @param minParents the minimum number of node parents (inclusive)
+     * @param maxParents the maximum number of node parents (inclusive)
+     * @return the number of graph nodes having a number of parents in the provided range
+     */
+    public int countNodesHavingParentsCount(final Long graphId, final int minParents, final int maxParents) {
+        return parentsCountIndex(lookup(graphId)).count(minParents, maxParents);
+    }
+
+    /**
+     * Return a page of the graph node ids having a number of parents in the provided range, ordered
+     * by the number of parents and then by id. The cursor of a page is the number of parents and
+     * the id of its last node, so the next page starts right after that node.
+     * In case the graph is not found will throw {@GraphNotFoundException}.
+     *
+     * @param graphId    the graph id
+     * @param minParents the minimum number of node parents (inclusive)
+     * @param maxParents the maximum number of node parents (inclusive)
+     * @param cursor     the cursor returned with the previous page or null for the first page
+     * @param limit      the maximum number of node ids of the page
+     * @return the page of node ids
+     */
+    public NodesPage getNodesHavingParentsCountPage(final Long graphId, final int minParents, final int maxParents,
+                                                    final String cursor, final int limit) {
         final Graph existingGraph = lookup(graphId);
-        return existingGraph.getNodesHeap().values().stream()
-                .filter(node -> node.getParentsCount() == parentsCount)
-                .map(Node::getId).collect(Collectors.toSet());
+        final ParentsCountIndex index = parentsCountIndex(existingGraph);
+
+        final int to = Math.max(index.from(minParents), index.to(maxParents));
+        int from = index.from(minParents);
+        if (cursor != null) {
+            final String[] parts = cursor.split(CURSOR_SEPARATOR, 2);
+            try {
+                from = Math.max(from, index.positionAfter(existingGraph, Integer.parseInt(parts[0]), Integer.parseInt(parts[1])));
+            } catch (final NumberFormatException | ArrayIndexOutOfBoundsException exception) {
+                throw new InvalidCursorException(String.format("Invalid cursor %s!", cursor));
+            }
+        }
+        from = Math.min(from, to);
+        final int end = (int) Math.min(to, (long) from + limit);
+
+        final List<Integer> nodeIds = new ArrayList<>(end - from);
+        for (int position = from; position < end; position++) {
+            nodeIds.add(existingGraph.getNodeId(index.getNode(position)));
+        }
+        String nextCursor = null;
+        if (end < to) {
+            final int lastNode = index.getNode(end - 1);
+            nextCursor = existingGraph.getParentsCount(lastNode) + CURSOR_SEPARATOR + existingGraph.getNodeId(lastNode);
+        }
+        return new NodesPage(nodeIds, nextCursor);
+    }
+
+    /**
+     * Return the graph held in memory, mapping it again from its snapshot if it was spilled.
+     * Must be called holding the lock of the graph.
+     */
+    private StoredGraph resident(final Long graphId) {
+        final Shard shard = shardOf(graphId);
+        final StoredGraph storedGraph = shard.graphs.get(graphId);
+        if (storedGraph != null) {
+            return storedGraph;
+        }
+        if (!shard.spilledGraphIds.contains(graphId)) {
+            throw graphNotFound(graphId);
+        }
+        final StoredGraph reloadedGraph = new StoredGraph(graphSnapshotStore.load(graphId), null, evictionPolicy.now());
+        store(reloadedGraph);
+        shard.spilledGraphIds.remove(graphId);
+        LOG.info("Graph {} reloaded from its snapshot", graphId);
+        residencyListeners.forEach(listener -> listener.onGraphReloaded(reloadedGraph.getGraph()));
+        return reloadedGraph;
+    }
+
+    /**
+     * Evict the least recently accessed graphs of the shard of the given graph while the running total of the
+     * memory of the shard exceeds its share of the budget.
+     *
+     * @param keptGraphId the id of the graph just stored or reloaded, which is not evicted
+     */
+    private void evictIfNeeded(final Long keptGraphId) {
+        if (!evictionPolicy.isEnabled()) {
+            return;
+        }
+        final Shard shard = shardOf(keptGraphId);
+        if (!evictionPolicy.isOverBudget(shard.memoryBytes.get(), shards.length)) {
+            return;
+        }
+        synchronized (shard.evictionLock) {
+            evictOverBudget(shard, keptGraphId);
+        }
+    }
+
+    /**
+     * Evict the expired graphs of the shard, estimate again the memory of the others, rebuild the access
+     * order of the shard by last access and evict its graphs exceeding the budget.
+     */
+    private void sweep(final Shard shard) {
+        synchronized (shard.evictionLock) {
+            final long now = evictionPolicy.now();
+            final List<StoredGraph> residentGraphs = new ArrayList<>();
+            for (final StoredGraph storedGraph : shard.graphs.values()) {
+                if (evictionPolicy.isExpired(storedGraph.lastAccessNanos, now)) {
+                    evict(storedGraph, "expired");
+                } else if (estimateMemory(shard, storedGraph)) {
+                    residentGraphs.add(storedGraph);
+                }
+            }
+
+            residentGraphs.sort(Comparator.comparingLong(storedGraph -> storedGraph.lastAccessNanos));
+            shard.accessOrder.clear();
+            for (final StoredGraph storedGraph : residentGraphs) {
+                storedGraph.checkedAccessNanos = storedGraph.lastAccessNanos;
+                shard.accessOrder.add(storedGraph.getGraph().getId());
+            }
+            evictOverBudget(shard, null);
+        }
+    }
+
+    /**
+     * Estimate again the memory of the graph, unless it was replaced or removed meanwhile.
+     *
+     * @return true if the graph is still held in memory
+     */
+    private boolean estimateMemory(final Shard shard, final StoredGraph storedGraph) {
+        final Long graphId = storedGraph.getGraph().getId();
+        synchronized (lockOf(graphId)) {
+            if (shard.graphs.get(graphId) != storedGraph) {
+                return false;
+            }
+            final long memoryBytes = accountedMemoryBytes(storedGraph);
+            shard.memoryBytes.addAndGet(memoryBytes - storedGraph.memoryBytes);
+            storedGraph.memoryBytes = memoryBytes;
+            return true;
+        }
+    }
+
+    /**
+     * Evict the graphs from the head of the access order of the shard while the shard exceeds its share of the
+     * memory budget. The graphs accessed since they were queued are queued again, once, the graphs sharing their
+     * body with other graphs are queued again, and the ids of the graphs no longer held in memory are dropped. The evictions of a shard run one at a time, holding the eviction lock
+     * of the shard, and never while holding the lock of a graph since every eviction takes the lock of the
+     * evicted graph.
+     *
+     * @param keptGraphId the id of the graph which is not evicted, or null
+     */
+    private void evictOverBudget(final Shard shard, final Long keptGraphId) {
+        boolean keptGraphQueued = false;
+        // every graph is checked at most twice, the graphs accessed meanwhile being queued again once
+        for (int checks = 2 * shard.graphs.size(); checks > 0 && evictionPolicy.isOverBudget(shard.memoryBytes.get(), shards.length); checks--) {
+            final Long graphId = shard.accessOrder.poll();
+            if (graphId == null) {
+                break;
+            }
+            final StoredGraph storedGraph = shard.graphs.get(graphId);
+            if (storedGraph == null) {
+                continue;
+            }
+            if (graphId.equals(keptGraphId)) {
+                keptGraphQueued = true;
+                continue;
+            }
+            final long lastAccessNanos = storedGraph.lastAccessNanos;
+            if (lastAccessNanos != storedGraph.checkedAccessNanos) {
+                storedGraph.checkedAccessNanos = lastAccessNanos;
+                shard.accessOrder.add(graphId);
+                continue;
+            }
+            if (storedGraph.memoryBytes == 0 || graphBodies.isShared(storedGraph.bodyHash, storedGraph.getGraph())) {
+                // its body stays in memory with the other graphs sharing it, evicting it would free nothing
+                shard.accessOrder.add(graphId);
+                continue;
+            }
+            if (!evict(storedGraph, "over the memory budget") && shard.graphs.containsKey(graphId)) {
+                // replaced by its next version meanwhile
+                shard.accessOrder.add(graphId);
+            }
+        }
+        if (keptGraphQueued) {
+            shard.accessOrder.add(keptGraphId);
+        }
+    }
+
+    /**
+     * Evict the graph from memory, spilling it when the snapshots are enabled, unless it was replaced
+     * by its next version or deleted meanwhile.
+     *
+     * @return true if the graph was evicted
+     */
+    private boolean evict(final StoredGraph storedGraph, final String reason) {
+        final Long graphId = storedGraph.getGraph().getId();
+        final Shard shard = shardOf(graphId);
+        synchronized (lockOf(graphId)) {
+            if (!shard.graphs.remove(graphId, storedGraph)) {
+                return false;
+            }
+            removed(shard, storedGraph);
+            if (dirtyGraphIds.remove(graphId)) {
+                graphSnapshotStore.write(storedGraph.getGraph());
+            }
+            if (graphSnapshotStore.isEnabled()) {
+                shard.spilledGraphIds.add(graphId);
+            }
+        }
+        evictionCount.incrementAndGet();
+        LOG.info("Graph {} {} from memory, {}", graphId, graphSnapshotStore.isEnabled() ? "spilled" : "dropped", reason);
+        residencyListeners.forEach(listener -> listener.onGraphEvicted(graphId));
+        return true;
+    }
+
+    /**
+     * Append the change of the graph to the log when enabled, otherwise write the snapshot of the graph.
+     * The graph is marked changed before its change is appended, so a compaction rolling the log meanwhile
+     * writes its snapshot. Must be called holding the lock of the graph.
+     */
+    private void persist(final Graph graph, final GraphLogRecord record) {
+        if (graphLog.isEnabled()) {
+            dirtyGraphIds.add(graph.getId());
+            graphLog.append(record);
+        } else {
+            graphSnapshotStore.write(graph);
+        }
+    }
+
+    /**
+     * Apply a change read from the log over the restored graphs. The changes already held by the snapshots,
+     * of a compaction interrupted before deleting its segments, are skipped.
+     */
+    private void replay(final GraphLogRecord record) {
+        final Long graphId = record.getGraphId();
+        final Map<Long, StoredGraph> graphs = shardOf(graphId).graphs;
+        final StoredGraph storedGraph = graphs.get(graphId);
+        switch (record.getType()) {
+            case CREATE:
+                if (storedGraph == null) {
+                    final GraphBodies.Registration registration = graphBodies.register(record.getGraph());
+                    store(new StoredGraph(registration.getGraph(), registration.getHash(), evictionPolicy.now()));
+                    dirtyGraphIds.add(graphId);
+                }
+                break;
+            case UPDATE:
+                if (storedGraph == null || storedGraph.getGraph().getVersion() >= record.getVersion()) {
+                    break;
+                }
+                if (storedGraph.getGraph().getVersion() != record.getVersion() - 1) {
+                    LOG.warn("Graph {} change to version {} skipped, the graph being at version {}",
+                            graphId, record.getVersion(), storedGraph.getGraph().getVersion());
+                    break;
+                }
+                final Graph graph = GraphChange.apply(storedGraph.getGraph(), record.getMutation()).getGraph();
+                store(new StoredGraph(graph, null, evictionPolicy.now()));
+                dirtyGraphIds.add(graphId);
+                break;
+            case DELETE:
+                removed(shardOf(graphId), graphs.remove(graphId));
+                dirtyGraphIds.remove(graphId);
+                graphSnapshotStore.delete(graphId);
+                break;
+            default:
+                throw new IllegalStateException(String.format("Unsupported graph log record %s", record.getType()));
+        }
+    }
+
+    /**
+     * Hold the graph in memory, in place of its previous version, adding its memory to the running total of its
+     * shard and queueing its id in the access order of its shard when it was not held in memory yet. Must be called
+     * holding the lock of the graph, or on startup.
+     */
+    private void store(final StoredGraph storedGraph) {
+        final Long graphId = storedGraph.getGraph().getId();
+        final Shard shard = shardOf(graphId);
+        storedGraph.memoryBytes = accountedMemoryBytes(storedGraph);
+        final StoredGraph previous = shard.graphs.put(graphId, storedGraph);
+        shard.memoryBytes.addAndGet(storedGraph.memoryBytes);
+        removed(shard, previous);
+        if (previous != null) {
+            // the next version keeps the place of the previous one, the update counting as an access
+            storedGraph.checkedAccessNanos = previous.checkedAccessNanos;
+        } else if (evictionPolicy.isEnabled()) {
+            shard.accessOrder.add(graphId);
+        }
+    }
+
+    /**
+     * Release the body of a graph no longer held in memory and remove its memory from the running total of
+     * its shard. Must be called holding the lock of the graph, or on startup.
+     */
+    private void removed(final Shard shard, final StoredGraph storedGraph) {
+        if (storedGraph != null) {
+            graphBodies.release(storedGraph.bodyHash, storedGraph.getGraph());
+            shard.memoryBytes.addAndGet(-storedGraph.memoryBytes);
+        }
+    }
+
+    /**
+     * @return the memory of the graph and its indexes, 0 if its body is shared and accounted to another graph
+     */
+    private long accountedMemoryBytes(final StoredGraph storedGraph) {
+        return graphBodies.isAccounted(storedGraph.bodyHash, storedGraph.getGraph()) ? storedGraph.getGraph().getMemoryBytes() : 0;
+    }
+
+    /**
+     * The graphs share a fixed number of locks per shard, so looking up or updating an unknown id leaves nothing
+     * behind. The high bits select the lock, the low ones selecting the shard.
+     */
+    private Object lockOf(final Long graphId) {
+        return shardOf(graphId).graphLocks[(int) (graphId >>> 48) & (GRAPH_LOCKS - 1)];
+    }
+
+    private Shard shardOf(final Long graphId) {
+        return shards[partitioning.shardOf(graphId)];
+    }
+
+    private static GraphNotFoundException graphNotFound(final Long graphId) {
+        return new GraphNotFoundException(String.format("Graph with id: %s not found!", graphId));
+    }
+
+    /**
+     * Return the parents count index of the graph, built on graph creation
+     * or on first access for the graphs restored from snapshots.
+     */
+    private ParentsCountIndex parentsCountIndex(final Graph graph) {
+        return graph.getIndex(ParentsCountIndex.class, ParentsCountIndex::build);
+    }
+
+    private static TopologyIndex topologyIndex(final Graph graph) {
+        return graph.getIndex(TopologyIndex.class, TopologyIndex::build);
+    }
+
+    /**
+     * Generate a new graph id. Every sequence value is scrambled with a bijective 64 bit mix
+     * (the MurmurHash3 finalizer), so ids never collide inside this process while still not
+     * revealing how many graphs were created.
+     *
+     * @return the graph id
+     */
+    private Long nextGraphId() {
+        long id;
+        do {
+            id = ID_SEQUENCE.incrementAndGet();
+            id = (id ^ (id >>> 33)) * 0xff51afd7ed558ccdL;
+            id = (id ^ (id >>> 33)) * 0xc4ceb9fe1a85ec53L;
+            id = id ^ (id >>> 33);
+        } while (shardOf(id).graphs.containsKey(id) || shardOf(id).spilledGraphIds.contains(id));
+        return id;
+    }
+
+    /**
+     * The graphs of a shard, held in memory or spilled, the locks of its graphs and the lock of its evictions,
+     * the running total of the memory of its graphs held in memory and their ids in access order. The ids of
+     * the graphs removed from memory are dropped from the access order when reaching its head, or when the
+     * access order is rebuilt.
+     */
+    private static final class Shard {
+        private final Map<Long, StoredGraph> graphs = new ConcurrentHashMap<>();
+        private final Set<Long> spilledGraphIds = ConcurrentHashMap.newKeySet();
+        private final Object[] graphLocks = new Object[GRAPH_LOCKS];
+        private final Object evictionLock = new Object();
+        private final AtomicLong memoryBytes = new AtomicLong();
+        private final Queue<Long> accessOrder = new ConcurrentLinkedQueue<>();
+
+        private Shard() {
+            for (int lock = 0; lock < GRAPH_LOCKS; lock++) {
+                graphLocks[lock] = new Object();
+            }
+        }
+
+        private int size() {
+            return graphs.size() + spilledGraphIds.size();
+        }
+    }
+
+    /**
+     * A graph held in memory, with the content hash its body is registered with (null if the body is not
+     * registered), the time of its last access, the time of its last access seen by the evictions and its
+     * memory added to the running total of its shard, estimated when stored and by the last eviction sweep.
+     * The memory is only changed holding the lock of the graph.
+     */
+    private static final class StoredGraph {
+        private final Graph graph;
+        private final Long bodyHash;
+        private volatile long lastAccessNanos;
+        private long checkedAccessNanos;
+        private long memoryBytes;
+
+        private StoredGraph(final Graph graph, final Long bodyHash, final long lastAccessNanos) {
+            this.graph = graph;
+            this.bodyHash = bodyHash;
+            this.lastAccessNanos = lastAccessNanos;
+            this.checkedAccessNanos = lastAccessNanos;
+        }
+
+        private Graph getGraph() {
+            return graph;
+        }
     }
 }
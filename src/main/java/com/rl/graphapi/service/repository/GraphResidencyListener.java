@@ -0,0 +1,20 @@
+package com.rl.graphapi.service.repository;
+
+import com.rl.graphapi.service.model.Graph;
+
+/**
+ * Notified by the {@link GraphRepository} when a graph leaves the memory, evicted, and when it is mapped
+ * again from its snapshot on its next access.
+ */
+public interface GraphResidencyListener {
+
+    /**
+     * @param graphId the id of the graph evicted from memory
+     */
+    void onGraphEvicted(Long graphId);
+
+    /**
+     * @param graph the graph reloaded from its snapshot
+     */
+    void onGraphReloaded(Graph graph);
+}
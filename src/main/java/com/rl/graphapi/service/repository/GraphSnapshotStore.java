@@ -0,0 +1,132 @@
+package com.rl.graphapi.service.repository;
+
+import com.rl.graphapi.service.model.Graph;
+import com.rl.graphapi.service.model.GraphSnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps a {@link GraphSnapshot} file for every graph in the directory configured by
+ * {@code graph.snapshot.directory}, so the graphs survive a restart. Snapshots are
+ * disabled when no directory is configured.
+ */
+@Component
+public class GraphSnapshotStore {
+
+    private final static Logger LOG = LoggerFactory.getLogger(GraphSnapshotStore.class);
+    private static final String SNAPSHOT_EXTENSION = ".graph";
+
+    private final Path directory;
+
+    public GraphSnapshotStore(@Value("${graph.snapshot.directory:}") final String directory) {
+        this.directory = directory.trim().isEmpty() ? null : Paths.get(directory.trim());
+    }
+
+    public boolean isEnabled() {
+        return directory != null;
+    }
+
+    /**
+     * Write the snapshot of the graph, if the snapshots are enabled.
+     *
+     * @param graph the graph
+     */
+    public void write(final Graph graph) {
+        if (!isEnabled()) {
+            return;
+        }
+        try {
+            Files.createDirectories(directory);
+            GraphSnapshot.write(graph, snapshotFile(graph.getId()));
+        } catch (final IOException exception) {
+            throw new UncheckedIOException(String.format("Snapshot of graph %s could not be written", graph.getId()), exception);
+        }
+    }
+
+    /**
+     * Map the snapshot of the graph, written while the snapshots are enabled.
+     *
+     * @param graphId the graph id
+     * @return the mapped graph
+     */
+    public Graph load(final Long graphId) {
+        try {
+            return GraphSnapshot.map(snapshotFile(graphId));
+        } catch (final IOException exception) {
+            throw new UncheckedIOException(String.format("Snapshot of graph %s could not be read", graphId), exception);
+        }
+    }
+
+    /**
+     * Delete the snapshot of the graph, if the snapshots are enabled. The graphs already mapped from
+     * the snapshot stay readable until they are no longer referenced.
+     *
+     * @param graphId the graph id
+     */
+    public void delete(final Long graphId) {
+        if (!isEnabled()) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(snapshotFile(graphId));
+        } catch (final IOException exception) {
+            throw new UncheckedIOException(String.format("Snapshot of graph %s could not be deleted", graphId), exception);
+        }
+    }
+
+    /**
+     * Force the entries of the snapshot directory to the disk, so the snapshots renamed into place and the
+     * snapshots deleted so far survive a crash, if the snapshots are enabled.
+     */
+    public void sync() {
+        if (!isEnabled() || !Files.isDirectory(directory)) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (final IOException exception) {
+            throw new UncheckedIOException(String.format("Graph snapshots directory %s could not be synced", directory), exception);
+        }
+    }
+
+    /**
+     * Map all the snapshots from the directory. Invalid snapshot files are skipped.
+     *
+     * @return the mapped graphs
+     */
+    public List<Graph> loadAll() {
+        final List<Graph> graphs = new ArrayList<>();
+        if (!isEnabled() || !Files.isDirectory(directory)) {
+            return graphs;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SNAPSHOT_EXTENSION)) {
+            for (final Path file : files) {
+                try {
+                    graphs.add(GraphSnapshot.map(file));
+                } catch (final IOException exception) {
+                    LOG.warn("Graph snapshot {} skipped: {}", file, exception.getMessage());
+                }
+            }
+        } catch (final IOException exception) {
+            throw new UncheckedIOException(String.format("Graph snapshots could not be listed from %s", directory), exception);
+        }
+        return graphs;
+    }
+
+    private Path snapshotFile(final Long graphId) {
+        return directory.resolve(graphId + SNAPSHOT_EXTENSION);
+    }
+}
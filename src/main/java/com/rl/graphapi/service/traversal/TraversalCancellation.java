@@ -0,0 +1,70 @@
+package com.rl.graphapi.service.traversal;
+
+import com.rl.graphapi.service.exception.QueryCancelledException;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Cooperative cancellation of the traversals: a query is cancelled by interrupting the thread running it,
+ * and the traversals check the interrupt flag between their levels or every {@value #CHECK_INTERVAL}
+ * visited nodes, so a cancelled traversal stops early while the check stays off the inner loops.
+ * <p>
+ * The traversals run by a query on other threads, e.g. by a parallel evaluation on a pool interrupting
+ * nothing when the query is cancelled, are run through {@link #run(AtomicBoolean, Supplier)} with a
+ * cancellation flag the query sets once cancelled.
+ */
+public final class TraversalCancellation {
+    public static final int CHECK_INTERVAL = 1024;
+    // the cancellation flag of the query the current thread runs a task of, if any
+    private static final ThreadLocal<AtomicBoolean> CANCELLED = new ThreadLocal<>();
+
+    private TraversalCancellation() {
+    }
+
+    /**
+     * @throws QueryCancelledException if the current thread was interrupted or the query it runs a task of
+     *                                 was cancelled
+     */
+    public static void check() {
+        final AtomicBoolean cancelled = CANCELLED.get();
+        if (Thread.currentThread().isInterrupted() || (cancelled != null && cancelled.get())) {
+            throw new QueryCancelledException("Query cancelled!");
+        }
+    }
+
+    /**
+     * Run a task of a query on the current thread, its traversals stopping once the flag is set.
+     *
+     * @param cancelled the cancellation flag of the query
+     * @param task      the task
+     * @return the result of the task
+     * @throws QueryCancelledException if the query was cancelled before or while the task was running
+     */
+    public static <T> T run(final AtomicBoolean cancelled, final Supplier<T> task) {
+        final AtomicBoolean previous = CANCELLED.get();
+        CANCELLED.set(cancelled);
+        try {
+            check();
+            return task.get();
+        } finally {
+            if (previous == null) {
+                CANCELLED.remove();
+            } else {
+                CANCELLED.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Check the cancellation once every {@value #CHECK_INTERVAL} visited nodes.
+     *
+     * @param visitedNodes the number of nodes visited so far
+     * @throws QueryCancelledException if the current thread was interrupted
+     */
+    public static void check(final int visitedNodes) {
+        if ((visitedNodes & (CHECK_INTERVAL - 1)) == 0) {
+            check();
+        }
+    }
+}
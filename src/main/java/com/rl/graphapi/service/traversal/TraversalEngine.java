@@ -0,0 +1,250 @@
+package com.rl.graphapi.service.traversal;
+
+import com.rl.graphapi.service.GraphMetrics;
+import com.rl.graphapi.service.GraphMetrics.Traversal;
+import com.rl.graphapi.service.exception.TraversalBudgetExceededException;
+import com.rl.graphapi.service.index.ChildrenIndex;
+import com.rl.graphapi.service.index.TopologyIndex;
+import com.rl.graphapi.service.model.Graph;
+import com.rl.graphapi.service.model.NodeDistance;
+import com.rl.graphapi.service.model.NodeRanges;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Breadth first traversals of the graphs, answering the path and neighbourhood queries.
+ * <p>
+ * The traversals run on the {@link TraversalWorkspace} of the calling thread: primitive int queues and a
+ * generation stamped visited array, reused across the queries, so a traversal allocates nothing but its
+ * result. Every traversal is stopped once it visits more than {@code graph.traversal.max-visited-nodes}
+ * nodes (0 meaning no limit), failing the query with {@link TraversalBudgetExceededException}, and checks
+ * the {@link TraversalCancellation} along the way. The work of every traversal is recorded by the
+ * {@link GraphMetrics}.
+ */
+@Component
+public class TraversalEngine {
+    private final GraphMetrics graphMetrics;
+    private final int maxVisitedNodes;
+
+    public TraversalEngine(final GraphMetrics graphMetrics,
+                           @Value("${graph.traversal.max-visited-nodes:0}") final int maxVisitedNodes) {
+        this.graphMetrics = graphMetrics;
+        this.maxVisitedNodes = maxVisitedNodes > 0 ? maxVisitedNodes : Integer.MAX_VALUE;
+    }
+
+    /**
+     * Find a shortest path from a node up to one of its ancestors, following the parents.
+     * <p>
+     * The topology prunes the search: every ancestor of a node having a depth is strictly shallower, so
+     * there is no path when the nodes are in different components or the ancestor is not shallower than
+     * the node, and a reached node having a depth is not expanded unless it is deeper than the ancestor.
+     * Only the nodes on or below a cycle, having no depth, are expanded without this bound.
+     *
+     * @param graph    the graph
+     * @param topology the topology index of the graph
+     * @param node     the dense index of the node
+     * @param ancestor the dense index of the ancestor
+     * @return the dense indexes of the path nodes, from the node to the ancestor, empty if the ancestor is
+     * not an ancestor of the node
+     */
+    public int[] shortestAncestorPath(final Graph graph, final TopologyIndex topology, final int node, final int ancestor) {
+        if (node == ancestor) {
+            return new int[]{node};
+        }
+        final int ancestorDepth = topology.getDepth(ancestor);
+        if (!topology.isSameComponent(node, ancestor) || !canReach(topology.getDepth(node), ancestorDepth)) {
+            return new int[0];
+        }
+
+        final TraversalWorkspace workspace = TraversalWorkspace.acquire(graph.getNodesCount());
+        final int[] visited = workspace.visited();
+        final int[] queue = workspace.queue();
+        final int[] predecessors = workspace.predecessors();
+        final int mark = workspace.firstMark();
+
+        int head = 0;
+        int tail = 0;
+        visited[node] = mark;
+        queue[tail++] = node;
+        boolean found = false;
+        int maxFrontier = 1;
+        int depth = 0;
+        search:
+        while (head < tail) {
+            maxFrontier = Math.max(maxFrontier, tail - head);
+            depth++;
+            TraversalCancellation.check();
+
+            final int levelEnd = tail;
+            for (; head < levelEnd; head++) {
+                final int current = queue[head];
+                for (int position = graph.getParentsFrom(current); position < graph.getParentsTo(current); position++) {
+                    final int parent = graph.getParent(position);
+                    if (visited[parent] == mark) {
+                        continue;
+                    }
+                    visited[parent] = mark;
+                    predecessors[parent] = current;
+                    if (parent == ancestor) {
+                        found = true;
+                        break search;
+                    }
+                    if (canReach(topology.getDepth(parent), ancestorDepth)) {
+                        checkBudget(tail);
+                        queue[tail++] = parent;
+                    }
+                }
+            }
+        }
+        graphMetrics.recordTraversal(Traversal.ANCESTOR_PATH, tail, maxFrontier, depth);
+        if (!found) {
+            return new int[0];
+        }
+
+        int length = 1;
+        for (int current = ancestor; current != node; current = predecessors[current]) {
+            length++;
+        }
+        final int[] path = new int[length];
+        int current = ancestor;
+        for (int position = length - 1; position >= 0; position--) {
+            path[position] = current;
+            current = predecessors[current];
+        }
+        return path;
+    }
+
+    /**
+     * @return false if a node of the given depth can't have an ancestor of the given ancestor depth
+     */
+    private static boolean canReach(final int depth, final int ancestorDepth) {
+        return depth == TopologyIndex.NO_DEPTH || (ancestorDepth != TopologyIndex.NO_DEPTH && ancestorDepth < depth);
+    }
+
+    /**
+     * Find the ancestors of a node within the given number of hops, along with their shortest hop distances.
+     *
+     * @param graph   the graph
+     * @param node    the dense index of the node
+     * @param maxHops the maximum number of hops
+     * @return the ancestors, the node excluded, ordered by distance and then by id
+     */
+    public List<NodeDistance> ancestorsWithin(final Graph graph, final int node, final int maxHops) {
+        final TraversalWorkspace workspace = TraversalWorkspace.acquire(graph.getNodesCount());
+        final int[] visited = workspace.visited();
+        final int[] queue = workspace.queue();
+        final int mark = workspace.firstMark();
+
+        int head = 0;
+        int tail = 0;
+        visited[node] = mark;
+        queue[tail++] = node;
+        final List<NodeDistance> ancestors = new ArrayList<>();
+        int maxFrontier = 1;
+        int depth = 0;
+        while (head < tail && depth < maxHops) {
+            maxFrontier = Math.max(maxFrontier, tail - head);
+            depth++;
+            TraversalCancellation.check();
+
+            final int levelEnd = tail;
+            for (; head < levelEnd; head++) {
+                final int current = queue[head];
+                for (int position = graph.getParentsFrom(current); position < graph.getParentsTo(current); position++) {
+                    final int parent = graph.getParent(position);
+                    if (visited[parent] != mark) {
+                        checkBudget(tail);
+                        visited[parent] = mark;
+                        queue[tail++] = parent;
+                    }
+                }
+            }
+            // the dense indexes follow the ids, so sorting the level sorts it by id
+            final int levelFrom = ancestors.size() + 1;
+            final int[] level = new int[tail - levelFrom];
+            System.arraycopy(queue, levelFrom, level, 0, level.length);
+            Arrays.sort(level);
+            for (final int ancestor : level) {
+                ancestors.add(new NodeDistance(graph.getNodeId(ancestor), depth));
+            }
+        }
+        graphMetrics.recordTraversal(Traversal.ANCESTORS_WITHIN, tail, maxFrontier, depth);
+        return Collections.unmodifiableList(ancestors);
+    }
+
+    /**
+     * Multi-source breadth first search, expanding all the sources at once one level per hop. The reached
+     * nodes and the expanded nodes, the reached ones and the sources, are tracked in bitsets of one bit per
+     * node, the reached bitset being the result. Every node is expanded at most once, so the search is
+     * linear in the size of the explored subgraph whatever the number of sources.
+     *
+     * @param graph    the graph
+     * @param sources  the dense indexes of the source nodes
+     * @param maxDepth the maximum number of hops
+     * @param children the children of the graph nodes to search the descendants, null to search the ancestors
+     * @return the ids of the reached nodes
+     */
+    public NodeRanges reachable(final Graph graph, final int[] sources, final int maxDepth, final ChildrenIndex children) {
+        final int words = (graph.getNodesCount() + Long.SIZE - 1) / Long.SIZE;
+        final long[] expanded = new long[words];
+        final long[] reached = new long[words];
+        final int[] queue = TraversalWorkspace.acquire(graph.getNodesCount()).queue();
+
+        int head = 0;
+        int tail = 0;
+        for (final int source : sources) {
+            if ((expanded[source >>> 6] & (1L << source)) == 0) {
+                expanded[source >>> 6] |= 1L << source;
+                queue[tail++] = source;
+            }
+        }
+
+        int maxFrontier = 0;
+        int depth = 0;
+        while (head < tail && depth < maxDepth) {
+            maxFrontier = Math.max(maxFrontier, tail - head);
+            depth++;
+            TraversalCancellation.check();
+
+            final int levelEnd = tail;
+            for (; head < levelEnd; head++) {
+                final int node = queue[head];
+                final int from = children == null ? graph.getParentsFrom(node) : children.getChildrenFrom(node);
+                final int to = children == null ? graph.getParentsTo(node) : children.getChildrenTo(node);
+                for (int position = from; position < to; position++) {
+                    final int next = children == null ? graph.getParent(position) : children.getChild(position);
+                    reached[next >>> 6] |= 1L << next;
+                    if ((expanded[next >>> 6] & (1L << next)) == 0) {
+                        checkBudget(tail);
+                        expanded[next >>> 6] |= 1L << next;
+                        queue[tail++] = next;
+                    }
+                }
+            }
+        }
+
+        graphMetrics.recordTraversal(children == null ? Traversal.ANCESTORS : Traversal.DESCENDANTS, tail, maxFrontier, depth);
+        return NodeRanges.of(graph, reached);
+    }
+
+    /**
+     * Check the budget of a traversal before it visits one more node, the traversals of the other services
+     * included, and the {@link TraversalCancellation} every {@link TraversalCancellation#CHECK_INTERVAL} nodes.
+     *
+     * @param visitedNodes the number of nodes visited so far
+     * @throws TraversalBudgetExceededException if one more node exceeds the budget
+     * @throws com.rl.graphapi.service.exception.QueryCancelledException if the query was cancelled
+     */
+    public void checkBudget(final int visitedNodes) {
+        if (visitedNodes >= maxVisitedNodes) {
+            throw new TraversalBudgetExceededException(String.format(
+                    "Query exceeded the budget of %s visited nodes, narrow it down to fewer nodes or hops!", maxVisitedNodes));
+        }
+        TraversalCancellation.check(visitedNodes);
+    }
+}
@@ -0,0 +1,120 @@
+package com.rl.graphapi.service.traversal;
+
+import java.util.Arrays;
+
+/**
+ * Per thread scratch memory reused by the graph traversals, so that a query does not allocate.
+ * <p>
+ * Visited nodes are marked by writing the current generation in the {@code visited} array, so the
+ * array never has to be cleared between traversals: starting a traversal only increments the
+ * generation. Every traversal owns three consecutive generation values, allowing two searches (e.g.
+ * the two sides of a bidirectional search) and the nodes reached by both of them to share the same array.
+ * <p>
+ * The arrays are sized for the largest graph traversed by the thread, up to {@value #MAX_RETAINED_NODES}
+ * nodes: the traversals of larger graphs get a workspace of their own, dropped once they are done, so a
+ * pool thread does not hold the memory of the largest graph it ever traversed. The distance and predecessor
+ * arrays, needed only by the traversals measuring hop distances or recording paths, are allocated on
+ * first use.
+ */
+public final class TraversalWorkspace {
+    /**
+     * The largest graph, in nodes, whose workspace is kept by the thread: up to 20 MB of arrays.
+     */
+    static final int MAX_RETAINED_NODES = 1 << 20;
+    private static final ThreadLocal<TraversalWorkspace> WORKSPACES = ThreadLocal.withInitial(TraversalWorkspace::new);
+
+    private int[] visited = new int[0];
+    private int[] queue = new int[0];
+    private int[] firstDistances = new int[0];
+    private int[] secondDistances = new int[0];
+    private int[] predecessors = new int[0];
+    private int generation;
+
+    private TraversalWorkspace() {
+    }
+
+    /**
+     * Return the workspace of the current thread, ready for a new traversal, or a new workspace not kept by
+     * the thread if the graph has more than {@value #MAX_RETAINED_NODES} nodes.
+     *
+     * @param nodesCount the number of nodes of the traversed graph
+     * @return the workspace
+     */
+    public static TraversalWorkspace acquire(final int nodesCount) {
+        final TraversalWorkspace workspace = nodesCount > MAX_RETAINED_NODES ? new TraversalWorkspace() : WORKSPACES.get();
+        workspace.prepare(nodesCount);
+        return workspace;
+    }
+
+    private void prepare(final int nodesCount) {
+        if (visited.length < nodesCount) {
+            visited = new int[nodesCount];
+            queue = new int[nodesCount];
+            generation = 0;
+        }
+        if (generation >= Integer.MAX_VALUE - 3) {
+            Arrays.fill(visited, 0);
+            generation = 0;
+        }
+        generation += 3;
+    }
+
+    /**
+     * @return the mark of the first search of the current traversal
+     */
+    public int firstMark() {
+        return generation;
+    }
+
+    /**
+     * @return the mark of the second search of the current traversal
+     */
+    public int secondMark() {
+        return generation + 1;
+    }
+
+    /**
+     * @return the mark of the nodes reached by both searches of the current traversal
+     */
+    public int thirdMark() {
+        return generation + 2;
+    }
+
+    public int[] visited() {
+        return visited;
+    }
+
+    public int[] queue() {
+        return queue;
+    }
+
+    /**
+     * @return the hop distances of the nodes reached by the first search, valid only for the nodes it marked
+     */
+    public int[] firstDistances() {
+        if (firstDistances.length < visited.length) {
+            firstDistances = new int[visited.length];
+        }
+        return firstDistances;
+    }
+
+    /**
+     * @return the hop distances of the nodes reached by the second search, valid only for the nodes it marked
+     */
+    public int[] secondDistances() {
+        if (secondDistances.length < visited.length) {
+            secondDistances = new int[visited.length];
+        }
+        return secondDistances;
+    }
+
+    /**
+     * @return the node every node was reached from by the first search, valid only for the nodes it marked
+     */
+    public int[] predecessors() {
+        if (predecessors.length < visited.length) {
+            predecessors = new int[visited.length];
+        }
+        return predecessors;
+    }
+}
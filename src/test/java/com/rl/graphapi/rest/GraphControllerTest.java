@@ -1,14 +1,42 @@
 package com.rl.graphapi.rest;
 
 import com.rl.graphapi.rest.converter.GraphConverter;
+import com.rl.graphapi.rest.converter.dto.AncestorIndexDTO;
+import com.rl.graphapi.rest.converter.dto.AncestorPathDTO;
+import com.rl.graphapi.rest.converter.dto.CacheStatisticsDTO;
+import com.rl.graphapi.rest.converter.dto.CommonAncestorDTO;
 import com.rl.graphapi.rest.converter.dto.GraphDTO;
+import com.rl.graphapi.rest.converter.dto.GraphSummaryDTO;
+import com.rl.graphapi.rest.converter.dto.NodeRangesDTO;
+import com.rl.graphapi.rest.converter.dto.NodesPageDTO;
 import com.rl.graphapi.rest.converter.dto.NodeDTO;
+import com.rl.graphapi.rest.executor.QueryExecutor;
+import com.rl.graphapi.rest.reader.BinaryEdgeReader;
+import com.rl.graphapi.rest.reader.CsvEdgeReader;
+import com.rl.graphapi.rest.reader.JsonEdgeReader;
+import com.rl.graphapi.rest.writer.BinaryGraphWriter;
+import com.rl.graphapi.rest.writer.NdjsonWriter;
+import com.rl.graphapi.service.CommonAncestorBatchService;
 import com.rl.graphapi.service.GraphProcessingService;
 import com.rl.graphapi.service.GraphService;
+import com.rl.graphapi.service.exception.EdgeNotFoundException;
 import com.rl.graphapi.service.exception.GraphNotFoundException;
 import com.rl.graphapi.service.exception.NodeNotFoundException;
+import com.rl.graphapi.service.exception.TraversalBudgetExceededException;
+import com.rl.graphapi.service.index.TopologyIndex;
+import com.rl.graphapi.service.model.CacheStatistics;
+import com.rl.graphapi.service.model.CommonAncestor;
 import com.rl.graphapi.service.model.Edge;
+import com.rl.graphapi.service.model.EdgeSource;
 import com.rl.graphapi.service.model.Graph;
+import com.rl.graphapi.service.model.GraphPage;
+import com.rl.graphapi.service.model.GraphBuilder;
+import com.rl.graphapi.service.model.GraphMutation;
+import com.rl.graphapi.service.model.NodePair;
+import com.rl.graphapi.service.model.NodeRanges;
+import com.rl.graphapi.service.model.NodeSetQuery;
+import com.rl.graphapi.service.model.NodesPage;
+import com.rl.graphapi.service.repository.GraphPartitioning;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -16,25 +44,51 @@ import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
-
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
+
+import javax.servlet.AsyncListener;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 import static org.springframework.http.MediaType.APPLICATION_JSON_UTF8;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @RunWith(SpringRunner.class)
 @WebMvcTest
+@Import({JsonEdgeReader.class, CsvEdgeReader.class, BinaryEdgeReader.class, NdjsonWriter.class, BinaryGraphWriter.class,
+        QueryExecutor.class, GraphPartitioning.class})
 public class GraphControllerTest {
 
     @Autowired
@@ -46,25 +100,32 @@ public class GraphControllerTest {
     @MockBean
     protected GraphProcessingService graphProcessingService;
 
+    @MockBean
+    protected CommonAncestorBatchService commonAncestorBatchService;
+
     @MockBean
     protected GraphConverter graphConverter;
 
+    @Autowired
+    private BinaryEdgeReader binaryEdgeReader;
+
+    @Autowired
+    private BinaryGraphWriter binaryGraphWriter;
+
+    private Graph createdGraph;
+
     @Before
     public void setUp() {
-        Mockito.reset(graphService, graphProcessingService, graphConverter);
+        Mockito.reset(graphService, graphProcessingService, commonAncestorBatchService, graphConverter);
     }
 
     @Test
     public void createGraph_validInput_success() throws Exception {
-        final Graph graph = createGraph();
         final GraphDTO graphDTO = createGraphDTO();
         final String edgesBody = "[{\"parent\": 10,\"child\": 3},{\"parent\": 2,\"child\": 3}]";
-        final Set<Edge> edges = new HashSet<>();
-        edges.add(new Edge(10, 3));
-        edges.add(new Edge(2, 3));
 
-        when(graphService.createGraph(edges)).thenReturn(graph);
-        when(graphConverter.toGraphDTO(graph)).thenReturn(graphDTO);
+        when(graphService.createGraph(any(EdgeSource.class))).thenAnswer(invocation -> readGraph(invocation.getArgument(0)));
+        when(graphConverter.toGraphDTO(any(Graph.class))).thenReturn(graphDTO);
 
         mockMvc.perform(put("/graphs")
                 .content(edgesBody)
@@ -77,6 +138,242 @@ public class GraphControllerTest {
                 .andExpect(jsonPath("$.nodes[0].parents").isArray())
                 .andExpect(jsonPath("$.nodes[0].parents[0]", is(2)))
                 .andExpect(jsonPath("$.nodes[0].parents[1]", is(10)));
+
+        assertThat(createdGraph.getEdgesCount()).isEqualTo(2);
+        assertThat(createdGraph.getParentsCount(createdGraph.indexOf(3))).isEqualTo(2);
+    }
+
+    @Test
+    public void createGraph_csvInput_success() throws Exception {
+        final String edgesBody = "parent,child\n10,3\r\n2, 3\n3;6\n";
+
+        when(graphService.createGraph(any(EdgeSource.class))).thenAnswer(invocation -> readGraph(invocation.getArgument(0)));
+        when(graphConverter.toGraphDTO(any(Graph.class))).thenReturn(createGraphDTO());
+
+        mockMvc.perform(put("/graphs")
+                .content(edgesBody)
+                .contentType("text/csv")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.id").isNotEmpty());
+
+        assertThat(createdGraph.getEdgesCount()).isEqualTo(3);
+        assertThat(createdGraph.getParentsCount(createdGraph.indexOf(6))).isEqualTo(1);
+    }
+
+    @Test
+    public void createGraph_summaryView_success() throws Exception {
+        final String edgesBody = "[{\"parent\": 10,\"child\": 3},{\"parent\": 2,\"child\": 3}]";
+
+        when(graphService.createGraph(any(EdgeSource.class))).thenAnswer(invocation -> readGraph(invocation.getArgument(0)));
+        when(graphConverter.toGraphSummaryDTO(any(Graph.class)))
+                .thenReturn(GraphSummaryDTO.builder().id(16985968L).nodesCount(3).edgesCount(2).build());
+
+        mockMvc.perform(put("/graphs?view=summary")
+                .content(edgesBody)
+                .contentType(APPLICATION_JSON_UTF8)
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.id", is(16985968)))
+                .andExpect(jsonPath("$.nodesCount", is(3)))
+                .andExpect(jsonPath("$.edgesCount", is(2)))
+                .andExpect(jsonPath("$.nodes").doesNotExist());
+
+        assertThat(createdGraph.getEdgesCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void updateGraph_validInput_success() throws Exception {
+        final String mutationBody = "{\"addEdges\": [{\"parent\": 4,\"child\": 3}],"
+                + "\"removeEdges\": [{\"parent\": 10,\"child\": 3}], \"removeNodes\": [2]}";
+        final GraphMutation mutation = new GraphMutation(Collections.singletonList(new Edge(4, 3)),
+                Collections.singletonList(new Edge(10, 3)), null, Collections.singletonList(2));
+        final Graph graph = readGraph(graphBuilder -> graphBuilder.addEdge(4, 3));
+
+        when(graphService.updateGraph(16985968L, mutation)).thenReturn(graph);
+        when(graphConverter.toGraphSummaryDTO(graph))
+                .thenReturn(GraphSummaryDTO.builder().id(16985968L).version(2).nodesCount(3).edgesCount(1).build());
+
+        mockMvc.perform(patch("/graphs/16985968")
+                .content(mutationBody)
+                .contentType(APPLICATION_JSON_UTF8)
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id", is(16985968)))
+                .andExpect(jsonPath("$.version", is(2)))
+                .andExpect(jsonPath("$.edgesCount", is(1)));
+    }
+
+    @Test
+    public void updateGraph_edgeNotFound_badRequest() throws Exception {
+        when(graphService.updateGraph(any(Long.class), any(GraphMutation.class)))
+                .thenThrow(new EdgeNotFoundException("Edge from 10 to 5 does not exists!"));
+
+        mockMvc.perform(patch("/graphs/16985968")
+                .content("{\"removeEdges\": [{\"parent\": 10,\"child\": 5}]}")
+                .contentType(APPLICATION_JSON_UTF8)
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message", is("Edge from 10 to 5 does not exists!")));
+    }
+
+    @Test
+    public void deleteGraph_existingGraph_noContent() throws Exception {
+        mockMvc.perform(delete("/graphs/16985968"))
+                .andExpect(status().isNoContent());
+
+        Mockito.verify(graphService).deleteGraph(16985968L);
+    }
+
+    @Test
+    public void deleteGraph_graphNotFound_badRequest() throws Exception {
+        Mockito.doThrow(new GraphNotFoundException("Graph with id: 16985968 not found!")).when(graphService).deleteGraph(16985968L);
+
+        mockMvc.perform(delete("/graphs/16985968"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message", is("Graph with id: 16985968 not found!")));
+    }
+
+    @Test
+    public void getGraph_page_success() throws Exception {
+        final Graph graph = readGraph(graphBuilder -> graphBuilder.addEdge(10, 3).addEdge(2, 3));
+        final GraphPage graphPage = new GraphPage(graph, 0, 2, "3");
+        final GraphDTO graphDTO = createGraphDTO();
+        graphDTO.setNextCursor("3");
+
+        when(graphService.getGraphPage(16985968L, null, 2)).thenReturn(graphPage);
+        when(graphConverter.toGraphDTO(graphPage)).thenReturn(graphDTO);
+
+        mockMvc.perform(get("/graphs/16985968?limit=2")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.nodes", hasSize(1)))
+                .andExpect(jsonPath("$.nextCursor", is("3")));
+    }
+
+    @Test
+    public void getGraph_ndjson_success() throws Exception {
+        final Graph graph = readGraph(graphBuilder -> graphBuilder.addEdge(10, 3).addEdge(2, 3));
+
+        when(graphService.getGraph(16985968L)).thenReturn(graph);
+
+        final MvcResult result = mockMvc.perform(get("/graphs/16985968")
+                .accept(NdjsonWriter.APPLICATION_NDJSON_VALUE))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(NdjsonWriter.APPLICATION_NDJSON_VALUE))
+                .andExpect(content().string("{\"id\":2,\"parents\":[]}\n{\"id\":3,\"parents\":[2,10]}\n{\"id\":10,\"parents\":[]}\n"));
+    }
+
+    @Test
+    public void createGraph_binaryInput_binaryOutput() throws Exception {
+        final Graph graph = readGraph(graphBuilder -> graphBuilder.addEdge(10, 3).addEdge(2, 3).addEdge(-5, 2).addEdge(3, 700));
+
+        when(graphService.createGraph(any(EdgeSource.class))).thenAnswer(invocation -> readGraph(invocation.getArgument(0)));
+
+        final byte[] response = performAsync(put("/graphs")
+                .content(writeBinary(graph))
+                .contentType(BinaryGraphWriter.APPLICATION_GRAPH_BINARY_VALUE)
+                .accept(BinaryGraphWriter.APPLICATION_GRAPH_BINARY_VALUE))
+                .andExpect(status().isCreated())
+                .andExpect(content().contentType(BinaryGraphWriter.APPLICATION_GRAPH_BINARY_VALUE))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        assertThat(createdGraph.getEdgesCount()).isEqualTo(4);
+        assertThat(createdGraph.getParentsCount(createdGraph.indexOf(3))).isEqualTo(2);
+        assertThat(createdGraph.getParentsCount(createdGraph.indexOf(2))).isEqualTo(1);
+        final Graph responseGraph = readGraph(graphBuilder -> binaryEdgeReader.read(new ByteArrayInputStream(response), graphBuilder));
+        assertThat(writeBinary(responseGraph)).isEqualTo(writeBinary(graph));
+    }
+
+    @Test
+    public void createGraph_binaryIsolatedNode_nodeKept() throws Exception {
+        final Graph graph = readGraph(graphBuilder -> graphBuilder.addEdge(10, 3).addNode(7).addNode(3));
+
+        when(graphService.createGraph(any(EdgeSource.class))).thenAnswer(invocation -> readGraph(invocation.getArgument(0)));
+
+        final byte[] response = performAsync(put("/graphs")
+                .content(writeBinary(graph))
+                .contentType(BinaryGraphWriter.APPLICATION_GRAPH_BINARY_VALUE)
+                .accept(BinaryGraphWriter.APPLICATION_GRAPH_BINARY_VALUE))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsByteArray();
+
+        assertThat(createdGraph.getNodesCount()).isEqualTo(3);
+        assertThat(createdGraph.getEdgesCount()).isEqualTo(1);
+        assertThat(createdGraph.getParentsCount(createdGraph.indexOf(7))).isZero();
+        assertThat(response).isEqualTo(writeBinary(graph));
+    }
+
+    @Test
+    public void createGraph_binaryInput_success() throws Exception {
+        final Graph graph = readGraph(graphBuilder -> graphBuilder.addEdge(10, 3).addEdge(2, 3));
+
+        when(graphService.createGraph(any(EdgeSource.class))).thenAnswer(invocation -> readGraph(invocation.getArgument(0)));
+        when(graphConverter.toGraphDTO(any(Graph.class))).thenReturn(createGraphDTO());
+
+        mockMvc.perform(put("/graphs")
+                .content(writeBinary(graph))
+                .contentType(BinaryGraphWriter.APPLICATION_GRAPH_BINARY_VALUE)
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.id", is(16985968)));
+
+        assertThat(createdGraph.getEdgesCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void createGraph_malformedBinary_exception() throws Exception {
+        final byte[] truncated = Arrays.copyOf(writeBinary(readGraph(graphBuilder -> graphBuilder.addEdge(10, 3))), 7);
+
+        when(graphService.createGraph(any(EdgeSource.class))).thenAnswer(invocation -> readGraph(invocation.getArgument(0)));
+
+        mockMvc.perform(put("/graphs")
+                .content(truncated)
+                .contentType(BinaryGraphWriter.APPLICATION_GRAPH_BINARY_VALUE)
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message", is("Binary graph truncated!")));
+
+        mockMvc.perform(put("/graphs")
+                .content("[{\"parent\": 10,\"child\": 3}]")
+                .contentType(BinaryGraphWriter.APPLICATION_GRAPH_BINARY_VALUE)
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message", is("Graph edges should be provided in the binary graph format!")));
+    }
+
+    @Test
+    public void getGraph_binary_success() throws Exception {
+        final Graph graph = readGraph(graphBuilder -> graphBuilder.addEdge(10, 3).addEdge(2, 3));
+
+        when(graphService.getGraph(16985968L)).thenReturn(graph);
+
+        final byte[] response = performAsync(get("/graphs/16985968")
+                .accept(BinaryGraphWriter.APPLICATION_GRAPH_BINARY_VALUE))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(BinaryGraphWriter.APPLICATION_GRAPH_BINARY_VALUE))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        // magic, 3 nodes: 2 (zigzag 4) without parents, 3 (+0) with 2 (zigzag -1) and 10 (+7), 10 (+6) without parents
+        assertThat(response).containsExactly('G', 'R', 'B', '1', 3, 4, 0, 0, 2, 1, 7, 6, 0);
+    }
+
+    @Test
+    public void createGraph_malformedEdges_exception() throws Exception {
+        final String edgesBody = "[{\"parent\": 10,\"child\": 3},{\"parent\": 2}]";
+
+        when(graphService.createGraph(any(EdgeSource.class))).thenAnswer(invocation -> readGraph(invocation.getArgument(0)));
+
+        mockMvc.perform(put("/graphs")
+                .content(edgesBody)
+                .contentType(APPLICATION_JSON_UTF8)
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").isNotEmpty());
     }
 
     @Test
@@ -84,7 +381,7 @@ public class GraphControllerTest {
         final String exceptionMessage = "Graph edges should be provided!";
         final String edgesBody = "[]";
 
-        when(graphService.createGraph(new HashSet<>())).thenThrow(new GraphNotFoundException(exceptionMessage));
+        when(graphService.createGraph(any(EdgeSource.class))).thenThrow(new GraphNotFoundException(exceptionMessage));
 
         mockMvc.perform(put("/graphs")
                 .content(edgesBody)
@@ -110,6 +407,68 @@ public class GraphControllerTest {
                 .andExpect(jsonPath("$[3]", is(9)));
     }
 
+    @Test
+    public void getNodesHavingParentsCount_parentsRange_success() throws Exception {
+        final Set<Integer> nodesWithParents = new HashSet<>(Arrays.asList(3, 6));
+
+        when(graphService.getNodesHavingParentsCount(16985968L, 2, Integer.MAX_VALUE)).thenReturn(nodesWithParents);
+
+        mockMvc.perform(get("/graphs/16985968/nodes?minParents=2")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)));
+    }
+
+    @Test
+    public void getNodesHavingParentsCount_ndjson_success() throws Exception {
+        when(graphService.getNodesHavingParentsCount(16985968L, 1)).thenReturn(new HashSet<>(Arrays.asList(5, 8)));
+
+        final MvcResult result = mockMvc.perform(get("/graphs/16985968/nodes?parentsCount=1")
+                .accept(NdjsonWriter.APPLICATION_NDJSON_VALUE))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().string("5\n8\n"));
+    }
+
+    @Test
+    public void getNodesHavingParentsCountPage_validInput_success() throws Exception {
+        final NodesPage nodesPage = new NodesPage(Arrays.asList(8, 9), "1:9");
+
+        when(graphService.getNodesHavingParentsCountPage(16985968L, 1, 1, "1:5", 2)).thenReturn(nodesPage);
+        when(graphConverter.toNodesPageDTO(nodesPage))
+                .thenReturn(NodesPageDTO.builder().nodes(Arrays.asList(8, 9)).nextCursor("1:9").build());
+
+        performAsync(get("/graphs/16985968/nodes/page?parentsCount=1&cursor=1:5&limit=2")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.nodes", hasSize(2)))
+                .andExpect(jsonPath("$.nodes[0]", is(8)))
+                .andExpect(jsonPath("$.nextCursor", is("1:9")));
+    }
+
+    @Test
+    public void countNodesHavingParentsCount_validInput_success() throws Exception {
+        when(graphService.countNodesHavingParentsCount(16985968L, 0, 1)).thenReturn(7);
+
+        performAsync(get("/graphs/16985968/nodes/count?minParents=0&maxParents=1")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", is(7)));
+    }
+
+    @Test
+    public void getNodesHavingParentsCount_noParentsCount_badRequest() throws Exception {
+        mockMvc.perform(get("/graphs/16985968/nodes")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message", is("Either parentsCount, minParents or maxParents should be provided!")));
+
+        verifyNoInteractions(graphService);
+    }
+
     @Test
     public void getNodesHavingParentsCount_graphNotFound_exception() throws Exception {
         final String exceptionMessage = String.format("Graph with id: %s not found!", 4321L);
@@ -126,7 +485,7 @@ public class GraphControllerTest {
     public void haveNodesCommonAncestor_validInput_success() throws Exception {
         when(graphProcessingService.haveNodesCommonAncestor(16985968L, 5, 8)).thenReturn(true);
 
-        mockMvc.perform(get("/graphs/16985968/nodes/5/has-common-ancestor/8")
+        performAsync(get("/graphs/16985968/nodes/5/has-common-ancestor/8")
                 .accept(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$", is(true)));
@@ -138,7 +497,7 @@ public class GraphControllerTest {
 
         when(graphProcessingService.haveNodesCommonAncestor(4321L, 5, 8)).thenThrow(new GraphNotFoundException(exceptionMessage));
 
-        mockMvc.perform(get("/graphs/4321/nodes/5/has-common-ancestor/8")
+        performAsync(get("/graphs/4321/nodes/5/has-common-ancestor/8")
                 .accept(MediaType.APPLICATION_JSON))
                 .andExpect(status().isBadRequest())
                 .andExpect(jsonPath("$.message", is(exceptionMessage)));
@@ -150,12 +509,184 @@ public class GraphControllerTest {
 
         when(graphProcessingService.haveNodesCommonAncestor(4321L, 5, 38)).thenThrow(new NodeNotFoundException(exceptionMessage));
 
-        mockMvc.perform(get("/graphs/4321/nodes/5/has-common-ancestor/38")
+        performAsync(get("/graphs/4321/nodes/5/has-common-ancestor/38")
                 .accept(MediaType.APPLICATION_JSON))
                 .andExpect(status().isBadRequest())
                 .andExpect(jsonPath("$.message", is(exceptionMessage)));
     }
 
+    @Test
+    public void haveNodesCommonAncestor_timeout_cancelledWithServiceUnavailable() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch cancelled = new CountDownLatch(1);
+        when(graphProcessingService.haveNodesCommonAncestor(16985968L, 5, 8)).thenAnswer(invocation -> {
+            started.countDown();
+            try {
+                new CountDownLatch(1).await();
+            } catch (final InterruptedException exception) {
+                cancelled.countDown();
+            }
+            return true;
+        });
+
+        final MvcResult result = mockMvc.perform(get("/graphs/16985968/nodes/5/has-common-ancestor/8")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+        for (final AsyncListener listener : ((MockAsyncContext) result.getRequest().getAsyncContext()).getListeners()) {
+            listener.onTimeout(null);
+        }
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(jsonPath("$.message", startsWith("Query timed out")));
+        assertThat(cancelled.await(10, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    public void getLowestCommonAncestors_validInput_success() throws Exception {
+        final List<CommonAncestor> commonAncestors = Collections.singletonList(new CommonAncestor(4, 2, 1));
+
+        when(graphProcessingService.getLowestCommonAncestors(16985968L, 6, 8)).thenReturn(commonAncestors);
+        when(graphConverter.toCommonAncestorDTOs(commonAncestors)).thenReturn(Collections.singletonList(
+                CommonAncestorDTO.builder().id(4).firstNodeDistance(2).secondNodeDistance(1).build()));
+
+        performAsync(get("/graphs/16985968/nodes/6/lowest-common-ancestors/8")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].id", is(4)))
+                .andExpect(jsonPath("$[0].firstNodeDistance", is(2)))
+                .andExpect(jsonPath("$[0].secondNodeDistance", is(1)));
+    }
+
+    @Test
+    public void getShortestAncestorPath_validInput_success() throws Exception {
+        final List<Integer> path = Arrays.asList(6, 5, 4);
+
+        when(graphProcessingService.getShortestAncestorPath(16985968L, 6, 4)).thenReturn(path);
+        when(graphConverter.toAncestorPathDTO(path)).thenReturn(AncestorPathDTO.builder().found(true).length(2).nodes(path).build());
+
+        performAsync(get("/graphs/16985968/nodes/6/path-to-ancestor/4")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.found", is(true)))
+                .andExpect(jsonPath("$.length", is(2)))
+                .andExpect(jsonPath("$.nodes", hasSize(3)))
+                .andExpect(jsonPath("$.nodes[2]", is(4)));
+    }
+
+    @Test
+    public void getAncestorsWithin_budgetExceeded_exception() throws Exception {
+        when(graphProcessingService.getAncestorsWithin(16985968L, 6, 3))
+                .thenThrow(new TraversalBudgetExceededException("Query exceeded the budget of 1000 visited nodes, narrow it down to fewer nodes or hops!"));
+
+        performAsync(get("/graphs/16985968/nodes/6/ancestors?maxHops=3")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isUnprocessableEntity())
+                .andExpect(jsonPath("$.message", is("Query exceeded the budget of 1000 visited nodes, narrow it down to fewer nodes or hops!")));
+    }
+
+    @Test
+    public void haveNodesCommonAncestorBatch_validInput_success() throws Exception {
+        final String pairsBody = "[{\"firstNodeId\": 3,\"secondNodeId\": 8},{\"firstNodeId\": 5,\"secondNodeId\": 8}]";
+
+        when(commonAncestorBatchService.haveNodesCommonAncestor(16985968L, Arrays.asList(new NodePair(3, 8), new NodePair(5, 8))))
+                .thenReturn(Arrays.asList(false, true));
+
+        performAsync(post("/graphs/16985968/nodes/has-common-ancestor")
+                .content(pairsBody)
+                .contentType(APPLICATION_JSON_UTF8)
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0]", is(false)))
+                .andExpect(jsonPath("$[1]", is(true)));
+    }
+
+    @Test
+    public void getAncestors_validInput_success() throws Exception {
+        final NodeRanges nodeRanges = NodeRanges.of(readGraph(graphBuilder -> graphBuilder.addEdge(2, 6)), new long[]{1L});
+        when(graphProcessingService.getAncestors(16985968L, new NodeSetQuery(Arrays.asList(6, 9), 2))).thenReturn(nodeRanges);
+        when(graphConverter.toNodeRangesDTO(nodeRanges)).thenReturn(NodeRangesDTO.builder().nodesCount(5)
+                .ranges(Arrays.asList(new int[]{2, 5}, new int[]{8, 8})).build());
+
+        performAsync(post("/graphs/16985968/nodes/ancestors")
+                .content("{\"nodes\": [6, 9], \"maxDepth\": 2}")
+                .contentType(APPLICATION_JSON_UTF8)
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.nodesCount", is(5)))
+                .andExpect(jsonPath("$.ranges", hasSize(2)))
+                .andExpect(jsonPath("$.ranges[0][0]", is(2)))
+                .andExpect(jsonPath("$.ranges[0][1]", is(5)));
+    }
+
+    @Test
+    public void getDescendants_nodeNotFound_exception() throws Exception {
+        when(graphProcessingService.getDescendants(16985968L, new NodeSetQuery(Collections.singletonList(38), null)))
+                .thenThrow(new NodeNotFoundException("Node with key 38 does not exists!"));
+
+        performAsync(post("/graphs/16985968/nodes/descendants")
+                .content("{\"nodes\": [38]}")
+                .contentType(APPLICATION_JSON_UTF8)
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message", is("Node with key 38 does not exists!")));
+    }
+
+    @Test
+    public void getGraphStats_validInput_success() throws Exception {
+        final Graph graph = readGraph(graphBuilder -> graphBuilder.addEdge(10, 3).addEdge(2, 3).addEdge(3, 6).addEdge(7, 8));
+
+        when(graphService.getGraph(16985968L)).thenReturn(graph);
+        when(graphProcessingService.getTopology(graph)).thenReturn(TopologyIndex.build(graph));
+        when(graphConverter.toGraphStatsDTO(any(Graph.class), any(TopologyIndex.class)))
+                .thenAnswer(invocation -> new GraphConverter().toGraphStatsDTO(invocation.getArgument(0), invocation.getArgument(1)));
+
+        mockMvc.perform(get("/graphs/16985968/stats")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.graphId", is(16985968)))
+                .andExpect(jsonPath("$.nodesCount", is(6)))
+                .andExpect(jsonPath("$.edgesCount", is(4)))
+                .andExpect(jsonPath("$.componentsCount", is(2)))
+                .andExpect(jsonPath("$.largestComponentSize", is(4)))
+                .andExpect(jsonPath("$.rootsCount", is(3)))
+                .andExpect(jsonPath("$.maxDepth", is(2)))
+                .andExpect(jsonPath("$.cyclic", is(false)));
+    }
+
+    @Test
+    public void getAncestorIndex_notBuilt_success() throws Exception {
+        when(graphProcessingService.getAncestorIndex(16985968L)).thenReturn(Optional.empty());
+        when(graphConverter.toAncestorIndexDTO(16985968L, Optional.empty()))
+                .thenReturn(AncestorIndexDTO.builder().graphId(16985968L).built(false).build());
+
+        mockMvc.perform(get("/graphs/16985968/ancestor-index")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.graphId", is(16985968)))
+                .andExpect(jsonPath("$.built", is(false)));
+    }
+
+    @Test
+    public void getCommonAncestorCacheStatistics_success() throws Exception {
+        final CacheStatistics cacheStatistics = new CacheStatistics(true, 100, 2, 5, 2, 0);
+        when(graphProcessingService.getCommonAncestorCacheStatistics()).thenReturn(cacheStatistics);
+        when(graphConverter.toCacheStatisticsDTO(cacheStatistics)).thenReturn(CacheStatisticsDTO.builder()
+                .enabled(true).maxEntries(100).size(2).hitCount(5).missCount(2).evictionCount(0).build());
+
+        mockMvc.perform(get("/graphs/common-ancestor-cache")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.enabled", is(true)))
+                .andExpect(jsonPath("$.size", is(2)))
+                .andExpect(jsonPath("$.hitCount", is(5)))
+                .andExpect(jsonPath("$.missCount", is(2)));
+    }
+
     private GraphDTO createGraphDTO() {
         final Set<NodeDTO> graphNodes = new HashSet<>();
         graphNodes.add(NodeDTO.builder().id(3).parents(new HashSet<>(Arrays.asList(10, 2))).build());
@@ -165,7 +696,23 @@ public class GraphControllerTest {
                 .nodes(graphNodes).build();
     }
 
-    private Graph createGraph() {
-        return new Graph(16985968L);
+    private ResultActions performAsync(final RequestBuilder requestBuilder) throws Exception {
+        final MvcResult result = mockMvc.perform(requestBuilder)
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(result));
+    }
+
+    private byte[] writeBinary(final Graph graph) throws IOException {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        binaryGraphWriter.writeGraph(graph, outputStream);
+        return outputStream.toByteArray();
+    }
+
+    private Graph readGraph(final EdgeSource edgeSource) throws IOException {
+        final GraphBuilder graphBuilder = new GraphBuilder();
+        edgeSource.readInto(graphBuilder);
+        createdGraph = graphBuilder.build(16985968L);
+        return createdGraph;
     }
 }
@@ -0,0 +1,230 @@
+package com.rl.graphapi.rest.executor;
+
+import com.rl.graphapi.service.AncestorIndexService;
+import com.rl.graphapi.service.CommonAncestorBatchService;
+import com.rl.graphapi.service.CommonAncestorCache;
+import com.rl.graphapi.service.GraphMetrics;
+import com.rl.graphapi.service.GraphProcessingService;
+import com.rl.graphapi.service.GraphService;
+import com.rl.graphapi.service.exception.NodeNotFoundException;
+import com.rl.graphapi.service.exception.QueryRejectedException;
+import com.rl.graphapi.service.exception.QueryTimeoutException;
+import com.rl.graphapi.service.model.Graph;
+import com.rl.graphapi.service.model.NodePair;
+import com.rl.graphapi.service.repository.GraphEvictionPolicy;
+import com.rl.graphapi.service.repository.GraphPartitioning;
+import com.rl.graphapi.service.repository.GraphRepository;
+import com.rl.graphapi.service.repository.GraphSnapshotStore;
+import com.rl.graphapi.service.traversal.TraversalEngine;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.context.request.async.StandardServletAsyncWebRequest;
+import org.springframework.web.context.request.async.WebAsyncManager;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class QueryExecutorTest {
+    private static final Long GRAPH_ID = 42L;
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private QueryExecutor queryExecutor;
+
+    @After
+    public void after() {
+        release.countDown();
+        if (queryExecutor != null) {
+            queryExecutor.shutdown();
+        }
+    }
+
+    @Test
+    public void submit_poolAndQueueFull_rejected() throws Exception {
+        queryExecutor = new QueryExecutor(true, 1, 1, Duration.ofSeconds(30));
+        final CountDownLatch started = new CountDownLatch(1);
+
+        final DeferredResult<Boolean> running = queryExecutor.submit(GRAPH_ID, () -> {
+            started.countDown();
+            awaitRelease();
+            return true;
+        });
+        assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+        final DeferredResult<Boolean> queued = queryExecutor.submit(GRAPH_ID, () -> false);
+
+        assertThatThrownBy(() -> queryExecutor.submit(GRAPH_ID, () -> true)).isInstanceOf(QueryRejectedException.class);
+
+        release.countDown();
+        assertThat(awaitResult(running)).isEqualTo(true);
+        assertThat(awaitResult(queued)).isEqualTo(false);
+    }
+
+    @Test
+    public void submit_syncMode_answeredOnCallingThread() {
+        queryExecutor = new QueryExecutor(false, 1, 1, Duration.ZERO);
+        final Thread caller = Thread.currentThread();
+
+        final DeferredResult<Boolean> result = queryExecutor.submit(GRAPH_ID, () -> Thread.currentThread() == caller);
+        final DeferredResult<Boolean> failed = queryExecutor.submit(GRAPH_ID, () -> {
+            throw new NodeNotFoundException("Node with key 8 does not exists!");
+        });
+
+        assertThat(result.getResult()).isEqualTo(true);
+        assertThat(failed.getResult()).isInstanceOf(NodeNotFoundException.class);
+    }
+
+    @Test
+    public void submit_shardPoolFull_otherShardsRunning() throws Exception {
+        queryExecutor = new QueryExecutor(true, 2, 2, Duration.ofSeconds(30), new GraphPartitioning(2));
+        final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        queryExecutor.bindTo(meterRegistry);
+        final CountDownLatch started = new CountDownLatch(1);
+
+        // a thread and a queued query per shard, the graphs 0 and 2 belonging to the first shard
+        final DeferredResult<Boolean> running = queryExecutor.submit(0L, () -> {
+            started.countDown();
+            awaitRelease();
+            return true;
+        });
+        assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+        final DeferredResult<Boolean> queued = queryExecutor.submit(2L, () -> false);
+        assertThatThrownBy(() -> queryExecutor.submit(0L, () -> true)).isInstanceOf(QueryRejectedException.class);
+        assertThat(queryExecutor.getQueuedCounts()).containsExactly(1, 0);
+
+        assertThat(awaitResult(queryExecutor.submit(1L, () -> true))).isEqualTo(true);
+        assertThat(running.hasResult()).isFalse();
+        assertThat(meterRegistry.get("graph.query.latency").tag("shard", "1").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("graph.query.queued").tag("shard", "0").gauge().value()).isEqualTo(1);
+
+        release.countDown();
+        assertThat(awaitResult(running)).isEqualTo(true);
+        assertThat(awaitResult(queued)).isEqualTo(false);
+    }
+
+    @Test
+    public void submit_queryTimedOut_answeredAndQueryInterrupted() throws Exception {
+        queryExecutor = new QueryExecutor(true, 1, 1, Duration.ofSeconds(30));
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+
+        final DeferredResult<Boolean> result = queryExecutor.submit(GRAPH_ID, () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (final InterruptedException exception) {
+                interrupted.countDown();
+            }
+            return true;
+        });
+        final MockAsyncContext asyncContext = startAsync(result);
+        assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+
+        timeOut(asyncContext);
+
+        assertThat(result.getResult()).isInstanceOf(QueryTimeoutException.class);
+        assertThat(interrupted.await(10, TimeUnit.SECONDS)).isTrue();
+        // the pool thread is free again
+        assertThat(awaitResult(queryExecutor.submit(GRAPH_ID, () -> false))).isEqualTo(false);
+    }
+
+    @Test
+    public void submit_batchTimedOut_batchWorkersStopped() throws Exception {
+        queryExecutor = new QueryExecutor(true, 1, 1, Duration.ofSeconds(30));
+        final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        final GraphRepository graphRepository = new GraphRepository(new GraphSnapshotStore(""), GraphEvictionPolicy.unbounded());
+        final GraphMetrics graphMetrics = new GraphMetrics(meterRegistry, graphRepository, Long.MAX_VALUE);
+        final AncestorIndexService ancestorIndexService = new AncestorIndexService("none", 0);
+        final CommonAncestorCache commonAncestorCache = new CommonAncestorCache(0);
+        final GraphService graphService = new GraphService(graphRepository, ancestorIndexService, commonAncestorCache, graphMetrics);
+        final TraversalEngine traversalEngine = new TraversalEngine(graphMetrics, 0);
+        final GraphProcessingService graphProcessingService = new GraphProcessingService(graphService, ancestorIndexService,
+                commonAncestorCache, graphMetrics, traversalEngine);
+        final CommonAncestorBatchService batchService = new CommonAncestorBatchService(graphService, graphProcessingService,
+                ancestorIndexService, traversalEngine, 1, 100_000, 0);
+
+        // two chains joined by their last child, every pair traversing both chains without finding a common ancestor
+        final int chainLength = 100_000;
+        final Graph graph = graphService.createGraph(graphBuilder -> {
+            for (int node = 0; node < chainLength; node++) {
+                graphBuilder.addEdge(node, node + 1).addEdge(chainLength + 1 + node, chainLength + 2 + node);
+            }
+            graphBuilder.addEdge(chainLength, 3 * chainLength).addEdge(2 * chainLength + 1, 3 * chainLength);
+        });
+        final List<NodePair> pairs = new ArrayList<>();
+        for (int pair = 0; pair < 5_000; pair++) {
+            pairs.add(new NodePair(chainLength - pair, 2 * chainLength + 1 - pair));
+        }
+        final DistributionSummary traversals = meterRegistry.get("graph.traversal.visited.nodes")
+                .tag("traversal", "common-ancestor").summary();
+
+        try {
+            final DeferredResult<List<Boolean>> result = queryExecutor.submit(graph.getId(),
+                    () -> batchService.haveNodesCommonAncestor(graph.getId(), pairs));
+            final MockAsyncContext asyncContext = startAsync(result);
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (traversals.count() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+
+            timeOut(asyncContext);
+
+            assertThat(result.getResult()).isInstanceOf(QueryTimeoutException.class);
+            long evaluated;
+            do {
+                evaluated = traversals.count();
+                Thread.sleep(200);
+            } while (traversals.count() != evaluated);
+            assertThat(evaluated).isPositive().isLessThan(pairs.size());
+        } finally {
+            batchService.shutdown();
+        }
+    }
+
+    private static MockAsyncContext startAsync(final DeferredResult<?> result) throws Exception {
+        final MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAsyncSupported(true);
+        final WebAsyncManager asyncManager = WebAsyncUtils.getAsyncManager(request);
+        asyncManager.setAsyncWebRequest(new StandardServletAsyncWebRequest(request, new MockHttpServletResponse()));
+        asyncManager.startDeferredResultProcessing(result);
+        return (MockAsyncContext) request.getAsyncContext();
+    }
+
+    /**
+     * Time out the request the way the servlet container does.
+     */
+    private static void timeOut(final MockAsyncContext asyncContext) throws Exception {
+        for (final AsyncListener listener : asyncContext.getListeners()) {
+            listener.onTimeout(new AsyncEvent(asyncContext));
+        }
+    }
+
+    private void awaitRelease() {
+        try {
+            release.await();
+        } catch (final InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Object awaitResult(final DeferredResult<?> result) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!result.hasResult() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        return result.getResult();
+    }
+}
@@ -0,0 +1,95 @@
+package com.rl.graphapi.service;
+
+import com.rl.graphapi.service.exception.NodeNotFoundException;
+import com.rl.graphapi.service.model.CacheStatistics;
+import com.rl.graphapi.service.model.Edge;
+import com.rl.graphapi.service.model.Graph;
+import com.rl.graphapi.service.model.GraphBuilder;
+import com.rl.graphapi.service.model.GraphChange;
+import com.rl.graphapi.service.model.GraphMutation;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class CommonAncestorCacheTest {
+    private final Graph firstGraph = new GraphBuilder().addEdge(3, 8).build(1L);
+    private final Graph secondGraph = new GraphBuilder().addEdge(3, 8).build(2L);
+
+    @Test
+    public void haveNodesCommonAncestor_repeatedUnorderedPair_computedOnce() {
+        final CommonAncestorCache cache = new CommonAncestorCache(100);
+        final AtomicInteger computations = new AtomicInteger();
+
+        assertThat(cache.haveNodesCommonAncestor(firstGraph, 3, 8, () -> computations.incrementAndGet() > 0)).isTrue();
+        assertThat(cache.haveNodesCommonAncestor(firstGraph, 8, 3, () -> computations.incrementAndGet() > 0)).isTrue();
+        assertThat(cache.haveNodesCommonAncestor(secondGraph, 3, 8, () -> computations.incrementAndGet() < 0)).isFalse();
+
+        assertThat(computations.get()).isEqualTo(2);
+        final CacheStatistics statistics = cache.getStatistics();
+        assertThat(statistics.isEnabled()).isTrue();
+        assertThat(statistics.getSize()).isEqualTo(2);
+        assertThat(statistics.getHitCount()).isEqualTo(1);
+        assertThat(statistics.getMissCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void invalidate_graph_otherGraphsKept() {
+        final CommonAncestorCache cache = new CommonAncestorCache(100);
+        cache.haveNodesCommonAncestor(firstGraph, 3, 8, () -> true);
+        cache.haveNodesCommonAncestor(secondGraph, 3, 8, () -> true);
+
+        cache.invalidate(firstGraph.getId());
+
+        assertThat(cache.haveNodesCommonAncestor(firstGraph, 3, 8, () -> false)).isFalse();
+        assertThat(cache.haveNodesCommonAncestor(secondGraph, 3, 8, () -> false)).isTrue();
+    }
+
+    @Test
+    public void haveNodesCommonAncestor_nextGraphVersion_computedAgain() {
+        final CommonAncestorCache cache = new CommonAncestorCache(100);
+        final Graph nextVersion = GraphChange.apply(firstGraph,
+                new GraphMutation(null, Collections.singletonList(new Edge(3, 8)), null, null)).getGraph();
+        cache.haveNodesCommonAncestor(firstGraph, 3, 8, () -> true);
+
+        assertThat(cache.haveNodesCommonAncestor(nextVersion, 3, 8, () -> false)).isFalse();
+        assertThat(cache.haveNodesCommonAncestor(firstGraph, 3, 8, () -> false)).isTrue();
+    }
+
+    @Test
+    public void haveNodesCommonAncestor_failedComputation_notCached() {
+        final CommonAncestorCache cache = new CommonAncestorCache(100);
+
+        assertThatThrownBy(() -> cache.haveNodesCommonAncestor(firstGraph, 3, 8, () -> {
+            throw new NodeNotFoundException("Node 8 not found!");
+        })).isInstanceOf(NodeNotFoundException.class);
+        assertThat(cache.getStatistics().getSize()).isZero();
+    }
+
+    @Test
+    public void haveNodesCommonAncestor_moreEntriesThanMax_evicted() {
+        final CommonAncestorCache cache = new CommonAncestorCache(10);
+        for (int node = 0; node < 1000; node++) {
+            cache.haveNodesCommonAncestor(firstGraph, node, node + 1, () -> true);
+        }
+
+        final CacheStatistics statistics = cache.getStatistics();
+        assertThat(statistics.getSize()).isLessThanOrEqualTo(10);
+        assertThat(statistics.getEvictionCount()).isPositive();
+    }
+
+    @Test
+    public void haveNodesCommonAncestor_disabled_alwaysComputed() {
+        final CommonAncestorCache cache = new CommonAncestorCache(0);
+        final AtomicInteger computations = new AtomicInteger();
+
+        cache.haveNodesCommonAncestor(firstGraph, 3, 8, () -> computations.incrementAndGet() > 0);
+        cache.haveNodesCommonAncestor(firstGraph, 3, 8, () -> computations.incrementAndGet() > 0);
+
+        assertThat(computations.get()).isEqualTo(2);
+        assertThat(cache.getStatistics().isEnabled()).isFalse();
+    }
+}
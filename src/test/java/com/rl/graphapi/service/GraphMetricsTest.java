@@ -0,0 +1,144 @@
+package com.rl.graphapi.service;
+
+import com.rl.graphapi.service.model.Edge;
+import com.rl.graphapi.service.model.Graph;
+import com.rl.graphapi.service.model.GraphMutation;
+import com.rl.graphapi.service.repository.GraphEvictionPolicy;
+import com.rl.graphapi.service.repository.GraphRepository;
+import com.rl.graphapi.service.repository.GraphSnapshotStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "graph.metrics.per-graph-min-nodes=5")
+@AutoConfigureMockMvc
+public class GraphMetricsTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Autowired
+    GraphService graphService;
+
+    @Autowired
+    GraphProcessingService graphProcessingService;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    MockMvc mockMvc;
+
+    private Graph graph;
+
+    @Before
+    public void before() {
+        graph = graphService.createGraph(new HashSet<>(Arrays.asList(
+                new Edge(1, 2), new Edge(2, 3), new Edge(3, 4), new Edge(1, 5), new Edge(5, 6))));
+    }
+
+    @Test
+    public void haveNodesCommonAncestor_traversal_recorded() {
+        // a second root, so the pair is not answered by the topology index alone
+        final Graph twoRootsGraph = graphService.createGraph(new HashSet<>(Arrays.asList(
+                new Edge(1, 2), new Edge(2, 3), new Edge(3, 4), new Edge(1, 5), new Edge(5, 6), new Edge(7, 6))));
+        final long count = meterRegistry.get("graph.traversal.visited.nodes").tag("traversal", "common-ancestor").summary().count();
+
+        assertThat(graphProcessingService.haveNodesCommonAncestor(twoRootsGraph.getId(), 4, 6)).isTrue();
+
+        assertThat(meterRegistry.get("graph.operation").tag("operation", "common-ancestor").timer().count()).isPositive();
+        assertThat(meterRegistry.get("graph.traversal.visited.nodes").tag("traversal", "common-ancestor").summary().count())
+                .isEqualTo(count + 1);
+        assertThat(meterRegistry.get("graph.traversal.depth").tag("traversal", "common-ancestor").summary().max())
+                .isGreaterThanOrEqualTo(2);
+    }
+
+    @Test
+    public void getGraph_lookupTimed_operationLookupsNotTimed() {
+        final long count = meterRegistry.get("graph.operation").tag("operation", "lookup").timer().count();
+
+        graphProcessingService.haveNodesCommonAncestor(graph.getId(), 4, 6);
+        graphService.getNodesHavingParentsCount(graph.getId(), 1);
+        assertThat(meterRegistry.get("graph.operation").tag("operation", "lookup").timer().count()).isEqualTo(count);
+
+        graphService.getGraph(graph.getId());
+        assertThat(meterRegistry.get("graph.operation").tag("operation", "lookup").timer().count()).isEqualTo(count + 1);
+    }
+
+    @Test
+    public void evictIfNeeded_graphExpired_graphGaugesRemovedUntilReloaded() throws Exception {
+        final GraphRepository repository = new GraphRepository(new GraphSnapshotStore(temporaryFolder.getRoot().getPath()),
+                new GraphEvictionPolicy(DataSize.ofBytes(0), Duration.ofMillis(200)));
+        final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        final GraphMetrics metrics = new GraphMetrics(registry, repository, 5);
+        final Graph stored = repository.createGraph(new HashSet<>(Arrays.asList(
+                new Edge(1, 2), new Edge(2, 3), new Edge(3, 4), new Edge(1, 5), new Edge(5, 6))));
+        metrics.onGraphStored(stored);
+        final String graphId = String.valueOf(stored.getId());
+        assertThat(registry.find("graph.nodes").tag("graphId", graphId).gauge()).isNotNull();
+
+        Thread.sleep(300);
+        repository.evictIfNeeded();
+        assertThat(repository.getSpilledCount()).isEqualTo(1);
+        assertThat(registry.find("graph.nodes").tag("graphId", graphId).gauge()).isNull();
+        assertThat(registry.find("graph.memory").tag("graphId", graphId).gauge()).isNull();
+
+        repository.lookup(stored.getId());
+        assertThat(registry.get("graph.nodes").tag("graphId", graphId).gauge().value()).isEqualTo(6);
+    }
+
+    @Test
+    public void getLowestCommonAncestors_traversal_recorded() {
+        graphProcessingService.getLowestCommonAncestors(graph.getId(), 4, 6);
+
+        assertThat(meterRegistry.get("graph.traversal.visited.nodes").tag("traversal", "lowest-common-ancestors")
+                .summary().max()).isGreaterThanOrEqualTo(7);
+        assertThat(meterRegistry.get("graph.traversal.depth").tag("traversal", "lowest-common-ancestors")
+                .summary().max()).isGreaterThanOrEqualTo(3);
+    }
+
+    @Test
+    public void updateGraph_graphGauges_currentVersion() {
+        final String graphId = String.valueOf(graph.getId());
+        assertThat(meterRegistry.get("graph.nodes").tag("graphId", graphId).gauge().value()).isEqualTo(6);
+
+        graphService.updateGraph(graph.getId(), new GraphMutation(Collections.singletonList(new Edge(6, 7)), null, null, null));
+
+        assertThat(meterRegistry.get("graph.nodes").tag("graphId", graphId).gauge().value()).isEqualTo(7);
+        assertThat(meterRegistry.get("graph.edges").tag("graphId", graphId).gauge().value()).isEqualTo(6);
+        assertThat(meterRegistry.get("graph.memory").tag("graphId", graphId).gauge().value()).isPositive();
+        assertThat(meterRegistry.get("graph.store.graphs").gauge().value()).isPositive();
+        assertThat(meterRegistry.get("graph.operation").tag("operation", "update").timer().count()).isPositive();
+    }
+
+    @Test
+    public void metricsEndpoint_operationTimer_exposed() throws Exception {
+        graphService.getNodesHavingParentsCount(graph.getId(), 1);
+
+        mockMvc.perform(get("/actuator/metrics/graph.operation").param("tag", "operation:parents-count"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("graph.operation"))
+                .andExpect(jsonPath("$.measurements[0].statistic").value("COUNT"));
+    }
+}
@@ -0,0 +1,480 @@
+package com.rl.graphapi.service;
+
+import com.rl.graphapi.service.exception.GraphNotFoundException;
+import com.rl.graphapi.service.exception.NodeNotFoundException;
+import com.rl.graphapi.service.exception.NodesNotProvidedException;
+import com.rl.graphapi.service.exception.QueryCancelledException;
+import com.rl.graphapi.service.exception.TraversalBudgetExceededException;
+import com.rl.graphapi.service.index.AncestorIndex;
+import com.rl.graphapi.service.index.LowestCommonAncestorIndex;
+import com.rl.graphapi.service.model.CommonAncestor;
+import com.rl.graphapi.service.model.Edge;
+import com.rl.graphapi.service.model.Graph;
+import com.rl.graphapi.service.model.NodeDistance;
+import com.rl.graphapi.service.model.NodePair;
+import com.rl.graphapi.service.model.NodeRanges;
+import com.rl.graphapi.service.model.NodeSetQuery;
+import com.rl.graphapi.service.traversal.TraversalEngine;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class GraphProcessingServiceTest {
+    private static final long NOT_EXISTING_GRAPH_ID = 123L;
+    private static final Set<Edge> edges = new HashSet<>();
+
+    static {
+        edges.add(new Edge(10, 3));
+        edges.add(new Edge(2, 3));
+        edges.add(new Edge(3, 6));
+        edges.add(new Edge(5, 6));
+        edges.add(new Edge(5, 17));
+        edges.add(new Edge(4, 5));
+        edges.add(new Edge(4, 8));
+        edges.add(new Edge(8, 9));
+    }
+
+    @Autowired
+    GraphService graphService;
+
+    @Autowired
+    GraphProcessingService graphProcessingService;
+
+    @Autowired
+    CommonAncestorBatchService commonAncestorBatchService;
+
+    @Autowired
+    GraphMetrics graphMetrics;
+
+    private GraphProcessingService indexedProcessingService;
+    private Graph graph;
+
+    @Before
+    public void before() {
+        graph = graphService.createGraph(edges);
+        indexedProcessingService = new GraphProcessingService(graphService, new AncestorIndexService("lazy", Long.MAX_VALUE),
+                new CommonAncestorCache(0), graphMetrics, new TraversalEngine(graphMetrics, 0));
+    }
+
+    @Test
+    public void haveNodesCommonAncestor_sampleNodes_success() {
+        for (final GraphProcessingService service : Arrays.asList(graphProcessingService, indexedProcessingService)) {
+            assertThat(service.haveNodesCommonAncestor(graph.getId(), 3, 8)).isFalse();
+            assertThat(service.haveNodesCommonAncestor(graph.getId(), 5, 8)).isTrue();
+            assertThat(service.haveNodesCommonAncestor(graph.getId(), 6, 8)).isTrue();
+        }
+    }
+
+    @Test
+    public void haveNodesCommonAncestor_unequalAncestorDepths_success() {
+        // 1 is reached from 7 after four levels and from 9 after one level
+        final Set<Edge> deepEdges = new HashSet<>();
+        deepEdges.add(new Edge(1, 2));
+        deepEdges.add(new Edge(2, 3));
+        deepEdges.add(new Edge(3, 4));
+        deepEdges.add(new Edge(4, 7));
+        deepEdges.add(new Edge(1, 9));
+        deepEdges.add(new Edge(8, 9));
+        final Graph deepGraph = graphService.createGraph(deepEdges);
+
+        for (final GraphProcessingService service : Arrays.asList(graphProcessingService, indexedProcessingService)) {
+            assertThat(service.haveNodesCommonAncestor(deepGraph.getId(), 7, 9)).isTrue();
+            assertThat(service.haveNodesCommonAncestor(deepGraph.getId(), 9, 7)).isTrue();
+            assertThat(service.haveNodesCommonAncestor(deepGraph.getId(), 7, 8)).isFalse();
+            assertThat(service.haveNodesCommonAncestor(deepGraph.getId(), 2, 2)).isTrue();
+            assertThat(service.haveNodesCommonAncestor(deepGraph.getId(), 7, 3)).isTrue();
+        }
+    }
+
+    @Test
+    public void getLowestCommonAncestors_sampleNodes_success() {
+        for (final GraphProcessingService service : Arrays.asList(graphProcessingService, indexedProcessingService)) {
+            assertThat(service.getLowestCommonAncestors(graph.getId(), 6, 8)).containsExactly(new CommonAncestor(4, 2, 1));
+            assertThat(service.getLowestCommonAncestors(graph.getId(), 17, 6)).containsExactly(new CommonAncestor(5, 1, 1));
+            assertThat(service.getLowestCommonAncestors(graph.getId(), 6, 3)).containsExactly(new CommonAncestor(3, 1, 0));
+            assertThat(service.getLowestCommonAncestors(graph.getId(), 9, 9)).containsExactly(new CommonAncestor(9, 0, 0));
+            assertThat(service.getLowestCommonAncestors(graph.getId(), 3, 8)).isEmpty();
+        }
+    }
+
+    @Test
+    public void haveNodesCommonAncestor_interruptedThread_cancelled() {
+        Thread.currentThread().interrupt();
+        try {
+            assertThatThrownBy(() -> graphProcessingService.haveNodesCommonAncestor(graph.getId(), 3, 8))
+                    .isInstanceOf(QueryCancelledException.class);
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    @Test
+    public void getLowestCommonAncestors_severalLowest_success() {
+        // 1 and 2 are both parents of 3 and 4, 0 is above both of them
+        final Set<Edge> crossEdges = new HashSet<>();
+        crossEdges.add(new Edge(0, 1));
+        crossEdges.add(new Edge(0, 2));
+        crossEdges.add(new Edge(1, 3));
+        crossEdges.add(new Edge(2, 3));
+        crossEdges.add(new Edge(1, 4));
+        crossEdges.add(new Edge(2, 5));
+        crossEdges.add(new Edge(5, 4));
+        final Graph crossGraph = graphService.createGraph(crossEdges);
+
+        for (final GraphProcessingService service : Arrays.asList(graphProcessingService, indexedProcessingService)) {
+            assertThat(service.getLowestCommonAncestors(crossGraph.getId(), 3, 4))
+                    .containsExactly(new CommonAncestor(1, 1, 1), new CommonAncestor(2, 1, 2));
+        }
+    }
+
+    @Test
+    public void getLowestCommonAncestors_commonAncestorsOnCycle_cycleReturned() {
+        // 1, 2 and 3 form a cycle above 4 and 5, 6 and 7 form a cycle above 1
+        final Set<Edge> cyclicEdges = new HashSet<>();
+        cyclicEdges.add(new Edge(1, 2));
+        cyclicEdges.add(new Edge(2, 3));
+        cyclicEdges.add(new Edge(3, 1));
+        cyclicEdges.add(new Edge(3, 4));
+        cyclicEdges.add(new Edge(3, 5));
+        cyclicEdges.add(new Edge(6, 7));
+        cyclicEdges.add(new Edge(7, 6));
+        cyclicEdges.add(new Edge(7, 1));
+        cyclicEdges.add(new Edge(4, 8));
+        cyclicEdges.add(new Edge(5, 8));
+        final Graph cyclicGraph = graphService.createGraph(cyclicEdges);
+
+        for (final GraphProcessingService service : Arrays.asList(graphProcessingService, indexedProcessingService)) {
+            assertThat(service.haveNodesCommonAncestor(cyclicGraph.getId(), 4, 5)).isTrue();
+            assertThat(service.getLowestCommonAncestors(cyclicGraph.getId(), 4, 5)).containsExactly(
+                    new CommonAncestor(3, 1, 1), new CommonAncestor(2, 2, 2), new CommonAncestor(1, 3, 3));
+            assertThat(service.getLowestCommonAncestors(cyclicGraph.getId(), 8, 8)).containsExactly(new CommonAncestor(8, 0, 0));
+            assertThat(service.getLowestCommonAncestors(cyclicGraph.getId(), 8, 4)).containsExactly(new CommonAncestor(4, 1, 0));
+            assertThat(service.getLowestCommonAncestors(cyclicGraph.getId(), 6, 2)).containsExactly(
+                    new CommonAncestor(6, 0, 3), new CommonAncestor(7, 1, 2));
+        }
+    }
+
+    @Test
+    public void getLowestCommonAncestors_randomForest_matchesTraversal() {
+        final Random random = new Random(11);
+        final Set<Edge> forestEdges = new HashSet<>();
+        for (int child = 1; child < 500; child++) {
+            // some nodes start a new tree
+            if (random.nextInt(10) != 0) {
+                forestEdges.add(new Edge(random.nextInt(child), child));
+            }
+        }
+        final Graph forest = graphService.createGraph(forestEdges);
+
+        for (int query = 0; query < 500; query++) {
+            final int first = forest.getNodeId(random.nextInt(forest.getNodesCount()));
+            final int second = forest.getNodeId(random.nextInt(forest.getNodesCount()));
+
+            assertThat(indexedProcessingService.getLowestCommonAncestors(forest.getId(), first, second))
+                    .isEqualTo(graphProcessingService.getLowestCommonAncestors(forest.getId(), first, second));
+        }
+        assertThat(forest.findIndex(LowestCommonAncestorIndex.class).isAvailable()).isTrue();
+    }
+
+    @Test
+    public void getAncestors_sampleNodes_success() {
+        final NodeRanges ancestors = graphProcessingService.getAncestors(graph.getId(), new NodeSetQuery(Arrays.asList(6, 9), null));
+        final NodeRanges parents = graphProcessingService.getAncestors(graph.getId(), new NodeSetQuery(Arrays.asList(6, 9), 1));
+
+        assertThat(ancestors.getNodesCount()).isEqualTo(6);
+        assertThat(ranges(ancestors)).containsExactly(Arrays.asList(2, 5), Arrays.asList(8, 8), Arrays.asList(10, 10));
+        assertThat(ranges(parents)).containsExactly(Arrays.asList(3, 3), Arrays.asList(5, 5), Arrays.asList(8, 8));
+    }
+
+    @Test
+    public void getDescendants_sampleNodes_success() {
+        final NodeRanges descendants = graphProcessingService.getDescendants(graph.getId(), new NodeSetQuery(Arrays.asList(4, 5), null));
+        final NodeRanges children = graphProcessingService.getDescendants(graph.getId(), new NodeSetQuery(Arrays.asList(3, 5), 1));
+
+        // 5 is a descendant of 4, so it is part of the result
+        assertThat(descendants.getNodesCount()).isEqualTo(5);
+        assertThat(ranges(descendants)).containsExactly(Arrays.asList(5, 6), Arrays.asList(8, 9), Arrays.asList(17, 17));
+        assertThat(ranges(children)).containsExactly(Arrays.asList(6, 6), Arrays.asList(17, 17));
+    }
+
+    @Test
+    public void getAncestors_randomGraph_matchesSingleTraversals() {
+        final Random random = new Random(17);
+        final Set<Edge> randomEdges = new HashSet<>();
+        for (int child = 1; child < 1_000; child++) {
+            for (int parent = random.nextInt(3); parent > 0; parent--) {
+                randomEdges.add(new Edge(random.nextInt(child), child));
+            }
+        }
+        final Graph randomGraph = graphService.createGraph(randomEdges);
+
+        for (int query = 0; query < 20; query++) {
+            final List<Integer> nodes = new ArrayList<>();
+            for (int node = random.nextInt(5); node >= 0; node--) {
+                nodes.add(randomGraph.getNodeId(random.nextInt(randomGraph.getNodesCount())));
+            }
+            final int maxDepth = 1 + random.nextInt(4);
+            final Set<Integer> expected = new HashSet<>();
+            for (final int nodeId : nodes) {
+                expected.addAll(reachable(randomGraph, randomGraph.indexOf(nodeId), maxDepth));
+            }
+
+            final NodeRanges ancestors = graphProcessingService.getAncestors(randomGraph.getId(), new NodeSetQuery(nodes, maxDepth));
+            assertThat(ancestors.getNodesCount()).isEqualTo(expected.size());
+            for (int range = 0; range < ancestors.getRangesCount(); range++) {
+                for (int nodeId = ancestors.getFrom(range); nodeId <= ancestors.getTo(range); nodeId++) {
+                    assertThat(expected).contains(nodeId);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void getAncestors_nodesNotProvided_exception() {
+        assertThatThrownBy(() -> graphProcessingService.getAncestors(graph.getId(), new NodeSetQuery(Collections.emptyList(), null)))
+                .isInstanceOf(NodesNotProvidedException.class);
+        assertThatThrownBy(() -> graphProcessingService.getDescendants(graph.getId(), new NodeSetQuery(Arrays.asList(3, 38), null)))
+                .isInstanceOf(NodeNotFoundException.class);
+    }
+
+    @Test
+    public void getShortestAncestorPath_sampleNodes_success() {
+        assertThat(graphProcessingService.getShortestAncestorPath(graph.getId(), 6, 4)).containsExactly(6, 5, 4);
+        assertThat(graphProcessingService.getShortestAncestorPath(graph.getId(), 6, 10)).containsExactly(6, 3, 10);
+        assertThat(graphProcessingService.getShortestAncestorPath(graph.getId(), 6, 6)).containsExactly(6);
+        assertThat(graphProcessingService.getShortestAncestorPath(graph.getId(), 9, 5)).isEmpty();
+        assertThat(graphProcessingService.getShortestAncestorPath(graph.getId(), 4, 6)).isEmpty();
+    }
+
+    @Test
+    public void getShortestAncestorPath_randomGraphWithCycles_matchesSingleTraversals() {
+        final Random random = new Random(23);
+        final Set<Edge> randomEdges = new HashSet<>();
+        for (int child = 1; child < 500; child++) {
+            for (int parent = random.nextInt(3); parent > 0; parent--) {
+                randomEdges.add(new Edge(random.nextInt(child), child));
+            }
+        }
+        // a few back edges, leaving some nodes on or below a cycle
+        for (int cycle = 0; cycle < 5; cycle++) {
+            final int parent = 250 + random.nextInt(250);
+            randomEdges.add(new Edge(parent, parent - 1 - random.nextInt(50)));
+        }
+        final Graph randomGraph = graphService.createGraph(randomEdges);
+
+        for (int query = 0; query < 200; query++) {
+            final int node = random.nextInt(randomGraph.getNodesCount());
+            final int ancestor = random.nextInt(randomGraph.getNodesCount());
+            final List<Integer> path = graphProcessingService.getShortestAncestorPath(randomGraph.getId(),
+                    randomGraph.getNodeId(node), randomGraph.getNodeId(ancestor));
+
+            // the hop distance of the ancestor, -1 once the reached ancestors stop growing without it
+            int distance = node == ancestor ? 0 : -1;
+            for (int hops = 1, reachedCount = -1; distance < 0; hops++) {
+                final Set<Integer> reached = reachable(randomGraph, node, hops);
+                if (reached.contains(randomGraph.getNodeId(ancestor))) {
+                    distance = hops;
+                } else if (reached.size() == reachedCount) {
+                    break;
+                }
+                reachedCount = reached.size();
+            }
+            if (distance < 0) {
+                assertThat(path).isEmpty();
+                continue;
+            }
+            assertThat(path).hasSize(distance + 1);
+            for (int position = 1; position < path.size(); position++) {
+                final int child = randomGraph.indexOf(path.get(position - 1));
+                assertThat(reachable(randomGraph, child, 1)).contains(path.get(position));
+            }
+        }
+    }
+
+    @Test
+    public void getAncestorsWithin_sampleNode_orderedByDistance() {
+        assertThat(graphProcessingService.getAncestorsWithin(graph.getId(), 6, 2)).containsExactly(
+                new NodeDistance(3, 1), new NodeDistance(5, 1),
+                new NodeDistance(2, 2), new NodeDistance(4, 2), new NodeDistance(10, 2));
+        assertThat(graphProcessingService.getAncestorsWithin(graph.getId(), 6, 0)).isEmpty();
+        assertThat(graphProcessingService.getAncestorsWithin(graph.getId(), 4, 3)).isEmpty();
+    }
+
+    @Test
+    public void getAncestorsWithin_budgetExceeded_exception() {
+        final GraphProcessingService budgetedService = new GraphProcessingService(graphService,
+                new AncestorIndexService("none", Long.MAX_VALUE), new CommonAncestorCache(0), graphMetrics,
+                new TraversalEngine(graphMetrics, 3));
+
+        assertThat(budgetedService.getAncestorsWithin(graph.getId(), 6, 1)).hasSize(2);
+        assertThatThrownBy(() -> budgetedService.getAncestorsWithin(graph.getId(), 6, 2))
+                .isInstanceOf(TraversalBudgetExceededException.class);
+        assertThatThrownBy(() -> budgetedService.getAncestors(graph.getId(), new NodeSetQuery(Collections.singletonList(6), null)))
+                .isInstanceOf(TraversalBudgetExceededException.class);
+    }
+
+    @Test
+    public void haveNodesCommonAncestor_budgetExceeded_exception() {
+        final TraversalEngine budgetedEngine = new TraversalEngine(graphMetrics, 3);
+        final GraphProcessingService budgetedService = new GraphProcessingService(graphService,
+                new AncestorIndexService("none", Long.MAX_VALUE), new CommonAncestorCache(0), graphMetrics, budgetedEngine);
+
+        // 5 and 8 meet on their common parent 4, 17 and 3 visit all their ancestors without meeting
+        assertThat(budgetedService.haveNodesCommonAncestor(graph.getId(), 5, 8)).isTrue();
+        assertThatThrownBy(() -> budgetedService.haveNodesCommonAncestor(graph.getId(), 17, 3))
+                .isInstanceOf(TraversalBudgetExceededException.class);
+        assertThatThrownBy(() -> budgetedService.getLowestCommonAncestors(graph.getId(), 17, 3))
+                .isInstanceOf(TraversalBudgetExceededException.class);
+
+        final CommonAncestorBatchService budgetedBatchService = new CommonAncestorBatchService(graphService, budgetedService,
+                new AncestorIndexService("none", Long.MAX_VALUE), new TraversalEngine(graphMetrics, 2), 1, 100, Long.MAX_VALUE);
+        try {
+            // the ancestors of 3, shared by both pairs, are 3 nodes
+            assertThatThrownBy(() -> budgetedBatchService.haveNodesCommonAncestor(graph.getId(),
+                    Arrays.asList(new NodePair(3, 17), new NodePair(3, 9))))
+                    .isInstanceOf(TraversalBudgetExceededException.class);
+        } finally {
+            budgetedBatchService.shutdown();
+        }
+    }
+
+    @Test
+    public void haveNodesCommonAncestor_nodeNotFound_exception() {
+        assertThatThrownBy(() -> graphProcessingService.haveNodesCommonAncestor(graph.getId(), 3, 38))
+                .isInstanceOf(NodeNotFoundException.class);
+    }
+
+    @Test
+    public void getAncestorIndex_indexDisabled_notBuilt() {
+        // a graph of its own, the graphs created with the sample edges sharing their indexes
+        final Set<Edge> ownEdges = new HashSet<>(edges);
+        ownEdges.add(new Edge(9, 11));
+        final Graph ownGraph = graphService.createGraph(ownEdges);
+        graphProcessingService.haveNodesCommonAncestor(ownGraph.getId(), 3, 8);
+
+        assertThat(graphProcessingService.getAncestorIndex(ownGraph.getId())).isEmpty();
+    }
+
+    @Test
+    public void haveNodesCommonAncestor_graphNotFound_exception() {
+        assertThatThrownBy(() -> graphProcessingService.haveNodesCommonAncestor(NOT_EXISTING_GRAPH_ID, 3, 8))
+                .isInstanceOf(GraphNotFoundException.class);
+    }
+
+    @Test
+    public void haveNodesCommonAncestorBatch_allPairs_matchSingleQueries() {
+        final int[] nodeIds = {2, 3, 4, 5, 6, 8, 9, 10, 17};
+        final List<NodePair> pairs = new ArrayList<>();
+        final List<Boolean> expected = new ArrayList<>();
+        for (final int first : nodeIds) {
+            for (final int second : nodeIds) {
+                pairs.add(new NodePair(first, second));
+                expected.add(graphProcessingService.haveNodesCommonAncestor(graph.getId(), first, second));
+            }
+        }
+
+        assertThat(commonAncestorBatchService.haveNodesCommonAncestor(graph.getId(), pairs)).isEqualTo(expected);
+    }
+
+    @Test
+    public void haveNodesCommonAncestorBatch_sampleNodes_success() {
+        final List<NodePair> pairs = Arrays.asList(new NodePair(3, 8), new NodePair(5, 8), new NodePair(6, 8));
+
+        assertThat(commonAncestorBatchService.haveNodesCommonAncestor(graph.getId(), pairs)).containsExactly(false, true, true);
+    }
+
+    @Test
+    public void haveNodesCommonAncestorBatch_nodeNotFound_exception() {
+        final List<NodePair> pairs = Arrays.asList(new NodePair(3, 8), new NodePair(5, 38));
+
+        assertThatThrownBy(() -> commonAncestorBatchService.haveNodesCommonAncestor(graph.getId(), pairs))
+                .isInstanceOf(NodeNotFoundException.class);
+    }
+
+    @Test
+    public void haveNodesCommonAncestorBatch_sharedAncestorsOverBudget_matchSingleQueries() {
+        final CommonAncestorBatchService budgetedBatchService = new CommonAncestorBatchService(graphService, graphProcessingService,
+                new AncestorIndexService("none", Long.MAX_VALUE), new TraversalEngine(graphMetrics, 0), 1, 100, 3 * Integer.BYTES);
+        final int[] nodeIds = {2, 3, 4, 5, 6, 8, 9, 10, 17};
+        final List<NodePair> pairs = new ArrayList<>();
+        final List<Boolean> expected = new ArrayList<>();
+        for (final int first : nodeIds) {
+            for (final int second : nodeIds) {
+                pairs.add(new NodePair(first, second));
+                expected.add(graphProcessingService.haveNodesCommonAncestor(graph.getId(), first, second));
+            }
+        }
+
+        try {
+            assertThat(budgetedBatchService.haveNodesCommonAncestor(graph.getId(), pairs)).isEqualTo(expected);
+        } finally {
+            budgetedBatchService.shutdown();
+        }
+    }
+
+    @Test
+    public void haveNodesCommonAncestorBatch_nodeIdMissing_exception() {
+        final List<NodePair> pairs = Arrays.asList(new NodePair(3, 8), new NodePair(5, null));
+
+        assertThatThrownBy(() -> commonAncestorBatchService.haveNodesCommonAncestor(graph.getId(), pairs))
+                .isInstanceOf(NodesNotProvidedException.class)
+                .hasMessage("Pair 1 of the batch should provide both node ids!");
+    }
+
+    @Test
+    public void getAncestorIndex_builtOnFirstQuery_success() {
+        assertThat(indexedProcessingService.getAncestorIndex(graph.getId())).isEmpty();
+
+        indexedProcessingService.haveNodesCommonAncestor(graph.getId(), 3, 8);
+
+        final Optional<AncestorIndex> ancestorIndex = indexedProcessingService.getAncestorIndex(graph.getId());
+        assertThat(ancestorIndex).isPresent();
+        assertThat(ancestorIndex.get().isAvailable()).isTrue();
+        assertThat(ancestorIndex.get().getMemoryBytes()).isPositive();
+    }
+
+    private static List<List<Integer>> ranges(final NodeRanges nodeRanges) {
+        final List<List<Integer>> ranges = new ArrayList<>();
+        for (int range = 0; range < nodeRanges.getRangesCount(); range++) {
+            ranges.add(Arrays.asList(nodeRanges.getFrom(range), nodeRanges.getTo(range)));
+        }
+        return ranges;
+    }
+
+    /**
+     * @return the ids of the ancestors of the node within the given number of hops, the node excluded
+     */
+    private static Set<Integer> reachable(final Graph graph, final int node, final int maxDepth) {
+        final Set<Integer> reached = new HashSet<>();
+        Set<Integer> level = Collections.singleton(node);
+        for (int depth = 0; depth < maxDepth; depth++) {
+            final Set<Integer> nextLevel = new HashSet<>();
+            for (final int current : level) {
+                for (int position = graph.getParentsFrom(current); position < graph.getParentsTo(current); position++) {
+                    if (reached.add(graph.getNodeId(graph.getParent(position)))) {
+                        nextLevel.add(graph.getParent(position));
+                    }
+                }
+            }
+            level = nextLevel;
+        }
+        return reached;
+    }
+}
@@ -1,9 +1,14 @@
 package com.rl.graphapi.service;
 
+import com.rl.graphapi.service.exception.GraphChangesNotProvidedException;
 import com.rl.graphapi.service.exception.GraphEdgesNotProvidedException;
 import com.rl.graphapi.service.exception.GraphNotFoundException;
+import com.rl.graphapi.service.exception.InvalidCursorException;
 import com.rl.graphapi.service.model.Edge;
 import com.rl.graphapi.service.model.Graph;
+import com.rl.graphapi.service.model.GraphMutation;
+import com.rl.graphapi.service.model.GraphPage;
+import com.rl.graphapi.service.model.NodesPage;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -12,6 +17,7 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.junit4.SpringRunner;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -51,7 +57,20 @@ public class GraphServiceTest {
 
         assertThat(graph).withFailMessage("Graph shouldn't be null").isNotNull();
         assertThat(graph.getId()).withFailMessage("Graph id shouldn't be null").isNotNull();
-        assertThat(graph.getNodesHeap().size()).isEqualTo(expectedNodesNo);
+        assertThat(graph.getNodesCount()).isEqualTo(expectedNodesNo);
+    }
+
+    @Test
+    public void createGraph_returnNodeParents_success() {
+        final int nodeIndex = graph.indexOf(3);
+        final Set<Integer> parents = new HashSet<>();
+        for (int position = graph.getParentsFrom(nodeIndex); position < graph.getParentsTo(nodeIndex); position++) {
+            parents.add(graph.getNodeId(graph.getParent(position)));
+        }
+
+        assertThat(graph.getEdgesCount()).isEqualTo(edges.size());
+        assertThat(graph.getParentsCount(nodeIndex)).isEqualTo(2);
+        assertThat(parents).isEqualTo(new HashSet<>(Arrays.asList(2, 10)));
     }
 
     @Test
@@ -59,12 +78,52 @@ public class GraphServiceTest {
         assertThatThrownBy(() -> graphService.createGraph(new HashSet<>())).isInstanceOf(GraphEdgesNotProvidedException.class);
     }
 
+    @Test
+    public void updateGraph_addAndRemoveEdges_newVersion() {
+        final Set<Integer> rootsBefore = graphService.getNodesHavingParentsCount(graph.getId(), 0);
+
+        final Graph updated = graphService.updateGraph(graph.getId(), new GraphMutation(
+                Arrays.asList(new Edge(9, 3), new Edge(9, 20)), Collections.singletonList(new Edge(10, 3)),
+                null, Collections.singletonList(4)));
+
+        assertThat(updated.getVersion()).isEqualTo(graph.getVersion() + 1);
+        assertThat(graphService.lookup(graph.getId())).isSameAs(updated);
+        assertThat(graphService.getNodesHavingParentsCount(graph.getId(), 0)).containsExactlyInAnyOrder(2, 5, 8, 10);
+        assertThat(graphService.getNodesHavingParentsCount(graph.getId(), 2)).containsExactlyInAnyOrder(3, 6);
+        assertThat(graphService.getNodesHavingParentsCount(graph.getId(), 1)).containsExactlyInAnyOrder(9, 17, 20);
+
+        // the previous version is left untouched
+        assertThat(rootsBefore).containsExactlyInAnyOrder(2, 4, 10);
+        assertThat(graph.containsNode(4)).isTrue();
+    }
+
+    @Test
+    public void updateGraph_noChanges_exception() {
+        assertThatThrownBy(() -> graphService.updateGraph(graph.getId(), new GraphMutation(null, null, null, null)))
+                .isInstanceOf(GraphChangesNotProvidedException.class);
+    }
+
+    @Test
+    public void updateGraph_notExistingGraph_exception() {
+        assertThatThrownBy(() -> graphService.updateGraph(NOT_EXISTING_GRAPH_ID,
+                new GraphMutation(null, null, Collections.singletonList(1), null)))
+                .isInstanceOf(GraphNotFoundException.class);
+    }
+
+    @Test
+    public void deleteGraph_existingGraph_notFoundAfterwards() {
+        graphService.deleteGraph(graph.getId());
+
+        assertThatThrownBy(() -> graphService.lookup(graph.getId())).isInstanceOf(GraphNotFoundException.class);
+        assertThatThrownBy(() -> graphService.deleteGraph(graph.getId())).isInstanceOf(GraphNotFoundException.class);
+    }
+
     @Test
     public void lookup_returnExistingGraph_success() {
         final Graph result = graphService.lookup(graph.getId());
         assertThat(graph).withFailMessage("Graph shouldn't be null").isNotNull();
         assertThat(result.getId()).isEqualTo(graph.getId());
-        assertThat(result.getNodesHeap().size()).isEqualTo(graph.getNodesHeap().size());
+        assertThat(result.getNodesCount()).isEqualTo(graph.getNodesCount());
     }
 
     @Test
@@ -81,6 +140,54 @@ public class GraphServiceTest {
         assertThat(result).isEqualTo(nodesWithOneParent);
     }
 
+    @Test
+    public void getNodesHavingParentsCount_returnNodesInParentsRange_success() {
+        final Set<Integer> nodesWithParents = new HashSet<>(Arrays.asList(17, 5, 8, 9, 3, 6));
+
+        final Set<Integer> result = graphService.getNodesHavingParentsCount(graph.getId(), 1, 2);
+        assertThat(result).isEqualTo(nodesWithParents);
+        assertThat(result).contains(3).doesNotContain(10, 38);
+        assertThat(graphService.getNodesHavingParentsCount(graph.getId(), 3, Integer.MAX_VALUE)).isEmpty();
+        assertThat(graphService.getNodesHavingParentsCount(graph.getId(), 2, 1)).isEmpty();
+    }
+
+    @Test
+    public void countNodesHavingParentsCount_returnNodesCount_success() {
+        assertThat(graphService.countNodesHavingParentsCount(graph.getId(), 0, 0)).isEqualTo(3);
+        assertThat(graphService.countNodesHavingParentsCount(graph.getId(), 1, 1)).isEqualTo(4);
+        assertThat(graphService.countNodesHavingParentsCount(graph.getId(), 0, Integer.MAX_VALUE)).isEqualTo(9);
+    }
+
+    @Test
+    public void getNodesHavingParentsCountPage_followCursor_success() {
+        final NodesPage firstPage = graphService.getNodesHavingParentsCountPage(graph.getId(), 1, 2, null, 4);
+        assertThat(firstPage.getNodeIds()).containsExactly(5, 8, 9, 17);
+        assertThat(firstPage.getNextCursor()).isEqualTo("1:17");
+
+        final NodesPage secondPage = graphService.getNodesHavingParentsCountPage(graph.getId(), 1, 2, firstPage.getNextCursor(), 4);
+        assertThat(secondPage.getNodeIds()).containsExactly(3, 6);
+        assertThat(secondPage.getNextCursor()).isNull();
+    }
+
+    @Test
+    public void getNodesHavingParentsCountPage_invalidCursor_exception() {
+        assertThatThrownBy(() -> graphService.getNodesHavingParentsCountPage(graph.getId(), 0, 1, "17", 4))
+                .isInstanceOf(InvalidCursorException.class);
+    }
+
+    @Test
+    public void getGraphPage_followCursor_success() {
+        final GraphPage firstPage = graphService.getGraphPage(graph.getId(), null, 5);
+        assertThat(firstPage.getFromIndex()).isEqualTo(0);
+        assertThat(firstPage.getToIndex()).isEqualTo(5);
+        assertThat(firstPage.getNextCursor()).isEqualTo("6");
+
+        final GraphPage secondPage = graphService.getGraphPage(graph.getId(), firstPage.getNextCursor(), 5);
+        assertThat(graph.getNodeId(secondPage.getFromIndex())).isEqualTo(8);
+        assertThat(secondPage.getToIndex()).isEqualTo(graph.getNodesCount());
+        assertThat(secondPage.getNextCursor()).isNull();
+    }
+
     @Test
     public void getNodesHavingParentsCount_graphNotFound_exception() {
         assertThatThrownBy(() -> graphService.getNodesHavingParentsCount(NOT_EXISTING_GRAPH_ID, 1)).isInstanceOf(GraphNotFoundException.class);
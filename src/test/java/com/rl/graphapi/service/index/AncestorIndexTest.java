@@ -0,0 +1,156 @@
+package com.rl.graphapi.service.index;
+
+import com.rl.graphapi.service.model.Edge;
+import com.rl.graphapi.service.model.Graph;
+import com.rl.graphapi.service.model.GraphBuilder;
+import com.rl.graphapi.service.model.GraphChange;
+import com.rl.graphapi.service.model.GraphMutation;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AncestorIndexTest {
+
+    @Test
+    public void haveCommonAncestor_sampleGraph_success() {
+        final Graph graph = new GraphBuilder()
+                .addEdge(10, 3).addEdge(2, 3).addEdge(3, 6).addEdge(5, 6)
+                .addEdge(5, 17).addEdge(4, 5).addEdge(4, 8).addEdge(8, 9)
+                .build(1L);
+        final AncestorIndex index = AncestorIndex.build(graph, Long.MAX_VALUE);
+
+        assertThat(index.isAvailable()).isTrue();
+        assertThat(index.haveCommonAncestor(graph.indexOf(3), graph.indexOf(8))).isFalse();
+        assertThat(index.haveCommonAncestor(graph.indexOf(5), graph.indexOf(8))).isTrue();
+        assertThat(index.haveCommonAncestor(graph.indexOf(6), graph.indexOf(8))).isTrue();
+        assertThat(index.getMemoryBytes()).isPositive();
+    }
+
+    @Test
+    public void haveCommonAncestor_randomForest_matchesTraversal() {
+        final Random random = new Random(7);
+        final GraphBuilder graphBuilder = new GraphBuilder();
+        for (int child = 1; child < 2_000; child++) {
+            // leave some nodes without parents to obtain several roots
+            final int parentsCount = random.nextInt(4);
+            for (int parent = 0; parent < parentsCount; parent++) {
+                graphBuilder.addEdge(random.nextInt(child), child);
+            }
+        }
+        final Graph graph = graphBuilder.build(1L);
+        final AncestorIndex index = AncestorIndex.build(graph, Long.MAX_VALUE);
+
+        assertThat(index.isAvailable()).isTrue();
+        for (int query = 0; query < 2_000; query++) {
+            final int first = random.nextInt(graph.getNodesCount());
+            final int second = random.nextInt(graph.getNodesCount());
+            final Set<Integer> common = ancestors(graph, first);
+            common.retainAll(ancestors(graph, second));
+
+            assertThat(index.haveCommonAncestor(first, second)).isEqualTo(!common.isEmpty());
+        }
+    }
+
+    @Test
+    public void update_randomMutations_matchesTraversal() {
+        final Random random = new Random(11);
+        final GraphBuilder graphBuilder = new GraphBuilder();
+        for (int child = 1; child < 2_000; child++) {
+            final int parentsCount = random.nextInt(3);
+            for (int parent = 0; parent < parentsCount; parent++) {
+                graphBuilder.addEdge(random.nextInt(child), child);
+            }
+        }
+        Graph graph = graphBuilder.build(1L);
+        AncestorIndex index = AncestorIndex.build(graph, Long.MAX_VALUE);
+
+        for (int version = 0; version < 10; version++) {
+            // change the nodes having the highest ids, keeping the edges from lower to higher ids
+            final List<Edge> addEdges = new ArrayList<>();
+            final List<Edge> removeEdges = new ArrayList<>();
+            for (int edge = 0; edge < 20; edge++) {
+                final int child = 1_800 + random.nextInt(300);
+                addEdges.add(new Edge(random.nextInt(child), child));
+                final int node = graph.indexOf(1_800 + random.nextInt(200));
+                if (node >= 0 && graph.getParentsCount(node) > 0) {
+                    removeEdges.add(new Edge(graph.getNodeId(graph.getParent(graph.getParentsFrom(node))), graph.getNodeId(node)));
+                }
+            }
+            final List<Integer> removeNodes = new ArrayList<>();
+            if (graph.containsNode(1_950 + version)) {
+                removeNodes.add(1_950 + version);
+            }
+            final GraphChange change = GraphChange.apply(graph, new GraphMutation(addEdges, removeEdges,
+                    Collections.singletonList(3_000 + version), removeNodes));
+
+            index = AncestorIndex.update(index, change, Long.MAX_VALUE);
+            graph = change.getGraph();
+
+            assertThat(index.isAvailable()).isTrue();
+            for (int query = 0; query < 500; query++) {
+                final int first = random.nextInt(graph.getNodesCount());
+                final int second = graph.getNodesCount() - 1 - random.nextInt(400);
+                final Set<Integer> common = ancestors(graph, first);
+                common.retainAll(ancestors(graph, second));
+
+                assertThat(index.haveCommonAncestor(first, second)).isEqualTo(!common.isEmpty());
+            }
+        }
+    }
+
+    @Test
+    public void update_addedEdgeClosingCycle_unavailable() {
+        final Graph graph = new GraphBuilder().addEdge(1, 2).addEdge(2, 3)
+                .addEdge(4, 5).addEdge(6, 7).addEdge(8, 9).build(1L);
+        final AncestorIndex index = AncestorIndex.build(graph, Long.MAX_VALUE);
+
+        final GraphChange change = GraphChange.apply(graph,
+                new GraphMutation(Collections.singletonList(new Edge(3, 1)), null, null, null));
+        assertThat(AncestorIndex.update(index, change, Long.MAX_VALUE).isAvailable()).isFalse();
+    }
+
+    @Test
+    public void build_graphHavingCycle_unavailable() {
+        final Graph graph = new GraphBuilder().addEdge(1, 2).addEdge(2, 3).addEdge(3, 1).build(1L);
+
+        final AncestorIndex index = AncestorIndex.build(graph, Long.MAX_VALUE);
+        assertThat(index.isAvailable()).isFalse();
+        assertThat(index.getUnavailableReason()).isNotEmpty();
+    }
+
+    @Test
+    public void build_entriesLimitExceeded_unavailable() {
+        final Graph graph = new GraphBuilder().addEdge(1, 3).addEdge(2, 3).build(1L);
+
+        assertThat(AncestorIndex.build(graph, 4).isAvailable()).isTrue();
+        assertThat(AncestorIndex.build(graph, 3).isAvailable()).isFalse();
+    }
+
+    /**
+     * @return the dense indexes of the ancestors of the node, the node included
+     */
+    private Set<Integer> ancestors(final Graph graph, final int node) {
+        final Set<Integer> visited = new HashSet<>();
+        final Deque<Integer> toVisit = new ArrayDeque<>();
+        toVisit.add(node);
+        visited.add(node);
+        while (!toVisit.isEmpty()) {
+            final int current = toVisit.remove();
+            for (int position = graph.getParentsFrom(current); position < graph.getParentsTo(current); position++) {
+                if (visited.add(graph.getParent(position))) {
+                    toVisit.add(graph.getParent(position));
+                }
+            }
+        }
+        return visited;
+    }
+}
@@ -0,0 +1,43 @@
+package com.rl.graphapi.service.index;
+
+import com.rl.graphapi.service.model.Graph;
+import com.rl.graphapi.service.model.GraphBuilder;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LowestCommonAncestorIndexTest {
+
+    @Test
+    public void lowestCommonAncestor_sampleForest_success() {
+        // 1 -> 2 -> 3 -> 4, 2 -> 5 -> 6 and a second tree 7 -> 8
+        final Graph graph = new GraphBuilder()
+                .addEdge(1, 2).addEdge(2, 3).addEdge(3, 4).addEdge(2, 5).addEdge(5, 6).addEdge(7, 8)
+                .build(1L);
+        final LowestCommonAncestorIndex index = LowestCommonAncestorIndex.build(graph, Long.MAX_VALUE);
+
+        assertThat(index.isAvailable()).isTrue();
+        assertThat(index.getDepth(graph.indexOf(4))).isEqualTo(3);
+        assertThat(graph.getNodeId(index.lowestCommonAncestor(graph.indexOf(4), graph.indexOf(6)))).isEqualTo(2);
+        assertThat(graph.getNodeId(index.lowestCommonAncestor(graph.indexOf(6), graph.indexOf(5)))).isEqualTo(5);
+        assertThat(graph.getNodeId(index.lowestCommonAncestor(graph.indexOf(1), graph.indexOf(4)))).isEqualTo(1);
+        assertThat(index.lowestCommonAncestor(graph.indexOf(4), graph.indexOf(8))).isNegative();
+        assertThat(index.getMemoryBytes()).isPositive();
+    }
+
+    @Test
+    public void build_nodeHavingTwoParents_unavailable() {
+        final Graph graph = new GraphBuilder().addEdge(1, 3).addEdge(2, 3).build(1L);
+
+        final LowestCommonAncestorIndex index = LowestCommonAncestorIndex.build(graph, Long.MAX_VALUE);
+        assertThat(index.isAvailable()).isFalse();
+        assertThat(index.getUnavailableReason()).isNotEmpty();
+    }
+
+    @Test
+    public void build_graphHavingCycle_unavailable() {
+        final Graph graph = new GraphBuilder().addEdge(1, 2).addEdge(2, 3).addEdge(3, 1).build(1L);
+
+        assertThat(LowestCommonAncestorIndex.build(graph, Long.MAX_VALUE).isAvailable()).isFalse();
+    }
+}
@@ -0,0 +1,54 @@
+package com.rl.graphapi.service.index;
+
+import com.rl.graphapi.service.model.Edge;
+import com.rl.graphapi.service.model.Graph;
+import com.rl.graphapi.service.model.GraphBuilder;
+import com.rl.graphapi.service.model.GraphChange;
+import com.rl.graphapi.service.model.GraphMutation;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ParentsCountIndexTest {
+
+    @Test
+    public void update_randomMutations_matchesBuild() {
+        final Random random = new Random(13);
+        final GraphBuilder graphBuilder = new GraphBuilder();
+        for (int edge = 0; edge < 5_000; edge++) {
+            graphBuilder.addEdge(random.nextInt(1_000), random.nextInt(1_000));
+        }
+        Graph graph = graphBuilder.build(1L);
+        ParentsCountIndex index = ParentsCountIndex.build(graph);
+
+        for (int version = 0; version < 20; version++) {
+            final List<Edge> addEdges = new ArrayList<>();
+            final List<Edge> removeEdges = new ArrayList<>();
+            for (int edge = 0; edge < 30; edge++) {
+                addEdges.add(new Edge(random.nextInt(1_200), random.nextInt(1_200)));
+                final int node = random.nextInt(graph.getNodesCount());
+                if (graph.getParentsCount(node) > 0) {
+                    removeEdges.add(new Edge(graph.getNodeId(graph.getParent(graph.getParentsFrom(node))), graph.getNodeId(node)));
+                }
+            }
+            final GraphChange change = GraphChange.apply(graph, new GraphMutation(addEdges, removeEdges,
+                    Collections.singletonList(2_000 + version),
+                    Collections.singletonList(graph.getNodeId(random.nextInt(graph.getNodesCount())))));
+
+            index = ParentsCountIndex.update(index, change);
+            graph = change.getGraph();
+
+            final ParentsCountIndex expected = ParentsCountIndex.build(graph);
+            assertThat(index.getMaxParentsCount()).isEqualTo(expected.getMaxParentsCount());
+            for (int parentsCount = 0; parentsCount <= expected.getMaxParentsCount(); parentsCount++) {
+                assertThat(index.nodeIds(graph, parentsCount, parentsCount))
+                        .containsExactlyElementsOf(expected.nodeIds(graph, parentsCount, parentsCount));
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.rl.graphapi.service.index;
+
+import com.rl.graphapi.service.model.Graph;
+import com.rl.graphapi.service.model.GraphBuilder;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TopologyIndexTest {
+
+    @Test
+    public void build_sampleGraph_success() {
+        final Graph graph = new GraphBuilder()
+                .addEdge(10, 3).addEdge(2, 3).addEdge(3, 6).addEdge(5, 6)
+                .addEdge(5, 17).addEdge(4, 5).addEdge(4, 8).addEdge(8, 9)
+                .addEdge(20, 21).addEdge(21, 22)
+                .build(1L);
+        final TopologyIndex index = TopologyIndex.build(graph);
+
+        assertThat(index.getComponentsCount()).isEqualTo(2);
+        assertThat(index.getLargestComponentSize()).isEqualTo(9);
+        assertThat(index.getRootsCount()).isEqualTo(4);
+        assertThat(index.getMaxDepth()).isEqualTo(2);
+        assertThat(index.hasCycles()).isFalse();
+        assertThat(index.getDepth(graph.indexOf(4))).isEqualTo(0);
+        assertThat(index.getDepth(graph.indexOf(3))).isEqualTo(1);
+        assertThat(index.getDepth(graph.indexOf(6))).isEqualTo(2);
+        assertThat(index.isSameComponent(graph.indexOf(3), graph.indexOf(9))).isTrue();
+        assertThat(index.isSameComponent(graph.indexOf(3), graph.indexOf(22))).isFalse();
+
+        // different components, a single root, several roots
+        assertThat(index.haveCommonAncestor(graph.indexOf(3), graph.indexOf(22))).isFalse();
+        assertThat(index.haveCommonAncestor(graph.indexOf(20), graph.indexOf(22))).isTrue();
+        assertThat(index.haveCommonAncestor(graph.indexOf(3), graph.indexOf(8))).isNull();
+        assertThat(index.getMemoryBytes()).isPositive();
+    }
+
+    @Test
+    public void build_graphHavingCycle_nodesBelowCycleWithoutDepth() {
+        final Graph graph = new GraphBuilder()
+                .addEdge(1, 2).addEdge(2, 3).addEdge(3, 2).addEdge(3, 4)
+                .addEdge(5, 6)
+                .build(1L);
+        final TopologyIndex index = TopologyIndex.build(graph);
+
+        assertThat(index.hasCycles()).isTrue();
+        assertThat(index.getCyclicNodesCount()).isEqualTo(3);
+        assertThat(index.getDepth(graph.indexOf(1))).isEqualTo(0);
+        assertThat(index.getDepth(graph.indexOf(2))).isEqualTo(TopologyIndex.NO_DEPTH);
+        assertThat(index.getDepth(graph.indexOf(4))).isEqualTo(TopologyIndex.NO_DEPTH);
+        assertThat(index.getMaxDepth()).isEqualTo(1);
+        // the single root component is cyclic, so it is not answered by the topology
+        assertThat(index.haveCommonAncestor(graph.indexOf(2), graph.indexOf(4))).isNull();
+        assertThat(index.haveCommonAncestor(graph.indexOf(5), graph.indexOf(6))).isTrue();
+    }
+
+    @Test
+    public void haveCommonAncestor_randomForest_matchesTraversal() {
+        final Random random = new Random(11);
+        final GraphBuilder graphBuilder = new GraphBuilder();
+        for (int child = 1; child < 2_000; child++) {
+            // sparse edges towards close nodes, leaving many small components
+            final int parentsCount = random.nextInt(3);
+            for (int parent = 0; parent < parentsCount; parent++) {
+                graphBuilder.addEdge(Math.max(0, child - 1 - random.nextInt(20)), child);
+            }
+        }
+        final Graph graph = graphBuilder.build(1L);
+        final TopologyIndex index = TopologyIndex.build(graph);
+
+        assertThat(index.getComponentsCount()).isGreaterThan(1);
+        for (int query = 0; query < 2_000; query++) {
+            final int first = random.nextInt(graph.getNodesCount());
+            final int second = random.nextInt(graph.getNodesCount());
+            final Set<Integer> common = ancestors(graph, first);
+            common.retainAll(ancestors(graph, second));
+
+            final Boolean answer = index.haveCommonAncestor(first, second);
+            if (answer != null) {
+                assertThat(answer).isEqualTo(!common.isEmpty());
+            }
+            for (final int ancestor : ancestors(graph, first)) {
+                assertThat(ancestor == first || index.getDepth(ancestor) < index.getDepth(first)).isTrue();
+            }
+        }
+    }
+
+    /**
+     * @return the dense indexes of the ancestors of the node, the node included
+     */
+    private Set<Integer> ancestors(final Graph graph, final int node) {
+        final Set<Integer> visited = new HashSet<>();
+        final Deque<Integer> toVisit = new ArrayDeque<>();
+        toVisit.add(node);
+        visited.add(node);
+        while (!toVisit.isEmpty()) {
+            final int current = toVisit.remove();
+            for (int position = graph.getParentsFrom(current); position < graph.getParentsTo(current); position++) {
+                if (visited.add(graph.getParent(position))) {
+                    toVisit.add(graph.getParent(position));
+                }
+            }
+        }
+        return visited;
+    }
+}
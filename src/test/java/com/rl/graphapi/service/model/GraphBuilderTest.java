@@ -0,0 +1,73 @@
+package com.rl.graphapi.service.model;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class GraphBuilderTest {
+
+    @Test
+    public void build_duplicatedEdges_ignored() {
+        final Graph graph = new GraphBuilder()
+                .addEdge(10, 3).addEdge(2, 3).addEdge(10, 3).addEdge(3, 6).addEdge(2, 3)
+                .build(1L);
+
+        assertThat(graph.getNodesCount()).isEqualTo(4);
+        assertThat(graph.getEdgesCount()).isEqualTo(3);
+        assertThat(parentIds(graph, 3)).containsExactly(2, 10);
+        assertThat(parentIds(graph, 10)).isEmpty();
+    }
+
+    @Test
+    public void build_addedNodes_keptWithoutEdges() {
+        final Graph graph = new GraphBuilder()
+                .addNode(7).addEdge(10, 3).addNode(3).addNode(7)
+                .build(1L);
+
+        assertThat(graph.getNodesCount()).isEqualTo(3);
+        assertThat(graph.getEdgesCount()).isEqualTo(1);
+        assertThat(graph.indexOf(7)).isEqualTo(1);
+        assertThat(parentIds(graph, 7)).isEmpty();
+        assertThat(parentIds(graph, 3)).containsExactly(10);
+    }
+
+    @Test
+    public void build_largeRandomGraph_matchesEdges() {
+        // above the parallel build threshold, with negative ids and duplicated edges
+        final Random random = new Random(3);
+        final GraphBuilder graphBuilder = new GraphBuilder();
+        final Map<Integer, Set<Integer>> expectedParents = new HashMap<>();
+        for (int edge = 0; edge < 300_000; edge++) {
+            final int parent = random.nextInt(100_000) - 50_000;
+            final int child = random.nextInt(100_000) - 50_000;
+            graphBuilder.addEdge(parent, child);
+            expectedParents.computeIfAbsent(parent, node -> new TreeSet<>());
+            expectedParents.computeIfAbsent(child, node -> new TreeSet<>()).add(parent);
+        }
+
+        final Graph graph = graphBuilder.build(1L);
+
+        assertThat(graph.getNodesCount()).isEqualTo(expectedParents.size());
+        assertThat(graph.getEdgesCount()).isEqualTo(expectedParents.values().stream().mapToInt(Set::size).sum());
+        for (int index = 0; index < graph.getNodesCount(); index++) {
+            final int nodeId = graph.getNodeId(index);
+            assertThat(index == 0 || graph.getNodeId(index - 1) < nodeId).isTrue();
+            assertThat(parentIds(graph, nodeId)).containsExactly(expectedParents.get(nodeId).stream().mapToInt(Integer::intValue).toArray());
+        }
+    }
+
+    private static int[] parentIds(final Graph graph, final int nodeId) {
+        final int index = graph.indexOf(nodeId);
+        final int[] parentIds = new int[graph.getParentsCount(index)];
+        for (int position = graph.getParentsFrom(index); position < graph.getParentsTo(index); position++) {
+            parentIds[position - graph.getParentsFrom(index)] = graph.getNodeId(graph.getParent(position));
+        }
+        return parentIds;
+    }
+}
@@ -0,0 +1,133 @@
+package com.rl.graphapi.service.model;
+
+import com.rl.graphapi.service.exception.EdgeNotFoundException;
+import com.rl.graphapi.service.exception.NodeNotFoundException;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class GraphChangeTest {
+
+    @Test
+    public void apply_sampleMutation_success() {
+        final Graph previous = new GraphBuilder().addEdge(10, 3).addEdge(2, 3).addEdge(3, 6).addEdge(5, 6).build(1L);
+
+        final GraphChange change = GraphChange.apply(previous, new GraphMutation(
+                Arrays.asList(new Edge(7, 6), new Edge(2, 3), new Edge(7, 6)),
+                Collections.singletonList(new Edge(10, 3)),
+                Collections.singletonList(8),
+                Collections.singletonList(5)));
+        final Graph graph = change.getGraph();
+
+        assertThat(graph.getId()).isEqualTo(1L);
+        assertThat(graph.getVersion()).isEqualTo(2L);
+        assertThat(graph.getNodesCount()).isEqualTo(6);
+        assertThat(graph.getEdgesCount()).isEqualTo(3);
+        assertThat(parentIds(graph, 3)).containsExactly(2);
+        assertThat(parentIds(graph, 6)).containsExactly(3, 7);
+        assertThat(parentIds(graph, 8)).isEmpty();
+        assertThat(graph.containsNode(5)).isFalse();
+        assertThat(graph.containsNode(10)).isTrue();
+        assertThat(change.getChangedNodes()).containsExactly(graph.indexOf(3), graph.indexOf(6), graph.indexOf(7), graph.indexOf(8));
+        assertThat(change.currentIndexOf(previous.indexOf(5))).isNegative();
+        assertThat(change.previousIndexOf(graph.indexOf(8))).isNegative();
+
+        // the previous version is left untouched
+        assertThat(previous.getVersion()).isEqualTo(1L);
+        assertThat(parentIds(previous, 3)).containsExactly(2, 10);
+        assertThat(previous.containsNode(5)).isTrue();
+    }
+
+    @Test
+    public void apply_unknownEdgeOrNode_notFound() {
+        final Graph previous = new GraphBuilder().addEdge(10, 3).build(1L);
+
+        assertThatThrownBy(() -> GraphChange.apply(previous,
+                new GraphMutation(null, Collections.singletonList(new Edge(3, 10)), null, null)))
+                .isInstanceOf(EdgeNotFoundException.class);
+        assertThatThrownBy(() -> GraphChange.apply(previous,
+                new GraphMutation(null, null, null, Collections.singletonList(4))))
+                .isInstanceOf(NodeNotFoundException.class);
+    }
+
+    @Test
+    public void apply_randomMutations_matchesEdges() {
+        final Random random = new Random(5);
+        final Map<Integer, Set<Integer>> expectedParents = new TreeMap<>();
+        final GraphBuilder graphBuilder = new GraphBuilder();
+        for (int edge = 0; edge < 2000; edge++) {
+            final int parent = random.nextInt(500);
+            final int child = random.nextInt(500);
+            graphBuilder.addEdge(parent, child);
+            expectedParents.computeIfAbsent(parent, node -> new TreeSet<>());
+            expectedParents.computeIfAbsent(child, node -> new TreeSet<>()).add(parent);
+        }
+        Graph graph = graphBuilder.build(1L);
+
+        for (int version = 2; version <= 20; version++) {
+            final List<Integer> removeNodes = new ArrayList<>();
+            final List<Edge> removeEdges = new ArrayList<>();
+            final List<Integer> addNodes = new ArrayList<>();
+            final List<Edge> addEdges = new ArrayList<>();
+            final List<Integer> nodeIds = new ArrayList<>(expectedParents.keySet());
+            for (int i = 0; i < 5; i++) {
+                removeNodes.add(nodeIds.get(random.nextInt(nodeIds.size())));
+            }
+            for (int i = 0; i < 50; i++) {
+                final int child = nodeIds.get(random.nextInt(nodeIds.size()));
+                if (!expectedParents.get(child).isEmpty()) {
+                    removeEdges.add(new Edge(expectedParents.get(child).iterator().next(), child));
+                }
+                addEdges.add(new Edge(random.nextInt(600), random.nextInt(600)));
+            }
+            addNodes.add(random.nextInt(700));
+            addNodes.add(removeNodes.get(0));
+
+            // apply the removals then the additions on the expected parents
+            removeNodes.forEach(expectedParents::remove);
+            expectedParents.values().forEach(parents -> parents.removeAll(removeNodes));
+            removeEdges.forEach(edge -> {
+                if (expectedParents.containsKey(edge.getChild())) {
+                    expectedParents.get(edge.getChild()).remove(edge.getParent());
+                }
+            });
+            addNodes.forEach(nodeId -> expectedParents.computeIfAbsent(nodeId, node -> new TreeSet<>()));
+            addEdges.forEach(edge -> {
+                expectedParents.computeIfAbsent(edge.getParent(), node -> new TreeSet<>());
+                expectedParents.computeIfAbsent(edge.getChild(), node -> new TreeSet<>()).add(edge.getParent());
+            });
+
+            graph = GraphChange.apply(graph, new GraphMutation(addEdges, removeEdges, addNodes, removeNodes)).getGraph();
+
+            assertThat(graph.getVersion()).isEqualTo(version);
+            assertThat(graph.getNodesCount()).isEqualTo(expectedParents.size());
+            assertThat(graph.getEdgesCount()).isEqualTo(expectedParents.values().stream().mapToInt(Set::size).sum());
+            int index = 0;
+            for (final Map.Entry<Integer, Set<Integer>> node : expectedParents.entrySet()) {
+                assertThat(graph.getNodeId(index++)).isEqualTo(node.getKey());
+                assertThat(parentIds(graph, node.getKey()))
+                        .containsExactly(node.getValue().stream().mapToInt(Integer::intValue).toArray());
+            }
+        }
+    }
+
+    private static int[] parentIds(final Graph graph, final int nodeId) {
+        final int index = graph.indexOf(nodeId);
+        final int[] parentIds = new int[graph.getParentsCount(index)];
+        for (int position = graph.getParentsFrom(index); position < graph.getParentsTo(index); position++) {
+            parentIds[position - graph.getParentsFrom(index)] = graph.getNodeId(graph.getParent(position));
+        }
+        return parentIds;
+    }
+}
@@ -0,0 +1,614 @@
+package com.rl.graphapi.service.repository;
+
+import com.rl.graphapi.service.exception.GraphNotFoundException;
+import com.rl.graphapi.service.index.AncestorIndex;
+import com.rl.graphapi.service.model.Edge;
+import com.rl.graphapi.service.model.Graph;
+import com.rl.graphapi.service.model.GraphMutation;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class GraphRepositoryTest {
+    private static final int GRAPHS_COUNT = 100_000;
+    private static final int THREADS_COUNT = 8;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private GraphRepository graphRepository;
+    private final List<GraphLog> graphLogs = new ArrayList<>();
+
+    @Before
+    public void before() {
+        graphRepository = new GraphRepository(new GraphSnapshotStore(""), GraphEvictionPolicy.unbounded());
+    }
+
+    @After
+    public void after() {
+        // stop the writers of the logs opened by the restarted repositories as well
+        graphLogs.forEach(GraphLog::close);
+    }
+
+    @Test
+    public void createGraph_parallelCreateAndLookup_success() throws Exception {
+        final Set<Long> graphIds = ConcurrentHashMap.newKeySet();
+        final List<Long> createdIds = Collections.synchronizedList(new ArrayList<>());
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS_COUNT);
+        final List<Future<?>> futures = new ArrayList<>();
+
+        for (int thread = 0; thread < THREADS_COUNT; thread++) {
+            final int offset = thread;
+            futures.add(executor.submit(() -> {
+                for (int index = offset; index < GRAPHS_COUNT; index += THREADS_COUNT) {
+                    final Graph graph = graphRepository.createGraph(Collections.singleton(new Edge(index, index + 1)));
+                    assertThat(graphIds.add(graph.getId())).withFailMessage("Graph id %s generated twice", graph.getId()).isTrue();
+                    createdIds.add(graph.getId());
+
+                    // lookup a random graph created so far, by any thread
+                    final Long graphId = createdIds.get(ThreadLocalRandom.current().nextInt(createdIds.size()));
+                    assertThat(graphRepository.lookup(graphId).getId()).isEqualTo(graphId);
+                }
+            }));
+        }
+        for (final Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(1, TimeUnit.MINUTES)).isTrue();
+
+        assertThat(graphRepository.size()).isEqualTo(GRAPHS_COUNT);
+        assertThat(graphIds).hasSize(GRAPHS_COUNT);
+    }
+
+    @Test
+    public void lookup_storeGrowsTo100kGraphs_everyGraphFound() {
+        // the lookup time against the store size is measured by the GraphLookupBenchmark
+        final List<Long> graphIds = new ArrayList<>();
+        createGraphs(graphIds, GRAPHS_COUNT);
+
+        assertThat(graphRepository.size()).isEqualTo(GRAPHS_COUNT);
+        for (int index = 0; index < GRAPHS_COUNT; index++) {
+            final Graph graph = graphRepository.lookup(graphIds.get(index));
+            assertThat(graph.getId()).isEqualTo(graphIds.get(index));
+            assertThat(graph.getParentsCount(graph.indexOf(index + 1))).isEqualTo(1);
+        }
+    }
+
+    @Test
+    public void loadSnapshots_restartWithSnapshots_graphsMapped() throws Exception {
+        final GraphSnapshotStore graphSnapshotStore = new GraphSnapshotStore(temporaryFolder.getRoot().getPath());
+        final Graph graph = new GraphRepository(graphSnapshotStore, GraphEvictionPolicy.unbounded()).createGraph(new HashSet<>(Arrays.asList(
+                new Edge(10, 3), new Edge(2, 3), new Edge(3, 6), new Edge(5, 6), new Edge(4, 5))));
+
+        final GraphRepository restartedRepository = new GraphRepository(graphSnapshotStore, GraphEvictionPolicy.unbounded());
+        restartedRepository.loadSnapshots();
+
+        final Graph restored = restartedRepository.lookup(graph.getId());
+        assertThat(restored.isMapped()).isTrue();
+        assertThat(restored.getNodesCount()).isEqualTo(graph.getNodesCount());
+        assertThat(restored.getEdgesCount()).isEqualTo(graph.getEdgesCount());
+        for (int index = 0; index < graph.getNodesCount(); index++) {
+            assertThat(restored.getNodeId(index)).isEqualTo(graph.getNodeId(index));
+            assertThat(restored.getParentsFrom(index)).isEqualTo(graph.getParentsFrom(index));
+            assertThat(restored.getParentsTo(index)).isEqualTo(graph.getParentsTo(index));
+        }
+        for (int position = 0; position < graph.getEdgesCount(); position++) {
+            assertThat(restored.getParent(position)).isEqualTo(graph.getParent(position));
+        }
+        assertThat(restored.indexOf(6)).isEqualTo(graph.indexOf(6));
+        assertThat(restored.containsNode(7)).isFalse();
+    }
+
+    @Test
+    public void updateGraph_mappedGraph_nextVersionRestored() throws Exception {
+        final GraphSnapshotStore graphSnapshotStore = new GraphSnapshotStore(temporaryFolder.getRoot().getPath());
+        final Graph graph = new GraphRepository(graphSnapshotStore, GraphEvictionPolicy.unbounded()).createGraph(new HashSet<>(Arrays.asList(
+                new Edge(10, 3), new Edge(2, 3), new Edge(3, 6))));
+        final GraphRepository restartedRepository = new GraphRepository(graphSnapshotStore, GraphEvictionPolicy.unbounded());
+        restartedRepository.loadSnapshots();
+        final Graph mapped = restartedRepository.lookup(graph.getId());
+
+        restartedRepository.updateGraph(graph.getId(), new GraphMutation(Collections.singletonList(new Edge(6, 7)),
+                Collections.singletonList(new Edge(10, 3)), null, null), change -> { });
+
+        // the mapped version keeps reading the replaced snapshot file
+        assertThat(mapped.getEdgesCount()).isEqualTo(3);
+        assertThat(mapped.getParentsCount(mapped.indexOf(3))).isEqualTo(2);
+
+        final GraphRepository secondRestartedRepository = new GraphRepository(graphSnapshotStore, GraphEvictionPolicy.unbounded());
+        secondRestartedRepository.loadSnapshots();
+        final Graph restored = secondRestartedRepository.lookup(graph.getId());
+        assertThat(restored.getVersion()).isEqualTo(2L);
+        assertThat(restored.getEdgesCount()).isEqualTo(3);
+        assertThat(restored.getParentsCount(restored.indexOf(3))).isEqualTo(1);
+        assertThat(restored.getParentsCount(restored.indexOf(7))).isEqualTo(1);
+        assertThat(secondRestartedRepository.getNodesHavingParentsCount(graph.getId(), 0)).containsExactlyInAnyOrder(2, 10);
+    }
+
+    @Test
+    public void createGraph_overMemoryBudget_leastRecentlyAccessedSpilledAndReloaded() throws Exception {
+        final AtomicLong ticker = new AtomicLong();
+        final GraphSnapshotStore graphSnapshotStore = new GraphSnapshotStore(temporaryFolder.getRoot().getPath());
+        // room for two chains of 100 edges, their parents count indexes included
+        final GraphRepository repository = new GraphRepository(graphSnapshotStore,
+                new GraphEvictionPolicy(2 * chainMemoryBytes(100), 0, ticker::get));
+
+        final Graph first = repository.createGraph(chain(100, 0));
+        ticker.incrementAndGet();
+        final Graph second = repository.createGraph(chain(100, 1000));
+        ticker.incrementAndGet();
+        repository.lookup(first.getId());
+        ticker.incrementAndGet();
+        final Graph third = repository.createGraph(chain(100, 2000));
+
+        // the second graph is the least recently accessed one
+        assertThat(repository.find(second.getId())).isEmpty();
+        assertThat(repository.find(first.getId())).isPresent();
+        assertThat(repository.find(third.getId())).isPresent();
+        assertThat(repository.getSpilledCount()).isEqualTo(1);
+        assertThat(repository.getEvictionCount()).isEqualTo(1);
+        assertThat(repository.size()).isEqualTo(3);
+
+        // mapped again on access, without heap arrays
+        final Graph reloaded = repository.lookup(second.getId());
+        assertThat(reloaded.isMapped()).isTrue();
+        assertThat(reloaded.getEdgesCount()).isEqualTo(100);
+        assertThat(repository.getNodesHavingParentsCount(second.getId(), 0)).containsExactly(1000);
+        assertThat(repository.getSpilledCount()).isZero();
+    }
+
+    @Test
+    public void evictIfNeeded_indexesBuiltSinceStored_sweepEvictsOverBudget() {
+        final AtomicLong ticker = new AtomicLong();
+        // room for two chains of 100 edges, not for the ancestor index of one of them
+        final long chainBytes = chainMemoryBytes(100);
+        final GraphRepository repository = new GraphRepository(new GraphSnapshotStore(""),
+                new GraphEvictionPolicy(2 * chainBytes + chainBytes / 8, 0, ticker::get));
+        final Graph first = repository.createGraph(chain(100, 0));
+        ticker.incrementAndGet();
+        final Graph second = repository.createGraph(chain(100, 1000));
+        ticker.incrementAndGet();
+
+        // the index grows the first graph after it was stored, the writes only checking the running total
+        repository.lookup(first.getId()).getIndex(AncestorIndex.class, graph -> AncestorIndex.build(graph, Long.MAX_VALUE));
+        repository.updateGraph(second.getId(), new GraphMutation(null, Collections.singletonList(new Edge(1099, 1100)),
+                null, null), change -> { });
+        assertThat(repository.getEvictionCount()).isZero();
+
+        // the sweep estimates the memory again and evicts the least recently accessed graph
+        ticker.incrementAndGet();
+        repository.lookup(first.getId());
+        repository.evictIfNeeded();
+        assertThat(repository.getEvictionCount()).isEqualTo(1);
+        assertThat(repository.find(first.getId())).isPresent();
+        assertThat(repository.find(second.getId())).isEmpty();
+    }
+
+    @Test
+    public void createGraph_sameEdges_bodyShared() {
+        final GraphRepository repository = new GraphRepository(new GraphSnapshotStore(""), GraphEvictionPolicy.unbounded());
+        final Graph first = repository.createGraph(chain(100));
+        final long singleMemoryBytes = repository.getMemoryBytes();
+        final Graph second = repository.createGraph(chain(100));
+        final Graph other = repository.createGraph(chain(100, 1000));
+
+        assertThat(second.getId()).isNotEqualTo(first.getId());
+        assertThat(second.sharesBodyWith(first)).isTrue();
+        assertThat(other.sharesBodyWith(first)).isFalse();
+        assertThat(repository.getDeduplicatedCount()).isEqualTo(1);
+        assertThat(repository.getDeduplicationSavedBytes()).isEqualTo(singleMemoryBytes);
+        assertThat(repository.getMemoryBytes()).isEqualTo(2 * singleMemoryBytes);
+
+        // the updated version gets its own body, the first graph keeping the shared one
+        repository.updateGraph(second.getId(), new GraphMutation(Collections.singletonList(new Edge(0, 2)),
+                null, null, null), change -> { });
+        assertThat(repository.lookup(first.getId()).getEdgesCount()).isEqualTo(100);
+        assertThat(repository.getDeduplicatedCount()).isZero();
+
+        final Graph third = repository.createGraph(chain(100));
+        repository.deleteGraph(first.getId());
+        assertThat(repository.lookup(third.getId()).sharesBodyWith(first)).isTrue();
+        assertThat(repository.getDeduplicatedCount()).isZero();
+        assertThat(repository.getDeduplicationSavedBytes()).isZero();
+    }
+
+    @Test
+    public void createGraph_overMemoryBudget_sharedBodiesNotEvicted() {
+        final AtomicLong ticker = new AtomicLong();
+        final long chainBytes = chainMemoryBytes(100);
+        final GraphRepository repository = new GraphRepository(new GraphSnapshotStore(""),
+                new GraphEvictionPolicy(2 * chainBytes + chainBytes / 2, 0, ticker::get));
+        final Graph first = repository.createGraph(chain(100));
+        ticker.incrementAndGet();
+        final Graph second = repository.createGraph(chain(100));
+        ticker.incrementAndGet();
+        final Graph third = repository.createGraph(chain(100, 1000));
+        ticker.incrementAndGet();
+        assertThat(repository.getEvictionCount()).isZero();
+
+        // the least recently accessed graphs share their body, evicting them would free nothing
+        final Graph fourth = repository.createGraph(chain(100, 2000));
+        assertThat(repository.getEvictionCount()).isEqualTo(1);
+        assertThat(repository.find(first.getId())).isPresent();
+        assertThat(repository.find(second.getId())).isPresent();
+        assertThat(repository.find(third.getId())).isEmpty();
+        assertThat(repository.find(fourth.getId())).isPresent();
+        assertThat(repository.getShardMemoryBytes(0)).isEqualTo(2 * chainBytes);
+    }
+
+    @Test
+    public void createGraph_parallelSameEdges_bodiesSharedOncePerContent() throws Exception {
+        final GraphRepository repository = new GraphRepository(new GraphSnapshotStore(""), GraphEvictionPolicy.unbounded(),
+                GraphLog.disabled(), new GraphPartitioning(4));
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS_COUNT);
+        final List<Future<?>> futures = new ArrayList<>();
+        for (int thread = 0; thread < THREADS_COUNT; thread++) {
+            futures.add(executor.submit(() -> {
+                for (int content = 0; content < 100; content++) {
+                    repository.createGraph(chain(10, content * 100));
+                }
+            }));
+        }
+        for (final Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(1, TimeUnit.MINUTES)).isTrue();
+
+        // every content keeps a single body, accounted once over the shards
+        assertThat(repository.size()).isEqualTo(100 * THREADS_COUNT);
+        assertThat(repository.getDeduplicatedCount()).isEqualTo(100 * (THREADS_COUNT - 1));
+        assertThat(shardMemoryBytes(repository)).isEqualTo(100 * chainMemoryBytes(10));
+        assertThat(shardMemoryBytes(repository)).isEqualTo(repository.getMemoryBytes());
+    }
+
+    @Test
+    public void createGraph_shardOverItsBudgetShare_onlyShardEvicted() {
+        final GraphPartitioning partitioning = new GraphPartitioning(2);
+        final long chainBytes = chainMemoryBytes(100);
+        // every shard keeps at most two graphs
+        final GraphRepository repository = new GraphRepository(new GraphSnapshotStore(""),
+                new GraphEvictionPolicy(5 * chainBytes, 0, System::nanoTime), GraphLog.disabled(), partitioning);
+
+        final int[] createdCounts = new int[2];
+        for (int graph = 0; graph < 8; graph++) {
+            createdCounts[partitioning.shardOf(repository.createGraph(chain(100, graph * 1000)).getId())]++;
+        }
+
+        assertThat(repository.getShardCount()).isEqualTo(2);
+        for (int shard = 0; shard < 2; shard++) {
+            assertThat(repository.getShardSize(shard)).isEqualTo(Math.min(createdCounts[shard], 2));
+            assertThat(repository.getShardMemoryBytes(shard)).isEqualTo(repository.getShardSize(shard) * chainBytes);
+        }
+        assertThat(repository.getEvictionCount()).isEqualTo(8 - repository.size());
+    }
+
+    @Test
+    public void getShardMemoryBytes_bodySharedAcrossShards_accountedOnce() {
+        final GraphRepository repository = new GraphRepository(new GraphSnapshotStore(""), GraphEvictionPolicy.unbounded(),
+                GraphLog.disabled(), new GraphPartitioning(4));
+        final List<Graph> graphs = new ArrayList<>();
+        for (int graph = 0; graph < 8; graph++) {
+            graphs.add(repository.createGraph(chain(100)));
+        }
+        final long singleMemoryBytes = repository.getMemoryBytes();
+        assertThat(shardMemoryBytes(repository)).isEqualTo(singleMemoryBytes);
+
+        // the memory moves to the shard of another graph sharing the body
+        repository.deleteGraph(graphs.get(0).getId());
+        assertThat(repository.getMemoryBytes()).isEqualTo(singleMemoryBytes);
+        assertThat(shardMemoryBytes(repository)).isEqualTo(singleMemoryBytes);
+    }
+
+    @Test
+    public void evictIfNeeded_expiredWithoutSnapshots_dropped() {
+        final AtomicLong ticker = new AtomicLong();
+        final GraphRepository repository = new GraphRepository(new GraphSnapshotStore(""),
+                new GraphEvictionPolicy(0, TimeUnit.MINUTES.toNanos(1), ticker::get));
+        final Graph expiring = repository.createGraph(chain(10));
+        ticker.addAndGet(TimeUnit.SECONDS.toNanos(40));
+        final Graph accessed = repository.createGraph(chain(10));
+        ticker.addAndGet(TimeUnit.SECONDS.toNanos(30));
+
+        repository.evictIfNeeded();
+
+        assertThatThrownBy(() -> repository.lookup(expiring.getId())).isInstanceOf(GraphNotFoundException.class);
+        assertThat(repository.lookup(accessed.getId()).getId()).isEqualTo(accessed.getId());
+        assertThat(repository.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void deleteGraph_spilledGraph_snapshotDeleted() throws Exception {
+        final GraphSnapshotStore graphSnapshotStore = new GraphSnapshotStore(temporaryFolder.getRoot().getPath());
+        final AtomicLong ticker = new AtomicLong();
+        final GraphRepository repository = new GraphRepository(graphSnapshotStore,
+                new GraphEvictionPolicy(0, 1, ticker::get));
+        final Graph graph = repository.createGraph(chain(10));
+        ticker.incrementAndGet();
+        repository.evictIfNeeded();
+        assertThat(repository.getSpilledCount()).isEqualTo(1);
+
+        repository.deleteGraph(graph.getId());
+
+        assertThat(repository.size()).isZero();
+        assertThat(graphSnapshotStore.loadAll()).isEmpty();
+        assertThatThrownBy(() -> repository.lookup(graph.getId())).isInstanceOf(GraphNotFoundException.class);
+        assertThatThrownBy(() -> repository.deleteGraph(graph.getId())).isInstanceOf(GraphNotFoundException.class);
+    }
+
+    @Test
+    public void loadSnapshots_invalidSnapshotFile_skipped() throws Exception {
+        temporaryFolder.newFile("42.graph");
+        final GraphRepository restartedRepository = new GraphRepository(new GraphSnapshotStore(temporaryFolder.getRoot().getPath()),
+                GraphEvictionPolicy.unbounded());
+
+        restartedRepository.loadSnapshots();
+        assertThat(restartedRepository.size()).isZero();
+    }
+
+    @Test
+    public void loadSnapshots_restartWithLog_changesReplayed() throws Exception {
+        final GraphSnapshotStore graphSnapshotStore = new GraphSnapshotStore(temporaryFolder.getRoot().getPath());
+        final GraphLog graphLog = graphLog(GraphLog.Durability.SYNC);
+        final GraphRepository repository = new GraphRepository(graphSnapshotStore, GraphEvictionPolicy.unbounded(), graphLog);
+        repository.loadSnapshots();
+        final Graph graph = repository.createGraph(chain(3));
+        repository.updateGraph(graph.getId(), new GraphMutation(Collections.singletonList(new Edge(3, 4)),
+                Collections.singletonList(new Edge(0, 1)), null, Collections.singletonList(0)), change -> { });
+        final Graph deleted = repository.createGraph(chain(5, 100));
+        repository.deleteGraph(deleted.getId());
+        graphLog.close();
+        assertThat(graphSnapshotStore.loadAll()).isEmpty();
+        assertThat(repository.getLogRecordCount()).isEqualTo(4);
+        assertThat(repository.getLogSyncCount()).isBetween(1L, 4L);
+
+        final GraphRepository restartedRepository = new GraphRepository(graphSnapshotStore, GraphEvictionPolicy.unbounded(),
+                graphLog(GraphLog.Durability.SYNC));
+        restartedRepository.loadSnapshots();
+
+        final Graph restored = restartedRepository.lookup(graph.getId());
+        assertThat(restored.getVersion()).isEqualTo(2L);
+        assertThat(restored.getEdgesCount()).isEqualTo(3);
+        assertThat(restored.containsNode(0)).isFalse();
+        assertThat(restartedRepository.getNodesHavingParentsCount(graph.getId(), 0)).containsExactly(1);
+        assertThat(restartedRepository.size()).isEqualTo(1);
+        assertThatThrownBy(() -> restartedRepository.lookup(deleted.getId())).isInstanceOf(GraphNotFoundException.class);
+    }
+
+    @Test
+    public void compactLog_changedGraphs_snapshotsWrittenAndSegmentsDeleted() throws Exception {
+        final GraphSnapshotStore graphSnapshotStore = new GraphSnapshotStore(temporaryFolder.getRoot().getPath());
+        final GraphLog graphLog = graphLog(GraphLog.Durability.SYNC);
+        final GraphRepository repository = new GraphRepository(graphSnapshotStore, GraphEvictionPolicy.unbounded(), graphLog);
+        repository.loadSnapshots();
+        final Graph graph = repository.createGraph(chain(3));
+        repository.updateGraph(graph.getId(), new GraphMutation(Collections.singletonList(new Edge(3, 4)), null, null, null),
+                change -> { });
+
+        repository.compactLog();
+        final Graph created = repository.createGraph(chain(5, 100));
+        graphLog.close();
+
+        assertThat(graphSnapshotStore.loadAll()).extracting(Graph::getVersion).containsExactly(2L);
+        assertThat(temporaryFolder.getRoot().list((directory, name) -> name.endsWith(".log"))).hasSize(1);
+
+        final GraphRepository restartedRepository = new GraphRepository(graphSnapshotStore, GraphEvictionPolicy.unbounded(),
+                graphLog(GraphLog.Durability.SYNC));
+        restartedRepository.loadSnapshots();
+        final Graph restored = restartedRepository.lookup(graph.getId());
+        assertThat(restored.isMapped()).isTrue();
+        assertThat(restored.getEdgesCount()).isEqualTo(4);
+        assertThat(restartedRepository.lookup(created.getId()).getEdgesCount()).isEqualTo(5);
+    }
+
+    @Test
+    public void createGraph_concurrentSyncChanges_changesShareSyncs() throws Exception {
+        final GraphSnapshotStore graphSnapshotStore = new GraphSnapshotStore(temporaryFolder.getRoot().getPath());
+        final GraphLog graphLog = graphLog(GraphLog.Durability.SYNC);
+        final GraphRepository repository = new GraphRepository(graphSnapshotStore, GraphEvictionPolicy.unbounded(), graphLog);
+        repository.loadSnapshots();
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS_COUNT);
+        final List<Future<?>> futures = new ArrayList<>();
+        for (int thread = 0; thread < THREADS_COUNT; thread++) {
+            final int firstNode = thread * 100_000;
+            futures.add(executor.submit(() -> {
+                for (int graph = 0; graph < 100; graph++) {
+                    repository.createGraph(chain(100, firstNode + graph * 1000));
+                }
+            }));
+        }
+        for (final Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(1, TimeUnit.MINUTES)).isTrue();
+        graphLog.close();
+
+        // the changes queued while the writer forces the previous ones are forced together
+        assertThat(repository.getLogRecordCount()).isEqualTo(100 * THREADS_COUNT);
+        assertThat(repository.getLogSyncCount()).isLessThan(repository.getLogRecordCount());
+
+        final GraphRepository restartedRepository = new GraphRepository(graphSnapshotStore, GraphEvictionPolicy.unbounded(),
+                graphLog(GraphLog.Durability.SYNC));
+        restartedRepository.loadSnapshots();
+        assertThat(restartedRepository.size()).isEqualTo(100 * THREADS_COUNT);
+    }
+
+    @Test
+    public void compactLog_concurrentUpdates_everyChangeRestored() throws Exception {
+        final GraphSnapshotStore graphSnapshotStore = new GraphSnapshotStore(temporaryFolder.getRoot().getPath());
+        final GraphLog graphLog = graphLog(GraphLog.Durability.SYNC);
+        final GraphRepository repository = new GraphRepository(graphSnapshotStore, GraphEvictionPolicy.unbounded(), graphLog);
+        repository.loadSnapshots();
+        final List<Long> graphIds = new ArrayList<>();
+        for (int graph = 0; graph < 4; graph++) {
+            graphIds.add(repository.createGraph(chain(3, graph * 1000)).getId());
+        }
+
+        // every update extends the chain of a graph while the log is compacted over and over
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        final Future<?> updates = executor.submit(() -> {
+            for (int update = 0; update < 400; update++) {
+                final int graph = update % graphIds.size();
+                final int node = graph * 1000 + 3 + update / graphIds.size();
+                repository.updateGraph(graphIds.get(graph), new GraphMutation(Collections.singletonList(new Edge(node, node + 1)),
+                        null, null, null), change -> { });
+            }
+        });
+        int compactions = 0;
+        while (!updates.isDone() || compactions == 0) {
+            repository.compactLog();
+            compactions++;
+        }
+        updates.get();
+        executor.shutdown();
+        graphLog.close();
+
+        final GraphRepository restartedRepository = new GraphRepository(graphSnapshotStore, GraphEvictionPolicy.unbounded(),
+                graphLog(GraphLog.Durability.SYNC));
+        restartedRepository.loadSnapshots();
+        for (final Long graphId : graphIds) {
+            final Graph restored = restartedRepository.lookup(graphId);
+            assertThat(restored.getVersion()).isEqualTo(101L);
+            assertThat(restored.getEdgesCount()).isEqualTo(103);
+        }
+    }
+
+    @Test
+    public void compactLog_changedGraphEvicted_snapshotRestored() throws Exception {
+        final AtomicLong ticker = new AtomicLong();
+        final GraphSnapshotStore graphSnapshotStore = new GraphSnapshotStore(temporaryFolder.getRoot().getPath());
+        final GraphLog graphLog = graphLog(GraphLog.Durability.SYNC);
+        // room for a single chain of 100 edges
+        final GraphRepository repository = new GraphRepository(graphSnapshotStore,
+                new GraphEvictionPolicy(chainMemoryBytes(100) + chainMemoryBytes(100) / 2, 0, ticker::get), graphLog);
+        repository.loadSnapshots();
+        final Graph first = repository.createGraph(chain(100, 0));
+        ticker.incrementAndGet();
+        final Graph second = repository.createGraph(chain(100, 1000));
+
+        // the first graph is evicted before any compaction, its snapshot being written on its eviction
+        assertThat(repository.getEvictionCount()).isEqualTo(1);
+        assertThat(graphSnapshotStore.loadAll()).extracting(Graph::getId).containsExactly(first.getId());
+        ticker.incrementAndGet();
+        repository.updateGraph(first.getId(), new GraphMutation(Collections.singletonList(new Edge(100, 101)), null, null, null),
+                change -> { });
+        assertThat(repository.getEvictionCount()).isEqualTo(2);
+
+        repository.compactLog();
+        graphLog.close();
+        assertThat(temporaryFolder.getRoot().list((directory, name) -> name.endsWith(".log"))).hasSize(1);
+
+        final GraphRepository restartedRepository = new GraphRepository(graphSnapshotStore, GraphEvictionPolicy.unbounded(),
+                graphLog(GraphLog.Durability.SYNC));
+        restartedRepository.loadSnapshots();
+        assertThat(restartedRepository.lookup(first.getId()).getVersion()).isEqualTo(2L);
+        assertThat(restartedRepository.lookup(first.getId()).getEdgesCount()).isEqualTo(101);
+        assertThat(restartedRepository.lookup(second.getId()).getEdgesCount()).isEqualTo(100);
+    }
+
+    @Test
+    public void loadSnapshots_restartWithAsyncLog_changesReplayed() throws Exception {
+        final GraphSnapshotStore graphSnapshotStore = new GraphSnapshotStore(temporaryFolder.getRoot().getPath());
+        final GraphLog graphLog = new GraphLog(temporaryFolder.getRoot().toPath(), GraphLog.Durability.ASYNC, TimeUnit.MINUTES.toNanos(1));
+        graphLogs.add(graphLog);
+        final GraphRepository repository = new GraphRepository(graphSnapshotStore, GraphEvictionPolicy.unbounded(), graphLog);
+        repository.loadSnapshots();
+        final List<Long> graphIds = new ArrayList<>();
+        for (int graph = 0; graph < 100; graph++) {
+            graphIds.add(repository.createGraph(chain(graph + 1, graph * 1000)).getId());
+        }
+        graphLog.close();
+        // written as they are queued and forced once, on close
+        assertThat(repository.getLogSyncCount()).isEqualTo(1);
+
+        final GraphRepository restartedRepository = new GraphRepository(graphSnapshotStore, GraphEvictionPolicy.unbounded(),
+                graphLog(GraphLog.Durability.ASYNC));
+        restartedRepository.loadSnapshots();
+        assertThat(restartedRepository.size()).isEqualTo(100);
+        for (int graph = 0; graph < 100; graph++) {
+            assertThat(restartedRepository.lookup(graphIds.get(graph)).getEdgesCount()).isEqualTo(graph + 1);
+        }
+    }
+
+    @Test
+    public void loadSnapshots_logRecordPartlyWritten_recordSkipped() throws Exception {
+        final GraphSnapshotStore graphSnapshotStore = new GraphSnapshotStore(temporaryFolder.getRoot().getPath());
+        final GraphLog graphLog = graphLog(GraphLog.Durability.SYNC);
+        final GraphRepository repository = new GraphRepository(graphSnapshotStore, GraphEvictionPolicy.unbounded(), graphLog);
+        repository.loadSnapshots();
+        final Graph graph = repository.createGraph(chain(3));
+        final Graph truncated = repository.createGraph(chain(5, 100));
+        graphLog.close();
+        final Path segment = temporaryFolder.getRoot().listFiles((directory, name) -> name.endsWith(".log"))[0].toPath();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        final GraphRepository restartedRepository = new GraphRepository(graphSnapshotStore, GraphEvictionPolicy.unbounded(),
+                graphLog(GraphLog.Durability.SYNC));
+        restartedRepository.loadSnapshots();
+        assertThat(restartedRepository.lookup(graph.getId()).getEdgesCount()).isEqualTo(3);
+        assertThatThrownBy(() -> restartedRepository.lookup(truncated.getId())).isInstanceOf(GraphNotFoundException.class);
+    }
+
+    private static Set<Edge> chain(final int edgesCount) {
+        return chain(edgesCount, 0);
+    }
+
+    private static Set<Edge> chain(final int edgesCount, final int firstNode) {
+        final Set<Edge> edges = new HashSet<>();
+        for (int node = firstNode; node < firstNode + edgesCount; node++) {
+            edges.add(new Edge(node, node + 1));
+        }
+        return edges;
+    }
+
+    private GraphLog graphLog(final GraphLog.Durability durability) {
+        final GraphLog graphLog = new GraphLog(temporaryFolder.getRoot().toPath(), durability, TimeUnit.MILLISECONDS.toNanos(10));
+        graphLogs.add(graphLog);
+        return graphLog;
+    }
+
+    private static long shardMemoryBytes(final GraphRepository repository) {
+        long bytes = 0;
+        for (int shard = 0; shard < repository.getShardCount(); shard++) {
+            bytes += repository.getShardMemoryBytes(shard);
+        }
+        return bytes;
+    }
+
+    private static long chainMemoryBytes(final int edgesCount) {
+        final GraphRepository repository = new GraphRepository(new GraphSnapshotStore(""), GraphEvictionPolicy.unbounded());
+        return repository.createGraph(chain(edgesCount)).getMemoryBytes();
+    }
+
+    private void createGraphs(final List<Long> graphIds, final int size) {
+        for (int index = graphIds.size(); index < size; index++) {
+            graphIds.add(graphRepository.createGraph(Collections.singleton(new Edge(index, index + 1))).getId());
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.rl.graphapi.service.traversal;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TraversalWorkspaceTest {
+
+    @Test
+    public void acquire_graphUnderRetainedSize_workspaceReused() {
+        final TraversalWorkspace workspace = TraversalWorkspace.acquire(1_000);
+        final int firstMark = workspace.firstMark();
+
+        final TraversalWorkspace reused = TraversalWorkspace.acquire(10);
+
+        assertThat(reused).isSameAs(workspace);
+        assertThat(reused.visited()).hasSize(1_000);
+        assertThat(reused.firstMark()).isGreaterThan(firstMark);
+    }
+
+    @Test
+    public void acquire_graphOverRetainedSize_workspaceNotKept() {
+        final TraversalWorkspace workspace = TraversalWorkspace.acquire(10);
+
+        final TraversalWorkspace large = TraversalWorkspace.acquire(TraversalWorkspace.MAX_RETAINED_NODES + 1);
+
+        assertThat(large).isNotSameAs(workspace);
+        assertThat(large.visited()).hasSize(TraversalWorkspace.MAX_RETAINED_NODES + 1);
+        assertThat(TraversalWorkspace.acquire(10)).isSameAs(workspace);
+        assertThat(workspace.visited().length).isLessThanOrEqualTo(TraversalWorkspace.MAX_RETAINED_NODES);
+    }
+}